@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import android.net.Uri;
+import android.provider.Settings;
+import android.util.Log;
+
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.logger.LauncherAtom;
+import com.android.launcher3.model.data.CollectionInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.util.IntSet;
+import com.android.launcher3.util.IntSparseArrayMap;
+import com.android.launcher3.util.SettingsCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cache of the protos logged for the items of the model in the launcher layout snapshots, so
+ * that a snapshot only builds the protos of the items changed since the previous one.
+ *
+ * <p>A proto is built again when its item is marked as changed in the model, when its container
+ * is marked as changed, or when the model holds another object for its id, for example after
+ * the model is reloaded.
+ */
+class LayoutSnapshotCache {
+
+    private static final String TAG = "LayoutSnapshotCache";
+
+    private static final Uri NAV_BAR_KIDS_MODE =
+            Settings.Secure.getUriFor(Settings.Secure.NAV_BAR_KIDS_MODE);
+
+    private IntSparseArrayMap<Entry> mEntries = new IntSparseArrayMap<>();
+    private boolean mKidsMode;
+
+    /**
+     * Returns the protos of all the items of the model.
+     */
+    @WorkerThread
+    synchronized List<LauncherAtom.ItemInfo> getSnapshot(BgDataModel dataModel) {
+        // Consume the changes before copying the items, so that a change made while the protos
+        // are built is applied by the next snapshot
+        IntSet changedItemIds = dataModel.consumeChangedItemIds();
+        IntSparseArrayMap<ItemInfo> itemsIdMap;
+        synchronized (dataModel) {
+            itemsIdMap = dataModel.itemsIdMap.clone();
+        }
+
+        boolean kidsMode = isKidsMode();
+        if (kidsMode != mKidsMode) {
+            mEntries.clear();
+            mKidsMode = kidsMode;
+        }
+
+        IntSparseArrayMap<Entry> entries = new IntSparseArrayMap<>();
+        List<LauncherAtom.ItemInfo> snapshot = new ArrayList<>(itemsIdMap.size());
+        for (ItemInfo info : itemsIdMap) {
+            Entry entry = mEntries.get(info.id);
+            if (entry == null || entry.info != info || changedItemIds.contains(info.id)
+                    || (info.container > 0 && changedItemIds.contains(info.container))) {
+                entry = new Entry(info, info.buildProto(getContainer(info, itemsIdMap)));
+            }
+            entries.put(info.id, entry);
+            snapshot.add(entry.proto);
+        }
+        // Drops the protos of the removed items
+        mEntries = entries;
+        return snapshot;
+    }
+
+    private static CollectionInfo getContainer(
+            ItemInfo info, IntSparseArrayMap<ItemInfo> itemsIdMap) {
+        if (info.container > 0) {
+            ItemInfo containerInfo = itemsIdMap.get(info.container);
+
+            if (!(containerInfo instanceof CollectionInfo)) {
+                Log.e(TAG, String.format(
+                        "Item info: %s found with invalid container: %s",
+                        info,
+                        containerInfo));
+            }
+            // Allow crash to help debug b/173838775
+            return (CollectionInfo) containerInfo;
+        }
+        return null;
+    }
+
+    private static boolean isKidsMode() {
+        // Same as the value logged by ItemInfo#buildProto
+        boolean[] kidsMode = new boolean[1];
+        SettingsCache.INSTANCE.executeIfCreated(
+                cache -> kidsMode[0] = cache.getValue(NAV_BAR_KIDS_MODE, 0));
+        return kidsMode[0];
+    }
+
+    private static class Entry {
+
+        final ItemInfo info;
+        final LauncherAtom.ItemInfo proto;
+
+        Entry(ItemInfo info, LauncherAtom.ItemInfo proto) {
+            this.info = info;
+            this.proto = proto;
+        }
+    }
+}
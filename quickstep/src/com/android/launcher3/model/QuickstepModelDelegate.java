@@ -66,14 +66,12 @@ import com.android.launcher3.logging.InstanceId;
 import com.android.launcher3.logging.InstanceIdSequence;
 import com.android.launcher3.model.BgDataModel.FixedContainerItems;
 import com.android.launcher3.model.data.AppInfo;
-import com.android.launcher3.model.data.CollectionInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.WorkspaceItemInfo;
 import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.shortcuts.ShortcutKey;
 import com.android.launcher3.util.ApiWrapper;
 import com.android.launcher3.util.Executors;
-import com.android.launcher3.util.IntSparseArrayMap;
 import com.android.launcher3.util.PackageManagerHelper;
 import com.android.launcher3.util.PersistedItemArray;
 import com.android.quickstep.logging.SettingsChangeLogger;
@@ -114,6 +112,7 @@ public class QuickstepModelDelegate extends ModelDelegate {
     private final InvariantDeviceProfile mIDP;
     private final AppEventProducer mAppEventProducer;
     private final StatsManager mStatsManager;
+    private final LayoutSnapshotCache mSnapshotCache = new LayoutSnapshotCache();
 
     protected boolean mActive = false;
 
@@ -231,14 +230,9 @@ public class QuickstepModelDelegate extends ModelDelegate {
                         elapsedTime));
             }
         } else {
-            IntSparseArrayMap<ItemInfo> itemsIdMap;
-            synchronized (mDataModel) {
-                itemsIdMap = mDataModel.itemsIdMap.clone();
-            }
             InstanceId instanceId = new InstanceIdSequence().newInstanceId();
-            for (ItemInfo info : itemsIdMap) {
-                CollectionInfo parent = getContainer(info, itemsIdMap);
-                StatsLogCompatManager.writeSnapshot(info.buildProto(parent), instanceId);
+            for (LauncherAtom.ItemInfo itemInfo : mSnapshotCache.getSnapshot(mDataModel)) {
+                StatsLogCompatManager.writeSnapshot(itemInfo, instanceId);
             }
             additionalSnapshotEvents(instanceId);
             prefs.put(LAST_SNAPSHOT_TIME_MILLIS, now);
@@ -268,15 +262,12 @@ public class QuickstepModelDelegate extends ModelDelegate {
                     MODEL_EXECUTOR,
                     (i, eventList) -> {
                         InstanceId instanceId = new InstanceIdSequence().newInstanceId();
-                        IntSparseArrayMap<ItemInfo> itemsIdMap;
-                        synchronized (mDataModel) {
-                            itemsIdMap = mDataModel.itemsIdMap.clone();
-                        }
-
-                        for (ItemInfo info : itemsIdMap) {
-                            CollectionInfo parent = getContainer(info, itemsIdMap);
-                            LauncherAtom.ItemInfo itemInfo = info.buildProto(parent);
-                            Log.d(TAG, itemInfo.toString());
+                        List<LauncherAtom.ItemInfo> snapshot =
+                                mSnapshotCache.getSnapshot(mDataModel);
+                        for (LauncherAtom.ItemInfo itemInfo : snapshot) {
+                            if (IS_DEBUG) {
+                                Log.d(TAG, itemInfo.toString());
+                            }
                             StatsEvent statsEvent = StatsLogCompatManager.buildStatsEvent(itemInfo,
                                     instanceId);
                             eventList.add(statsEvent);
@@ -284,7 +275,7 @@ public class QuickstepModelDelegate extends ModelDelegate {
                         Log.d(TAG,
                                 String.format(
                                         "Successfully logged %d workspace items with instanceId=%d",
-                                        itemsIdMap.size(), instanceId.getId()));
+                                        snapshot.size(), instanceId.getId()));
                         additionalSnapshotEvents(instanceId);
                         SettingsChangeLogger.INSTANCE.get(mContext).logSnapshot(instanceId);
                         return StatsManager.PULL_SUCCESS;
@@ -297,23 +288,6 @@ public class QuickstepModelDelegate extends ModelDelegate {
         }
     }
 
-    private static CollectionInfo getContainer(
-            ItemInfo info, IntSparseArrayMap<ItemInfo> itemsIdMap) {
-        if (info.container > 0) {
-            ItemInfo containerInfo = itemsIdMap.get(info.container);
-
-            if (!(containerInfo instanceof CollectionInfo)) {
-                Log.e(TAG, String.format(
-                        "Item info: %s found with invalid container: %s",
-                        info,
-                        containerInfo));
-            }
-            // Allow crash to help debug b/173838775
-            return (CollectionInfo) containerInfo;
-        }
-        return null;
-    }
-
     @Override
     public void validateData() {
         super.validateData();
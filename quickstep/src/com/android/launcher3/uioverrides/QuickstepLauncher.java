@@ -1502,6 +1502,7 @@ public class QuickstepLauncher extends Launcher implements RecentsViewContainer,
                 recentsView.getPagedViewOrientedState()));
         if (recentsView != null) {
             recentsView.getSplitSelectController().dump(prefix, writer);
+            recentsView.dump(prefix, writer);
         }
         if (mAppTransitionManager != null) {
             mAppTransitionManager.dump(prefix + "\t" + RING_APPEAR_ANIMATION_PREFIX, writer);
@@ -16,6 +16,8 @@
 
 package com.android.quickstep;
 
+import static android.app.WindowConfiguration.ACTIVITY_TYPE_STANDARD;
+import static android.app.WindowConfiguration.WINDOWING_MODE_FULLSCREEN;
 import static android.content.Intent.FLAG_ACTIVITY_EXCLUDE_FROM_RECENTS;
 
 import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
@@ -38,6 +40,7 @@ import com.android.launcher3.util.LooperExecutor;
 import com.android.launcher3.util.SplitConfigurationOptions;
 import com.android.quickstep.util.DesktopTask;
 import com.android.quickstep.util.GroupTask;
+import com.android.quickstep.views.TaskViewType;
 import com.android.systemui.shared.recents.model.Task;
 import com.android.wm.shell.recents.IRecentTasksListener;
 import com.android.wm.shell.shared.GroupedRecentTaskInfo;
@@ -48,12 +51,18 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
 
 /**
  * Manages the recent task list from the system, caching it as necessary.
+ *
+ * <p>The loaded tasks are published as snapshots which are not modified once published, each
+ * change creating a new snapshot with a new change id. The running task events which can be
+ * expressed on the loaded tasks, like a single task appearing, changing, moving to the front or
+ * vanishing, update the snapshot instead of loading the tasks again, and the recent tasks changed
+ * event which follows them is ignored. The other changes invalidate the loaded tasks.
  */
 public class RecentTasksList {
 
@@ -73,6 +82,10 @@ public class RecentTasksList {
     private TaskLoadResult mResultsBg = INVALID_RESULT;
     private TaskLoadResult mResultsUi = INVALID_RESULT;
 
+    // Whether mResultsUi was updated from a running task event, whose recent tasks changed event
+    // was not received yet
+    private boolean mExpectingRecentTasksChanged;
+
     private @Nullable RecentsModel.RunningTasksListener mRunningTasksListener;
     private @Nullable RecentsModel.RecentTasksChangedListener mRecentTasksChangedListener;
     // Tasks are stored in order of least recently launched to most recently launched.
@@ -117,6 +130,7 @@ public class RecentTasksList {
             public void onTaskMovedToFront(ActivityManager.RunningTaskInfo taskInfo) {
                 mMainThreadExecutor.execute(() -> {
                     topTaskTracker.onTaskMovedToFront(taskInfo);
+                    RecentTasksList.this.onTaskMovedToFront(taskInfo);
                 });
             }
         });
@@ -160,9 +174,7 @@ public class RecentTasksList {
             if (callback != null) {
                 // Copy synchronously as the changeId might change by next frame
                 // and filter GroupTasks
-                ArrayList<GroupTask> result = mResultsUi.stream().filter(filter)
-                        .map(GroupTask::copy)
-                        .collect(Collectors.toCollection(ArrayList<GroupTask>::new));
+                ArrayList<GroupTask> result = copyOf(mResultsUi, filter);
 
                 mMainThreadExecutor.post(() -> {
                     callback.accept(result);
@@ -184,11 +196,7 @@ public class RecentTasksList {
                 mResultsUi = loadResult;
                 if (callback != null) {
                     // filter the tasks if needed before passing them into the callback
-                    ArrayList<GroupTask> result = mResultsUi.stream().filter(filter)
-                            .map(GroupTask::copy)
-                            .collect(Collectors.toCollection(ArrayList<GroupTask>::new));
-
-                    callback.accept(result);
+                    callback.accept(copyOf(mResultsUi, filter));
                 }
             });
         });
@@ -204,7 +212,18 @@ public class RecentTasksList {
     }
 
     public void onRecentTasksChanged() {
+        synchronized (this) {
+            if (mExpectingRecentTasksChanged) {
+                // The change was already applied to the loaded tasks, and the listener notified
+                mExpectingRecentTasksChanged = false;
+                return;
+            }
+        }
         invalidateLoadedTasks();
+        notifyRecentTasksChanged();
+    }
+
+    private void notifyRecentTasksChanged() {
         if (mRecentTasksChangedListener != null) {
             mRecentTasksChangedListener.onRecentTasksChanged();
         }
@@ -213,7 +232,162 @@ public class RecentTasksList {
     private synchronized void invalidateLoadedTasks() {
         UI_HELPER_EXECUTOR.execute(() -> mResultsBg = INVALID_RESULT);
         mResultsUi = INVALID_RESULT;
+        mExpectingRecentTasksChanged = false;
+        mChangeId++;
+    }
+
+    /**
+     * Moves the task to the front of the loaded tasks and updates its details, without loading the
+     * tasks again. Only tasks which are not part of a split or desktop group are moved, as moving
+     * the other tasks may change their group.
+     */
+    @VisibleForTesting
+    void onTaskMovedToFront(ActivityManager.RunningTaskInfo taskInfo) {
+        synchronized (this) {
+            int index = indexOfLoadedTask(taskInfo.taskId);
+            if (index < 0 || mResultsUi.get(index).taskViewType != TaskViewType.SINGLE) {
+                // The recent tasks changed event which follows invalidates the tasks
+                mExpectingRecentTasksChanged = false;
+                return;
+            }
+            Task task = mResultsUi.get(index).task1;
+            Task movedTask = createTask(taskInfo, task.isLocked);
+            int lastIndex = mResultsUi.size() - 1;
+            if (index == lastIndex && hasSameDetails(task, movedTask)) {
+                // Already the most recent task
+                return;
+            }
+            // Tasks are stored in order of least recently launched to most recently launched
+            TaskLoadResult result = new TaskLoadResult(
+                    mChangeId + 1, mResultsUi.mKeysOnly, mResultsUi.size());
+            for (int i = 0; i <= lastIndex; i++) {
+                if (i != index) {
+                    result.add(mResultsUi.get(i));
+                }
+            }
+            result.add(new GroupTask(movedTask));
+            publishUpdatedTasks(result, true /* expectRecentTasksChanged */);
+        }
+        notifyRecentTasksChanged();
+    }
+
+    /**
+     * Adds the task as the most recent task of the loaded tasks, if it would be loaded as a
+     * single task.
+     */
+    private void addToLoadedTasks(ActivityManager.RunningTaskInfo taskInfo) {
+        synchronized (this) {
+            if (!mResultsUi.isValidForRequest(mChangeId, true /* loadKeysOnly */)
+                    || indexOfLoadedTask(taskInfo.taskId) >= 0) {
+                return;
+            }
+            if (taskInfo.getWindowingMode() != WINDOWING_MODE_FULLSCREEN
+                    || taskInfo.getActivityType() != ACTIVITY_TYPE_STANDARD
+                    || (taskInfo.baseIntent.getFlags() & FLAG_ACTIVITY_EXCLUDE_FROM_RECENTS) != 0) {
+                // The task may be hidden or grouped with other tasks, the recent tasks changed
+                // event which follows invalidates the tasks
+                mExpectingRecentTasksChanged = false;
+                return;
+            }
+            TaskLoadResult result = new TaskLoadResult(
+                    mChangeId + 1, mResultsUi.mKeysOnly, mResultsUi.size() + 1);
+            result.addAll(mResultsUi);
+            result.add(new GroupTask(createTask(taskInfo,
+                    !mResultsUi.mKeysOnly && mKeyguardManager.isDeviceLocked(taskInfo.userId))));
+            publishUpdatedTasks(result, true /* expectRecentTasksChanged */);
+        }
+        notifyRecentTasksChanged();
+    }
+
+    /**
+     * Updates the details of the task in the loaded tasks, like its label or last active time.
+     */
+    private void updateLoadedTask(ActivityManager.RunningTaskInfo taskInfo) {
+        synchronized (this) {
+            int index = indexOfLoadedTask(taskInfo.taskId);
+            if (index < 0 || mResultsUi.get(index).taskViewType != TaskViewType.SINGLE) {
+                // The details of the grouped tasks are updated when the tasks are loaded again
+                return;
+            }
+            Task task = mResultsUi.get(index).task1;
+            Task updatedTask = createTask(taskInfo, task.isLocked);
+            if (hasSameDetails(task, updatedTask)) {
+                return;
+            }
+            TaskLoadResult result = new TaskLoadResult(
+                    mChangeId + 1, mResultsUi.mKeysOnly, mResultsUi.size());
+            result.addAll(mResultsUi);
+            result.set(index, new GroupTask(updatedTask));
+            // Task changes are not always followed by a recent tasks changed event
+            publishUpdatedTasks(result, false /* expectRecentTasksChanged */);
+        }
+        notifyRecentTasksChanged();
+    }
+
+    /**
+     * Removes the task from the loaded tasks, if it is not part of a split or desktop group.
+     */
+    private void removeFromLoadedTasks(ActivityManager.RunningTaskInfo taskInfo) {
+        synchronized (this) {
+            int index = indexOfLoadedTask(taskInfo.taskId);
+            if (index < 0) {
+                return;
+            }
+            if (mResultsUi.get(index).taskViewType != TaskViewType.SINGLE) {
+                // The recent tasks changed event which follows invalidates the tasks
+                mExpectingRecentTasksChanged = false;
+                return;
+            }
+            TaskLoadResult result = new TaskLoadResult(
+                    mChangeId + 1, mResultsUi.mKeysOnly, mResultsUi.size());
+            result.addAll(mResultsUi);
+            result.remove(index);
+            publishUpdatedTasks(result, true /* expectRecentTasksChanged */);
+        }
+        notifyRecentTasksChanged();
+    }
+
+    /**
+     * Returns the index of the group containing the task in the loaded tasks, or -1 if the tasks
+     * are not loaded or do not contain it.
+     */
+    private synchronized int indexOfLoadedTask(int taskId) {
+        if (!mResultsUi.isValidForRequest(mChangeId, true /* loadKeysOnly */)) {
+            return -1;
+        }
+        for (int i = 0; i < mResultsUi.size(); i++) {
+            if (mResultsUi.get(i).containsTask(taskId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private synchronized void publishUpdatedTasks(TaskLoadResult result,
+            boolean expectRecentTasksChanged) {
+        mResultsUi = result;
         mChangeId++;
+        mExpectingRecentTasksChanged |= expectRecentTasksChanged;
+    }
+
+    /**
+     * Creates the task from the running task, loading the same details as the loaded tasks.
+     */
+    private Task createTask(ActivityManager.RunningTaskInfo taskInfo, boolean isLocked) {
+        Task.TaskKey key = new Task.TaskKey(taskInfo);
+        Task task = mResultsUi.mKeysOnly ? new Task(key) : Task.from(key, taskInfo, isLocked);
+        task.setLastSnapshotData(taskInfo);
+        return task;
+    }
+
+    private static boolean hasSameDetails(Task a, Task b) {
+        return a.key.windowingMode == b.key.windowingMode
+                && a.key.userId == b.key.userId
+                && a.key.displayId == b.key.displayId
+                && a.key.lastActiveTime == b.key.lastActiveTime
+                && Objects.equals(a.topActivity, b.topActivity)
+                && Objects.equals(a.taskDescription, b.taskDescription)
+                && a.isLocked == b.isLocked;
     }
 
     /**
@@ -258,7 +432,9 @@ public class RecentTasksList {
         return mRunningTasks;
     }
 
-    private void onRunningTaskAppeared(ActivityManager.RunningTaskInfo taskInfo) {
+    @VisibleForTesting
+    void onRunningTaskAppeared(ActivityManager.RunningTaskInfo taskInfo) {
+        addToLoadedTasks(taskInfo);
         // Make sure this task is not already in the list
         for (ActivityManager.RunningTaskInfo existingTask : mRunningTasks) {
             if (taskInfo.taskId == existingTask.taskId) {
@@ -271,7 +447,9 @@ public class RecentTasksList {
         }
     }
 
-    private void onRunningTaskVanished(ActivityManager.RunningTaskInfo taskInfo) {
+    @VisibleForTesting
+    void onRunningTaskVanished(ActivityManager.RunningTaskInfo taskInfo) {
+        removeFromLoadedTasks(taskInfo);
         // Find the task from the list of running tasks, if it exists
         for (ActivityManager.RunningTaskInfo existingTask : mRunningTasks) {
             if (existingTask.taskId != taskInfo.taskId) continue;
@@ -284,7 +462,9 @@ public class RecentTasksList {
         }
     }
 
-    private void onRunningTaskChanged(ActivityManager.RunningTaskInfo taskInfo) {
+    @VisibleForTesting
+    void onRunningTaskChanged(ActivityManager.RunningTaskInfo taskInfo) {
+        updateLoadedTask(taskInfo);
         // Find the task from the list of running tasks, if it exists
         for (ActivityManager.RunningTaskInfo existingTask : mRunningTasks) {
             if (existingTask.taskId != taskInfo.taskId) continue;
@@ -400,10 +580,18 @@ public class RecentTasksList {
         return new DesktopTask(tasks);
     }
 
-    private ArrayList<GroupTask> copyOf(ArrayList<GroupTask> tasks) {
-        ArrayList<GroupTask> newTasks = new ArrayList<>();
+    /**
+     * Returns copies of the tasks matching {@param filter}, as the consumers update the tasks
+     * they receive.
+     */
+    private static ArrayList<GroupTask> copyOf(List<GroupTask> tasks,
+            Predicate<GroupTask> filter) {
+        ArrayList<GroupTask> newTasks = new ArrayList<>(tasks.size());
         for (int i = 0; i < tasks.size(); i++) {
-            newTasks.add(tasks.get(i).copy());
+            GroupTask task = tasks.get(i);
+            if (filter.test(task)) {
+                newTasks.add(task.copy());
+            }
         }
         return newTasks;
     }
@@ -411,6 +599,7 @@ public class RecentTasksList {
     public void dump(String prefix, PrintWriter writer) {
         writer.println(prefix + "RecentTasksList:");
         writer.println(prefix + "  mChangeId=" + mChangeId);
+        writer.println(prefix + "  mExpectingRecentTasksChanged=" + mExpectingRecentTasksChanged);
         writer.println(prefix + "  mResultsUi=[id=" + mResultsUi.mRequestId + ", tasks=");
         for (GroupTask task : mResultsUi) {
             Task task1 = task.task1;
@@ -444,6 +633,9 @@ public class RecentTasksList {
         writer.println(prefix + "  ]");
     }
 
+    /**
+     * Snapshot of the recent tasks, which is not modified once published to the main thread.
+     */
     @VisibleForTesting
     static class TaskLoadResult extends ArrayList<GroupTask> {
 
@@ -499,6 +499,10 @@ public final class RecentsActivity extends StatefulActivity<RecentsState> implem
         super.dump(prefix, fd, writer, args);
         writer.println(prefix + "Misc:");
         dumpMisc(prefix + "\t", writer);
+        RecentsView recentsView = getOverviewPanel();
+        if (recentsView != null) {
+            recentsView.dump(prefix, writer);
+        }
     }
 
     @Override
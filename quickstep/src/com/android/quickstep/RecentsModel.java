@@ -77,6 +77,9 @@ public class RecentsModel implements RecentTasksDataSource, IconChangeListener,
     private static final Executor RECENTS_MODEL_EXECUTOR = Executors.newSingleThreadExecutor(
             new SimpleThreadFactory("TaskThumbnailIconCache-", THREAD_PRIORITY_BACKGROUND));
 
+    // Fraction of the thumbnail and icon cache budgets kept when memory is low
+    private static final float TRIM_MEMORY_CACHE_BUDGET_FRACTION = 0.25f;
+
     private final ConcurrentLinkedQueue<TaskVisualsChangeListener> mThumbnailChangeListeners =
             new ConcurrentLinkedQueue<>();
     private final Context mContext;
@@ -261,10 +264,16 @@ public class RecentsModel implements RecentTasksDataSource, IconChangeListener,
         if (level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
             mThumbnailCache.getHighResLoadingState().setVisible(false);
         }
-        if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+        if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL
+                || level == ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
             // Clear everything once we reach a low-mem situation
             mThumbnailCache.clear();
             mIconCache.clearCache();
+        } else if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            // Only keep the most recently used entries while memory is getting low, so that the
+            // next tasks shown do not all need to be loaded again
+            mThumbnailCache.trimToBudgetFraction(TRIM_MEMORY_CACHE_BUDGET_FRACTION);
+            mIconCache.trimToBudgetFraction(TRIM_MEMORY_CACHE_BUDGET_FRACTION);
         }
     }
 
@@ -307,6 +316,8 @@ public class RecentsModel implements RecentTasksDataSource, IconChangeListener,
     public void dump(String prefix, PrintWriter writer) {
         writer.println(prefix + "RecentsModel:");
         mTaskList.dump("  ", writer);
+        mThumbnailCache.dump("  ", writer);
+        mIconCache.dump("  ", writer);
     }
 
     /**
@@ -56,13 +56,14 @@ import com.android.launcher3.util.DisplayController.Info;
 import com.android.launcher3.util.FlagOp;
 import com.android.launcher3.util.Preconditions;
 import com.android.quickstep.task.thumbnail.data.TaskIconDataSource;
-import com.android.quickstep.util.TaskKeyLruCache;
+import com.android.quickstep.util.TaskKeyWeightedLruCache;
 import com.android.quickstep.util.TaskVisualsChangeListener;
 import com.android.launcher3.util.Themes;
 import com.android.systemui.shared.recents.model.Task;
 import com.android.systemui.shared.recents.model.Task.TaskKey;
 import com.android.systemui.shared.system.PackageManagerWrapper;
 
+import java.io.PrintWriter;
 import java.util.concurrent.Executor;
 
 /**
@@ -75,7 +76,7 @@ public class TaskIconCache implements TaskIconDataSource, DisplayInfoChangeListe
     private final Executor mBgExecutor;
 
     private final Context mContext;
-    private final TaskKeyLruCache<TaskCacheEntry> mIconCache;
+    private final TaskKeyWeightedLruCache<TaskCacheEntry> mIconCache;
     private final SparseArray<BitmapInfo> mDefaultIcons = new SparseArray<>();
     private BitmapInfo mDefaultIconBase = null;
 
@@ -96,8 +97,9 @@ public class TaskIconCache implements TaskIconDataSource, DisplayInfoChangeListe
 
         Resources res = context.getResources();
         int cacheSize = res.getInteger(R.integer.recentsIconCacheSize);
+        long cacheSizeBytes = res.getInteger(R.integer.recentsIconCacheSizeKb) * 1024L;
 
-        mIconCache = new TaskKeyLruCache<>(cacheSize);
+        mIconCache = new TaskKeyWeightedLruCache<>(cacheSize, cacheSizeBytes, e -> e.bytes);
 
         DisplayController.INSTANCE.get(mContext).addChangeListener(this);
         LauncherPrefs.get(mContext).addListener(this, LauncherPrefs.THEMED_ICONS);
@@ -152,6 +154,28 @@ public class TaskIconCache implements TaskIconDataSource, DisplayInfoChangeListe
         return request;
     }
 
+    /**
+     * Asynchronously loads the icon of {@code task} in the cache, so that a later
+     * {@link #getIconInBackground} does not need to create it. Unlike getIconInBackground, the
+     * task and the listeners are not updated.
+     *
+     * @param onLoaded Called on the main thread once the icon is cached, unless cancelled
+     * @return A cancelable handle to the request, or null if the task already has its icon
+     */
+    @Nullable
+    public CancellableTask<?> prefetchIconInBackground(Task task, @NonNull Runnable onLoaded) {
+        Preconditions.assertUIThread();
+        if (task.icon != null) {
+            return null;
+        }
+        CancellableTask<TaskCacheEntry> request = new CancellableTask<>(
+                () -> getCacheEntry(task),
+                MAIN_EXECUTOR,
+                result -> onLoaded.run());
+        mBgExecutor.execute(request);
+        return request;
+    }
+
     /**
      * Clears the icon cache
      */
@@ -159,6 +183,22 @@ public class TaskIconCache implements TaskIconDataSource, DisplayInfoChangeListe
         mBgExecutor.execute(this::resetFactory);
     }
 
+    /**
+     * Removes the least recently used icons until they use at most {@param fraction} of the
+     * cache byte budget.
+     */
+    public void trimToBudgetFraction(float fraction) {
+        mIconCache.trimToWeight((long) (mIconCache.getMaxWeight() * fraction));
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "TaskIconCache: size=" + mIconCache.getSize()
+                + ", maxSize=" + mIconCache.getMaxSize()
+                + ", bytes=" + mIconCache.getWeight()
+                + ", peakBytes=" + mIconCache.getPeakWeight()
+                + ", maxBytes=" + mIconCache.getMaxWeight());
+    }
+
     void onTaskRemoved(TaskKey taskKey) {
         mIconCache.remove(taskKey);
     }
@@ -186,11 +226,13 @@ public class TaskIconCache implements TaskIconDataSource, DisplayInfoChangeListe
         // TODO: Load icon resource (b/143363444)
         Bitmap icon = getIcon(desc, key.userId);
         if (icon != null) {
-            entry.icon = getBitmapInfo(
+            BitmapInfo bitmapInfo = getBitmapInfo(
                     new BitmapDrawable(mContext.getResources(), icon),
                     key.userId,
                     desc.getPrimaryColor(),
-                    false /* isInstantApp */).newIcon(mContext, mThemedIconsEnabled ? FLAG_THEMED : 0);
+                    false /* isInstantApp */);
+            entry.icon = bitmapInfo.newIcon(mContext, mThemedIconsEnabled ? FLAG_THEMED : 0);
+            entry.bytes = getIconBytes(bitmapInfo);
         } else {
             activityInfo = PackageManagerWrapper.getInstance().getActivityInfo(
                     key.getComponent(), key.userId);
@@ -201,7 +243,9 @@ public class TaskIconCache implements TaskIconDataSource, DisplayInfoChangeListe
                         desc.getPrimaryColor(),
                         activityInfo.applicationInfo.isInstantApp());
                 entry.icon = bitmapInfo.newIcon(mContext, mThemedIconsEnabled ? FLAG_THEMED : 0);
+                entry.bytes = getIconBytes(bitmapInfo);
             } else {
+                // Default icons are shared, and not accounted in the cache budget
                 entry.icon = getDefaultIcon(key.userId);
             }
         }
@@ -223,6 +267,11 @@ public class TaskIconCache implements TaskIconDataSource, DisplayInfoChangeListe
         return entry;
     }
 
+    private static long getIconBytes(BitmapInfo bitmapInfo) {
+        Bitmap icon = bitmapInfo.icon;
+        return icon == null || icon.isRecycled() ? 0 : icon.getAllocationByteCount();
+    }
+
     private Bitmap getIcon(ActivityManager.TaskDescription desc, int userId) {
         if (desc.getInMemoryIcon() != null) {
             return desc.getInMemoryIcon();
@@ -322,6 +371,8 @@ public class TaskIconCache implements TaskIconDataSource, DisplayInfoChangeListe
         public Drawable icon;
         public String contentDescription = "";
         public String title = "";
+        // Allocation size of the icon bitmap
+        public long bytes;
     }
 
     /** Callback used when retrieving app icons from cache. */
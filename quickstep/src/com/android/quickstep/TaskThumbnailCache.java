@@ -20,6 +20,7 @@ import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 
 import android.content.Context;
 import android.content.res.Resources;
+import android.graphics.Bitmap;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
@@ -29,14 +30,16 @@ import com.android.launcher3.util.CancellableTask;
 import com.android.launcher3.util.Preconditions;
 import com.android.quickstep.recents.data.HighResLoadingStateNotifier;
 import com.android.quickstep.task.thumbnail.data.TaskThumbnailDataSource;
+import com.android.quickstep.util.CompressedThumbnailCache;
 import com.android.quickstep.util.TaskKeyByLastActiveTimeCache;
 import com.android.quickstep.util.TaskKeyCache;
-import com.android.quickstep.util.TaskKeyLruCache;
+import com.android.quickstep.util.TaskKeyWeightedLruCache;
 import com.android.systemui.shared.recents.model.Task;
 import com.android.systemui.shared.recents.model.Task.TaskKey;
 import com.android.systemui.shared.recents.model.ThumbnailData;
 import com.android.systemui.shared.system.ActivityManagerWrapper;
 
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.concurrent.Executor;
 import java.util.function.Consumer;
@@ -45,10 +48,15 @@ public class TaskThumbnailCache implements TaskThumbnailDataSource {
 
     private final Executor mBgExecutor;
     private final TaskKeyCache<ThumbnailData> mCache;
+    // Keeps the thumbnails evicted from mCache, to promote them back without a binder call
+    private final CompressedThumbnailCache mCompressedCache;
     private final HighResLoadingState mHighResLoadingState;
     private final boolean mEnableTaskSnapshotPreloading;
     private final Context mContext;
 
+    // Number of thumbnails loaded from the system, only accessed on the UI thread
+    private int mSnapshotLoadCount;
+
     public static class HighResLoadingState implements HighResLoadingStateNotifier {
         private boolean mForceHighResThumbnails;
         private boolean mVisible;
@@ -109,7 +117,10 @@ public class TaskThumbnailCache implements TaskThumbnailDataSource {
     private TaskThumbnailCache(Context context, Executor bgExecutor, int cacheSize) {
         this(context, bgExecutor,
                 enableGridOnlyOverview() ? new TaskKeyByLastActiveTimeCache<>(cacheSize)
-                        : new TaskKeyLruCache<>(cacheSize));
+                        : new TaskKeyWeightedLruCache<>(cacheSize,
+                                context.getResources().getInteger(
+                                        R.integer.recentsThumbnailCacheSizeKb) * 1024L,
+                                TaskThumbnailCache::getThumbnailBytes));
     }
 
     @VisibleForTesting
@@ -121,6 +132,12 @@ public class TaskThumbnailCache implements TaskThumbnailDataSource {
         Resources res = context.getResources();
         mEnableTaskSnapshotPreloading = res.getBoolean(R.bool.config_enableTaskSnapshotPreloading);
         mCache = cache;
+        mCompressedCache = new CompressedThumbnailCache(
+                res.getInteger(R.integer.recentsCompressedThumbnailCacheSizeKb) * 1024,
+                bgExecutor);
+        if (mCompressedCache.isEnabled()) {
+            mCache.setEvictionListener(mCompressedCache);
+        }
     }
 
     /**
@@ -144,6 +161,8 @@ public class TaskThumbnailCache implements TaskThumbnailDataSource {
     public void updateTaskSnapShot(int taskId, ThumbnailData thumbnail) {
         Preconditions.assertUIThread();
         mCache.updateIfAlreadyInCache(taskId, thumbnail);
+        // The compressed thumbnail is outdated
+        mCompressedCache.remove(taskId);
     }
 
     /**
@@ -198,12 +217,19 @@ public class TaskThumbnailCache implements TaskThumbnailDataSource {
             return null;
         }
 
+        // A compressed thumbnail is good enough when low resolution is requested, eg while
+        // flinging, and can be decoded without loading the snapshot again.
+        CompressedThumbnailCache.Entry compressed =
+                lowResolution && mCompressedCache.isEnabled() ? mCompressedCache.get(key) : null;
+        if (compressed == null) {
+            mSnapshotLoadCount++;
+        }
         CancellableTask<ThumbnailData> request = new CancellableTask<>(
                 () -> {
-                    ThumbnailData thumbnailData = ActivityManagerWrapper.getInstance()
-                            .getTaskThumbnail(key.id, lowResolution);
-                    return thumbnailData.getThumbnail() != null ? thumbnailData
-                            : ActivityManagerWrapper.getInstance().takeTaskThumbnail(key.id);
+                    ThumbnailData thumbnailData =
+                            compressed != null ? mCompressedCache.decode(compressed) : null;
+                    return thumbnailData != null ? thumbnailData
+                            : loadThumbnail(key, lowResolution);
                 },
                 MAIN_EXECUTOR,
                 result -> {
@@ -225,11 +251,28 @@ public class TaskThumbnailCache implements TaskThumbnailDataSource {
         return request;
     }
 
+    private static ThumbnailData loadThumbnail(TaskKey key, boolean lowResolution) {
+        ThumbnailData thumbnailData = ActivityManagerWrapper.getInstance()
+                .getTaskThumbnail(key.id, lowResolution);
+        return thumbnailData.getThumbnail() != null ? thumbnailData
+                : ActivityManagerWrapper.getInstance().takeTaskThumbnail(key.id);
+    }
+
     /**
      * Clears the cache.
      */
     public void clear() {
         mCache.evictAll();
+        mCompressedCache.clear();
+    }
+
+    /**
+     * Removes the least recently used thumbnails until each tier uses at most {@param fraction}
+     * of its byte budget. The thumbnails are all removed if the cache does not track their size.
+     */
+    public void trimToBudgetFraction(float fraction) {
+        mCache.trimToWeight((long) (mCache.getMaxWeight() * fraction));
+        mCompressedCache.trimToBudgetFraction(fraction);
     }
 
     /**
@@ -237,6 +280,7 @@ public class TaskThumbnailCache implements TaskThumbnailDataSource {
      */
     public void remove(Task.TaskKey key) {
         mCache.remove(key);
+        mCompressedCache.remove(key.id);
     }
 
     /**
@@ -260,6 +304,20 @@ public class TaskThumbnailCache implements TaskThumbnailDataSource {
         return mEnableTaskSnapshotPreloading && mHighResLoadingState.mVisible;
     }
 
+    public void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "TaskThumbnailCache:");
+        writer.println(prefix + "  size=" + mCache.getSize() + ", maxSize=" + mCache.getMaxSize()
+                + ", bytes=" + mCache.getWeight() + ", peakBytes=" + mCache.getPeakWeight()
+                + ", maxBytes=" + mCache.getMaxWeight()
+                + ", snapshotLoads=" + mSnapshotLoadCount);
+        mCompressedCache.dump(prefix + "  ", writer);
+    }
+
+    private static long getThumbnailBytes(ThumbnailData data) {
+        Bitmap thumbnail = data.getThumbnail();
+        return thumbnail == null || thumbnail.isRecycled() ? 0 : thumbnail.getAllocationByteCount();
+    }
+
     /**
      * @return Whether device supports low-res thumbnails. Low-res files are an optimization
      * for faster load times of snapshots. Devices can optionally disable low-res files so that
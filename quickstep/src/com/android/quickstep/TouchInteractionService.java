@@ -644,6 +644,8 @@ public class TouchInteractionService extends Service {
     private final Set<Integer> mTrackpadsConnected = new ArraySet<>();
 
     private NavigationMode mGestureStartNavMode = null;
+    // Reused to log move events without allocating, as the log copies its content
+    private final CompoundString mMotionMoveLog = new CompoundString("");
 
     private DesktopVisibilityController mDesktopVisibilityController;
 
@@ -1009,7 +1011,7 @@ public class TouchInteractionService extends Service {
                     break;
                 case ACTION_MOVE:
                     ActiveGestureLog.INSTANCE.addLog(
-                            new CompoundString("onMotionEvent: ")
+                            mMotionMoveLog.reset("onMotionEvent: ")
                                     .append(MotionEvent.actionToString(action))
                                     .append(",")
                                     .append(MotionEvent.classificationToString(
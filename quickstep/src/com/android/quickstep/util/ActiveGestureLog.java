@@ -17,24 +17,30 @@ package com.android.quickstep.util;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
-import com.android.launcher3.util.Preconditions;
+import com.android.quickstep.util.ActiveGestureErrorDetector.GestureEvent;
 
 import java.io.PrintWriter;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
-import java.util.Objects;
 
 /**
  * A log to keep track of the active gesture.
+ *
+ * <p>Events are copied into preallocated primitive arrays, with their substrings pooled in a
+ * string table per gesture, so that logging does not allocate once the arrays are large enough.
+ * Formatting only happens at dump time.
  */
 public class ActiveGestureLog {
 
-    private static final int MAX_GESTURES_TRACKED = 15;
+    @VisibleForTesting
+    static final int MAX_GESTURES_TRACKED = 15;
+
+    private static final GestureEvent[] GESTURE_EVENTS = GestureEvent.values();
+    private static final int NO_GESTURE_EVENT = -1;
 
     public static final ActiveGestureLog INSTANCE = new ActiveGestureLog();
 
@@ -47,11 +53,17 @@ public class ActiveGestureLog {
     public static final String INTENT_EXTRA_LOG_TRACE_ID = "INTENT_EXTRA_LOG_TRACE_ID";
 
     private final EventLog[] logs;
+    // Reused to log events with a single extra, only accessed while holding the lock
+    private final CompoundString mScratchString = new CompoundString("");
     private int nextIndex;
     private int mCurrentLogId = 100;
 
-    private ActiveGestureLog() {
+    @VisibleForTesting
+    ActiveGestureLog() {
         this.logs = new EventLog[MAX_GESTURES_TRACKED];
+        for (int i = 0; i < logs.length; i++) {
+            logs[i] = new EventLog();
+        }
         this.nextIndex = 0;
     }
 
@@ -61,7 +73,7 @@ public class ActiveGestureLog {
      * @param gestureEvent GestureEvent representing an event during the current gesture's
      *                   execution.
      */
-    public void trackEvent(@Nullable ActiveGestureErrorDetector.GestureEvent gestureEvent) {
+    public void trackEvent(@Nullable GestureEvent gestureEvent) {
         addLog(CompoundString.NO_OP, gestureEvent);
     }
 
@@ -85,65 +97,54 @@ public class ActiveGestureLog {
      *
      * @param gestureEvent GestureEvent representing the event being logged.
      */
-    public void addLog(
-            @NonNull String event, @Nullable ActiveGestureErrorDetector.GestureEvent gestureEvent) {
-        addLog(new CompoundString(event), gestureEvent);
+    public synchronized void addLog(@NonNull String event, @Nullable GestureEvent gestureEvent) {
+        addLog(mScratchString.reset(event), gestureEvent);
     }
 
-    public void addLog(
-            @NonNull String event,
-            int extras,
-            @Nullable ActiveGestureErrorDetector.GestureEvent gestureEvent) {
-        addLog(new CompoundString(event).append(": ").append(extras), gestureEvent);
+    public synchronized void addLog(
+            @NonNull String event, int extras, @Nullable GestureEvent gestureEvent) {
+        addLog(mScratchString.reset(event).append(": ").append(extras), gestureEvent);
     }
 
-    public void addLog(
-            @NonNull String event,
-            boolean extras,
-            @Nullable ActiveGestureErrorDetector.GestureEvent gestureEvent) {
-        addLog(new CompoundString(event).append(": ").append(extras), gestureEvent);
+    public synchronized void addLog(
+            @NonNull String event, boolean extras, @Nullable GestureEvent gestureEvent) {
+        addLog(mScratchString.reset(event).append(": ").append(extras), gestureEvent);
     }
 
     public void addLog(@NonNull CompoundString compoundString) {
         addLog(compoundString, null);
     }
 
-    public void addLog(
-            @NonNull CompoundString compoundString,
-            @Nullable ActiveGestureErrorDetector.GestureEvent gestureEvent) {
+    /**
+     * Adds a log to be printed at log-dump-time and track the associated event for error detection.
+     * The content of {@param compoundString} is copied, so it can be reused once this returns.
+     */
+    public synchronized void addLog(
+            @NonNull CompoundString compoundString, @Nullable GestureEvent gestureEvent) {
+        int gestureEventId = gestureEvent == null ? NO_GESTURE_EVENT : gestureEvent.ordinal();
         EventLog lastEventLog = logs[(nextIndex + logs.length - 1) % logs.length];
-        if (lastEventLog == null || mCurrentLogId != lastEventLog.logId) {
-            EventLog eventLog = new EventLog(mCurrentLogId, mIsFullyGesturalNavMode);
-            EventEntry eventEntry = new EventEntry();
-
-            eventEntry.update(compoundString, gestureEvent);
-            eventLog.eventEntries.add(eventEntry);
-            logs[nextIndex] = eventLog;
+        if (!lastEventLog.isInUse() || mCurrentLogId != lastEventLog.logId) {
+            // Recycle the oldest EventLog for the new gesture
+            EventLog eventLog = logs[nextIndex];
+            eventLog.reset(mCurrentLogId, mIsFullyGesturalNavMode);
+            eventLog.add(compoundString, gestureEventId);
             nextIndex = (nextIndex + 1) % logs.length;
             return;
         }
 
-        // Update the last EventLog
-        List<EventEntry> lastEventEntries = lastEventLog.eventEntries;
-        EventEntry lastEntry = !lastEventEntries.isEmpty()
-                ? lastEventEntries.get(lastEventEntries.size() - 1) : null;
-
         // Update the last EventEntry if it's a duplicate
-        if (isEntrySame(lastEntry, compoundString, gestureEvent)) {
-            lastEntry.duplicateCount++;
+        if (lastEventLog.isLastEntrySame(compoundString, gestureEventId)) {
+            lastEventLog.mDuplicateCounts[lastEventLog.mSize - 1]++;
             return;
         }
-        EventEntry eventEntry = new EventEntry();
-
-        eventEntry.update(compoundString, gestureEvent);
-        lastEventEntries.add(eventEntry);
+        lastEventLog.add(compoundString, gestureEventId);
     }
 
-    public void dump(String prefix, PrintWriter writer) {
+    public synchronized void dump(String prefix, PrintWriter writer) {
         writer.println(prefix + "ActiveGestureErrorDetector:");
         for (int i = 0; i < logs.length; i++) {
             EventLog eventLog = logs[(nextIndex + i) % logs.length];
-            if (eventLog == null) {
+            if (!eventLog.isInUse()) {
                 continue;
             }
             ActiveGestureErrorDetector.analyseAndDump(prefix + '\t', writer, eventLog);
@@ -154,22 +155,23 @@ public class ActiveGestureLog {
         Date date = new Date();
         for (int i = 0; i < logs.length; i++) {
             EventLog eventLog = logs[(nextIndex + i) % logs.length];
-            if (eventLog == null) {
+            if (!eventLog.isInUse()) {
                 continue;
             }
 
             writer.println(prefix + "\tLogs for logId: " + eventLog.logId);
-            for (EventEntry eventEntry : eventLog.eventEntries) {
-                if (eventEntry.mCompoundString.mIsNoOp) {
+            for (int entry = 0; entry < eventLog.getEntryCount(); entry++) {
+                if (eventLog.isNoOp(entry)) {
                     continue;
                 }
-                date.setTime(eventEntry.time);
+                date.setTime(eventLog.getTime(entry));
 
                 StringBuilder msg = new StringBuilder(prefix + "\t\t")
                         .append(sdf.format(date))
-                        .append(eventEntry.mCompoundString);
-                if (eventEntry.duplicateCount > 0) {
-                    msg.append(" & ").append(eventEntry.duplicateCount).append(" similar events");
+                        .append(eventLog.format(entry));
+                int duplicateCount = eventLog.getDuplicateCount(entry);
+                if (duplicateCount > 0) {
+                    msg.append(" & ").append(duplicateCount).append(" similar events");
                 }
                 writer.println(msg);
             }
@@ -193,69 +195,251 @@ public class ActiveGestureLog {
         return mCurrentLogId;
     }
 
-    private boolean isEntrySame(
-            EventEntry entry,
-            CompoundString compoundString,
-            ActiveGestureErrorDetector.GestureEvent gestureEvent) {
-        return entry != null
-                && entry.mCompoundString.equals(compoundString)
-                && entry.gestureEvent == gestureEvent;
+    /** Returns the log of the last gesture, or null if nothing was logged yet. */
+    @VisibleForTesting
+    @Nullable
+    synchronized EventLog getLastEventLog() {
+        EventLog eventLog = logs[(nextIndex + logs.length - 1) % logs.length];
+        return eventLog.isInUse() ? eventLog : null;
     }
 
-    /** A single event entry. */
-    protected static class EventEntry {
+    /**
+     * An entire log of entries associated with a single log ID.
+     *
+     * <p>Entry {@code i} uses the substrings {@code [mSubstringEnds[i - 1], mSubstringEnds[i])} of
+     * {@link #mSubstringIds} and the arguments {@code [mArgEnds[i - 1], mArgEnds[i])} of
+     * {@link #mArgs}. A no-op entry, only tracking a gesture event, has no substrings.
+     */
+    protected static class EventLog {
+
+        private static final int INITIAL_ENTRY_CAPACITY = 64;
+
+        protected int logId = -1;
+        protected boolean mIsFullyGesturalNavMode;
+
+        private final StringTable mStrings = new StringTable();
+
+        private int mSize;
+        private long[] mTimes = new long[INITIAL_ENTRY_CAPACITY];
+        private int[] mGestureEventIds = new int[INITIAL_ENTRY_CAPACITY];
+        private int[] mDuplicateCounts = new int[INITIAL_ENTRY_CAPACITY];
+        private int[] mSubstringEnds = new int[INITIAL_ENTRY_CAPACITY];
+        private int[] mArgEnds = new int[INITIAL_ENTRY_CAPACITY];
+
+        private int mSubstringCount;
+        private int[] mSubstringIds = new int[INITIAL_ENTRY_CAPACITY * 4];
+        private int mArgCount;
+        private long[] mArgs = new long[INITIAL_ENTRY_CAPACITY];
+        private byte[] mArgTypes = new byte[INITIAL_ENTRY_CAPACITY];
+
+        private EventLog() {}
+
+        private boolean isInUse() {
+            return logId >= 0;
+        }
+
+        private void reset(int logId, boolean isFullyGesturalNavMode) {
+            this.logId = logId;
+            mIsFullyGesturalNavMode = isFullyGesturalNavMode;
+            mSize = 0;
+            mSubstringCount = 0;
+            mArgCount = 0;
+            mStrings.clear();
+        }
+
+        private void add(@NonNull CompoundString compoundString, int gestureEventId) {
+            if (mSize == mTimes.length) {
+                int capacity = mSize * 2;
+                mTimes = Arrays.copyOf(mTimes, capacity);
+                mGestureEventIds = Arrays.copyOf(mGestureEventIds, capacity);
+                mDuplicateCounts = Arrays.copyOf(mDuplicateCounts, capacity);
+                mSubstringEnds = Arrays.copyOf(mSubstringEnds, capacity);
+                mArgEnds = Arrays.copyOf(mArgEnds, capacity);
+            }
+            int substringCount = compoundString.mSubstringCount;
+            if (mSubstringCount + substringCount > mSubstringIds.length) {
+                mSubstringIds = Arrays.copyOf(mSubstringIds,
+                        Math.max(mSubstringIds.length * 2, mSubstringCount + substringCount));
+            }
+            int argCount = compoundString.mArgCount;
+            if (mArgCount + argCount > mArgs.length) {
+                int capacity = Math.max(mArgs.length * 2, mArgCount + argCount);
+                mArgs = Arrays.copyOf(mArgs, capacity);
+                mArgTypes = Arrays.copyOf(mArgTypes, capacity);
+            }
 
-        @NonNull private CompoundString mCompoundString;
-        private ActiveGestureErrorDetector.GestureEvent gestureEvent;
-        private long time;
-        private int duplicateCount;
+            for (int i = 0; i < substringCount; i++) {
+                mSubstringIds[mSubstringCount++] = mStrings.intern(compoundString.mSubstrings[i]);
+            }
+            System.arraycopy(compoundString.mArgs, 0, mArgs, mArgCount, argCount);
+            System.arraycopy(compoundString.mArgTypes, 0, mArgTypes, mArgCount, argCount);
+            mArgCount += argCount;
+
+            mTimes[mSize] = System.currentTimeMillis();
+            mGestureEventIds[mSize] = gestureEventId;
+            mDuplicateCounts[mSize] = 0;
+            mSubstringEnds[mSize] = mSubstringCount;
+            mArgEnds[mSize] = mArgCount;
+            mSize++;
+        }
 
-        private EventEntry() {}
+        private boolean isLastEntrySame(@NonNull CompoundString compoundString, int gestureEventId) {
+            int entry = mSize - 1;
+            if (entry < 0 || mGestureEventIds[entry] != gestureEventId) {
+                return false;
+            }
+            int substringStart = getSubstringStart(entry);
+            int argStart = getArgStart(entry);
+            if (mSubstringEnds[entry] - substringStart != compoundString.mSubstringCount
+                    || mArgEnds[entry] - argStart != compoundString.mArgCount) {
+                return false;
+            }
+            for (int i = 0; i < compoundString.mSubstringCount; i++) {
+                if (!mStrings.get(mSubstringIds[substringStart + i])
+                        .equals(compoundString.mSubstrings[i])) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < compoundString.mArgCount; i++) {
+                if (mArgs[argStart + i] != compoundString.mArgs[i]
+                        || mArgTypes[argStart + i] != compoundString.mArgTypes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int getSubstringStart(int entry) {
+            return entry == 0 ? 0 : mSubstringEnds[entry - 1];
+        }
+
+        private int getArgStart(int entry) {
+            return entry == 0 ? 0 : mArgEnds[entry - 1];
+        }
+
+        private boolean isNoOp(int entry) {
+            return mSubstringEnds[entry] == getSubstringStart(entry);
+        }
+
+        private String format(int entry) {
+            StringBuilder pattern = new StringBuilder();
+            for (int i = getSubstringStart(entry); i < mSubstringEnds[entry]; i++) {
+                pattern.append(mStrings.get(mSubstringIds[i]));
+            }
+            return CompoundString.format(
+                    pattern.toString(), mArgs, mArgTypes, getArgStart(entry), mArgEnds[entry]);
+        }
+
+        protected int getEntryCount() {
+            return mSize;
+        }
 
         @Nullable
-        protected ActiveGestureErrorDetector.GestureEvent getGestureEvent() {
-            return gestureEvent;
+        protected GestureEvent getGestureEvent(int entry) {
+            int id = mGestureEventIds[entry];
+            return id == NO_GESTURE_EVENT ? null : GESTURE_EVENTS[id];
+        }
+
+        protected int getDuplicateCount(int entry) {
+            return mDuplicateCounts[entry];
         }
 
-        public int getDuplicateCount() {
-            return duplicateCount;
+        protected long getTime(int entry) {
+            return mTimes[entry];
         }
 
-        private void update(
-                @NonNull CompoundString compoundString,
-                ActiveGestureErrorDetector.GestureEvent gestureEvent) {
-            this.mCompoundString = compoundString;
-            this.gestureEvent = gestureEvent;
-            time = System.currentTimeMillis();
-            duplicateCount = 0;
+        /** Returns the number of distinct strings stored by this log. */
+        @VisibleForTesting
+        int getStringCount() {
+            return mStrings.mSize;
         }
 
-        public long getTime() {
-            return time;
+        /** Returns the total capacity of the arrays storing the entries, substrings and args. */
+        @VisibleForTesting
+        int getStorageCapacity() {
+            return mTimes.length + mSubstringIds.length + mArgs.length;
         }
     }
 
-    /** An entire log of entries associated with a single log ID */
-    protected static class EventLog {
+    /**
+     * Pool of the strings logged during a gesture, mapping each distinct string to an id using
+     * open addressing so that looking up or adding a string does not allocate.
+     */
+    private static class StringTable {
+
+        private static final int INITIAL_CAPACITY = 64;
+
+        private String[] mStrings = new String[INITIAL_CAPACITY];
+        // Id + 1 of the string hashed to each slot, 0 for empty slots
+        private int[] mSlots = new int[INITIAL_CAPACITY * 2];
+        private int mSize;
+
+        int intern(@NonNull String string) {
+            int mask = mSlots.length - 1;
+            int slot = string.hashCode() & mask;
+            while (mSlots[slot] != 0) {
+                int id = mSlots[slot] - 1;
+                String existing = mStrings[id];
+                if (existing == string || existing.equals(string)) {
+                    return id;
+                }
+                slot = (slot + 1) & mask;
+            }
 
-        protected final List<EventEntry> eventEntries =
-                Collections.synchronizedList(new ArrayList<>());
-        protected final int logId;
-        protected final boolean mIsFullyGesturalNavMode;
+            if (mSize == mStrings.length) {
+                grow();
+                return intern(string);
+            }
+            int id = mSize++;
+            mStrings[id] = string;
+            mSlots[slot] = id + 1;
+            return id;
+        }
 
-        private EventLog(int logId, boolean isFullyGesturalNavMode) {
-            this.logId = logId;
-            mIsFullyGesturalNavMode = isFullyGesturalNavMode;
+        @NonNull
+        String get(int id) {
+            return mStrings[id];
+        }
+
+        void clear() {
+            Arrays.fill(mStrings, 0, mSize, null);
+            Arrays.fill(mSlots, 0);
+            mSize = 0;
+        }
+
+        private void grow() {
+            mStrings = Arrays.copyOf(mStrings, mStrings.length * 2);
+            mSlots = new int[mSlots.length * 2];
+            int mask = mSlots.length - 1;
+            for (int id = 0; id < mSize; id++) {
+                int slot = mStrings[id].hashCode() & mask;
+                while (mSlots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                mSlots[slot] = id + 1;
+            }
         }
     }
 
-    /** A buildable string stored as an array for memory efficiency. */
+    /**
+     * A buildable string stored as arrays for memory efficiency. Numeric and boolean arguments
+     * are stored as raw bits and only formatted when the string is printed.
+     */
     public static class CompoundString {
 
         public static final CompoundString NO_OP = new CompoundString();
 
-        private final List<String> mSubstrings;
-        private final List<Object> mArgs;
+        private static final byte ARG_INT = 0;
+        private static final byte ARG_LONG = 1;
+        private static final byte ARG_FLOAT = 2;
+        private static final byte ARG_DOUBLE = 3;
+        private static final byte ARG_BOOLEAN = 4;
+
+        private String[] mSubstrings;
+        private int mSubstringCount;
+        private long[] mArgs;
+        private byte[] mArgTypes;
+        private int mArgCount;
 
         private final boolean mIsNoOp;
 
@@ -265,20 +449,40 @@ public class ActiveGestureLog {
 
         public CompoundString(String substring) {
             mIsNoOp = substring == null;
-            mSubstrings = mIsNoOp ? null : new ArrayList<>();
-            mArgs = mIsNoOp ? null : new ArrayList<>();
+            mSubstrings = mIsNoOp ? new String[0] : new String[8];
+            mArgs = mIsNoOp ? new long[0] : new long[4];
+            mArgTypes = mIsNoOp ? new byte[0] : new byte[4];
 
             if (!mIsNoOp) {
-                mSubstrings.add(substring);
+                append(substring);
             }
         }
 
+        /**
+         * Clears this string and starts it again with {@param substring}, allowing to reuse it
+         * for frequent logs once it was passed to {@link ActiveGestureLog#addLog}.
+         */
+        public CompoundString reset(@NonNull String substring) {
+            if (mIsNoOp) {
+                return this;
+            }
+            Arrays.fill(mSubstrings, 0, mSubstringCount, null);
+            mSubstringCount = 0;
+            mArgCount = 0;
+
+            return append(substring);
+        }
+
         public CompoundString append(CompoundString substring) {
             if (mIsNoOp || substring.mIsNoOp) {
                 return this;
             }
-            mSubstrings.addAll(substring.mSubstrings);
-            mArgs.addAll(substring.mArgs);
+            for (int i = 0; i < substring.mSubstringCount; i++) {
+                append(substring.mSubstrings[i]);
+            }
+            for (int i = 0; i < substring.mArgCount; i++) {
+                addArg(substring.mArgs[i], substring.mArgTypes[i]);
+            }
 
             return this;
         }
@@ -287,7 +491,10 @@ public class ActiveGestureLog {
             if (mIsNoOp) {
                 return this;
             }
-            mSubstrings.add(substring);
+            if (mSubstringCount == mSubstrings.length) {
+                mSubstrings = Arrays.copyOf(mSubstrings, mSubstringCount * 2);
+            }
+            mSubstrings[mSubstringCount++] = String.valueOf(substring);
 
             return this;
         }
@@ -296,7 +503,7 @@ public class ActiveGestureLog {
             if (mIsNoOp) {
                 return this;
             }
-            mArgs.add(num);
+            addArg(num, ARG_INT);
 
             return append("%d");
         }
@@ -305,7 +512,7 @@ public class ActiveGestureLog {
             if (mIsNoOp) {
                 return this;
             }
-            mArgs.add(num);
+            addArg(num, ARG_LONG);
 
             return append("%d");
         }
@@ -314,7 +521,7 @@ public class ActiveGestureLog {
             if (mIsNoOp) {
                 return this;
             }
-            mArgs.add(num);
+            addArg(Float.floatToRawIntBits(num), ARG_FLOAT);
 
             return append("%.2f");
         }
@@ -323,7 +530,7 @@ public class ActiveGestureLog {
             if (mIsNoOp) {
                 return this;
             }
-            mArgs.add(num);
+            addArg(Double.doubleToRawLongBits(num), ARG_DOUBLE);
 
             return append("%.2f");
         }
@@ -332,36 +539,62 @@ public class ActiveGestureLog {
             if (mIsNoOp) {
                 return this;
             }
-            mArgs.add(bool);
+            addArg(bool ? 1 : 0, ARG_BOOLEAN);
 
             return append("%b");
         }
 
-        private Object[] getArgs() {
-            Preconditions.assertTrue(!mIsNoOp);
-
-            return mArgs.toArray();
+        private void addArg(long bits, byte type) {
+            if (mArgCount == mArgs.length) {
+                mArgs = Arrays.copyOf(mArgs, mArgCount * 2);
+                mArgTypes = Arrays.copyOf(mArgTypes, mArgCount * 2);
+            }
+            mArgs[mArgCount] = bits;
+            mArgTypes[mArgCount] = type;
+            mArgCount++;
         }
 
         @Override
         public String toString() {
-            return String.format(toUnformattedString(), getArgs());
-        }
-
-        private String toUnformattedString() {
-            Preconditions.assertTrue(!mIsNoOp);
-
+            if (mIsNoOp) {
+                return "";
+            }
             StringBuilder sb = new StringBuilder();
-            for (String substring : mSubstrings) {
-                sb.append(substring);
+            for (int i = 0; i < mSubstringCount; i++) {
+                sb.append(mSubstrings[i]);
             }
+            return format(sb.toString(), mArgs, mArgTypes, 0, mArgCount);
+        }
 
-            return sb.toString();
+        /**
+         * Formats {@param pattern} with the arguments in {@code [start, end)} of {@param args}.
+         */
+        private static String format(
+                String pattern, long[] args, byte[] argTypes, int start, int end) {
+            Object[] boxedArgs = new Object[end - start];
+            for (int i = start; i < end; i++) {
+                long bits = args[i];
+                switch (argTypes[i]) {
+                    case ARG_INT -> boxedArgs[i - start] = (int) bits;
+                    case ARG_LONG -> boxedArgs[i - start] = bits;
+                    case ARG_FLOAT -> boxedArgs[i - start] = Float.intBitsToFloat((int) bits);
+                    case ARG_DOUBLE -> boxedArgs[i - start] = Double.longBitsToDouble(bits);
+                    default -> boxedArgs[i - start] = bits != 0;
+                }
+            }
+            return String.format(pattern, boxedArgs);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(mIsNoOp, mSubstrings, mArgs);
+            int result = Boolean.hashCode(mIsNoOp);
+            for (int i = 0; i < mSubstringCount; i++) {
+                result = 31 * result + mSubstrings[i].hashCode();
+            }
+            for (int i = 0; i < mArgCount; i++) {
+                result = 31 * result + Long.hashCode(mArgs[i]) + mArgTypes[i];
+            }
+            return result;
         }
 
         @Override
@@ -370,9 +603,22 @@ public class ActiveGestureLog {
                 return false;
             }
             CompoundString other = (CompoundString) obj;
-            return (mIsNoOp == other.mIsNoOp)
-                    && Objects.equals(mSubstrings, other.mSubstrings)
-                    && Objects.equals(mArgs, other.mArgs);
+            if (mIsNoOp != other.mIsNoOp
+                    || mSubstringCount != other.mSubstringCount
+                    || mArgCount != other.mArgCount) {
+                return false;
+            }
+            for (int i = 0; i < mSubstringCount; i++) {
+                if (!mSubstrings[i].equals(other.mSubstrings[i])) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < mArgCount; i++) {
+                if (mArgs[i] != other.mArgs[i] || mArgTypes[i] != other.mArgTypes[i]) {
+                    return false;
+                }
+            }
+            return true;
         }
     }
 }
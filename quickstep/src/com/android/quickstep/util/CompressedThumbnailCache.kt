@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util
+
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.util.Log
+import androidx.annotation.WorkerThread
+import com.android.systemui.shared.recents.model.Task.TaskKey
+import com.android.systemui.shared.recents.model.ThumbnailData
+import java.io.ByteArrayOutputStream
+import java.io.PrintWriter
+import java.util.concurrent.Executor
+
+/**
+ * Secondary tier of [com.android.quickstep.TaskThumbnailCache], which keeps the thumbnails evicted
+ * from the primary cache as downscaled, compressed images within [maxBytes].
+ *
+ * Thumbnails are compressed and decoded on [bgExecutor], so that they can be promoted back to the
+ * primary cache without loading the task snapshot again over binder, eg during fast flings in
+ * Overview.
+ */
+class CompressedThumbnailCache(private val maxBytes: Int, private val bgExecutor: Executor) :
+    TaskKeyCache.EvictionListener<ThumbnailData> {
+
+    /** A compressed thumbnail, along with the metadata of the original [ThumbnailData]. */
+    class Entry(val key: TaskKey, val metadata: ThumbnailData, val bytes: ByteArray)
+
+    // Guarded by this, in access order so that the least recently used entries are evicted first.
+    private val entries = LinkedHashMap<Int, Entry>(0, 0.75f, true)
+    // Guarded by this, token of the compression in progress for each task. A compression is
+    // dropped if its token was removed in the meantime, eg as the snapshot of the task changed.
+    private val pendingCompressions = HashMap<Int, Any>()
+    private var currentBytes = 0L
+    private var peakBytes = 0L
+    private var hitCount = 0
+    private var missCount = 0
+    private var demoteCount = 0
+
+    val isEnabled: Boolean
+        get() = maxBytes > 0
+
+    /** Compresses the evicted thumbnail in the background, keeping it within the byte budget. */
+    override fun onEntryEvicted(key: TaskKey, value: ThumbnailData) {
+        val thumbnail = value.thumbnail
+        if (!isEnabled || thumbnail == null || thumbnail.isRecycled) {
+            return
+        }
+        val token = Any()
+        synchronized(this) {
+            if (isValid(entries[key.id], key)) {
+                // Promoted from this cache before, no need to compress it again
+                return
+            }
+            pendingCompressions[key.id] = token
+        }
+        bgExecutor.execute {
+            val bytes = compress(thumbnail)
+            synchronized(this) {
+                if (pendingCompressions[key.id] !== token) {
+                    // The thumbnail is outdated, or being compressed again
+                    return@execute
+                }
+                pendingCompressions.remove(key.id)
+                if (bytes != null && bytes.size <= maxBytes) {
+                    // Only keep the metadata, the full resolution bitmap can be released
+                    put(Entry(key, value.copy(thumbnail = null), bytes))
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the compressed thumbnail for [key] if it is still valid, to be decoded with
+     * [decode].
+     */
+    @Synchronized
+    fun get(key: TaskKey): Entry? {
+        val entry = entries[key.id]
+        if (!isValid(entry, key)) {
+            if (entry != null) {
+                removeEntry(key.id)
+            }
+            missCount++
+            return null
+        }
+        hitCount++
+        return entry
+    }
+
+    /** Decodes the compressed thumbnail into a reduced resolution [ThumbnailData]. */
+    @WorkerThread
+    fun decode(entry: Entry): ThumbnailData? {
+        val options = BitmapFactory.Options().apply { inPreferredConfig = Bitmap.Config.HARDWARE }
+        val bitmap =
+            BitmapFactory.decodeByteArray(entry.bytes, 0, entry.bytes.size, options) ?: return null
+        return entry.metadata.copy(
+            thumbnail = bitmap,
+            reducedResolution = true,
+            scale = entry.metadata.scale * DOWNSCALE_FACTOR,
+        )
+    }
+
+    @Synchronized
+    fun remove(taskId: Int) {
+        removeEntry(taskId)
+        pendingCompressions.remove(taskId)
+    }
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+        pendingCompressions.clear()
+        currentBytes = 0
+    }
+
+    /** Removes the least recently used thumbnails until at most [fraction] of the budget is used. */
+    @Synchronized
+    fun trimToBudgetFraction(fraction: Float) {
+        trimToBytes((maxBytes * fraction).toLong())
+    }
+
+    /** Returns the number of bytes currently used by the compressed thumbnails. */
+    @Synchronized
+    fun getCurrentBytes(): Long = currentBytes
+
+    @Synchronized
+    fun dump(prefix: String, writer: PrintWriter) {
+        writer.println(
+            "${prefix}CompressedThumbnailCache: entries=${entries.size}" +
+                ", bytes=$currentBytes, peakBytes=$peakBytes, maxBytes=$maxBytes" +
+                ", hits=$hitCount, misses=$missCount, demoted=$demoteCount"
+        )
+    }
+
+    @Synchronized
+    private fun put(entry: Entry) {
+        removeEntry(entry.key.id)
+        entries[entry.key.id] = entry
+        currentBytes += entry.bytes.size
+        demoteCount++
+        trimToBytes(maxBytes.toLong())
+        peakBytes = maxOf(peakBytes, currentBytes)
+    }
+
+    @Synchronized
+    private fun removeEntry(taskId: Int) {
+        entries.remove(taskId)?.let { currentBytes -= it.bytes.size }
+    }
+
+    @Synchronized
+    private fun trimToBytes(targetBytes: Long) {
+        val iterator = entries.values.iterator()
+        while (currentBytes > targetBytes && iterator.hasNext()) {
+            currentBytes -= iterator.next().bytes.size
+            iterator.remove()
+        }
+    }
+
+    private fun isValid(entry: Entry?, key: TaskKey): Boolean =
+        entry != null &&
+            entry.key.windowingMode == key.windowingMode &&
+            entry.key.lastActiveTime == key.lastActiveTime
+
+    companion object {
+        private const val TAG = "CompressedThumbnailCache"
+        private const val DOWNSCALE_FACTOR = 0.5f
+        private const val COMPRESS_QUALITY = 80
+
+        @WorkerThread
+        private fun compress(thumbnail: Bitmap): ByteArray? {
+            var source: Bitmap? = null
+            return try {
+                // Hardware bitmaps can't be scaled on a software canvas, read them back first.
+                source =
+                    if (thumbnail.config == Bitmap.Config.HARDWARE) {
+                        thumbnail.copy(Bitmap.Config.ARGB_8888, false) ?: return null
+                    } else {
+                        thumbnail
+                    }
+                val scaled =
+                    Bitmap.createScaledBitmap(
+                        source,
+                        maxOf(1, (source.width * DOWNSCALE_FACTOR).toInt()),
+                        maxOf(1, (source.height * DOWNSCALE_FACTOR).toInt()),
+                        true,
+                    )
+                val out = ByteArrayOutputStream()
+                scaled.compress(Bitmap.CompressFormat.WEBP_LOSSY, COMPRESS_QUALITY, out)
+                if (scaled !== source) {
+                    scaled.recycle()
+                }
+                out.toByteArray()
+            } catch (e: RuntimeException) {
+                // The thumbnail might have been recycled by its owner in the meantime
+                Log.w(TAG, "Unable to compress thumbnail", e)
+                null
+            } finally {
+                if (source != null && source !== thumbnail) {
+                    source.recycle()
+                }
+            }
+        }
+    }
+}
@@ -54,6 +54,25 @@ public class MotionPauseDetector {
      */
     private static final long TEST_HARNESS_TRIGGER_TIMEOUT = 2000;
 
+    // Reasons checked for every motion event, shared to avoid allocating them. They must not be
+    // modified, only appended to other strings.
+    private static final ActiveGestureLog.CompoundString REASON_MOVING_FAST =
+            new ActiveGestureLog.CompoundString("Was paused, but started moving at a fast speed");
+    private static final ActiveGestureLog.CompoundString REASON_CHANGED_DIRECTIONS =
+            new ActiveGestureLog.CompoundString("Velocity changed directions");
+    private static final ActiveGestureLog.CompoundString REASON_BACK_TO_BACK_SLOW_SPEEDS =
+            new ActiveGestureLog.CompoundString("Pause requires back to back slow speeds");
+    private static final ActiveGestureLog.CompoundString REASON_RAPID_DECELERATION =
+            new ActiveGestureLog.CompoundString(
+                    "Didn't have back to back slow speeds, checking for rapid ")
+                    .append(" deceleration on first pause only");
+    private static final ActiveGestureLog.CompoundString REASON_MAINTAINED_SLOW_SPEED =
+            new ActiveGestureLog.CompoundString(
+                    "Maintained slow speed for sufficient duration when making")
+                    .append(" pause harder to trigger");
+    private static final ActiveGestureLog.CompoundString REASON_HARDER_TO_TRIGGER =
+            new ActiveGestureLog.CompoundString("Intentionally making pause harder to trigger");
+
     private final float mSpeedVerySlow;
     private final float mSpeedSlow;
     private final float mSpeedSomewhatFast;
@@ -63,7 +82,8 @@ public class MotionPauseDetector {
     private final Context mContext;
     private final SystemVelocityProvider mVelocityProvider;
 
-    private Float mPreviousVelocity = null;
+    private float mPreviousVelocity;
+    private boolean mHasPreviousVelocity;
 
     private OnMotionPauseListener mOnMotionPauseListener;
     private boolean mIsTrackpadGesture;
@@ -155,10 +175,11 @@ public class MotionPauseDetector {
                         : FORCE_PAUSE_TIMEOUT;
         mForcePauseTimeout.setAlarm(timeoutMs);
         float newVelocity = mVelocityProvider.addMotionEvent(ev, ev.getPointerId(pointerIndex));
-        if (mPreviousVelocity != null) {
+        if (mHasPreviousVelocity) {
             checkMotionPaused(newVelocity, mPreviousVelocity, ev.getEventTime());
         }
         mPreviousVelocity = newVelocity;
+        mHasPreviousVelocity = true;
     }
 
     private void checkMotionPaused(float velocity, float prevVelocity, long time) {
@@ -169,17 +190,15 @@ public class MotionPauseDetector {
         if (mIsPaused) {
             // Continue to be paused until moving at a fast speed.
             isPaused = speed < mSpeedFast || previousSpeed < mSpeedFast;
-            isPausedReason = new ActiveGestureLog.CompoundString(
-                    "Was paused, but started moving at a fast speed");
+            isPausedReason = REASON_MOVING_FAST;
         } else {
             if (velocity < 0 != prevVelocity < 0) {
                 // We're just changing directions, not necessarily stopping.
                 isPaused = false;
-                isPausedReason = new ActiveGestureLog.CompoundString("Velocity changed directions");
+                isPausedReason = REASON_CHANGED_DIRECTIONS;
             } else {
                 isPaused = speed < mSpeedVerySlow && previousSpeed < mSpeedVerySlow;
-                isPausedReason = new ActiveGestureLog.CompoundString(
-                        "Pause requires back to back slow speeds");
+                isPausedReason = REASON_BACK_TO_BACK_SLOW_SPEEDS;
                 if (!isPaused && !mHasEverBeenPaused) {
                     // We want to be more aggressive about detecting the first pause to ensure it
                     // feels as responsive as possible; getting two very slow speeds back to back
@@ -187,9 +206,7 @@ public class MotionPauseDetector {
                     boolean isRapidDeceleration =
                             speed < previousSpeed * getRapidDecelerationFactor();
                     isPaused = isRapidDeceleration && speed < mSpeedSomewhatFast;
-                    isPausedReason = new ActiveGestureLog.CompoundString(
-                            "Didn't have back to back slow speeds, checking for rapid ")
-                            .append(" deceleration on first pause only");
+                    isPausedReason = REASON_RAPID_DECELERATION;
                 }
                 if (mMakePauseHarderToTrigger) {
                     if (speed < mSpeedSlow) {
@@ -197,14 +214,11 @@ public class MotionPauseDetector {
                             mSlowStartTime = time;
                         }
                         isPaused = time - mSlowStartTime >= HARDER_TRIGGER_TIMEOUT;
-                        isPausedReason = new ActiveGestureLog.CompoundString(
-                                "Maintained slow speed for sufficient duration when making")
-                                .append(" pause harder to trigger");
+                        isPausedReason = REASON_MAINTAINED_SLOW_SPEED;
                     } else {
                         mSlowStartTime = 0;
                         isPaused = false;
-                        isPausedReason = new ActiveGestureLog.CompoundString(
-                                "Intentionally making pause harder to trigger");
+                        isPausedReason = REASON_HARDER_TO_TRIGGER;
                     }
                 }
             }
@@ -213,15 +227,19 @@ public class MotionPauseDetector {
     }
 
     private void updatePaused(boolean isPaused, ActiveGestureLog.CompoundString reason) {
+        boolean wouldHaveBeenPaused = isPaused;
         if (mDisallowPause) {
-            reason = new ActiveGestureLog.CompoundString(
-                    "Disallow pause; otherwise, would have been ")
-                    .append(isPaused)
-                    .append(" due to reason:")
-                    .append(reason);
             isPaused = false;
         }
         if (mIsPaused != isPaused) {
+            // Only build the reason when the state changes, as this is checked for every event
+            if (mDisallowPause) {
+                reason = new ActiveGestureLog.CompoundString(
+                        "Disallow pause; otherwise, would have been ")
+                        .append(wouldHaveBeenPaused)
+                        .append(" due to reason:")
+                        .append(reason);
+            }
             mIsPaused = isPaused;
             addLogs(new ActiveGestureLog.CompoundString("onMotionPauseChanged triggered; paused=")
                     .append(mIsPaused)
@@ -257,7 +275,7 @@ public class MotionPauseDetector {
 
     public void clear() {
         mVelocityProvider.clear();
-        mPreviousVelocity = null;
+        mHasPreviousVelocity = false;
         setOnMotionPauseListener(null);
         mIsTrackpadGesture = false;
         mIsPaused = mHasEverBeenPaused = false;
@@ -17,6 +17,7 @@ package com.android.quickstep.util;
 
 import android.util.Log;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
 import com.android.systemui.shared.recents.model.Task;
@@ -42,6 +43,8 @@ public class TaskKeyByLastActiveTimeCache<V> implements TaskKeyCache<V> {
     private final Map<Integer, Entry<V>> mMap;
     // To sort task id by last active time
     private final PriorityQueue<Task.TaskKey> mQueue;
+    @Nullable
+    private EvictionListener<V> mEvictionListener;
 
     public TaskKeyByLastActiveTimeCache(int maxSize) {
         mMap = new HashMap(0);
@@ -150,10 +153,18 @@ public class TaskKeyByLastActiveTimeCache<V> implements TaskKeyCache<V> {
     private synchronized void removeExcessIfNeeded(int maxSize) {
         while (mQueue.size() > maxSize && !mQueue.isEmpty()) {
             Task.TaskKey key = mQueue.poll();
-            mMap.remove(key.id);
+            Entry<V> entry = mMap.remove(key.id);
+            if (entry != null && mEvictionListener != null) {
+                mEvictionListener.onEntryEvicted(entry.mKey, entry.mValue);
+            }
         }
     }
 
+    @Override
+    public synchronized void setEvictionListener(@Nullable EvictionListener<V> listener) {
+        mEvictionListener = listener;
+    }
+
     /**
      * Get maximum size of the cache
      */
@@ -15,6 +15,8 @@
  */
 package com.android.quickstep.util;
 
+import androidx.annotation.Nullable;
+
 import com.android.systemui.shared.recents.model.Task;
 
 import java.util.function.Predicate;
@@ -62,6 +64,12 @@ public interface TaskKeyCache<V> {
      */
     default void updateCacheSizeAndRemoveExcess(int cacheSize) { }
 
+    /**
+     * Sets a listener to be notified when an entry is evicted to make room for other entries.
+     * The listener is called while holding the cache lock, and should not block.
+     */
+    default void setEvictionListener(@Nullable EvictionListener<V> listener) { }
+
     /**
      * Gets maximum size of the cache.
      */
@@ -72,6 +80,42 @@ public interface TaskKeyCache<V> {
      */
     int getSize();
 
+    /**
+     * Removes entries until the total weight of the cache is at most targetWeight. Caches which
+     * do not weigh their entries remove all of them.
+     */
+    default void trimToWeight(long targetWeight) {
+        evictAll();
+    }
+
+    /**
+     * Gets the maximum total weight of the cache, or -1 if entries are not weighed.
+     */
+    default long getMaxWeight() {
+        return -1;
+    }
+
+    /**
+     * Gets the current total weight of the cache, or -1 if entries are not weighed.
+     */
+    default long getWeight() {
+        return -1;
+    }
+
+    /**
+     * Gets the highest total weight the cache reached, or -1 if entries are not weighed.
+     */
+    default long getPeakWeight() {
+        return -1;
+    }
+
+    /**
+     * Listener for entries evicted from the cache because it reached its maximum size.
+     */
+    interface EvictionListener<V> {
+        void onEntryEvicted(Task.TaskKey key, V value);
+    }
+
     class Entry<V> {
 
         final Task.TaskKey mKey;
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.android.systemui.shared.recents.model.Task.TaskKey;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * An LRU cache for task key entries, which is bounded both by the number of entries and by their
+ * total weight, eg the allocation size of the cached bitmaps.
+ *
+ * <p>Entries are weighed once when added or updated, so the weigher should not depend on state
+ * which changes while the entry is cached.
+ * @param <V> The type of the value
+ */
+public class TaskKeyWeightedLruCache<V> implements TaskKeyCache<V> {
+
+    private static final String TAG = "TaskKeyWeightedLruCache";
+
+    // In access order, so that the least recently used entry is evicted first
+    private final LinkedHashMap<Integer, WeightedEntry<V>> mMap =
+            new LinkedHashMap<>(0, 0.75f, true /* accessOrder */);
+    private final ToLongFunction<V> mWeigher;
+    private final int mMaxSize;
+    private final long mMaxWeight;
+
+    private long mWeight;
+    private long mPeakWeight;
+    @Nullable
+    private EvictionListener<V> mEvictionListener;
+
+    /**
+     * @param maxSize maximum number of entries
+     * @param maxWeight maximum total weight of the entries, an entry heavier than this is never
+     *                  cached
+     * @param weigher returns the weight of a value
+     */
+    public TaskKeyWeightedLruCache(int maxSize, long maxWeight, ToLongFunction<V> weigher) {
+        mMaxSize = maxSize;
+        mMaxWeight = maxWeight;
+        mWeigher = weigher;
+    }
+
+    @Override
+    public synchronized void evictAll() {
+        mMap.clear();
+        mWeight = 0;
+    }
+
+    @Override
+    public synchronized void remove(TaskKey key) {
+        WeightedEntry<V> entry = mMap.remove(key.id);
+        if (entry != null) {
+            mWeight -= entry.mWeight;
+        }
+    }
+
+    @Override
+    public synchronized void removeAll(Predicate<TaskKey> keyCheck) {
+        Iterator<WeightedEntry<V>> iterator = mMap.values().iterator();
+        while (iterator.hasNext()) {
+            WeightedEntry<V> entry = iterator.next();
+            if (keyCheck.test(entry.mKey)) {
+                mWeight -= entry.mWeight;
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public synchronized V getAndInvalidateIfModified(TaskKey key) {
+        WeightedEntry<V> entry = mMap.get(key.id);
+        if (entry != null && entry.mKey.windowingMode == key.windowingMode
+                && entry.mKey.lastActiveTime == key.lastActiveTime) {
+            return entry.mValue;
+        } else {
+            remove(key);
+            return null;
+        }
+    }
+
+    @Override
+    public final synchronized void put(TaskKey key, V value) {
+        if (key == null || value == null) {
+            Log.e(TAG, "Unexpected null key or value: " + key + ", " + value);
+            return;
+        }
+        remove(key);
+        long weight = mWeigher.applyAsLong(value);
+        if (weight > mMaxWeight) {
+            Log.w(TAG, "Not caching entry of weight " + weight + " for task " + key.id);
+            return;
+        }
+        mMap.put(key.id, new WeightedEntry<>(key, value, weight));
+        mWeight += weight;
+        evictIfNeeded();
+        mPeakWeight = Math.max(mPeakWeight, mWeight);
+    }
+
+    @Override
+    public synchronized void updateIfAlreadyInCache(int taskId, V data) {
+        WeightedEntry<V> entry = mMap.get(taskId);
+        if (entry != null) {
+            entry.mValue = data;
+            mWeight -= entry.mWeight;
+            entry.mWeight = mWeigher.applyAsLong(data);
+            mWeight += entry.mWeight;
+            evictIfNeeded();
+            mPeakWeight = Math.max(mPeakWeight, mWeight);
+        }
+    }
+
+    /**
+     * Removes the least recently used entries until the total weight is at most
+     * {@param targetWeight}. The eviction listener is not notified, as this is used to release
+     * memory.
+     */
+    @Override
+    public synchronized void trimToWeight(long targetWeight) {
+        Iterator<WeightedEntry<V>> iterator = mMap.values().iterator();
+        while (mWeight > targetWeight && iterator.hasNext()) {
+            mWeight -= iterator.next().mWeight;
+            iterator.remove();
+        }
+    }
+
+    @Override
+    public synchronized void setEvictionListener(@Nullable EvictionListener<V> listener) {
+        mEvictionListener = listener;
+    }
+
+    @Override
+    public int getMaxSize() {
+        return mMaxSize;
+    }
+
+    @Override
+    public synchronized int getSize() {
+        return mMap.size();
+    }
+
+    @Override
+    public long getMaxWeight() {
+        return mMaxWeight;
+    }
+
+    @Override
+    public synchronized long getWeight() {
+        return mWeight;
+    }
+
+    @Override
+    public synchronized long getPeakWeight() {
+        return mPeakWeight;
+    }
+
+    private void evictIfNeeded() {
+        Iterator<WeightedEntry<V>> iterator = mMap.values().iterator();
+        while ((mMap.size() > mMaxSize || mWeight > mMaxWeight) && iterator.hasNext()) {
+            WeightedEntry<V> eldest = iterator.next();
+            iterator.remove();
+            mWeight -= eldest.mWeight;
+            if (mEvictionListener != null) {
+                mEvictionListener.onEntryEvicted(eldest.mKey, eldest.mValue);
+            }
+        }
+    }
+
+    private static class WeightedEntry<V> extends Entry<V> {
+
+        long mWeight;
+
+        WeightedEntry(TaskKey key, V value, long weight) {
+            super(key, value);
+            mWeight = weight;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.UiThread;
+
+import com.android.launcher3.util.CancellableTask;
+import com.android.quickstep.TaskIconCache;
+import com.android.quickstep.TaskThumbnailCache;
+import com.android.systemui.shared.recents.model.Task;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+
+/**
+ * Prefetches the thumbnails and icons of the tasks around the position where a scroll of the
+ * recents view is predicted to settle, so that they are already cached when the tasks become
+ * visible.
+ *
+ * <p>Candidates are offered on every scroll frame, and only the ones closest to the settle
+ * position are kept. Their data is loaded closest first with a limited number of loads in flight,
+ * and loads of tasks which are no longer candidates are cancelled.
+ */
+@UiThread
+public class TaskPrefetchScheduler {
+
+    // Number of tasks closest to the settle position which are prefetched
+    private static final int MAX_CANDIDATES = 6;
+    // Number of tasks loading at the same time, so that the closest tasks are loaded first
+    private static final int MAX_IN_FLIGHT = 2;
+
+    private final TaskThumbnailCache mThumbnailCache;
+    private final TaskIconCache mIconCache;
+
+    // Candidates of the current frame, sorted by distance to the settle position
+    private final Task[] mCandidates = new Task[MAX_CANDIDATES];
+    private final int[] mCandidateDistances = new int[MAX_CANDIDATES];
+    private int mCandidateCount;
+
+    // Loads in flight by task id
+    private final SparseArray<PendingLoad> mInFlight = new SparseArray<>();
+    // Tasks which data was prefetched, until they become visible
+    private final SparseBooleanArray mReady = new SparseBooleanArray();
+    private boolean mActive;
+
+    private int mIssuedCount;
+    private int mCancelledCount;
+    private int mHitCount;
+    private int mLateCount;
+    private int mMissCount;
+
+    public TaskPrefetchScheduler(
+            @NonNull TaskThumbnailCache thumbnailCache, @NonNull TaskIconCache iconCache) {
+        mThumbnailCache = thumbnailCache;
+        mIconCache = iconCache;
+    }
+
+    /**
+     * Starts collecting the candidates of a new scroll frame.
+     */
+    public void startFrame() {
+        Arrays.fill(mCandidates, 0, mCandidateCount, null);
+        mCandidateCount = 0;
+        mActive = true;
+    }
+
+    /**
+     * Offers {@param task} for prefetching, {@param distance} being the distance between its
+     * scroll position and the predicted settle position. Only the closest tasks are kept.
+     */
+    public void offer(@NonNull Task task, int distance) {
+        int index = mCandidateCount;
+        while (index > 0 && mCandidateDistances[index - 1] > distance) {
+            index--;
+        }
+        if (index >= MAX_CANDIDATES) {
+            return;
+        }
+        int moved = Math.min(mCandidateCount, MAX_CANDIDATES - 1) - index;
+        System.arraycopy(mCandidates, index, mCandidates, index + 1, moved);
+        System.arraycopy(mCandidateDistances, index, mCandidateDistances, index + 1, moved);
+        mCandidates[index] = task;
+        mCandidateDistances[index] = distance;
+        mCandidateCount = Math.min(mCandidateCount + 1, MAX_CANDIDATES);
+    }
+
+    /**
+     * Cancels the loads of tasks which are no longer candidates, and starts loading the closest
+     * candidates which are not loaded yet.
+     */
+    public void commitFrame() {
+        for (int i = mInFlight.size() - 1; i >= 0; i--) {
+            if (!isCandidate(mInFlight.keyAt(i))) {
+                mInFlight.valueAt(i).cancel();
+                mInFlight.removeAt(i);
+                mCancelledCount++;
+            }
+        }
+
+        for (int i = 0; i < mCandidateCount && mInFlight.size() < MAX_IN_FLIGHT; i++) {
+            Task task = mCandidates[i];
+            int taskId = task.key.id;
+            if (mReady.get(taskId) || mInFlight.get(taskId) != null) {
+                continue;
+            }
+            PendingLoad load = new PendingLoad(taskId);
+            mInFlight.put(taskId, load);
+            mIssuedCount++;
+            // Both callbacks may run synchronously if the data is already available
+            load.thumbnailRequest = mThumbnailCache.getThumbnailInBackground(
+                    task, thumbnail -> onLoadComplete(load));
+            load.iconRequest = mIconCache.prefetchIconInBackground(
+                    task, () -> onLoadComplete(load));
+            if (load.iconRequest == null) {
+                onLoadComplete(load);
+            }
+        }
+    }
+
+    /**
+     * Notifies that the data of {@param taskId} is being loaded as it became visible, to track
+     * whether it was prefetched in time.
+     */
+    public void onTaskVisible(int taskId) {
+        if (!mActive) {
+            return;
+        }
+        if (mReady.get(taskId)) {
+            mReady.delete(taskId);
+            mHitCount++;
+        } else if (mInFlight.get(taskId) != null) {
+            mLateCount++;
+        } else {
+            mMissCount++;
+        }
+    }
+
+    /**
+     * Cancels all the pending loads once the scroll settled, as the visible tasks load their data.
+     */
+    public void finish() {
+        if (!mActive) {
+            return;
+        }
+        for (int i = 0; i < mInFlight.size(); i++) {
+            mInFlight.valueAt(i).cancel();
+            mCancelledCount++;
+        }
+        mInFlight.clear();
+        mReady.clear();
+        Arrays.fill(mCandidates, 0, mCandidateCount, null);
+        mCandidateCount = 0;
+        mActive = false;
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        int visibleCount = mHitCount + mLateCount + mMissCount;
+        writer.println(prefix + "TaskPrefetchScheduler: issued=" + mIssuedCount
+                + ", cancelled=" + mCancelledCount
+                + ", hits=" + mHitCount
+                + ", late=" + mLateCount
+                + ", misses=" + mMissCount
+                + ", hitRate=" + (visibleCount == 0 ? "n/a"
+                        : (100 * mHitCount / visibleCount) + "%"));
+    }
+
+    private boolean isCandidate(int taskId) {
+        for (int i = 0; i < mCandidateCount; i++) {
+            if (mCandidates[i].key.id == taskId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void onLoadComplete(PendingLoad load) {
+        load.remaining--;
+        if (load.remaining == 0 && mInFlight.get(load.taskId) == load) {
+            mInFlight.remove(load.taskId);
+            mReady.put(load.taskId, true);
+        }
+    }
+
+    private static class PendingLoad {
+
+        final int taskId;
+        // Thumbnail and icon loads which did not complete yet
+        int remaining = 2;
+        CancellableTask<?> thumbnailRequest;
+        CancellableTask<?> iconRequest;
+
+        PendingLoad(int taskId) {
+            this.taskId = taskId;
+        }
+
+        void cancel() {
+            if (thumbnailRequest != null) {
+                thumbnailRequest.cancel();
+            }
+            if (iconRequest != null) {
+                iconRequest.cancel();
+            }
+        }
+    }
+}
@@ -223,6 +223,7 @@ import com.android.quickstep.util.SplitSelectStateController;
 import com.android.quickstep.util.SurfaceTransaction;
 import com.android.quickstep.util.SurfaceTransactionApplier;
 import com.android.quickstep.util.TaskGridNavHelper;
+import com.android.quickstep.util.TaskPrefetchScheduler;
 import com.android.quickstep.util.TaskViewSimulator;
 import com.android.quickstep.util.TaskVisualsChangeListener;
 import com.android.quickstep.util.TransformParams;
@@ -241,6 +242,7 @@ import com.android.wm.shell.shared.desktopmode.DesktopModeTransitionSource;
 
 import kotlin.Unit;
 
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -252,7 +254,6 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 /**
  * A list of recent tasks.
@@ -500,6 +501,9 @@ public abstract class RecentsView<
 
     private static final float FOREGROUND_SCRIM_TINT = 0.32f;
 
+    // Fraction of the fast fling velocity above which the task data is prefetched
+    private static final float PREFETCH_MIN_VELOCITY_FRACTION = 0.25f;
+
     protected final RecentsOrientedState mOrientationState;
     protected final BaseContainerInterface<STATE_TYPE, CONTAINER_TYPE> mSizeStrategy;
     @Nullable
@@ -542,6 +546,7 @@ public abstract class RecentsView<
     private final float mFastFlingVelocity;
     private final int mScrollHapticMinGapMillis;
     private final RecentsModel mModel;
+    private final TaskPrefetchScheduler mTaskPrefetchScheduler;
     private final int mSplitPlaceholderSize;
     private final int mSplitPlaceholderInset;
     private final ClearAllButton mClearAllButton;
@@ -887,6 +892,8 @@ public abstract class RecentsView<
         mFastFlingVelocity = getResources()
                 .getDimensionPixelSize(R.dimen.recents_fast_fling_velocity);
         mModel = RecentsModel.INSTANCE.get(context);
+        mTaskPrefetchScheduler = new TaskPrefetchScheduler(
+                mModel.getThumbnailCache(), mModel.getIconCache());
         mIdp = InvariantDeviceProfile.INSTANCE.get(context);
 
         mClearAllButton = (ClearAllButton) LayoutInflater.from(context)
@@ -2347,13 +2354,18 @@ public abstract class RecentsView<
         boolean isFlingingFast = false;
         updateCurveProperties();
         if (scrolling || isHandlingTouch()) {
-            if (scrolling) {
-                // Check if we are flinging quickly to disable high res thumbnail loading
-                isFlingingFast = mScroller.getCurrVelocity() > mFastFlingVelocity;
-            }
+            float velocity = scrolling ? mScroller.getCurrVelocity() : 0;
+            // Check if we are flinging quickly to disable high res thumbnail loading
+            isFlingingFast = velocity > mFastFlingVelocity;
 
             // After scrolling, update the visible task's data
             loadVisibleTaskData(TaskView.FLAG_UPDATE_ALL);
+            if (scrolling) {
+                updateTaskPrefetch(velocity);
+            }
+        }
+        if (!scrolling) {
+            mTaskPrefetchScheduler.finish();
         }
 
         // Update ActionsView's visibility when scroll changes.
@@ -2459,7 +2471,7 @@ public abstract class RecentsView<
             upper = Math.min(centerPageIndex + 2, numChildren - 1);
         }
 
-        List<Integer> visibleTaskIds = new ArrayList<>();
+        List<Integer> visibleTaskIds = enableRefactorTaskThumbnail() ? new ArrayList<>() : null;
 
         // Update the task data for the in/visible children
         for (int i = 0; i < getTaskViewCount(); i++) {
@@ -2474,26 +2486,21 @@ public abstract class RecentsView<
             } else {
                 visible = lower <= i && i <= upper;
             }
-            if (visible) {
-                // Default update all non-null tasks, then remove running ones
-                List<Task> tasksToUpdate = containers.stream()
-                        .map(TaskContainer::getTask)
-                        .collect(Collectors.toCollection(ArrayList::new));
-                if (mTmpRunningTasks != null) {
-                    for (Task t : mTmpRunningTasks) {
-                        // Skip loading if this is the task that we are animating into
-                        // TODO(b/280812109) change this equality check to use A.equals(B)
-                        tasksToUpdate.removeIf(task -> task == t);
-                    }
-                }
-                if (enableRefactorTaskThumbnail()) {
-                    visibleTaskIds.addAll(
-                            tasksToUpdate.stream().map((task) -> task.key.id).toList());
-                }
-                if (tasksToUpdate.isEmpty()) {
+            // Iterate by index and skip running tasks in place, as this runs on every scroll frame
+            for (int j = 0; j < containers.size(); j++) {
+                TaskContainer container = containers.get(j);
+                if (container == null) {
                     continue;
                 }
-                for (Task task : tasksToUpdate) {
+                Task task = container.getTask();
+                if (visible) {
+                    if (isTmpRunningTask(task)) {
+                        // Skip loading if this is the task that we are animating into
+                        continue;
+                    }
+                    if (visibleTaskIds != null) {
+                        visibleTaskIds.add(task.key.id);
+                    }
                     if (!mHasVisibleTaskData.get(task.key.id)) {
                         // Ignore thumbnail update if it's current running task during the gesture
                         // We snapshot at end of gesture, it will update then
@@ -2501,32 +2508,87 @@ public abstract class RecentsView<
                         if (taskView == getRunningTaskView() && isGestureActive()) {
                             changes &= ~TaskView.FLAG_UPDATE_THUMBNAIL;
                         }
+                        mTaskPrefetchScheduler.onTaskVisible(task.key.id);
                         taskView.onTaskListVisibilityChanged(true /* visible */, changes);
                     }
                     mHasVisibleTaskData.put(task.key.id, true);
-                }
-            } else {
-                for (TaskContainer container : containers) {
-                    if (container == null) {
-                        continue;
-                    }
-
-                    if (mHasVisibleTaskData.get(container.getTask().key.id)) {
+                } else {
+                    if (mHasVisibleTaskData.get(task.key.id)) {
                         taskView.onTaskListVisibilityChanged(false /* visible */, dataChanges);
                     }
-                    mHasVisibleTaskData.delete(container.getTask().key.id);
+                    mHasVisibleTaskData.delete(task.key.id);
                 }
             }
         }
-        if (enableRefactorTaskThumbnail()) {
+        if (visibleTaskIds != null) {
             mRecentsViewModel.updateVisibleTasks(visibleTaskIds);
         }
     }
 
+    private boolean isTmpRunningTask(Task task) {
+        if (mTmpRunningTasks != null) {
+            for (Task t : mTmpRunningTasks) {
+                // TODO(b/280812109) change this equality check to use A.equals(B)
+                if (task == t) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Prefetches the data of the tasks around the position where the scroller is predicted to
+     * settle, when it moves too fast for the visible tasks to load their data in time.
+     */
+    private void updateTaskPrefetch(float velocity) {
+        if (enableRefactorTaskThumbnail() || mTaskListChangeId == -1
+                || !isPageScrollsInitialized()
+                || velocity < mFastFlingVelocity * PREFETCH_MIN_VELOCITY_FRACTION) {
+            return;
+        }
+        RecentsPagedOrientationHandler orientationHandler = getPagedOrientationHandler();
+        int scroll = orientationHandler.getPrimaryScroll(this);
+        int settleScroll = orientationHandler.getPrimaryValue(
+                mScroller.getFinalX(), mScroller.getFinalY());
+        // Only consider the tasks on the way to the settle position, and one screen beyond
+        int pageSize = orientationHandler.getMeasuredSize(this);
+        int rangeStart = Math.min(scroll, settleScroll) - pageSize;
+        int rangeEnd = Math.max(scroll, settleScroll) + pageSize;
+
+        mTaskPrefetchScheduler.startFrame();
+        for (int i = 0; i < getTaskViewCount(); i++) {
+            int taskScroll = getScrollForPage(i);
+            if (taskScroll < rangeStart || taskScroll > rangeEnd) {
+                continue;
+            }
+            List<TaskContainer> containers = requireTaskViewAt(i).getTaskContainers();
+            for (int j = 0; j < containers.size(); j++) {
+                TaskContainer container = containers.get(j);
+                if (container == null) {
+                    continue;
+                }
+                Task task = container.getTask();
+                if (!mHasVisibleTaskData.get(task.key.id) && !isTmpRunningTask(task)) {
+                    mTaskPrefetchScheduler.offer(task, Math.abs(taskScroll - settleScroll));
+                }
+            }
+        }
+        mTaskPrefetchScheduler.commitFrame();
+    }
+
+    public void dump(String prefix, PrintWriter writer) {
+        writer.println(prefix + "RecentsView:");
+        writer.println(prefix + "\ttaskViewCount=" + getTaskViewCount()
+                + ", visibleTaskData=" + mHasVisibleTaskData.size());
+        mTaskPrefetchScheduler.dump(prefix + "\t", writer);
+    }
+
     /**
      * Unloads any associated data from the currently visible tasks
      */
     private void unloadVisibleTaskData(@TaskView.TaskDataChanges int dataChanges) {
+        mTaskPrefetchScheduler.finish();
         for (int i = 0; i < mHasVisibleTaskData.size(); i++) {
             if (mHasVisibleTaskData.valueAt(i)) {
                 TaskView taskView = getTaskViewByTaskId(mHasVisibleTaskData.keyAt(i));
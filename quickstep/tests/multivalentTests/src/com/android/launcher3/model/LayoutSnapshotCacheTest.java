@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.model;
+
+import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_DESKTOP;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import android.content.ComponentName;
+import android.content.Intent;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.logger.LauncherAtom;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class LayoutSnapshotCacheTest {
+
+    private final BgDataModel mDataModel = new BgDataModel();
+    private final LayoutSnapshotCache mCache = new LayoutSnapshotCache();
+
+    @Test
+    public void getSnapshot_reusesProtosOfUnchangedItems() {
+        addItem(1, 0);
+        addItem(2, 1);
+        List<LauncherAtom.ItemInfo> first = mCache.getSnapshot(mDataModel);
+
+        mDataModel.markItemChanged(mDataModel.itemsIdMap.get(2));
+        List<LauncherAtom.ItemInfo> second = mCache.getSnapshot(mDataModel);
+
+        assertEquals(2, second.size());
+        assertSame(first.get(0), second.get(0));
+        assertNotSame(first.get(1), second.get(1));
+        assertEquals(first.get(1), second.get(1));
+    }
+
+    @Test
+    public void getSnapshot_rebuildsProtosOfReplacedItems() {
+        addItem(1, 0);
+        List<LauncherAtom.ItemInfo> first = mCache.getSnapshot(mDataModel);
+
+        // As after the model is reloaded
+        addItem(1, 2);
+        List<LauncherAtom.ItemInfo> second = mCache.getSnapshot(mDataModel);
+
+        assertEquals(1, second.size());
+        assertNotSame(first.get(0), second.get(0));
+        assertEquals(2, second.get(0).getContainerInfo().getWorkspace().getGridX());
+    }
+
+    @Test
+    public void getSnapshot_dropsProtosOfRemovedItems() {
+        addItem(1, 0);
+        addItem(2, 1);
+        mCache.getSnapshot(mDataModel);
+
+        mDataModel.itemsIdMap.remove(1);
+
+        assertEquals(1, mCache.getSnapshot(mDataModel).size());
+    }
+
+    private void addItem(int id, int cellX) {
+        WorkspaceItemInfo info = new WorkspaceItemInfo();
+        info.id = id;
+        info.itemType = ITEM_TYPE_APPLICATION;
+        info.container = CONTAINER_DESKTOP;
+        info.cellX = cellX;
+        info.intent = new Intent(Intent.ACTION_MAIN)
+                .setComponent(new ComponentName("com.example", "com.example.Activity" + id));
+        mDataModel.itemsIdMap.put(id, info);
+    }
+}
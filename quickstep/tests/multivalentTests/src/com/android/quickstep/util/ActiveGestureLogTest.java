@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static com.android.quickstep.util.ActiveGestureErrorDetector.GestureEvent.MOTION_MOVE;
+import static com.android.quickstep.util.ActiveGestureErrorDetector.GestureEvent.MOTION_UP;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.quickstep.util.ActiveGestureLog.CompoundString;
+import com.android.quickstep.util.ActiveGestureLog.EventLog;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Tests for {@link ActiveGestureLog}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ActiveGestureLogTest {
+
+    // Logs two entries per event, all fitting in the initial arrays of an EventLog twice
+    private static final int EVENT_COUNT = 15;
+
+    private final ActiveGestureLog mLog = new ActiveGestureLog();
+
+    @Test
+    public void dump_formatsEntriesAndCountsDuplicates() {
+        mLog.setIsFullyGesturalNavMode(true);
+        mLog.addLog("extras", 5);
+        mLog.addLog(new CompoundString("progress=").append(0.5f).append(", done=").append(true));
+        mLog.addLog(new CompoundString("progress=").append(0.5f).append(", done=").append(true));
+        mLog.trackEvent(MOTION_UP);
+
+        String dump = dump();
+
+        assertTrue(dump.contains("extras: 5\n"));
+        assertTrue(dump.contains("progress=0.50, done=true & 1 similar events\n"));
+        assertTrue(dump.contains("Logs for logId: " + mLog.getLogId()));
+        // The no-op entry is only used for error detection
+        assertTrue(dump.contains("Motion up detected before/without motion down."));
+    }
+
+    @Test
+    public void addLog_copiesReusedCompoundString() {
+        CompoundString log = new CompoundString("");
+        mLog.addLog(log.reset("first: ").append(1));
+        mLog.addLog(log.reset("second: ").append(2L));
+
+        String dump = dump();
+
+        assertTrue(dump.contains("first: 1\n"));
+        assertTrue(dump.contains("second: 2\n"));
+    }
+
+    @Test
+    public void addLog_startsNewLogForNewLogId() {
+        mLog.addLog("event");
+        int firstLogId = mLog.incrementLogId();
+        mLog.addLog("event");
+
+        String dump = dump();
+
+        assertTrue(dump.contains("Logs for logId: " + firstLogId));
+        assertTrue(dump.contains("Logs for logId: " + mLog.getLogId()));
+        assertFalse(dump.contains("similar events"));
+    }
+
+    @Test
+    public void compoundString_equalsComparesContent() {
+        assertEquals(new CompoundString("a").append(1).append(2.5f),
+                new CompoundString("a").append(1).append(2.5f));
+        assertFalse(new CompoundString("a").append(1).equals(new CompoundString("a").append(1L)));
+        assertEquals("a 1 2.50 false",
+                new CompoundString("a ").append(1).append(" ").append(2.5).append(" ")
+                        .append(false).toString());
+    }
+
+    @Test
+    public void addLog_repeatedMotionEventsReuseEventLogStorage() {
+        CompoundString log = new CompoundString("");
+        mLog.addLog("onMotionEvent: ACTION_DOWN");
+        logMoveEvents(log);
+        EventLog eventLog = mLog.getLastEventLog();
+        int entryCount = eventLog.getEntryCount();
+        int stringCount = eventLog.getStringCount();
+        int storageCapacity = eventLog.getStorageCapacity();
+
+        logMoveEvents(log);
+
+        assertSame(eventLog, mLog.getLastEventLog());
+        assertEquals(2 * entryCount - 1, eventLog.getEntryCount());
+        // The substrings are interned, and the entries fit in the arrays already allocated
+        assertEquals(stringCount, eventLog.getStringCount());
+        assertEquals(storageCapacity, eventLog.getStorageCapacity());
+        assertTrue(dump().contains("onMotionEvent: ACTION_MOVE, pointerCount: 2\n"));
+    }
+
+    @Test
+    public void addLog_reusesEventLogOfOldestGesture() {
+        mLog.addLog("event");
+        EventLog firstEventLog = mLog.getLastEventLog();
+        for (int i = 1; i < ActiveGestureLog.MAX_GESTURES_TRACKED; i++) {
+            mLog.incrementLogId();
+            mLog.addLog("event");
+            assertNotSame(firstEventLog, mLog.getLastEventLog());
+        }
+
+        mLog.incrementLogId();
+        mLog.addLog("event");
+
+        assertSame(firstEventLog, mLog.getLastEventLog());
+    }
+
+    private void logMoveEvents(CompoundString log) {
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            mLog.addLog(log.reset("onMotionEvent: ")
+                    .append("ACTION_MOVE")
+                    .append(", pointerCount: ")
+                    .append(1 + (i / 2) % 2), MOTION_MOVE);
+            mLog.addLog("progress", i);
+        }
+    }
+
+    private String dump() {
+        StringWriter out = new StringWriter();
+        PrintWriter writer = new PrintWriter(out);
+        mLog.dump("", writer);
+        writer.flush();
+        return out.toString();
+    }
+}
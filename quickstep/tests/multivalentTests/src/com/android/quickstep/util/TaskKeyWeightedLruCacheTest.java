@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.quickstep.util;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNull;
+
+import android.content.ComponentName;
+import android.content.Intent;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.systemui.shared.recents.model.Task;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@SmallTest
+public class TaskKeyWeightedLruCacheTest {
+
+    @Test
+    public void put_evictsLeastRecentlyUsedWhenOverWeight() {
+        TaskKeyWeightedLruCache<Integer> cache = newCache(10, 100);
+        Task.TaskKey key1 = newKey(1);
+        Task.TaskKey key2 = newKey(2);
+        Task.TaskKey key3 = newKey(3);
+        cache.put(key1, 40);
+        cache.put(key2, 40);
+        // Access key1 so that key2 is the least recently used
+        assertNotNull(cache.getAndInvalidateIfModified(key1));
+
+        cache.put(key3, 40);
+
+        assertEquals(2, cache.getSize());
+        assertEquals(80, cache.getWeight());
+        assertEquals(80, cache.getPeakWeight());
+        assertNull(cache.getAndInvalidateIfModified(key2));
+        assertNotNull(cache.getAndInvalidateIfModified(key1));
+        assertNotNull(cache.getAndInvalidateIfModified(key3));
+    }
+
+    @Test
+    public void put_evictsWhenOverSize() {
+        TaskKeyWeightedLruCache<Integer> cache = newCache(2, 100);
+        cache.put(newKey(1), 1);
+        cache.put(newKey(2), 1);
+        cache.put(newKey(3), 1);
+
+        assertEquals(2, cache.getSize());
+        assertEquals(2, cache.getWeight());
+    }
+
+    @Test
+    public void put_ignoresEntryHeavierThanBudget() {
+        TaskKeyWeightedLruCache<Integer> cache = newCache(10, 100);
+        Task.TaskKey key1 = newKey(1);
+        cache.put(key1, 50);
+
+        cache.put(newKey(2), 150);
+
+        assertEquals(1, cache.getSize());
+        assertEquals(50, cache.getWeight());
+        assertNotNull(cache.getAndInvalidateIfModified(key1));
+    }
+
+    @Test
+    public void updateIfAlreadyInCache_reweighsEntry() {
+        TaskKeyWeightedLruCache<Integer> cache = newCache(10, 100);
+        cache.put(newKey(1), 30);
+        cache.put(newKey(2), 30);
+
+        cache.updateIfAlreadyInCache(2, 60);
+
+        assertEquals(90, cache.getWeight());
+        assertEquals(90, cache.getPeakWeight());
+    }
+
+    @Test
+    public void trimToWeight_keepsMostRecentlyUsed() {
+        TaskKeyWeightedLruCache<Integer> cache = newCache(10, 100);
+        List<Task.TaskKey> evicted = new ArrayList<>();
+        cache.setEvictionListener((key, value) -> evicted.add(key));
+        Task.TaskKey key1 = newKey(1);
+        Task.TaskKey key2 = newKey(2);
+        Task.TaskKey key3 = newKey(3);
+        cache.put(key1, 30);
+        cache.put(key2, 30);
+        cache.put(key3, 30);
+
+        cache.trimToWeight(40);
+
+        assertEquals(1, cache.getSize());
+        assertEquals(30, cache.getWeight());
+        assertEquals(90, cache.getPeakWeight());
+        assertNotNull(cache.getAndInvalidateIfModified(key3));
+        // Trimming releases memory, evicted entries are not handed to the listener
+        assertEquals(0, evicted.size());
+    }
+
+    @Test
+    public void remove_updatesWeight() {
+        TaskKeyWeightedLruCache<Integer> cache = newCache(10, 100);
+        Task.TaskKey key1 = newKey(1);
+        cache.put(key1, 30);
+        cache.put(newKey(2), 20);
+
+        cache.remove(key1);
+        assertEquals(20, cache.getWeight());
+
+        cache.removeAll(key -> key.id == 2);
+        assertEquals(0, cache.getWeight());
+        assertEquals(0, cache.getSize());
+    }
+
+    private static TaskKeyWeightedLruCache<Integer> newCache(int maxSize, long maxWeight) {
+        return new TaskKeyWeightedLruCache<>(maxSize, maxWeight, Integer::longValue);
+    }
+
+    private static Task.TaskKey newKey(int id) {
+        return new Task.TaskKey(id, 0, new Intent(), new ComponentName("", ""), 0, id);
+    }
+}
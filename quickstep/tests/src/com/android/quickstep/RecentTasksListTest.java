@@ -16,12 +16,19 @@
 
 package com.android.quickstep;
 
+import static android.app.WindowConfiguration.ACTIVITY_TYPE_STANDARD;
+import static android.app.WindowConfiguration.WINDOWING_MODE_FULLSCREEN;
+
 import static com.google.common.truth.Truth.assertThat;
 
 import static junit.framework.TestCase.assertNull;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -30,6 +37,7 @@ import static org.mockito.Mockito.when;
 import android.app.ActivityManager;
 import android.app.KeyguardManager;
 import android.content.Context;
+import android.content.Intent;
 import android.content.res.Resources;
 
 import androidx.test.filters.SmallTest;
@@ -51,6 +59,9 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 @SmallTest
@@ -65,6 +76,8 @@ public class RecentTasksListTest {
     @Mock
     private TopTaskTracker mTopTaskTracker;
 
+    private LooperExecutor mMainThreadExecutor;
+
     // Class under test
     private RecentTasksList mRecentTasksList;
 
@@ -72,6 +85,7 @@ public class RecentTasksListTest {
     public void setup() {
         MockitoAnnotations.initMocks(this);
         LooperExecutor mockMainThreadExecutor = mock(LooperExecutor.class);
+        mMainThreadExecutor = mockMainThreadExecutor;
         KeyguardManager mockKeyguardManager = mock(KeyguardManager.class);
 
         // Set desktop mode supported
@@ -179,6 +193,172 @@ public class RecentTasksListTest {
         assertEquals(0, taskList.size());
     }
 
+    @Test
+    public void onTaskMovedToFront_movesTaskWithoutLoadingTasks() throws Exception {
+        runMainThreadTasksImmediately();
+        // Tasks are given from most recent to least recent
+        when(mSystemUiProxy.getRecentTasks(anyInt(), anyInt())).thenReturn(new ArrayList<>(List.of(
+                GroupedRecentTaskInfo.forSingleTask(createRecentTaskInfo(1)),
+                GroupedRecentTaskInfo.forSingleTask(createRecentTaskInfo(2)),
+                GroupedRecentTaskInfo.forSingleTask(createRecentTaskInfo(3)))));
+        assertEquals(List.of(3, 2, 1), getTaskIds());
+        int changeId = mRecentTasksList.getTasks(true, null, task -> true);
+
+        mRecentTasksList.onTaskMovedToFront(createRunningTaskInfo(3));
+
+        assertFalse(mRecentTasksList.isTaskListValid(changeId));
+        assertEquals(List.of(2, 1, 3), getTaskIds());
+        verify(mSystemUiProxy, times(1)).getRecentTasks(anyInt(), anyInt());
+    }
+
+    @Test
+    public void onTaskMovedToFront_splitTask_doesNotMoveTasks() throws Exception {
+        runMainThreadTasksImmediately();
+        when(mSystemUiProxy.getRecentTasks(anyInt(), anyInt())).thenReturn(new ArrayList<>(List.of(
+                GroupedRecentTaskInfo.forSingleTask(createRecentTaskInfo(1)),
+                GroupedRecentTaskInfo.forSplitTasks(
+                        createRecentTaskInfo(2), createRecentTaskInfo(3), null))));
+        assertEquals(List.of(2, 1), getTaskIds());
+        int changeId = mRecentTasksList.getTasks(true, null, task -> true);
+
+        mRecentTasksList.onTaskMovedToFront(createRunningTaskInfo(3));
+
+        assertTrue(mRecentTasksList.isTaskListValid(changeId));
+        mRecentTasksList.onRecentTasksChanged();
+        assertFalse(mRecentTasksList.isTaskListValid(changeId));
+    }
+
+    @Test
+    public void onTaskMovedToFront_updatesTaskDetails() throws Exception {
+        runMainThreadTasksImmediately();
+        when(mSystemUiProxy.getRecentTasks(anyInt(), anyInt())).thenReturn(new ArrayList<>(List.of(
+                GroupedRecentTaskInfo.forSingleTask(createRecentTaskInfo(1)),
+                GroupedRecentTaskInfo.forSingleTask(createRecentTaskInfo(2)))));
+        getTaskIds();
+
+        ActivityManager.RunningTaskInfo movedTask = createRunningTaskInfo(2);
+        movedTask.lastActiveTime = 100;
+        mRecentTasksList.onTaskMovedToFront(movedTask);
+
+        List<GroupTask> tasks = getTasks();
+        assertEquals(2, tasks.get(1).task1.key.id);
+        assertEquals(100, tasks.get(1).task1.key.lastActiveTime);
+        verify(mSystemUiProxy, times(1)).getRecentTasks(anyInt(), anyInt());
+    }
+
+    @Test
+    public void onRecentTasksChanged_afterMoveToFront_doesNotLoadTasks() throws Exception {
+        runMainThreadTasksImmediately();
+        RecentsModel.RecentTasksChangedListener listener =
+                mock(RecentsModel.RecentTasksChangedListener.class);
+        mRecentTasksList.registerRecentTasksChangedListener(listener);
+        when(mSystemUiProxy.getRecentTasks(anyInt(), anyInt())).thenReturn(new ArrayList<>(List.of(
+                GroupedRecentTaskInfo.forSingleTask(createRecentTaskInfo(1)),
+                GroupedRecentTaskInfo.forSingleTask(createRecentTaskInfo(2)))));
+        getTaskIds();
+        mRecentTasksList.onTaskMovedToFront(createRunningTaskInfo(2));
+        int changeId = mRecentTasksList.getTasks(true, null, task -> true);
+
+        mRecentTasksList.onRecentTasksChanged();
+
+        assertTrue(mRecentTasksList.isTaskListValid(changeId));
+        assertEquals(List.of(1, 2), getTaskIds());
+        verify(listener, times(1)).onRecentTasksChanged();
+        verify(mSystemUiProxy, times(1)).getRecentTasks(anyInt(), anyInt());
+
+        // Other changes invalidate the tasks
+        mRecentTasksList.onRecentTasksChanged();
+        assertFalse(mRecentTasksList.isTaskListValid(changeId));
+        verify(listener, times(2)).onRecentTasksChanged();
+    }
+
+    @Test
+    public void onRunningTaskAppeared_addsTaskWithoutLoadingTasks() throws Exception {
+        runMainThreadTasksImmediately();
+        when(mSystemUiProxy.getRecentTasks(anyInt(), anyInt())).thenReturn(new ArrayList<>(List.of(
+                GroupedRecentTaskInfo.forSingleTask(createRecentTaskInfo(1)),
+                GroupedRecentTaskInfo.forSingleTask(createRecentTaskInfo(2)))));
+        getTaskIds();
+
+        ActivityManager.RunningTaskInfo newTask = createRunningTaskInfo(3);
+        newTask.baseIntent = new Intent();
+        newTask.configuration.windowConfiguration.setWindowingMode(WINDOWING_MODE_FULLSCREEN);
+        newTask.configuration.windowConfiguration.setActivityType(ACTIVITY_TYPE_STANDARD);
+        mRecentTasksList.onRunningTaskAppeared(newTask);
+
+        assertEquals(List.of(2, 1, 3), getTaskIds());
+        verify(mSystemUiProxy, times(1)).getRecentTasks(anyInt(), anyInt());
+    }
+
+    @Test
+    public void onRunningTaskChanged_updatesTaskWithoutLoadingTasks() throws Exception {
+        runMainThreadTasksImmediately();
+        when(mSystemUiProxy.getRecentTasks(anyInt(), anyInt())).thenReturn(new ArrayList<>(List.of(
+                GroupedRecentTaskInfo.forSingleTask(createRecentTaskInfo(1)),
+                GroupedRecentTaskInfo.forSingleTask(createRecentTaskInfo(2)))));
+        getTaskIds();
+        int changeId = mRecentTasksList.getTasks(true, null, task -> true);
+
+        ActivityManager.RunningTaskInfo changedTask = createRunningTaskInfo(2);
+        changedTask.lastActiveTime = 100;
+        mRecentTasksList.onRunningTaskChanged(changedTask);
+
+        assertFalse(mRecentTasksList.isTaskListValid(changeId));
+        List<GroupTask> tasks = getTasks();
+        assertEquals(2, tasks.get(0).task1.key.id);
+        assertEquals(100, tasks.get(0).task1.key.lastActiveTime);
+        verify(mSystemUiProxy, times(1)).getRecentTasks(anyInt(), anyInt());
+    }
+
+    @Test
+    public void onRunningTaskVanished_removesTaskWithoutLoadingTasks() throws Exception {
+        runMainThreadTasksImmediately();
+        when(mSystemUiProxy.getRecentTasks(anyInt(), anyInt())).thenReturn(new ArrayList<>(List.of(
+                GroupedRecentTaskInfo.forSingleTask(createRecentTaskInfo(1)),
+                GroupedRecentTaskInfo.forSingleTask(createRecentTaskInfo(2)))));
+        getTaskIds();
+
+        mRecentTasksList.onRunningTaskVanished(createRunningTaskInfo(1));
+
+        assertEquals(List.of(2), getTaskIds());
+        verify(mSystemUiProxy, times(1)).getRecentTasks(anyInt(), anyInt());
+    }
+
+    private void runMainThreadTasksImmediately() {
+        doAnswer(i -> {
+            ((Runnable) i.getArgument(0)).run();
+            return null;
+        }).when(mMainThreadExecutor).execute(any());
+        doAnswer(i -> {
+            ((Runnable) i.getArgument(0)).run();
+            return null;
+        }).when(mMainThreadExecutor).post(any());
+    }
+
+    /**
+     * Returns the ids of the first task of each group, from least recent to most recent.
+     */
+    private List<Integer> getTaskIds() throws Exception {
+        return getTasks().stream().map(task -> task.task1.key.id).collect(Collectors.toList());
+    }
+
+    private List<GroupTask> getTasks() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        AtomicReference<List<GroupTask>> tasks = new AtomicReference<>();
+        mRecentTasksList.getTasks(true /* loadKeysOnly */, result -> {
+            tasks.set(result);
+            latch.countDown();
+        }, task -> true);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        return tasks.get();
+    }
+
+    private ActivityManager.RunningTaskInfo createRunningTaskInfo(int taskId) {
+        ActivityManager.RunningTaskInfo runningTaskInfo = new ActivityManager.RunningTaskInfo();
+        runningTaskInfo.taskId = taskId;
+        return runningTaskInfo;
+    }
+
     private ActivityManager.RecentTaskInfo createRecentTaskInfo(int taskId) {
         ActivityManager.RecentTaskInfo recentTaskInfo = new ActivityManager.RecentTaskInfo();
         recentTaskInfo.taskId = taskId;
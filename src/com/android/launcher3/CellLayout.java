@@ -64,6 +64,7 @@ import com.android.launcher3.celllayout.ItemConfiguration;
 import com.android.launcher3.celllayout.ReorderAlgorithm;
 import com.android.launcher3.celllayout.ReorderParameters;
 import com.android.launcher3.celllayout.ReorderPreviewAnimation;
+import com.android.launcher3.celllayout.ReorderSolutionCache;
 import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.dragndrop.DraggableView;
 import com.android.launcher3.folder.PreviewBackground;
@@ -83,6 +84,7 @@ import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Stack;
+import java.util.concurrent.TimeUnit;
 
 public class CellLayout extends ViewGroup {
     private static final String TAG = "CellLayout";
@@ -117,6 +119,7 @@ public class CellLayout extends ViewGroup {
 
     protected GridOccupancy mOccupied;
     public GridOccupancy mTmpOccupied;
+    private final ReorderSolutionCache mReorderSolutionCache = new ReorderSolutionCache();
 
     private OnTouchListener mInterceptTouchListener;
 
@@ -194,6 +197,8 @@ public class CellLayout extends ViewGroup {
 
     public static final float REORDER_PREVIEW_MAGNITUDE = 0.12f;
     public static final int REORDER_ANIMATION_DURATION = 150;
+    // Time after which the reorder previewed while dragging uses the last solution found
+    private static final long REORDER_TIME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(8);
     @Thunk final float mReorderPreviewAnimationMagnitude;
 
     public final int[] mDirectionVector = new int[2];
@@ -1352,6 +1357,13 @@ public class CellLayout extends ViewGroup {
         return bestXY;
     }
 
+    /**
+     * Returns the cache of the reorder solutions found for the current positions of the items.
+     */
+    public ReorderSolutionCache getReorderSolutionCache() {
+        return mReorderSolutionCache;
+    }
+
     public GridOccupancy getOccupied() {
         return mOccupied;
     }
@@ -1618,9 +1630,19 @@ public class CellLayout extends ViewGroup {
         // only recalculate in mode MODE_SHOW_REORDER_HINT because that the first one to run in the
         // reorder cycle.
         if (mode == MODE_SHOW_REORDER_HINT || mPreviousSolution == null) {
-            finalSolution = calculateReorder(pixelX, pixelY, minSpanX, minSpanY, spanX, spanY,
-                    dragView);
-            mPreviousSolution = finalSolution;
+            ReorderAlgorithm algorithm = createReorderAlgorithm();
+            ItemConfiguration configuration = new ItemConfiguration();
+            copyCurrentStateToSolution(configuration);
+            ReorderParameters parameters = new ReorderParameters(pixelX, pixelY, spanX, spanY,
+                    minSpanX, minSpanY, dragView, configuration);
+            // Only the preview is bounded in time, the drop searches for the exact solution
+            if (mode == MODE_SHOW_REORDER_HINT || mode == MODE_DRAG_OVER) {
+                finalSolution = algorithm.calculateReorder(parameters, REORDER_TIME_BUDGET_NANOS);
+            } else {
+                finalSolution = algorithm.calculateReorder(parameters);
+            }
+            // A solution which ran out of time may be for other cells, so it is not dropped on
+            mPreviousSolution = algorithm.hasTimedOut() ? null : finalSolution;
         } else {
             finalSolution = mPreviousSolution;
             // We reset this vector after drop
@@ -1763,6 +1785,7 @@ public class CellLayout extends ViewGroup {
 
         // Invalidate the drag data
         mPreviousSolution = null;
+        mReorderSolutionCache.clear();
         mDragCell[0] = mDragCell[1] = -1;
         mDragCellSpan[0] = mDragCellSpan[1] = -1;
         mDragOutlineAnims[mDragOutlineCurrent].animateOut();
@@ -1932,9 +1955,7 @@ public class CellLayout extends ViewGroup {
      * returns a copy of cell layout's grid occupancy
      */
     public GridOccupancy cloneGridOccupancy() {
-        GridOccupancy occupancy = new GridOccupancy(mCountX, mCountY);
-        mOccupied.copyTo(occupancy);
-        return occupancy;
+        return mOccupied.copy();
     }
 
     public boolean isRegionVacant(int x, int y, int spanX, int spanY) {
@@ -888,13 +888,17 @@ public class DeviceProfile {
 
     private static DotRenderer createDotRenderer(
             @NonNull Context context, int size, @NonNull SparseArray<DotRenderer> cache) {
-        DotRenderer renderer = cache.get(size);
-        if (renderer == null) {
-            renderer = new DotRenderer(size, getShapePath(context, DEFAULT_DOT_SIZE),
-                    DEFAULT_DOT_SIZE);
-            cache.put(size, renderer);
+        // The cache is shared by the profiles of all the supported bounds, which are built in
+        // parallel
+        synchronized (cache) {
+            DotRenderer renderer = cache.get(size);
+            if (renderer == null) {
+                renderer = new DotRenderer(size, getShapePath(context, DEFAULT_DOT_SIZE),
+                        DEFAULT_DOT_SIZE);
+                cache.put(size, renderer);
+            }
+            return renderer;
         }
-        return renderer;
     }
 
     /**
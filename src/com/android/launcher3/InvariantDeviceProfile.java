@@ -25,11 +25,13 @@ import static com.android.launcher3.util.DisplayController.CHANGE_NAVIGATION_MOD
 import static com.android.launcher3.util.DisplayController.CHANGE_SUPPORTED_BOUNDS;
 import static com.android.launcher3.util.DisplayController.CHANGE_TASKBAR_PINNING;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+import static com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR;
 
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.content.res.XmlResourceParser;
@@ -37,6 +39,7 @@ import android.graphics.Point;
 import android.graphics.PointF;
 import android.graphics.Rect;
 import android.text.TextUtils;
+import android.util.ArraySet;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.util.Log;
@@ -46,6 +49,7 @@ import android.view.Display;
 
 import androidx.annotation.DimenRes;
 import androidx.annotation.IntDef;
+import androidx.annotation.Nullable;
 import androidx.annotation.StyleRes;
 import androidx.annotation.VisibleForTesting;
 import androidx.annotation.XmlRes;
@@ -62,6 +66,7 @@ import com.android.launcher3.util.DisplayController;
 import com.android.launcher3.util.DisplayController.Info;
 import com.android.launcher3.util.LockedUserState;
 import com.android.launcher3.util.MainThreadInitializedObject;
+import com.android.launcher3.util.NavigationMode;
 import com.android.launcher3.util.Partner;
 import com.android.launcher3.util.SafeCloseable;
 import com.android.launcher3.util.WindowBounds;
@@ -76,8 +81,13 @@ import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.stream.Collectors;
 
 public class InvariantDeviceProfile implements SafeCloseable, OnSharedPreferenceChangeListener {
@@ -125,6 +135,15 @@ public class InvariantDeviceProfile implements SafeCloseable, OnSharedPreference
     private static final String RES_GRID_NUM_COLUMNS = "grid_num_columns";
     private static final String RES_GRID_ICON_SIZE_DP = "grid_icon_size_dp";
 
+    // Number of supported profiles sets kept for previously seen display configurations
+    private static final int PROFILE_CACHE_SIZE = 4;
+
+    // Grid and display options parsed from R.xml.device_profiles, for the resources configuration
+    // and the preferences they depend on
+    private static final Object sParsedOptionsLock = new Object();
+    private static String sParsedOptionsKey;
+    private static ParsedOptions sParsedOptions;
+
     /**
      * Number of icons per row and column in the workspace.
      */
@@ -234,6 +253,16 @@ public class InvariantDeviceProfile implements SafeCloseable, OnSharedPreference
 
     private final ArrayList<OnIDPChangeListener> mChangeListeners = new ArrayList<>();
 
+    // Supported profiles by the display and preferences they were built for, so that going back
+    // to a previous configuration (eg, folding back a device) does not build them again
+    private final LinkedHashMap<ProfileKey, CachedProfiles> mProfileCache =
+            new LinkedHashMap<>(PROFILE_CACHE_SIZE, 0.75f, true /* accessOrder */) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ProfileKey, CachedProfiles> eldest) {
+                    return size() > PROFILE_CACHE_SIZE;
+                }
+            };
+
     @VisibleForTesting
     public InvariantDeviceProfile() { }
 
@@ -311,7 +340,7 @@ public class InvariantDeviceProfile implements SafeCloseable, OnSharedPreference
         System.arraycopy(defaultDisplayOption.borderSpaces, 0, result.borderSpaces, 0,
                 COUNT_SIZES);
 
-        initGrid(context, myInfo, result, deviceType);
+        initGrid(context, myInfo, result, deviceType, null /* profileKey */);
     }
 
     @Override
@@ -323,6 +352,7 @@ public class InvariantDeviceProfile implements SafeCloseable, OnSharedPreference
      * Reinitialize the current grid after a restore, where some grids might now be disabled.
      */
     public void reinitializeAfterRestore(Context context) {
+        mProfileCache.clear();
         String currentGridName = getCurrentGridName(context);
         String currentDbFile = dbFile;
         String newGridName = initGrid(context, currentGridName);
@@ -374,13 +404,14 @@ public class InvariantDeviceProfile implements SafeCloseable, OnSharedPreference
     private String initGrid(Context context, String gridName) {
         Info displayInfo = DisplayController.INSTANCE.get(context).getInfo();
         @DeviceType int deviceType = displayInfo.getDeviceType();
+        boolean allowDisabledGrid = RestoreDbTask.isPending(context);
 
         ArrayList<DisplayOption> allOptions =
-                getPredefinedDeviceProfiles(context, gridName, deviceType,
-                        RestoreDbTask.isPending(context));
+                getPredefinedDeviceProfiles(context, gridName, deviceType, allowDisabledGrid);
         DisplayOption displayOption =
                 invDistWeightedInterpolate(displayInfo, allOptions, deviceType);
-        initGrid(context, displayInfo, displayOption, deviceType);
+        initGrid(context, displayInfo, displayOption, deviceType, new ProfileKey(
+                context, displayOption.grid.name, allowDisabledGrid, displayInfo));
         return displayOption.grid.name;
     }
 
@@ -390,6 +421,7 @@ public class InvariantDeviceProfile implements SafeCloseable, OnSharedPreference
      */
     @Deprecated
     public void reset(Context context) {
+        mProfileCache.clear();
         initGrid(context, getCurrentGridName(context));
     }
 
@@ -398,8 +430,12 @@ public class InvariantDeviceProfile implements SafeCloseable, OnSharedPreference
         return new InvariantDeviceProfile().initGrid(context, null);
     }
 
+    /**
+     * Initializes the grid properties from {@param displayOption} and the supported profiles,
+     * reusing the profiles cached for {@param profileKey} if any.
+     */
     private void initGrid(Context context, Info displayInfo, DisplayOption displayOption,
-            @DeviceType int deviceType) {
+            @DeviceType int deviceType, @Nullable ProfileKey profileKey) {
         DisplayMetrics metrics = context.getResources().getDisplayMetrics();
         GridOption closestProfile = displayOption.grid;
         numRows = closestProfile.numRows;
@@ -480,16 +516,15 @@ public class InvariantDeviceProfile implements SafeCloseable, OnSharedPreference
         // Supported overrides: numRows, numColumns, iconSize
         applyPartnerDeviceProfileOverrides(context, metrics);
 
-        final List<DeviceProfile> localSupportedProfiles = new ArrayList<>();
+        CachedProfiles cachedProfiles = profileKey == null ? null : mProfileCache.get(profileKey);
+        if (cachedProfiles != null) {
+            supportedProfiles = cachedProfiles.profiles;
+            defaultWallpaperSize = new Point(cachedProfiles.wallpaperSize);
+            return;
+        }
+
         defaultWallpaperSize = new Point(displayInfo.currentSize);
-        SparseArray<DotRenderer> dotRendererCache = new SparseArray<>();
         for (WindowBounds bounds : displayInfo.supportedBounds) {
-            localSupportedProfiles.add(new DeviceProfile.Builder(context, this, displayInfo)
-                    .setIsMultiDisplay(deviceType == TYPE_MULTI_DISPLAY)
-                    .setWindowBounds(bounds)
-                    .setDotRendererCache(dotRendererCache)
-                    .build());
-
             // Wallpaper size should be the maximum of the all possible sizes Launcher expects
             int displayWidth = bounds.bounds.width();
             int displayHeight = bounds.bounds.height();
@@ -505,7 +540,8 @@ public class InvariantDeviceProfile implements SafeCloseable, OnSharedPreference
             defaultWallpaperSize.x =
                     Math.max(defaultWallpaperSize.x, Math.round(parallaxFactor * displayWidth));
         }
-        supportedProfiles = Collections.unmodifiableList(localSupportedProfiles);
+        supportedProfiles = Collections.unmodifiableList(
+                buildSupportedProfiles(context, displayInfo, deviceType));
 
         int numMinShownHotseatIconsForTablet = supportedProfiles
                 .stream()
@@ -521,6 +557,67 @@ public class InvariantDeviceProfile implements SafeCloseable, OnSharedPreference
                     deviceProfile.numShownHotseatIcons = numMinShownHotseatIconsForTablet;
                     deviceProfile.recalculateHotseatWidthAndBorderSpace();
                 });
+
+        if (profileKey != null) {
+            mProfileCache.put(profileKey,
+                    new CachedProfiles(supportedProfiles, new Point(defaultWallpaperSize)));
+        }
+    }
+
+    /**
+     * Builds the profiles of all the supported bounds, in the order of
+     * {@link Info#supportedBounds}. The profile of the current bounds is built on the calling
+     * thread while the other ones are built in the background. Any of them which did not start
+     * yet when the current one is done is built on the calling thread instead of waiting for it.
+     */
+    private List<DeviceProfile> buildSupportedProfiles(Context context, Info displayInfo,
+            @DeviceType int deviceType) {
+        // Initialize the objects used by the builder on the calling thread, so that the background
+        // builds never wait for it
+        WindowManagerProxy.INSTANCE.get(context);
+        LauncherPrefs.get(context);
+
+        SparseArray<DotRenderer> dotRendererCache = new SparseArray<>();
+        List<WindowBounds> allBounds = new ArrayList<>(displayInfo.supportedBounds);
+        int currentIndex = allBounds.indexOf(displayInfo.realBounds);
+        List<FutureTask<DeviceProfile>> builds = new ArrayList<>(allBounds.size());
+        for (int i = 0; i < allBounds.size(); i++) {
+            WindowBounds bounds = allBounds.get(i);
+            FutureTask<DeviceProfile> build = new FutureTask<>(
+                    () -> new DeviceProfile.Builder(context, this, displayInfo)
+                            .setIsMultiDisplay(deviceType == TYPE_MULTI_DISPLAY)
+                            .setWindowBounds(bounds)
+                            .setDotRendererCache(dotRendererCache)
+                            .build());
+            builds.add(build);
+            if (i != currentIndex) {
+                THREAD_POOL_EXECUTOR.execute(build);
+            }
+        }
+        if (currentIndex >= 0) {
+            builds.get(currentIndex).run();
+        }
+
+        List<DeviceProfile> profiles = new ArrayList<>(builds.size());
+        for (FutureTask<DeviceProfile> build : builds) {
+            // Does nothing if the build already started in the background
+            build.run();
+            try {
+                profiles.add(build.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException re) {
+                    throw re;
+                } else if (cause instanceof Error error) {
+                    throw error;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+        return profiles;
     }
 
     public void addOnChangeListener(OnIDPChangeListener listener) {
@@ -561,32 +658,10 @@ public class InvariantDeviceProfile implements SafeCloseable, OnSharedPreference
     private static ArrayList<DisplayOption> getPredefinedDeviceProfiles(Context context,
             String gridName, @DeviceType int deviceType, boolean allowDisabledGrid) {
         ArrayList<DisplayOption> profiles = new ArrayList<>();
-
-        try (XmlResourceParser parser = context.getResources().getXml(R.xml.device_profiles)) {
-            final int depth = parser.getDepth();
-            int type;
-            while (((type = parser.next()) != XmlPullParser.END_TAG ||
-                    parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
-                if ((type == XmlPullParser.START_TAG)
-                        && GridOption.TAG_NAME.equals(parser.getName())) {
-
-                    GridOption gridOption = new GridOption(context, Xml.asAttributeSet(parser));
-                    if (gridOption.isEnabled(deviceType) || allowDisabledGrid) {
-                        final int displayDepth = parser.getDepth();
-                        while (((type = parser.next()) != XmlPullParser.END_TAG
-                                || parser.getDepth() > displayDepth)
-                                && type != XmlPullParser.END_DOCUMENT) {
-                            if ((type == XmlPullParser.START_TAG) && "display-option".equals(
-                                    parser.getName())) {
-                                profiles.add(new DisplayOption(gridOption, context,
-                                        Xml.asAttributeSet(parser)));
-                            }
-                        }
-                    }
-                }
+        for (DisplayOption option : getParsedOptions(context).displayOptions) {
+            if (option.grid.isEnabled(deviceType) || allowDisabledGrid) {
+                profiles.add(option);
             }
-        } catch (IOException | XmlPullParserException e) {
-            throw new RuntimeException(e);
         }
 
         ArrayList<DisplayOption> filteredProfiles = new ArrayList<>();
@@ -594,7 +669,8 @@ public class InvariantDeviceProfile implements SafeCloseable, OnSharedPreference
             for (DisplayOption option : profiles) {
                 if (gridName.equals(option.grid.name)
                         && (option.grid.isEnabled(deviceType) || allowDisabledGrid)) {
-                    filteredProfiles.add(option);
+                    // The parsed options are shared, copy them as the grid can modify them
+                    filteredProfiles.add(new DisplayOption(option));
                 }
             }
         }
@@ -602,7 +678,7 @@ public class InvariantDeviceProfile implements SafeCloseable, OnSharedPreference
             // No grid found, use the default options
             for (DisplayOption option : profiles) {
                 if (option.canBeDefault) {
-                    filteredProfiles.add(option);
+                    filteredProfiles.add(new DisplayOption(option));
                 }
             }
         }
@@ -665,23 +741,79 @@ public class InvariantDeviceProfile implements SafeCloseable, OnSharedPreference
      * @return all the grid options that can be shown on the device
      */
     public static List<GridOption> parseAllDefinedGridOptions(Context context) {
-        List<GridOption> result = new ArrayList<>();
+        try {
+            return getParsedOptions(context).gridOptions;
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Error parsing device profile", e);
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Returns the grid and display options defined in R.xml.device_profiles, which are only
+     * parsed again when the resources configuration or the icon and font size preferences change.
+     */
+    private static ParsedOptions getParsedOptions(Context context) {
+        SharedPreferences prefs = LauncherPrefs.getPrefs(context);
+        String key = getResourcesKey(context)
+                + "," + prefs.getInt(KEY_ICON_SIZE, 100)
+                + "," + prefs.getInt(KEY_FONT_SIZE, 100)
+                + "," + FeatureFlags.enableResponsiveWorkspace();
+        synchronized (sParsedOptionsLock) {
+            if (!key.equals(sParsedOptionsKey)) {
+                sParsedOptions = parseOptions(context);
+                sParsedOptionsKey = key;
+            }
+            return sParsedOptions;
+        }
+    }
+
+    /**
+     * Returns a key of the configuration properties which the resources are selected by.
+     */
+    private static String getResourcesKey(Context context) {
+        Configuration config = context.getResources().getConfiguration();
+        return config.densityDpi
+                + "," + config.smallestScreenWidthDp
+                + "," + config.screenWidthDp
+                + "," + config.screenHeightDp
+                + "," + config.orientation
+                + "," + config.screenLayout
+                + "," + config.uiMode
+                + "," + config.getLocales().toLanguageTags();
+    }
+
+    private static ParsedOptions parseOptions(Context context) {
+        List<GridOption> gridOptions = new ArrayList<>();
+        List<DisplayOption> displayOptions = new ArrayList<>();
 
         try (XmlResourceParser parser = context.getResources().getXml(R.xml.device_profiles)) {
             final int depth = parser.getDepth();
             int type;
-            while (((type = parser.next()) != XmlPullParser.END_TAG
-                    || parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
+            while (((type = parser.next()) != XmlPullParser.END_TAG ||
+                    parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
                 if ((type == XmlPullParser.START_TAG)
                         && GridOption.TAG_NAME.equals(parser.getName())) {
-                    result.add(new GridOption(context, Xml.asAttributeSet(parser)));
+
+                    GridOption gridOption = new GridOption(context, Xml.asAttributeSet(parser));
+                    gridOptions.add(gridOption);
+                    final int displayDepth = parser.getDepth();
+                    while (((type = parser.next()) != XmlPullParser.END_TAG
+                            || parser.getDepth() > displayDepth)
+                            && type != XmlPullParser.END_DOCUMENT) {
+                        if ((type == XmlPullParser.START_TAG) && "display-option".equals(
+                                parser.getName())) {
+                            displayOptions.add(new DisplayOption(gridOption, context,
+                                    Xml.asAttributeSet(parser)));
+                        }
+                    }
                 }
             }
         } catch (IOException | XmlPullParserException e) {
-            Log.e(TAG, "Error parsing device profile", e);
-            return Collections.emptyList();
+            throw new RuntimeException(e);
         }
-        return result;
+        return new ParsedOptions(Collections.unmodifiableList(gridOptions),
+                Collections.unmodifiableList(displayOptions));
     }
 
     private int getLauncherIconDensity(int requiredSize) {
@@ -869,6 +1001,95 @@ public class InvariantDeviceProfile implements SafeCloseable, OnSharedPreference
         void onIdpChanged(boolean modelPropertiesChanged);
     }
 
+    /**
+     * Grid and display options parsed from R.xml.device_profiles.
+     */
+    private static final class ParsedOptions {
+
+        final List<GridOption> gridOptions;
+        final List<DisplayOption> displayOptions;
+
+        ParsedOptions(List<GridOption> gridOptions, List<DisplayOption> displayOptions) {
+            this.gridOptions = gridOptions;
+            this.displayOptions = displayOptions;
+        }
+    }
+
+    /**
+     * Supported profiles built for a {@link ProfileKey}.
+     */
+    private static final class CachedProfiles {
+
+        final List<DeviceProfile> profiles;
+        final Point wallpaperSize;
+
+        CachedProfiles(List<DeviceProfile> profiles, Point wallpaperSize) {
+            this.profiles = profiles;
+            this.wallpaperSize = wallpaperSize;
+        }
+    }
+
+    /**
+     * Grid, display and preferences which the supported profiles are built from.
+     */
+    private static final class ProfileKey {
+
+        private final String mGridName;
+        private final boolean mAllowDisabledGrid;
+        private final Set<WindowBounds> mSupportedBounds;
+        private final Point mCurrentSize;
+        private final int mDensityDpi;
+        private final float mFontScale;
+        private final NavigationMode mNavigationMode;
+        private final boolean mIsTransientTaskbar;
+        private final String mResourcesKey;
+        private final String mIconPack;
+        private final boolean mEnableTwoLineAllApps;
+        private final Map<String, ?> mPrefs;
+
+        ProfileKey(Context context, String gridName, boolean allowDisabledGrid, Info info) {
+            mGridName = gridName;
+            mAllowDisabledGrid = allowDisabledGrid;
+            mSupportedBounds = new ArraySet<>(info.supportedBounds);
+            mCurrentSize = new Point(info.currentSize);
+            mDensityDpi = info.getDensityDpi();
+            mFontScale = info.fontScale;
+            mNavigationMode = info.getNavigationMode();
+            mIsTransientTaskbar = info.isTransientTaskbar();
+            mResourcesKey = getResourcesKey(context);
+            mIconPack = IconDatabase.getGlobal(context);
+            mEnableTwoLineAllApps = LauncherPrefs.ENABLE_TWOLINE_ALLAPPS_TOGGLE.get(context);
+            // Includes the icon and font size, the labels and the row height preferences
+            mPrefs = LauncherPrefs.getPrefs(context).getAll();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ProfileKey)) return false;
+            ProfileKey that = (ProfileKey) o;
+            return mAllowDisabledGrid == that.mAllowDisabledGrid
+                    && mDensityDpi == that.mDensityDpi
+                    && Float.compare(mFontScale, that.mFontScale) == 0
+                    && mIsTransientTaskbar == that.mIsTransientTaskbar
+                    && mEnableTwoLineAllApps == that.mEnableTwoLineAllApps
+                    && mNavigationMode == that.mNavigationMode
+                    && Objects.equals(mGridName, that.mGridName)
+                    && mSupportedBounds.equals(that.mSupportedBounds)
+                    && mCurrentSize.equals(that.mCurrentSize)
+                    && mResourcesKey.equals(that.mResourcesKey)
+                    && Objects.equals(mIconPack, that.mIconPack)
+                    && mPrefs.equals(that.mPrefs);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mGridName, mAllowDisabledGrid, mSupportedBounds, mCurrentSize,
+                    mDensityDpi, mFontScale, mNavigationMode, mIsTransientTaskbar, mResourcesKey,
+                    mIconPack, mEnableTwoLineAllApps);
+        }
+    }
+
 
     public static final class GridOption {
 
@@ -1370,7 +1591,34 @@ public class InvariantDeviceProfile implements SafeCloseable, OnSharedPreference
         }
 
         DisplayOption() {
-            this(null);
+            this((GridOption) null);
+        }
+
+        DisplayOption(DisplayOption source) {
+            grid = source.grid;
+            minWidthDps = source.minWidthDps;
+            minHeightDps = source.minHeightDps;
+            canBeDefault = source.canBeDefault;
+            for (int i = 0; i < COUNT_SIZES; i++) {
+                minCellSize[i] = new PointF(source.minCellSize[i].x, source.minCellSize[i].y);
+                borderSpaces[i] = new PointF(source.borderSpaces[i].x, source.borderSpaces[i].y);
+                allAppsCellSize[i] = new PointF(
+                        source.allAppsCellSize[i].x, source.allAppsCellSize[i].y);
+                allAppsBorderSpaces[i] = new PointF(
+                        source.allAppsBorderSpaces[i].x, source.allAppsBorderSpaces[i].y);
+            }
+            System.arraycopy(source.horizontalMargin, 0, horizontalMargin, 0, COUNT_SIZES);
+            System.arraycopy(source.hotseatBarBottomSpace, 0, hotseatBarBottomSpace, 0,
+                    COUNT_SIZES);
+            System.arraycopy(source.hotseatQsbSpace, 0, hotseatQsbSpace, 0, COUNT_SIZES);
+            System.arraycopy(source.iconSizes, 0, iconSizes, 0, COUNT_SIZES);
+            System.arraycopy(source.textSizes, 0, textSizes, 0, COUNT_SIZES);
+            System.arraycopy(source.allAppsIconSizes, 0, allAppsIconSizes, 0, COUNT_SIZES);
+            System.arraycopy(source.allAppsIconTextSizes, 0, allAppsIconTextSizes, 0,
+                    COUNT_SIZES);
+            System.arraycopy(source.transientTaskbarIconSize, 0, transientTaskbarIconSize, 0,
+                    COUNT_SIZES);
+            System.arraycopy(source.startAlignTaskbar, 0, startAlignTaskbar, 0, COUNT_SIZES);
         }
 
         DisplayOption(GridOption grid) {
@@ -1329,6 +1329,7 @@ public class Launcher extends StatefulActivity<LauncherState>
 
         super.onPause();
         mDragController.cancelDrag();
+        mModelWriter.flushPendingUpdates();
         mLastTouchUpTime = -1;
         mDropTargetBar.animateToVisibility(false);
 
@@ -59,6 +59,7 @@ import com.android.launcher3.model.ModelDbController;
 import com.android.launcher3.model.ModelDelegate;
 import com.android.launcher3.model.ModelLauncherCallbacks;
 import com.android.launcher3.model.ModelTaskController;
+import com.android.launcher3.model.ModelWriteJournal;
 import com.android.launcher3.model.ModelWriter;
 import com.android.launcher3.model.PackageInstallStateChangedTask;
 import com.android.launcher3.model.PackageUpdatedTask;
@@ -143,6 +144,10 @@ public class LauncherModel implements InstallSessionTracker.Callback {
 
     private int mLastLoadId = -1;
 
+    // Pending item updates, written to the DB by any ModelWriter on the worker thread
+    @NonNull
+    private final ModelWriteJournal mWriteJournal = new ModelWriteJournal(this);
+
     // Runnable to check if the shortcuts permission has changed.
     @NonNull
     private final Runnable mDataValidationCheck = new Runnable() {
@@ -174,6 +179,11 @@ public class LauncherModel implements InstallSessionTracker.Callback {
         return mModelDbController;
     }
 
+    @NonNull
+    public ModelWriteJournal getWriteJournal() {
+        return mWriteJournal;
+    }
+
     public ModelLauncherCallbacks newModelCallbacks() {
         return new ModelLauncherCallbacks(this::enqueueModelUpdateTask);
     }
@@ -226,6 +236,7 @@ public class LauncherModel implements InstallSessionTracker.Callback {
      */
     public void destroy() {
         mModelDestroyed = true;
+        MODEL_EXECUTOR.execute(mWriteJournal::flush);
         MODEL_EXECUTOR.execute(mModelDelegate::destroy);
     }
 
@@ -393,7 +404,9 @@ public class LauncherModel implements InstallSessionTracker.Callback {
                             mApp, mBgAllAppsList, mBgDataModel, mModelDelegate, launcherBinder);
 
                     // Always post the loader task, instead of running directly
-                    // (even on same thread) so that we exit any nested synchronized blocks
+                    // (even on same thread) so that we exit any nested synchronized blocks.
+                    // Pending updates are written first so that they are not lost by the load.
+                    MODEL_EXECUTOR.post(mWriteJournal::flush);
                     MODEL_EXECUTOR.post(mLoaderTask);
                 }
             }
@@ -573,6 +586,7 @@ public class LauncherModel implements InstallSessionTracker.Callback {
             @NonNull final UserHandle user) {
         // If any package icon has changed (app was updated while launcher was dead),
         // update the corresponding shortcuts.
+        mApp.getIconCache().invalidateLockFreeEntries(updatedPackages, user);
         enqueueModelUpdateTask(new CacheDataUpdatedTask(
                 CacheDataUpdatedTask.OP_CACHE_UPDATE, user, updatedPackages));
     }
@@ -597,6 +611,7 @@ public class LauncherModel implements InstallSessionTracker.Callback {
                 // Loader has not yet run.
                 return;
             }
+            mWriteJournal.flush();
             ModelTaskController controller = new ModelTaskController(
                     mApp, mBgDataModel, mBgAllAppsList, this, MAIN_EXECUTOR);
             task.execute(controller, mBgDataModel, mBgAllAppsList);
@@ -661,6 +676,7 @@ public class LauncherModel implements InstallSessionTracker.Callback {
         }
         mModelDelegate.dump(prefix, fd, writer, args);
         mBgDataModel.dump(prefix, fd, writer, args);
+        writer.println(prefix + "Model write journal: " + mWriteJournal.getStats());
     }
 
     /**
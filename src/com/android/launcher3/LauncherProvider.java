@@ -149,6 +149,9 @@ public class LauncherProvider extends ContentProvider {
         try {
             return MODEL_EXECUTOR.submit(() -> {
                 LauncherModel model = LauncherAppState.getInstance(getContext()).getModel();
+                // Write the pending item updates first, so that they are neither missing from
+                // the results nor overriding the changes of the caller
+                model.getWriteJournal().flush();
                 int count = task.applyAsInt(model.getModelDbController());
                 if (count > 0) {
                     MAIN_EXECUTOR.submit(model::forceReload);
@@ -30,6 +30,8 @@ import android.util.Log;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.BatchingListUpdateCallback;
 import androidx.recyclerview.widget.DiffUtil;
 
 import com.android.launcher3.Flags;
@@ -37,7 +39,7 @@ import com.android.launcher3.R;
 import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.ItemInfo;
-import com.android.launcher3.util.LabelComparator;
+import com.android.launcher3.util.IntArray;
 import com.android.launcher3.views.ActivityContext;
 
 import java.io.PrintWriter;
@@ -45,10 +47,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.TreeMap;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * The alphabetically sorted list of applications.
@@ -60,6 +60,10 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
 
     public static final String TAG = "AlphabeticalAppsList";
 
+    private static final int OPERATION_INSERT = 0;
+    private static final int OPERATION_REMOVE = 1;
+    private static final int OPERATION_CHANGE = 2;
+
     private final WorkProfileManager mWorkProviderManager;
 
     private final PrivateProfileManager mPrivateProviderManager;
@@ -90,8 +94,8 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
     private final T mActivityContext;
 
     // The set of apps from the system
-    private final List<AppInfo> mApps = new ArrayList<>();
-    private final List<AppInfo> mPrivateApps = new ArrayList<>();
+    private final SortedAppsList mApps;
+    private final SortedAppsList mPrivateApps;
     @Nullable
     private final AllAppsStore<T> mAllAppsStore;
 
@@ -110,13 +114,19 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
     private int mNumAppsPerRowAllApps;
     private int mNumAppRowsInAdapter;
     private Predicate<ItemInfo> mItemFilter;
-    private final boolean mSortSections;
+    // Whether the apps are filtered by mItemFilter and the private profile matcher
+    private boolean mFilteringApps;
 
     public AlphabeticalAppsList(Context context, @Nullable AllAppsStore<T> appsStore,
             WorkProfileManager workProfileManager, PrivateProfileManager privateProfileManager) {
         mAllAppsStore = appsStore;
         mActivityContext = ActivityContext.lookupContext(context);
         mAppNameComparator = new AppInfoComparator(context);
+        // As a special case for some languages (currently only Simplified Chinese), we may need to
+        // coalesce sections
+        mApps = new SortedAppsList(mAppNameComparator,
+                context.getResources().getBoolean(R.bool.config_appsListSortSections));
+        mPrivateApps = new SortedAppsList(mAppNameComparator, false /* sortSections */);
         mWorkProviderManager = workProfileManager;
         mPrivateProviderManager = privateProfileManager;
         mNumAppsPerRowAllApps = mActivityContext.getDeviceProfile().numShownAllAppsColumns;
@@ -127,7 +137,6 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
         mPrivateProfileAppScrollerBadge.setSpan(new ImageSpan(context,
                         R.drawable.ic_private_profile_app_scroller_badge, ImageSpan.ALIGN_CENTER),
                 0, 1, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
-        mSortSections = context.getResources().getBoolean(R.bool.config_appsListSortSections);
     }
 
     /** Set the number of apps per row when device profile changes. */
@@ -137,9 +146,17 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
 
     public void updateItemFilter(Predicate<ItemInfo> itemFilter) {
         this.mItemFilter = itemFilter;
+        updateFilters();
         onAppsUpdated();
     }
 
+    private void updateFilters() {
+        mFilteringApps = !hasSearchResults() && mItemFilter != null;
+        mApps.setFilter(mFilteringApps ? mItemFilter : null);
+        mPrivateApps.setFilter(mFilteringApps && mPrivateProviderManager != null
+                ? mPrivateProviderManager.getItemInfoMatcher() : null);
+    }
+
     /**
      * Sets the adapter to notify when this dataset changes.
      */
@@ -230,42 +247,18 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
                 mPrivateProviderManager.getAnimationRunning())) {
             return;
         }
-        // Sort the list of apps
-        mApps.clear();
-        mPrivateApps.clear();
-
-        Stream<AppInfo> appSteam = Stream.of(mAllAppsStore.getApps());
-        Stream<AppInfo> privateAppStream = Stream.of(mAllAppsStore.getApps());
-
-        if (!hasSearchResults() && mItemFilter != null) {
-            appSteam = appSteam.filter(mItemFilter);
-            if (mPrivateProviderManager != null) {
-                privateAppStream = privateAppStream
-                        .filter(mPrivateProviderManager.getItemInfoMatcher());
-            }
+        if (mFilteringApps != (!hasSearchResults() && mItemFilter != null)) {
+            updateFilters();
         }
-        appSteam = appSteam.sorted(mAppNameComparator);
-        privateAppStream = privateAppStream.sorted(mAppNameComparator);
+        // Only the apps which changed since the last update are moved in the sorted lists
+        SortedAppsList.Delta delta = new SortedAppsList.Delta();
+        AppInfo[] apps = mAllAppsStore.getApps();
+        mApps.update(apps, delta);
+        mPrivateApps.update(apps, delta);
 
-        // As a special case for some languages (currently only Simplified Chinese), we may need to
-        // coalesce sections
-        if (mSortSections) {
-            // Compute the section headers. We use a TreeMap with the section name comparator to
-            // ensure that the sections are ordered when we iterate over it later
-            appSteam = appSteam.collect(Collectors.groupingBy(
-                    info -> info.sectionName,
-                    () -> new TreeMap<>(new LabelComparator()),
-                    Collectors.toCollection(ArrayList::new)))
-                    .values()
-                    .stream()
-                    .flatMap(ArrayList::stream);
-        }
-
-        appSteam.forEachOrdered(mApps::add);
-        privateAppStream.forEachOrdered(mPrivateApps::add);
         // Recompose the set of adapter items from the current set of apps
         if (mSearchResults.isEmpty()) {
-            updateAdapterItems();
+            updateAdapterItems(delta);
         }
     }
 
@@ -274,6 +267,14 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
      * mCachedSectionNames to have been calculated for the set of all apps in mApps.
      */
     public void updateAdapterItems() {
+        updateAdapterItems(null);
+    }
+
+    /**
+     * Updates the set of filtered apps, notifying the adapter of the changes in {@param delta}
+     * if they are the only changes since the items were last updated.
+     */
+    private void updateAdapterItems(@Nullable SortedAppsList.Delta delta) {
         List<AdapterItem> oldItems = new ArrayList<>(mAdapterItems);
         // Prepare to update the list of sections, filtered apps, etc.
         mFastScrollerSections.clear();
@@ -300,7 +301,7 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
                                     R.string.work_profile_edu_section), 0));
                     Log.d(TAG, "Adding FastScrollSection for work edu card.");
                 }
-                position = addAppsWithSections(mApps, position);
+                position = addAppsWithSections(mApps.getApps(), position);
             }
             if (Flags.enablePrivateSpace()) {
                 position = addPrivateSpaceItems(position);
@@ -344,16 +345,73 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
             mNumAppRowsInAdapter = rowIndex + 1;
         }
 
-        if (mAdapter != null) {
+        if (mAdapter != null && (delta == null || !delta.isValid()
+                || !dispatchAppChanges(oldItems, delta))) {
             DiffUtil.calculateDiff(new MyDiffCallback(oldItems, mAdapterItems), false)
                     .dispatchUpdatesTo(mAdapter);
         }
     }
 
+    /**
+     * Notifies the adapter of the insertions, removals and changes of the apps in {@param delta},
+     * without comparing all the items. Returns false without notifying anything if the items
+     * changed in another way.
+     */
+    private boolean dispatchAppChanges(List<AdapterItem> oldItems, SortedAppsList.Delta delta) {
+        // Pairs of operation and position, applied in order
+        IntArray operations = new IntArray();
+        int oldIndex = 0;
+        int newIndex = 0;
+        int position = 0;
+        while (oldIndex < oldItems.size() || newIndex < mAdapterItems.size()) {
+            AdapterItem oldItem = oldIndex < oldItems.size() ? oldItems.get(oldIndex) : null;
+            AdapterItem newItem = newIndex < mAdapterItems.size()
+                    ? mAdapterItems.get(newIndex) : null;
+            if (oldItem != null && newItem != null && oldItem.isSameAs(newItem)
+                    && oldItem.itemInfo == newItem.itemInfo) {
+                // Decorations depend on the position of the app in its section
+                if ((newItem.itemInfo != null && delta.changed.contains(newItem.itemInfo))
+                        || oldItem.decorationInfo != null || newItem.decorationInfo != null) {
+                    operations.add(OPERATION_CHANGE);
+                    operations.add(position);
+                }
+                oldIndex++;
+                newIndex++;
+                position++;
+            } else if (oldItem != null && oldItem.itemInfo != null
+                    && delta.removed.contains(oldItem.itemInfo)) {
+                operations.add(OPERATION_REMOVE);
+                operations.add(position);
+                oldIndex++;
+            } else if (newItem != null && newItem.itemInfo != null
+                    && delta.inserted.contains(newItem.itemInfo)) {
+                operations.add(OPERATION_INSERT);
+                operations.add(position);
+                newIndex++;
+                position++;
+            } else {
+                return false;
+            }
+        }
+
+        BatchingListUpdateCallback callback =
+                new BatchingListUpdateCallback(new AdapterListUpdateCallback(mAdapter));
+        for (int i = 0; i < operations.size(); i += 2) {
+            int operationPosition = operations.get(i + 1);
+            switch (operations.get(i)) {
+                case OPERATION_INSERT -> callback.onInserted(operationPosition, 1);
+                case OPERATION_REMOVE -> callback.onRemoved(operationPosition, 1);
+                case OPERATION_CHANGE -> callback.onChanged(operationPosition, 1, null);
+            }
+        }
+        callback.dispatchLastEvent();
+        return true;
+    }
+
     int addPrivateSpaceItems(int position) {
         if (mPrivateProviderManager != null
                 && !mPrivateProviderManager.isPrivateSpaceHidden()
-                && !mPrivateApps.isEmpty()) {
+                && !mPrivateApps.getApps().isEmpty()) {
             // Always add PS Header if Space is present and visible.
             position = mPrivateProviderManager.addPrivateSpaceHeader(mAdapterItems);
             Log.d(TAG, "Adding FastScrollSection for Private Space header. ");
@@ -381,7 +439,7 @@ public class AlphabeticalAppsList<T extends Context & ActivityContext> implement
         }
 
         // Split of private space apps into user-installed and system apps.
-        Map<Boolean, List<AppInfo>> split = mPrivateApps.stream()
+        Map<Boolean, List<AppInfo>> split = mPrivateApps.getApps().stream()
                 .collect(Collectors.partitioningBy(mPrivateProviderManager
                                 .splitIntoUserInstalledAndSystemApps(mActivityContext)));
 
@@ -18,11 +18,11 @@ package com.android.launcher3.allapps;
 import android.content.Context;
 import android.os.Process;
 import android.os.UserHandle;
-import android.text.TextUtils;
 
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.util.LabelComparator;
+import com.android.launcher3.util.LabelComparator.SortKey;
 
 import java.util.Comparator;
 
@@ -44,18 +44,44 @@ public class AppInfoComparator implements Comparator<AppInfo> {
     @Override
     public int compare(AppInfo a, AppInfo b) {
         // Order by the title in the current locale
-        int result = mLabelComparator.compare(getSortingTitle(a), getSortingTitle(b));
-        if (result != 0) {
-            return result;
-        }
+        String titleA = a.getSortingTitle();
+        String titleB = b.getSortingTitle();
+        int result = mLabelComparator.isValidKey(a.sortKey, titleA)
+                && mLabelComparator.isValidKey(b.sortKey, titleB)
+                ? a.sortKey.compareTo(b.sortKey)
+                : mLabelComparator.compare(titleA, titleB);
+        return result != 0 ? result : compareComponents(a, b);
+    }
+
+    /**
+     * Returns the key which {@param info} is sorted by, reusing the key computed by the model if
+     * its title did not change since.
+     */
+    SortKey getSortKey(AppInfo info) {
+        String title = info.getSortingTitle();
+        return mLabelComparator.isValidKey(info.sortKey, title)
+                ? info.sortKey : mLabelComparator.getSortKey(title);
+    }
 
+    /**
+     * Compares {@param a} and {@param b} as if their sort keys were {@param keyA} and
+     * {@param keyB}.
+     */
+    int compare(SortKey keyA, AppInfo a, SortKey keyB, AppInfo b) {
+        int result = keyA.compareTo(keyB);
+        return result != 0 ? result : compareComponents(a, b);
+    }
+
+    private int compareComponents(AppInfo a, AppInfo b) {
         // If labels are same, compare component names
-        result = a.componentName.compareTo(b.componentName);
+        int result = a.componentName.compareTo(b.componentName);
         if (result != 0) {
             return result;
         }
 
-        if (mMyUser.equals(a.user)) {
+        if (a.user.equals(b.user)) {
+            return 0;
+        } else if (mMyUser.equals(a.user)) {
             return -1;
         } else {
             Long aUserSerial = mUserManager.getSerialNumberForUser(a.user);
@@ -63,14 +89,4 @@ public class AppInfoComparator implements Comparator<AppInfo> {
             return aUserSerial.compareTo(bUserSerial);
         }
     }
-
-    private String getSortingTitle(AppInfo info) {
-        if (!TextUtils.isEmpty(info.appTitle)) {
-            return info.appTitle.toString();
-        }
-        if (info.title != null) {
-            return info.title.toString();
-        }
-        return "";
-    }
 }
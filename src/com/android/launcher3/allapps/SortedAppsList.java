@@ -0,0 +1,334 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps;
+
+import static com.android.launcher3.model.data.AppInfo.COMPONENT_KEY_COMPARATOR;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.icons.BitmapInfo;
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.util.IntArray;
+import com.android.launcher3.util.LabelComparator;
+import com.android.launcher3.util.LabelComparator.SortKey;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Sorted list of the apps shown in all apps, which is updated incrementally from the apps bound
+ * by the model.
+ *
+ * <p>The apps of each update are matched with the previous ones by component key, and only the
+ * apps which were added, removed or renamed are moved in the list, found by binary search. As the
+ * model updates the apps in place, the list keeps the values they were sorted by.
+ */
+final class SortedAppsList {
+
+    // Above this number of moved apps, the list is sorted again instead
+    private static final int MAX_INCREMENTAL_MOVES = 32;
+
+    private final AppInfoComparator mAppComparator;
+    @Nullable
+    private final LabelComparator mSectionComparator;
+    private final Comparator<Entry> mEntryComparator = this::compare;
+
+    // Sort keys of the section names, of which there are only a few
+    private final HashMap<String, SortKey> mSectionKeys = new HashMap<>();
+
+    private final ArrayList<Entry> mEntries = new ArrayList<>();
+    private final List<AppInfo> mApps = new AbstractList<>() {
+        @Override
+        public AppInfo get(int index) {
+            return mEntries.get(index).info;
+        }
+
+        @Override
+        public int size() {
+            return mEntries.size();
+        }
+    };
+
+    // Apps of the last update sorted by component key, and their entries if they are in the list
+    @Nullable
+    private AppInfo[] mSource;
+    private Entry[] mSourceEntries;
+
+    @Nullable
+    private Predicate<ItemInfo> mFilter;
+
+    /**
+     * @param sortSections whether the apps are grouped by section, the sections being sorted by
+     *                     name.
+     */
+    SortedAppsList(AppInfoComparator appComparator, boolean sortSections) {
+        mAppComparator = appComparator;
+        mSectionComparator = sortSections ? new LabelComparator() : null;
+    }
+
+    /**
+     * Returns the sorted apps, which must not be modified.
+     */
+    List<AppInfo> getApps() {
+        return mApps;
+    }
+
+    /**
+     * Sets the filter of the apps in the list, which is applied by the next update.
+     */
+    void setFilter(@Nullable Predicate<ItemInfo> filter) {
+        mFilter = filter;
+        // The filtered apps of the last update are not known anymore
+        mSource = null;
+    }
+
+    /**
+     * Updates the list to the apps of {@param apps} matching the filter, and adds the apps which
+     * were moved or changed to {@param delta}. If the apps cannot be matched with the ones of the
+     * last update, the list is rebuilt and {@param delta} is invalidated.
+     */
+    void update(@NonNull AppInfo[] apps, @NonNull Delta delta) {
+        if (mSource == null || !isSortedByComponentKey(apps)) {
+            rebuild(apps);
+            delta.invalidate();
+            return;
+        }
+
+        AppInfo[] source = mSource;
+        Entry[] sourceEntries = mSourceEntries;
+        Entry[] entries = new Entry[apps.length];
+        ArrayList<Entry> removed = new ArrayList<>();
+        // Indices in apps of the added apps
+        IntArray added = new IntArray();
+
+        int i = 0;
+        int j = 0;
+        while (i < source.length || j < apps.length) {
+            int result = i == source.length ? 1
+                    : j == apps.length ? -1
+                    : COMPONENT_KEY_COMPARATOR.compare(source[i], apps[j]);
+            if (result < 0) {
+                if (sourceEntries[i] != null) {
+                    removed.add(sourceEntries[i]);
+                }
+                i++;
+                continue;
+            } else if (result > 0) {
+                if (matches(apps[j])) {
+                    added.add(j);
+                }
+                j++;
+                continue;
+            }
+
+            Entry entry = sourceEntries[i];
+            AppInfo app = apps[j];
+            boolean matches = matches(app);
+            if (entry == null) {
+                if (matches) {
+                    added.add(j);
+                }
+            } else if (!matches) {
+                removed.add(entry);
+            } else if (entry.info != app || !entry.hasSameOrder(app)) {
+                removed.add(entry);
+                added.add(j);
+                if (entry.info == app) {
+                    // The app was renamed in place, and its cell must be bound again if it is
+                    // inserted back at the same position
+                    delta.changed.add(app);
+                }
+            } else {
+                if (!entry.hasSameContent(app)) {
+                    entry.updateContent();
+                    delta.changed.add(app);
+                }
+                entries[j] = entry;
+            }
+            i++;
+            j++;
+        }
+
+        if (removed.size() + added.size() > MAX_INCREMENTAL_MOVES) {
+            for (Entry entry : removed) {
+                delta.removed.add(entry.info);
+                entry.info = null;
+            }
+            mEntries.removeIf(entry -> entry.info == null);
+            for (int k = 0; k < added.size(); k++) {
+                Entry entry = newEntry(apps[added.get(k)]);
+                delta.inserted.add(entry.info);
+                entries[added.get(k)] = entry;
+                mEntries.add(entry);
+            }
+            mEntries.sort(mEntryComparator);
+        } else {
+            for (Entry entry : removed) {
+                // The entry keeps the values it was sorted by until it is removed
+                int index = Collections.binarySearch(mEntries, entry, mEntryComparator);
+                if (index < 0 || mEntries.get(index) != entry) {
+                    // The list is not in the expected order, sort it again
+                    rebuild(apps);
+                    delta.invalidate();
+                    return;
+                }
+                mEntries.remove(index);
+                delta.removed.add(entry.info);
+            }
+            for (int k = 0; k < added.size(); k++) {
+                Entry entry = newEntry(apps[added.get(k)]);
+                int index = Collections.binarySearch(mEntries, entry, mEntryComparator);
+                mEntries.add(index < 0 ? -(index + 1) : index, entry);
+                delta.inserted.add(entry.info);
+                entries[added.get(k)] = entry;
+            }
+        }
+        mSource = apps;
+        mSourceEntries = entries;
+    }
+
+    private void rebuild(AppInfo[] apps) {
+        boolean trackSource = isSortedByComponentKey(apps);
+        Entry[] entries = trackSource ? new Entry[apps.length] : null;
+        mEntries.clear();
+        for (int i = 0; i < apps.length; i++) {
+            if (matches(apps[i])) {
+                Entry entry = newEntry(apps[i]);
+                mEntries.add(entry);
+                if (entries != null) {
+                    entries[i] = entry;
+                }
+            }
+        }
+        mEntries.sort(mEntryComparator);
+
+        // If the apps are not sorted by component key, the next update is rebuilt as well
+        mSource = trackSource ? apps : null;
+        mSourceEntries = entries;
+    }
+
+    private Entry newEntry(AppInfo app) {
+        SortKey sectionKey = null;
+        if (mSectionComparator != null) {
+            sectionKey = mSectionKeys.computeIfAbsent(
+                    app.sectionName, mSectionComparator::getSortKey);
+        }
+        return new Entry(app, mAppComparator.getSortKey(app), sectionKey);
+    }
+
+    private boolean matches(AppInfo app) {
+        return mFilter == null || mFilter.test(app);
+    }
+
+    private int compare(Entry a, Entry b) {
+        if (a.sectionKey != null && b.sectionKey != null) {
+            int result = a.sectionKey.compareTo(b.sectionKey);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return mAppComparator.compare(a.sortKey, a.info, b.sortKey, b.info);
+    }
+
+    private static boolean isSortedByComponentKey(AppInfo[] apps) {
+        for (int i = 1; i < apps.length; i++) {
+            if (COMPONENT_KEY_COMPARATOR.compare(apps[i - 1], apps[i]) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * An app of the list, with the values it is sorted by and shown with.
+     */
+    private static final class Entry {
+
+        AppInfo info;
+        final SortKey sortKey;
+        @Nullable
+        final SortKey sectionKey;
+        final String sectionName;
+
+        CharSequence title;
+        BitmapInfo bitmap;
+        int runtimeStatusFlags;
+        int progressLevel;
+
+        Entry(AppInfo info, SortKey sortKey, @Nullable SortKey sectionKey) {
+            this.info = info;
+            this.sortKey = sortKey;
+            this.sectionKey = sectionKey;
+            sectionName = info.sectionName;
+            updateContent();
+        }
+
+        boolean hasSameOrder(AppInfo app) {
+            return sortKey.getLabel().equals(app.getSortingTitle())
+                    && Objects.equals(sectionName, app.sectionName);
+        }
+
+        boolean hasSameContent(AppInfo app) {
+            return title == app.title
+                    && bitmap == app.bitmap
+                    && runtimeStatusFlags == app.runtimeStatusFlags
+                    && progressLevel == app.getProgressLevel();
+        }
+
+        void updateContent() {
+            title = info.title;
+            bitmap = info.bitmap;
+            runtimeStatusFlags = info.runtimeStatusFlags;
+            progressLevel = info.getProgressLevel();
+        }
+    }
+
+    /**
+     * Apps which changed in the lists since the adapter items were last built.
+     */
+    static final class Delta {
+
+        // Apps removed from their previous position
+        final Set<AppInfo> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        // Apps inserted at their new position
+        final Set<AppInfo> inserted = Collections.newSetFromMap(new IdentityHashMap<>());
+        // Apps which are shown differently, whether or not they kept their position
+        final Set<AppInfo> changed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private boolean mValid = true;
+
+        /**
+         * Marks that the changes are not known, the adapter items being fully compared instead.
+         */
+        void invalidate() {
+            mValid = false;
+        }
+
+        boolean isValid() {
+            return mValid;
+        }
+    }
+}
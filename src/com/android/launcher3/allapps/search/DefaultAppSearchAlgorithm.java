@@ -22,17 +22,13 @@ import android.content.Context;
 import android.os.Handler;
 import android.os.UserManager;
 
-import androidx.annotation.AnyThread;
-
 import com.android.launcher3.LauncherAppState;
 import com.android.launcher3.allapps.BaseAllAppsAdapter.AdapterItem;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.search.SearchAlgorithm;
 import com.android.launcher3.search.SearchCallback;
-import com.android.launcher3.search.StringMatcherUtility;
 
 import java.util.ArrayList;
-import java.util.List;
 
 /**
  * The default search implementation.
@@ -63,8 +59,12 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
     @Override
     public void doSearch(String query, SearchCallback<AdapterItem> callback) {
         mAppState.getModel().enqueueModelUpdateTask((taskController, dataModel, apps) ->  {
-            ArrayList<AdapterItem> result = getTitleMatchResult(mAppState.getContext(), apps.data,
-                    query);
+            ArrayList<AppInfo> matches = apps.getSearchIndex().search(
+                    UserManager.get(mAppState.getContext()), query);
+            ArrayList<AdapterItem> result = new ArrayList<>(matches.size());
+            for (AppInfo info : matches) {
+                result.add(AdapterItem.asApp(info));
+            }
             if (mAddNoResultsMessage && result.isEmpty()) {
                 result.add(getEmptyMessageAdapterItem(query));
             }
@@ -80,31 +80,4 @@ public class DefaultAppSearchAlgorithm implements SearchAlgorithm<AdapterItem> {
         item.itemInfo = placeHolder;
         return item;
     }
-
-    /**
-     * Filters {@link AppInfo}s matching specified query
-     */
-    @AnyThread
-    public static ArrayList<AdapterItem> getTitleMatchResult(Context context, List<AppInfo> apps,
-            String query) {
-        // Do an intersection of the words in the query and each title, and filter out all the
-        // apps that don't match all of the words in the query.
-        final String queryTextLower = query.toLowerCase();
-        final ArrayList<AdapterItem> result = new ArrayList<>();
-        StringMatcherUtility.StringMatcher matcher =
-                StringMatcherUtility.StringMatcher.getInstance();
-
-        int total = apps.size();
-        UserManager userManager = UserManager.get(context);
-        for (int i = 0; i < total; i++) {
-            AppInfo info = apps.get(i);
-            if (userManager.isQuietModeEnabled(info.user)) {
-                continue;
-            }
-            if (StringMatcherUtility.matches(queryTextLower, info.title.toString(), matcher)) {
-                result.add(AdapterItem.asApp(info));
-            }
-        }
-        return result;
-    }
 }
@@ -18,7 +18,10 @@ package com.android.launcher3.celllayout;
 import android.graphics.Rect;
 import android.view.View;
 
+import androidx.annotation.Nullable;
+
 import com.android.launcher3.CellLayout;
+import com.android.launcher3.celllayout.ReorderSolutionCache.Rearrangement;
 import com.android.launcher3.util.CellAndSpan;
 import com.android.launcher3.util.GridOccupancy;
 
@@ -37,6 +40,10 @@ public class ReorderAlgorithm {
 
     CellLayout mCellLayout;
 
+    // Time after which the search of a reorder solution stops, see calculateReorder
+    private long mDeadlineNanos = Long.MAX_VALUE;
+    private boolean mTimedOut;
+
     public ReorderAlgorithm(CellLayout cellLayout) {
         mCellLayout = cellLayout;
     }
@@ -73,6 +80,13 @@ public class ReorderAlgorithm {
      */
     public ItemConfiguration findReorderSolution(ReorderParameters reorderParameters,
             int[] direction, boolean decX) {
+        mTimedOut = false;
+        // The cached rearrangements are checked against the positions the search starts from,
+        // before the attempts of the search change them
+        ItemConfiguration state = new ItemConfiguration();
+        mCellLayout.copyCurrentStateToSolution(state);
+        mCellLayout.getReorderSolutionCache().validate(
+                state, mCellLayout.getOccupied(), reorderParameters.getDragView());
         return findReorderSolutionRecursive(reorderParameters.getPixelX(),
                 reorderParameters.getPixelY(), reorderParameters.getMinSpanX(),
                 reorderParameters.getMinSpanY(), reorderParameters.getSpanX(),
@@ -94,11 +108,27 @@ public class ReorderAlgorithm {
         int[] result = new int[2];
         result = mCellLayout.findNearestAreaIgnoreOccupied(pixelX, pixelY, spanX, spanY, result);
 
-        boolean success;
         // First we try the exact nearest position of the item being dragged,
         // we will then want to try to move this around to other neighbouring positions
-        success = rearrangementExists(result[0], result[1], spanX, spanY, direction, dragView,
-                solution);
+        boolean success = cachedRearrangementExists(result[0], result[1], spanX, spanY, direction,
+                dragView, solution);
+
+        if (mTimedOut) {
+            // Use the last solution found from the same positions, which is likely the one
+            // previewed for the previous drag over event
+            Rearrangement lastFound = mCellLayout.getReorderSolutionCache().getLastFound();
+            if (lastFound == null) {
+                solution.isSolution = false;
+                return solution;
+            }
+            lastFound.applyTo(solution, direction);
+            solution.isSolution = true;
+            solution.cellX = lastFound.cellX;
+            solution.cellY = lastFound.cellY;
+            solution.spanX = lastFound.spanX;
+            solution.spanY = lastFound.spanY;
+            return solution;
+        }
 
         if (!success) {
             // We try shrinking the widget down to size in an alternating pattern, shrink 1 in
@@ -121,10 +151,52 @@ public class ReorderAlgorithm {
         return solution;
     }
 
+    /**
+     * Same as {@link #rearrangementExists}, reusing the result of a previous search from the same
+     * positions of the items if there is one.
+     */
+    private boolean cachedRearrangementExists(int cellX, int cellY, int spanX, int spanY,
+            int[] direction, View dragView, ItemConfiguration solution) {
+        // Return early if get invalid cell positions
+        if (cellX < 0 || cellY < 0) return false;
+
+        ReorderSolutionCache cache = mCellLayout.getReorderSolutionCache();
+        Rearrangement cached = cache.get(cellX, cellY, spanX, spanY, direction);
+        if (cached != null) {
+            cached.applyTo(solution, direction);
+            return cached.success;
+        }
+
+        int[] initialDirection = direction.clone();
+        boolean success = rearrangementExists(cellX, cellY, spanX, spanY, direction, dragView,
+                solution);
+        // A search which ran out of time may have missed a solution
+        if (!mTimedOut) {
+            cache.put(cellX, cellY, spanX, spanY, initialDirection, direction, solution, success);
+        }
+        return success;
+    }
+
+    /**
+     * Returns whether the last search ran out of time, its solution being the last one found
+     * instead of one for the requested cells.
+     */
+    public boolean hasTimedOut() {
+        return mTimedOut;
+    }
+
+    private boolean isOutOfTime() {
+        if (!mTimedOut && System.nanoTime() > mDeadlineNanos) {
+            mTimedOut = true;
+        }
+        return mTimedOut;
+    }
+
     private boolean rearrangementExists(int cellX, int cellY, int spanX, int spanY, int[] direction,
             View ignoreView, ItemConfiguration solution) {
         // Return early if get invalid cell positions
         if (cellX < 0 || cellY < 0) return false;
+        if (isOutOfTime()) return false;
 
         ArrayList<View> intersectingViews = new ArrayList<>();
         Rect occupiedRect = new Rect(cellX, cellY, cellX + spanX, cellY + spanY);
@@ -173,6 +245,7 @@ public class ReorderAlgorithm {
         }
 
         // Next we try moving the views as a block, but without requiring the push mechanic.
+        if (isOutOfTime()) return false;
         if (addViewsToTempLocation(intersectingViews, occupiedRect, direction, ignoreView,
                 solution)) {
             return true;
@@ -180,7 +253,7 @@ public class ReorderAlgorithm {
 
         // Ok, they couldn't move as a block, let's move them individually
         for (View v : intersectingViews) {
-            if (!addViewToTempLocation(v, occupiedRect, direction, solution)) {
+            if (isOutOfTime() || !addViewToTempLocation(v, occupiedRect, direction, solution)) {
                 return false;
             }
         }
@@ -195,7 +268,7 @@ public class ReorderAlgorithm {
         mCellLayout.mTmpOccupied.markCells(rectOccupiedByPotentialDrop, true);
 
         int[] tmpLocation = findNearestArea(c.cellX, c.cellY, c.spanX, c.spanY, direction,
-                mCellLayout.mTmpOccupied.cells, null, new int[2]);
+                mCellLayout.mTmpOccupied, null, new int[2]);
 
         if (tmpLocation[0] >= 0 && tmpLocation[1] >= 0) {
             c.cellX = tmpLocation[0];
@@ -378,7 +451,7 @@ public class ReorderAlgorithm {
 
         int[] tmpLocation = findNearestArea(boundingRect.left, boundingRect.top,
                 boundingRect.width(), boundingRect.height(), direction,
-                mCellLayout.mTmpOccupied.cells, blockOccupied.cells, new int[2]);
+                mCellLayout.mTmpOccupied, blockOccupied, new int[2]);
 
         // If we successfully found a location by pushing the block of views, we commit it
         if (tmpLocation[0] >= 0 && tmpLocation[1] >= 0) {
@@ -474,9 +547,27 @@ public class ReorderAlgorithm {
      * the workspace to make space for the new item, this function return a solution for that
      * reorder.
      *
+     * <p>The search for a solution which pushes the items in the way stops after
+     * {@param timeBudgetNanos}, falling back to the last solution found from the same positions of
+     * the items, so that the drag over events do not drop frames. As that solution may be for
+     * other cells, this is only meant for the preview of the reorder, see {@link #hasTimedOut}.
+     *
      * @return returns a solution for the given parameters, the solution contains all the icons and
      * the locations they should be in the given solution.
      */
+    public ItemConfiguration calculateReorder(ReorderParameters reorderParameters,
+            long timeBudgetNanos) {
+        mDeadlineNanos = System.nanoTime() + timeBudgetNanos;
+        try {
+            return calculateReorder(reorderParameters);
+        } finally {
+            mDeadlineNanos = Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Same as {@link #calculateReorder(ReorderParameters, long)} without time limit.
+     */
     public ItemConfiguration calculateReorder(ReorderParameters reorderParameters) {
         getDirectionVectorForDrop(reorderParameters, mCellLayout.mDirectionVector);
 
@@ -588,10 +679,10 @@ public class ReorderAlgorithm {
      * @param spanX         Horizontal span of the object.
      * @param spanY         Vertical span of the object.
      * @param direction     The favored direction in which the views should move from x, y
-     * @param occupied      The array which represents which cells in the CellLayout are occupied
-     * @param blockOccupied The array which represents which cells in the specified block (cellX,
-     *                      cellY, spanX, spanY) are occupied. This is used when try to move a group
-     *                      of views.
+     * @param occupied      The occupancy of the cells in the CellLayout
+     * @param blockOccupied The occupancy of the cells in the specified block (cellX, cellY, spanX,
+     *                      spanY), or null if the block is fully occupied. This is used when try
+     *                      to move a group of views.
      * @param result        Array in which to place the result, or null (in which case a new array
      *                      will
      *                      be allocated)
@@ -599,7 +690,7 @@ public class ReorderAlgorithm {
      * nearest the requested location.
      */
     public int[] findNearestArea(int cellX, int cellY, int spanX, int spanY, int[] direction,
-            boolean[][] occupied, boolean[][] blockOccupied, int[] result) {
+            GridOccupancy occupied, @Nullable GridOccupancy blockOccupied, int[] result) {
         // Keep track of best-scoring drop area
         final int[] bestXY = result != null ? result : new int[2];
         float bestDistance = Float.MAX_VALUE;
@@ -609,16 +700,11 @@ public class ReorderAlgorithm {
         final int countY = mCellLayout.getCountY();
 
         for (int y = 0; y < countY - (spanY - 1); y++) {
-            inner:
             for (int x = 0; x < countX - (spanX - 1); x++) {
                 // First, let's see if this thing fits anywhere
-                for (int i = 0; i < spanX; i++) {
-                    for (int j = 0; j < spanY; j++) {
-                        if (occupied[x + i][y + j] && (blockOccupied == null
-                                || blockOccupied[i][j])) {
-                            continue inner;
-                        }
-                    }
+                if (blockOccupied == null ? !occupied.isRegionVacant(x, y, spanX, spanY)
+                        : !occupied.isRegionVacant(x, y, blockOccupied)) {
+                    continue;
                 }
 
                 float distance = (float) Math.hypot(x - cellX, y - cellY);
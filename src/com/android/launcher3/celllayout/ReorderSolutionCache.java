@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.celllayout;
+
+import android.util.ArrayMap;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.util.CellAndSpan;
+import com.android.launcher3.util.GridOccupancy;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of the rearrangements tried by {@link ReorderAlgorithm} in a layout, so that consecutive
+ * drag over events which target the same cells do not search for a solution again.
+ *
+ * <p>The rearrangements are only valid for the positions of the items they were found from, the
+ * cache being cleared as soon as an item of the layout moves.
+ */
+public class ReorderSolutionCache {
+
+    private static final int MAX_SIZE = 32;
+
+    // Positions of the items and occupancy which the cached rearrangements start from
+    private final ArrayMap<View, CellAndSpan> mState = new ArrayMap<>();
+    @Nullable
+    private GridOccupancy mOccupied;
+    @Nullable
+    private View mDragView;
+
+    private final LinkedHashMap<Long, Rearrangement> mRearrangements =
+            new LinkedHashMap<>(MAX_SIZE, 0.75f, true /* accessOrder */) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Rearrangement> eldest) {
+                    return size() > MAX_SIZE;
+                }
+            };
+
+    // Last rearrangement which succeeded, used when a search runs out of time
+    @Nullable
+    private Rearrangement mLastFound;
+
+    /**
+     * Clears the cache if the items of the layout moved since the rearrangements were cached.
+     *
+     * @param state    the current positions of the items of the layout
+     * @param occupied the current occupancy of the layout
+     */
+    void validate(@NonNull ItemConfiguration state, @NonNull GridOccupancy occupied,
+            @Nullable View dragView) {
+        if (dragView == mDragView && occupied.equals(mOccupied) && hasState(state.map)) {
+            return;
+        }
+        clear();
+        state.map.forEach((view, cell) -> mState.put(view, copyOf(cell)));
+        mOccupied = occupied.copy();
+        mDragView = dragView;
+    }
+
+    private boolean hasState(ArrayMap<View, CellAndSpan> map) {
+        if (map.size() != mState.size()) {
+            return false;
+        }
+        for (int i = 0; i < map.size(); i++) {
+            CellAndSpan cached = mState.get(map.keyAt(i));
+            CellAndSpan cell = map.valueAt(i);
+            if (cached == null || cached.cellX != cell.cellX || cached.cellY != cell.cellY
+                    || cached.spanX != cell.spanX || cached.spanY != cell.spanY) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the rearrangement which was found for the item at the given cells, pushed in
+     * {@param direction}, or null if it is not cached.
+     */
+    @Nullable
+    Rearrangement get(int cellX, int cellY, int spanX, int spanY, int[] direction) {
+        return mRearrangements.get(key(cellX, cellY, spanX, spanY, direction));
+    }
+
+    /**
+     * Caches the result of placing the item at the given cells, {@param solution} and
+     * {@param direction} being the state after the search. {@param initialDirection} is the
+     * direction before the search, which may be changed by it.
+     */
+    void put(int cellX, int cellY, int spanX, int spanY, int[] initialDirection,
+            int[] direction, ItemConfiguration solution, boolean success) {
+        Rearrangement rearrangement = new Rearrangement(
+                cellX, cellY, spanX, spanY, direction, solution, success);
+        mRearrangements.put(key(cellX, cellY, spanX, spanY, initialDirection), rearrangement);
+        if (success) {
+            mLastFound = rearrangement;
+        }
+    }
+
+    /**
+     * Returns the last rearrangement which succeeded from the current positions of the items.
+     */
+    @Nullable
+    Rearrangement getLastFound() {
+        return mLastFound;
+    }
+
+    /**
+     * Clears the cache, releasing the items of the layout.
+     */
+    public void clear() {
+        mRearrangements.clear();
+        mLastFound = null;
+        mState.clear();
+        mOccupied = null;
+        mDragView = null;
+    }
+
+    private static long key(int cellX, int cellY, int spanX, int spanY, int[] direction) {
+        // Each position and span fits in 14 bits, and each direction component in 2 bits
+        return ((long) cellX << 50) | ((long) cellY << 36) | ((long) spanX << 22)
+                | ((long) spanY << 8) | ((direction[0] + 1L) << 2) | (direction[1] + 1L);
+    }
+
+    private static CellAndSpan copyOf(CellAndSpan cell) {
+        return new CellAndSpan(cell.cellX, cell.cellY, cell.spanX, cell.spanY);
+    }
+
+    /**
+     * Positions of the items after trying to place the dragged item at some cells.
+     */
+    static final class Rearrangement {
+
+        final int cellX;
+        final int cellY;
+        final int spanX;
+        final int spanY;
+        final boolean success;
+
+        private final int[] mDirection;
+        private final ArrayMap<View, CellAndSpan> mPositions = new ArrayMap<>();
+        private final ArrayList<View> mIntersectingViews;
+
+        private Rearrangement(int cellX, int cellY, int spanX, int spanY, int[] direction,
+                ItemConfiguration solution, boolean success) {
+            this.cellX = cellX;
+            this.cellY = cellY;
+            this.spanX = spanX;
+            this.spanY = spanY;
+            this.success = success;
+            mDirection = direction.clone();
+            solution.map.forEach((view, cell) -> mPositions.put(view, copyOf(cell)));
+            mIntersectingViews = new ArrayList<>(solution.intersectingViews);
+        }
+
+        /**
+         * Restores the positions of the items into {@param solution}, and the direction the
+         * search ended with into {@param direction}.
+         */
+        void applyTo(ItemConfiguration solution, int[] direction) {
+            for (int i = 0; i < mPositions.size(); i++) {
+                CellAndSpan cell = solution.map.get(mPositions.keyAt(i));
+                if (cell != null) {
+                    cell.copyFrom(mPositions.valueAt(i));
+                }
+            }
+            solution.intersectingViews = new ArrayList<>(mIntersectingViews);
+            direction[0] = mDirection[0];
+            direction[1] = mDirection[1];
+        }
+    }
+}
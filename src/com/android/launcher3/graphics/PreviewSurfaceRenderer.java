@@ -235,6 +235,8 @@ public class PreviewSurfaceRenderer {
 
     @WorkerThread
     private void loadModelData() {
+        // The preview reads the database directly, including the pending item updates
+        LauncherAppState.getInstance(mContext).getModel().getWriteJournal().flush();
         final Context inflationContext = getPreviewContext();
         final InvariantDeviceProfile idp = new InvariantDeviceProfile(inflationContext, mGridName);
         if (GridSizeMigrationUtil.needsToMigrate(inflationContext, idp)) {
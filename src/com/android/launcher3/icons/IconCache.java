@@ -49,6 +49,7 @@ import androidx.annotation.AnyThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
 import androidx.core.util.Pair;
 
 import com.android.launcher3.Flags;
@@ -57,6 +58,7 @@ import com.android.launcher3.Utilities;
 import com.android.launcher3.icons.cache.BaseIconCache;
 import com.android.launcher3.icons.cache.CachedObjectCachingLogic;
 import com.android.launcher3.icons.cache.CachingLogic;
+import com.android.launcher3.icons.cache.IconCacheUpdateHandler;
 import com.android.launcher3.icons.cache.LauncherActivityCachingLogic;
 import com.android.launcher3.logging.FileLog;
 import com.android.launcher3.model.data.AppInfo;
@@ -68,21 +70,30 @@ import com.android.launcher3.pm.InstallSessionHelper;
 import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.shortcuts.ShortcutKey;
 import com.android.launcher3.util.CancellableTask;
+import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.InstantAppResolver;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.widget.WidgetSections;
 import com.android.launcher3.widget.WidgetSections.WidgetSection;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 /**
  * Cache of application icons.  Icons can be made from any thread.
+ *
+ * <p>Resolved high-res activity entries are also published to a concurrent read-through map, so
+ * that lookups which hit the cache do not need to wait for the cache lock, which can be held for
+ * a long time by a miss resolving the activity over binder.
  */
 public class IconCache extends BaseIconCache {
 
@@ -104,9 +115,15 @@ public class IconCache extends BaseIconCache {
     private final UserCache mUserManager;
     private final InstantAppResolver mInstantAppResolver;
     private final CancellableTask mCancelledTask;
+    private final IconRequestQueue mIconRequestQueue;
 
     private final SparseArray<BitmapInfo> mWidgetCategoryBitmapInfos;
 
+    // Entries which can be served without holding the cache lock. Only entries which are already
+    // in the memory cache are published here, and they are removed whenever the memory cache for
+    // the corresponding package is changed.
+    private final Map<ComponentKey, CacheEntry> mLockFreeEntries = new ConcurrentHashMap<>();
+
     private int mPendingIconRequestCount = 0;
 
     public IconCache(Context context, InvariantDeviceProfile idp, String dbFileName,
@@ -124,6 +141,7 @@ public class IconCache extends BaseIconCache {
 
         mCancelledTask = new CancellableTask(() -> null, MAIN_EXECUTOR, c -> { });
         mCancelledTask.cancel();
+        mIconRequestQueue = new IconRequestQueue(this, mWorkerHandler);
     }
 
     @Override
@@ -161,6 +179,88 @@ public class IconCache extends BaseIconCache {
         }
     }
 
+    @Override
+    public synchronized void removeIconsForPkg(@NonNull final String packageName,
+            @NonNull final UserHandle user) {
+        invalidateLockFreeEntries(packageName, user);
+        super.removeIconsForPkg(packageName, user);
+    }
+
+    @Override
+    public synchronized void remove(@NonNull final ComponentName componentName,
+            @NonNull final UserHandle user) {
+        mLockFreeEntries.remove(new ComponentKey(componentName, user));
+        super.remove(componentName, user);
+    }
+
+    @Override
+    public synchronized void clearMemoryCache() {
+        mLockFreeEntries.clear();
+        super.clearMemoryCache();
+    }
+
+    @Override
+    public synchronized void updateIconParams(int iconDpi, int iconPixelSize) {
+        mLockFreeEntries.clear();
+        super.updateIconParams(iconDpi, iconPixelSize);
+        // The memory cache is reset on the worker thread, drop anything published in between.
+        mWorkerHandler.post(mLockFreeEntries::clear);
+    }
+
+    @NonNull
+    @Override
+    public IconCacheUpdateHandler getUpdateHandler() {
+        // The update handler can replace any entry in the memory cache
+        mLockFreeEntries.clear();
+        return super.getUpdateHandler();
+    }
+
+    /**
+     * Removes the entries for the provided packages from the lock-free read path, so that the
+     * next lookup goes through the memory cache. This should be called whenever the memory cache
+     * for those packages was changed outside of this class.
+     */
+    public void invalidateLockFreeEntries(@NonNull Collection<String> packageNames,
+            @NonNull UserHandle user) {
+        mLockFreeEntries.keySet().removeIf(key -> user.equals(key.user)
+                && packageNames.contains(key.componentName.getPackageName()));
+    }
+
+    private void invalidateLockFreeEntries(@NonNull String packageName,
+            @NonNull UserHandle user) {
+        invalidateLockFreeEntries(Collections.singleton(packageName), user);
+    }
+
+    /**
+     * Applies an entry from the lock-free read path to {@param info} if present.
+     *
+     * @return true if an entry was applied.
+     */
+    private boolean applyLockFreeEntry(@NonNull ItemInfoWithIcon info,
+            @Nullable ComponentName cn) {
+        if (cn == null) {
+            return false;
+        }
+        CacheEntry entry = mLockFreeEntries.get(new ComponentKey(cn, info.user));
+        if (entry == null) {
+            return false;
+        }
+        applyCacheEntry(entry, info);
+        return true;
+    }
+
+    /**
+     * Publishes an entry resolved under the cache lock to the lock-free read path. Only high-res,
+     * non-default entries are published, as they can serve both high-res and low-res requests.
+     */
+    private void publishLockFreeEntry(@NonNull ComponentName cn, @NonNull UserHandle user,
+            @NonNull CacheEntry entry) {
+        if (entry.bitmap != null && !entry.bitmap.isNullOrLowRes()
+                && !isDefaultIcon(entry.bitmap, user)) {
+            mLockFreeEntries.put(new ComponentKey(cn, user), entry);
+        }
+    }
+
     /**
      * Closes the cache DB. This will clear any in-memory cache.
      */
@@ -172,25 +272,16 @@ public class IconCache extends BaseIconCache {
     }
 
     /**
-     * Fetches high-res icon for the provided ItemInfo and updates the caller when done.
+     * Fetches high-res icon for the provided ItemInfo and updates the caller when done. Requests
+     * made close together are resolved and delivered in a single batch.
      *
      * @return a request ID that can be used to cancel the request.
      */
     @AnyThread
     public CancellableTask updateIconInBackground(final ItemInfoUpdateReceiver caller,
             final ItemInfoWithIcon info) {
-        Supplier<ItemInfoWithIcon> task;
-        if (info instanceof AppInfo || info instanceof WorkspaceItemInfo) {
-            task = () -> {
-                getTitleAndIcon(info, false);
-                return info;
-            };
-        } else if (info instanceof PackageItemInfo pii) {
-            task = () -> {
-                getTitleAndIconForApp(pii, false);
-                return pii;
-            };
-        } else {
+        if (!(info instanceof AppInfo || info instanceof WorkspaceItemInfo
+                || info instanceof PackageItemInfo)) {
             Log.i(TAG, "Icon update not supported for "
                     + info == null ? "null" : info.getClass().getName());
             return mCancelledTask;
@@ -207,10 +298,71 @@ public class IconCache extends BaseIconCache {
             endRunnable = () -> { };
         }
 
-        CancellableTask<ItemInfoWithIcon> request = new CancellableTask<>(
-                task, MAIN_EXECUTOR, caller::reapplyItemInfo, endRunnable);
-        Utilities.postAsyncCallback(mWorkerHandler, request);
-        return request;
+        return mIconRequestQueue.enqueue(caller, info, endRunnable);
+    }
+
+    /**
+     * Loads the high-res icon and title for all the provided items. Items which are not already
+     * in memory are looked up with a single query per user, and only the ones missing from the
+     * database are resolved individually.
+     */
+    @WorkerThread
+    synchronized void getHighResTitlesAndIcons(List<ItemInfoWithIcon> infos) {
+        Map<UserHandle, List<IconRequestInfo<ItemInfoWithIcon>>> bulkRequests = new HashMap<>();
+        List<ItemInfoWithIcon> individualRequests = new ArrayList<>();
+        for (ItemInfoWithIcon info : infos) {
+            ComponentName cn = info.getTargetComponent();
+            if (info instanceof PackageItemInfo || cn == null || info.isArchived()
+                    || info.itemType == ITEM_TYPE_DEEP_SHORTCUT) {
+                individualRequests.add(info);
+            } else if (!applyLockFreeEntry(info, cn)) {
+                bulkRequests.computeIfAbsent(info.user, u -> new ArrayList<>())
+                        .add(new IconRequestInfo<>(info, null, false /* useLowResIcon */));
+            }
+        }
+
+        bulkRequests.forEach((user, requests) -> {
+            Map<ComponentName, List<ItemInfoWithIcon>> itemsByComponent = requests.stream()
+                    .map(r -> r.itemInfo)
+                    .collect(groupingBy(ItemInfoWithIcon::getTargetComponent));
+            Trace.beginSection("loadHighResIconsInBulk");
+            try (Cursor c = createBulkQueryCursor(requests, user, false /* useLowResIcons */)) {
+                int componentNameColumnIndex = c.getColumnIndexOrThrow(IconDB.COLUMN_COMPONENT);
+                while (c.moveToNext()) {
+                    ComponentName cn = ComponentName.unflattenFromString(
+                            c.getString(componentNameColumnIndex));
+                    List<ItemInfoWithIcon> items = cn == null ? null : itemsByComponent.get(cn);
+                    if (items == null) {
+                        continue;
+                    }
+                    Intent intent = items.get(0).getIntent();
+                    CacheEntry entry = cacheLocked(cn, user,
+                            () -> mLauncherApps.resolveActivity(intent, user),
+                            mLauncherActivityInfoCachingLogic, c,
+                            false /* usePackageIcon */, false /* useLowResIcon */);
+                    if (entry.bitmap == null || entry.bitmap.isNullOrLowRes()) {
+                        continue;
+                    }
+                    items.forEach(item -> applyCacheEntry(entry, item));
+                    publishLockFreeEntry(cn, user, entry);
+                    itemsByComponent.remove(cn);
+                }
+            } catch (SQLiteException e) {
+                Log.d(TAG, "Error reading icon cache", e);
+            } finally {
+                Trace.endSection();
+            }
+            // Anything not found in the database is resolved individually
+            itemsByComponent.values().forEach(individualRequests::addAll);
+        });
+
+        for (ItemInfoWithIcon info : individualRequests) {
+            if (info instanceof PackageItemInfo pii) {
+                getTitleAndIconForApp(pii, false);
+            } else {
+                getTitleAndIcon(info, false);
+            }
+        }
     }
 
     private void onIconRequestEnd() {
@@ -323,17 +475,23 @@ public class IconCache extends BaseIconCache {
      * Fill in {@param info} with the icon and label. If the
      * corresponding activity is not found, it reverts to the package icon.
      */
-    public synchronized void getTitleAndIcon(ItemInfoWithIcon info, boolean useLowResIcon) {
-        // null info means not installed, but if we have a component from the intent then
-        // we should still look in the cache for restored app icons.
-        if (info.getTargetComponent() == null) {
-            info.bitmap = getDefaultIcon(info.user);
-            info.title = "";
-            info.contentDescription = "";
-        } else {
-            Intent intent = info.getIntent();
-            getTitleAndIcon(info, () -> mLauncherApps.resolveActivity(intent, info.user),
-                    true, useLowResIcon, info.isArchived());
+    public void getTitleAndIcon(ItemInfoWithIcon info, boolean useLowResIcon) {
+        ComponentName cn = info.getTargetComponent();
+        if (!info.isArchived() && applyLockFreeEntry(info, cn)) {
+            return;
+        }
+        synchronized (this) {
+            // null info means not installed, but if we have a component from the intent then
+            // we should still look in the cache for restored app icons.
+            if (cn == null) {
+                info.bitmap = getDefaultIcon(info.user);
+                info.title = "";
+                info.contentDescription = "";
+            } else {
+                Intent intent = info.getIntent();
+                getTitleAndIcon(info, () -> mLauncherApps.resolveActivity(intent, info.user),
+                        true, useLowResIcon, info.isArchived());
+            }
         }
     }
 
@@ -350,14 +508,22 @@ public class IconCache extends BaseIconCache {
     /**
      * Fill in {@param mWorkspaceItemInfo} with the icon and label for {@param info}
      */
-    public synchronized void getTitleAndIcon(
+    public void getTitleAndIcon(
             @NonNull ItemInfoWithIcon infoInOut,
             @NonNull Supplier<LauncherActivityInfo> activityInfoProvider,
             boolean usePkgIcon, boolean useLowResIcon) {
-        CacheEntry entry = cacheLocked(infoInOut.getTargetComponent(), infoInOut.user,
-                activityInfoProvider, mLauncherActivityInfoCachingLogic, usePkgIcon,
-                useLowResIcon);
-        applyCacheEntry(entry, infoInOut);
+        ComponentName cn = infoInOut.getTargetComponent();
+        if (applyLockFreeEntry(infoInOut, cn)) {
+            return;
+        }
+        synchronized (this) {
+            CacheEntry entry = cacheLocked(cn, infoInOut.user, activityInfoProvider,
+                    mLauncherActivityInfoCachingLogic, usePkgIcon, useLowResIcon);
+            applyCacheEntry(entry, infoInOut);
+            if (cn != null) {
+                publishLockFreeEntry(cn, infoInOut.user, entry);
+            }
+        }
     }
 
     /**
@@ -367,9 +533,9 @@ public class IconCache extends BaseIconCache {
             @NonNull ItemInfoWithIcon infoInOut,
             @NonNull Supplier<LauncherActivityInfo> activityInfoProvider,
             boolean usePkgIcon, boolean useLowResIcon, boolean preferPackageEntry) {
-        CacheEntry entry = cacheLocked(infoInOut.getTargetComponent(), infoInOut.user,
-                activityInfoProvider, mLauncherActivityInfoCachingLogic, usePkgIcon,
-                useLowResIcon);
+        ComponentName cn = infoInOut.getTargetComponent();
+        CacheEntry entry = cacheLocked(cn, infoInOut.user, activityInfoProvider,
+                mLauncherActivityInfoCachingLogic, usePkgIcon, useLowResIcon);
         if (preferPackageEntry) {
             String packageName = infoInOut.getTargetPackage();
             CacheEntry packageEntry = cacheLocked(
@@ -381,6 +547,9 @@ public class IconCache extends BaseIconCache {
                 || infoInOut.bitmap.isNullOrLowRes()) {
             // Only use cache entry if it will not downgrade the current bitmap in infoInOut
             applyCacheEntry(entry, infoInOut);
+            if (cn != null) {
+                publishLockFreeEntry(cn, infoInOut.user, entry);
+            }
         } else {
             Log.d(TAG, "getTitleAndIcon: Cache entry bitmap was a downgrade of existing bitmap"
                     + " in ItemInfo. Skipping.");
@@ -630,6 +799,7 @@ public class IconCache extends BaseIconCache {
     }
 
     public void updateSessionCache(PackageUserKey key, PackageInstaller.SessionInfo info) {
+        invalidateLockFreeEntries(key.mPackageName, key.mUser);
         cachePackageInstallInfo(key.mPackageName, key.mUser, info.getAppIcon(),
                 info.getAppLabel());
     }
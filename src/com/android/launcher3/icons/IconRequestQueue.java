@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.icons;
+
+import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Trace;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.icons.IconCache.ItemInfoUpdateReceiver;
+import com.android.launcher3.model.data.ItemInfoWithIcon;
+import com.android.launcher3.util.CancellableTask;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Coalesces high-res icon requests made through {@link IconCache#updateIconInBackground}.
+ *
+ * <p>Requests made within a frame are resolved together on the worker thread, using a single
+ * database query for the entries which are not already in memory, and the results are delivered
+ * to the main thread in a single message.
+ */
+class IconRequestQueue {
+
+    /** Time to wait for more requests before resolving the pending ones. */
+    private static final long BATCH_WINDOW_MS = 16;
+
+    private final IconCache mIconCache;
+    private final Handler mWorkerHandler;
+    private final Executor mCallbackExecutor = this::executeCallback;
+
+    private final Object mLock = new Object();
+    // Guarded by mLock
+    private ArrayList<PendingRequest> mPendingRequests = new ArrayList<>();
+    // Guarded by mLock
+    private boolean mFlushScheduled = false;
+
+    // Callbacks collected while a batch is being delivered, only accessed on the worker thread.
+    private ArrayList<Runnable> mBatchCallbacks;
+
+    IconRequestQueue(IconCache iconCache, Handler workerHandler) {
+        mIconCache = iconCache;
+        mWorkerHandler = workerHandler;
+    }
+
+    /**
+     * Adds a request to load the high-res icon for {@param info}, and returns a task which can
+     * be used to cancel the request.
+     */
+    @AnyThread
+    CancellableTask<ItemInfoWithIcon> enqueue(@NonNull ItemInfoUpdateReceiver caller,
+            @NonNull ItemInfoWithIcon info, @NonNull Runnable endRunnable) {
+        // The icon is already loaded when the task runs, it only delivers the result.
+        CancellableTask<ItemInfoWithIcon> task = new CancellableTask<>(
+                () -> info, mCallbackExecutor, caller::reapplyItemInfo, endRunnable);
+        synchronized (mLock) {
+            mPendingRequests.add(new PendingRequest(task, info));
+            if (!mFlushScheduled) {
+                mFlushScheduled = true;
+                Message msg = Message.obtain(mWorkerHandler, this::flush);
+                msg.setAsynchronous(true);
+                mWorkerHandler.sendMessageDelayed(msg, BATCH_WINDOW_MS);
+            }
+        }
+        return task;
+    }
+
+    @WorkerThread
+    private void flush() {
+        ArrayList<PendingRequest> requests;
+        synchronized (mLock) {
+            requests = mPendingRequests;
+            mPendingRequests = new ArrayList<>();
+            mFlushScheduled = false;
+        }
+
+        Trace.beginSection("IconRequestQueue.flush");
+        try {
+            // The same item can be requested multiple times, eg when a view is rebound
+            Map<ItemInfoWithIcon, Boolean> items = new IdentityHashMap<>();
+            for (PendingRequest request : requests) {
+                if (!request.task.getCanceled()) {
+                    items.put(request.info, Boolean.TRUE);
+                }
+            }
+            if (!items.isEmpty()) {
+                mIconCache.getHighResTitlesAndIcons(new ArrayList<>(items.keySet()));
+            }
+
+            ArrayList<Runnable> callbacks = new ArrayList<>(requests.size());
+            mBatchCallbacks = callbacks;
+            try {
+                for (PendingRequest request : requests) {
+                    // Queues the result for delivery, this is a no-op for cancelled requests
+                    request.task.run();
+                }
+            } finally {
+                mBatchCallbacks = null;
+            }
+            if (!callbacks.isEmpty()) {
+                MAIN_EXECUTOR.execute(() -> callbacks.forEach(Runnable::run));
+            }
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    private void executeCallback(Runnable callback) {
+        List<Runnable> batchCallbacks = Looper.myLooper() == mWorkerHandler.getLooper()
+                ? mBatchCallbacks : null;
+        if (batchCallbacks != null) {
+            batchCallbacks.add(callback);
+        } else {
+            MAIN_EXECUTOR.execute(callback);
+        }
+    }
+
+    private record PendingRequest(CancellableTask<ItemInfoWithIcon> task,
+            ItemInfoWithIcon info) { }
+}
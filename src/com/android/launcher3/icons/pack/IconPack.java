@@ -1,6 +1,7 @@
 package com.android.launcher3.icons.pack;
 
 import android.content.ComponentName;
+import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.content.res.Resources;
@@ -40,22 +41,15 @@ class IconPack {
         return mPackageLabel;
     }
 
-    Data getData(PackageManager pm)
+    Data getData(Context context)
             throws PackageManager.NameNotFoundException, XmlPullParserException, IOException {
         if (mData == null) {
-            mData = IconPackParser.parsePackage(pm, getResources(pm), getPackage());
+            PackageManager pm = context.getPackageManager();
+            mData = IconPackIndex.load(context, pm, getResources(pm), getPackage());
         }
         return mData;
     }
 
-    int getDrawableId(PackageManager pm, ComponentName name)
-            throws PackageManager.NameNotFoundException, IOException, XmlPullParserException {
-        Data data = getData(pm);
-        Resources res = getResources(pm);
-        String pkg = getPackage();
-        return res.getIdentifier(data.drawables.get(name), "drawable", pkg);
-    }
-
     private Resources getResources(PackageManager pm) throws PackageManager.NameNotFoundException {
         if (mRes == null) {
             mRes = pm.getResourcesForApplication(getPackage());
@@ -64,7 +58,8 @@ class IconPack {
     }
 
     static class Data {
-        final Map<ComponentName, String> drawables = new HashMap<>();
+        // Maps components to drawable ids, backed by the memory-mapped index of the pack.
+        IconPackIndex drawables;
         final Map<ComponentName, String> calendarPrefix = new HashMap<>();
         final SparseArray<Clock> clockMetadata = new SparseArray<>();
         final List<Integer> iconBacks = new ArrayList<>();
@@ -0,0 +1,305 @@
+package com.android.launcher3.icons.pack;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary index of an icon pack's appfilter, mapping components directly to resolved
+ * drawable ids.
+ *
+ * The index is built once per version of the icon pack and stored on disk, so that other
+ * processes and later launches only need to memory-map it instead of parsing the XML and
+ * resolving every drawable name through {@link Resources#getIdentifier}.
+ *
+ * File layout (big endian):
+ * <pre>
+ *   header:    magic, format version, pack versionCode, pack lastUpdateTime
+ *   metadata:  scale, back/mask/upon drawable ids, clocks, calendar prefixes
+ *   entries:   count, then (component hash, pool offset, drawable id) sorted by hash
+ *   pool:      size, then length-prefixed UTF-8 flattened component names
+ * </pre>
+ */
+class IconPackIndex {
+    private static final String TAG = "IconPackIndex";
+
+    private static final String INDEX_DIR = "icon_pack_index";
+    private static final int MAGIC = 0x49435049; // ICPI
+    private static final int FORMAT_VERSION = 1;
+    private static final int ENTRY_SIZE = 12;
+
+    private final ByteBuffer mEntries;
+    private final int mEntryCount;
+    private final ByteBuffer mPool;
+
+    private IconPackIndex(ByteBuffer entries, int entryCount, ByteBuffer pool) {
+        mEntries = entries;
+        mEntryCount = entryCount;
+        mPool = pool;
+    }
+
+    boolean contains(ComponentName name) {
+        return getDrawableId(name) != 0;
+    }
+
+    /**
+     * Returns the drawable id for the component, or 0 if the pack has no icon for it.
+     */
+    int getDrawableId(ComponentName name) {
+        byte[] key = name.flattenToString().getBytes(StandardCharsets.UTF_8);
+        int hash = hash(key);
+
+        // Find the first entry with this hash, then check all entries sharing it.
+        int low = 0;
+        int high = mEntryCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mEntries.getInt(mid * ENTRY_SIZE) < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < mEntryCount && mEntries.getInt(i * ENTRY_SIZE) == hash; i++) {
+            if (poolEquals(mEntries.getInt(i * ENTRY_SIZE + 4), key)) {
+                return mEntries.getInt(i * ENTRY_SIZE + 8);
+            }
+        }
+        return 0;
+    }
+
+    private boolean poolEquals(int offset, byte[] key) {
+        int length = mPool.getShort(offset) & 0xFFFF;
+        if (length != key.length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (mPool.get(offset + 2 + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] bytes) {
+        int hash = 1;
+        for (byte b : bytes) {
+            hash = 31 * hash + b;
+        }
+        return hash;
+    }
+
+    /**
+     * Loads the data of the provided pack from its index, building and persisting the index if
+     * there is no valid one for the current version of the pack.
+     */
+    static IconPack.Data load(Context context, PackageManager pm, Resources res, String pkg)
+            throws PackageManager.NameNotFoundException, XmlPullParserException, IOException {
+        PackageInfo info = pm.getPackageInfo(pkg, 0);
+        long versionCode = info.getLongVersionCode();
+        File file = getFile(context, pkg);
+
+        if (file.exists()) {
+            try {
+                IconPack.Data data = read(file, versionCode, info.lastUpdateTime);
+                if (data != null) {
+                    return data;
+                }
+            } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException e) {
+                Log.w(TAG, "Invalid index for " + pkg + ", rebuilding", e);
+            }
+        }
+
+        Map<ComponentName, String> drawableNames = new HashMap<>();
+        IconPack.Data parsed = IconPackParser.parsePackage(pm, res, pkg, drawableNames);
+        write(new AtomicFile(file), versionCode, info.lastUpdateTime, res, pkg, parsed,
+                drawableNames);
+        IconPack.Data data = read(file, versionCode, info.lastUpdateTime);
+        if (data == null) {
+            throw new IOException("Unable to read index for " + pkg);
+        }
+        return data;
+    }
+
+    /**
+     * Removes the persisted index for the provided package, if any.
+     */
+    static void invalidate(Context context, String pkg) {
+        File file = getFile(context, pkg);
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Unable to delete index for " + pkg);
+        }
+    }
+
+    private static File getFile(Context context, String pkg) {
+        File dir = new File(context.getCacheDir(), INDEX_DIR);
+        dir.mkdirs();
+        return new File(dir, pkg + ".idx");
+    }
+
+    /**
+     * Memory-maps the index file and reads the pack metadata.
+     *
+     * @return the pack data, or null if the file was created for another version of the pack.
+     */
+    private static IconPack.Data read(File file, long versionCode, long lastUpdateTime)
+            throws IOException {
+        ByteBuffer buffer;
+        try (FileInputStream in = new FileInputStream(file);
+                FileChannel channel = in.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION
+                || buffer.getLong() != versionCode || buffer.getLong() != lastUpdateTime) {
+            return null;
+        }
+
+        IconPack.Data data = new IconPack.Data();
+        data.scale = buffer.getFloat();
+        readIds(buffer, data.iconBacks);
+        readIds(buffer, data.iconMasks);
+        readIds(buffer, data.iconUpons);
+        int clockCount = buffer.getInt();
+        for (int i = 0; i < clockCount; i++) {
+            data.clockMetadata.put(buffer.getInt(), new IconPack.Clock(buffer.getInt(),
+                    buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt(),
+                    buffer.getInt()));
+        }
+        int calendarCount = buffer.getInt();
+        for (int i = 0; i < calendarCount; i++) {
+            ComponentName cn = ComponentName.unflattenFromString(readString(buffer));
+            String prefix = readString(buffer);
+            if (cn != null) {
+                data.calendarPrefix.put(cn, prefix);
+            }
+        }
+
+        int entryCount = buffer.getInt();
+        ByteBuffer entries = slice(buffer, entryCount * ENTRY_SIZE);
+        int poolSize = buffer.getInt();
+        ByteBuffer pool = slice(buffer, poolSize);
+        data.drawables = new IconPackIndex(entries, entryCount, pool);
+        return data;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int length) {
+        ByteBuffer slice = buffer.slice();
+        slice.limit(length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+
+    private static void readIds(ByteBuffer buffer, List<Integer> out) {
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            out.add(buffer.getInt());
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void write(AtomicFile file, long versionCode, long lastUpdateTime,
+            Resources res, String pkg, IconPack.Data data, Map<ComponentName, String> drawables)
+            throws IOException {
+        // Resolve each drawable name once, as many components usually share the same drawable.
+        Map<String, Integer> resolvedIds = new HashMap<>();
+        List<long[]> entries = new ArrayList<>(drawables.size());
+        ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+        DataOutputStream pool = new DataOutputStream(poolBytes);
+        for (Map.Entry<ComponentName, String> entry : drawables.entrySet()) {
+            int drawableId = resolvedIds.computeIfAbsent(entry.getValue(),
+                    name -> res.getIdentifier(name, "drawable", pkg));
+            if (drawableId == 0) {
+                continue;
+            }
+            byte[] key = entry.getKey().flattenToString().getBytes(StandardCharsets.UTF_8);
+            entries.add(new long[] {hash(key), pool.size(), drawableId});
+            pool.writeShort(key.length);
+            pool.write(key);
+        }
+        Collections.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+
+        FileOutputStream fos = file.startWrite();
+        try {
+            DataOutputStream out = new DataOutputStream(fos);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(versionCode);
+            out.writeLong(lastUpdateTime);
+
+            out.writeFloat(data.scale);
+            writeIds(out, data.iconBacks);
+            writeIds(out, data.iconMasks);
+            writeIds(out, data.iconUpons);
+            out.writeInt(data.clockMetadata.size());
+            for (int i = 0; i < data.clockMetadata.size(); i++) {
+                IconPack.Clock clock = data.clockMetadata.valueAt(i);
+                out.writeInt(data.clockMetadata.keyAt(i));
+                out.writeInt(clock.hourLayerIndex);
+                out.writeInt(clock.minuteLayerIndex);
+                out.writeInt(clock.secondLayerIndex);
+                out.writeInt(clock.defaultHour);
+                out.writeInt(clock.defaultMinute);
+                out.writeInt(clock.defaultSecond);
+            }
+            out.writeInt(data.calendarPrefix.size());
+            for (Map.Entry<ComponentName, String> entry : data.calendarPrefix.entrySet()) {
+                writeString(out, entry.getKey().flattenToString());
+                writeString(out, entry.getValue());
+            }
+
+            out.writeInt(entries.size());
+            for (long[] entry : entries) {
+                out.writeInt((int) entry[0]);
+                out.writeInt((int) entry[1]);
+                out.writeInt((int) entry[2]);
+            }
+            out.writeInt(pool.size());
+            poolBytes.writeTo(out);
+            out.flush();
+            file.finishWrite(fos);
+        } catch (IOException e) {
+            file.failWrite(fos);
+            throw e;
+        }
+    }
+
+    private static void writeIds(DataOutputStream out, List<Integer> ids) throws IOException {
+        out.writeInt(ids.size());
+        for (int id : ids) {
+            out.writeInt(id);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+}
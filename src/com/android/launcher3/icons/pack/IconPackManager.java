@@ -88,8 +88,11 @@ public class IconPackManager extends BroadcastReceiver {
                 // either through the global setting or with an override.
                 Set<ComponentKey> updateKeys = appReloader.withIconPack(pkg);
 
-                // Remove the changed package from the providers to reload the application info.
+                // Remove the changed package from the providers to reload the application info,
+                // and drop its index so that it is rebuilt for the new version.
                 mProviders.remove(pkg);
+                IconPackIndex.invalidate(mContext, pkg);
+                IconResolverMasked.clearLayerCache(pkg);
 
                 // This can reset the global preference, so do this after creating the list.
                 reloadProviders();
@@ -153,8 +156,8 @@ public class IconPackManager extends BroadcastReceiver {
     public boolean packContainsActivity(String packPackage, ComponentName componentName) {
         try {
             IconPack pack = mProviders.get(packPackage);
-            IconPack.Data data = pack.getData(mContext.getPackageManager());
-            return data.drawables.containsKey(componentName);
+            IconPack.Data data = pack.getData(mContext);
+            return data.drawables.contains(componentName);
         } catch (PackageManager.NameNotFoundException | XmlPullParserException | IOException ignored) {
             return false;
         }
@@ -173,15 +176,13 @@ public class IconPackManager extends BroadcastReceiver {
             // The icon provider package is available.
             try {
                 IconPack pack = mProviders.get(packPackage);
-                IconPack.Data data = pack.getData(mContext.getPackageManager());
-                if (data.drawables.containsKey(key.componentName)) {
-                    int drawableId = pack.getDrawableId(mContext.getPackageManager(), key.componentName);
-                    if (drawableId != 0) {
-                        return new IconResolverExternal(mContext.getPackageManager(), pack.getAi(),
-                                drawableId,
-                                data.calendarPrefix.get(key.componentName),
-                                data.clockMetadata.get(drawableId));
-                    }
+                IconPack.Data data = pack.getData(mContext);
+                int drawableId = data.drawables.getDrawableId(key.componentName);
+                if (drawableId != 0) {
+                    return new IconResolverExternal(mContext.getPackageManager(), pack.getAi(),
+                            drawableId,
+                            data.calendarPrefix.get(key.componentName),
+                            data.clockMetadata.get(drawableId));
                 }
                 if (data.hasMasking()) {
                     return new IconResolverMasked(mContext, data, pack.getAi(), key.hashCode());
@@ -11,12 +11,19 @@ import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 class IconPackParser {
     private static final String TAG = "IconPackParser";
 
-    static IconPack.Data parsePackage(PackageManager pm, Resources res, String pkg)
-            throws IOException, XmlPullParserException {
+    /**
+     * Parses the appfilter of the icon pack.
+     *
+     * @param drawablesOut filled with the drawable names for each component, which are resolved
+     *                     to ids when building the {@link IconPackIndex}.
+     */
+    static IconPack.Data parsePackage(PackageManager pm, Resources res, String pkg,
+            Map<ComponentName, String> drawablesOut) throws IOException, XmlPullParserException {
         IconPack.Data iconPack = new IconPack.Data();
 
         int resId = res.getIdentifier("appfilter", "xml", pkg);
@@ -26,7 +33,7 @@ class IconPackParser {
                 if (parseXml.getEventType() == XmlPullParser.START_TAG) {
                     switch (parseXml.getName()) {
                         case "item":
-                            addItem(parseXml, iconPack);
+                            addItem(parseXml, drawablesOut);
                             break;
                         case "calendar":
                             addCalendar(parseXml, iconPack);
@@ -55,13 +62,13 @@ class IconPackParser {
     }
 
     private static void addItem(XmlResourceParser parseXml,
-                                IconPack.Data iconPack) {
+                                Map<ComponentName, String> drawables) {
         String component = parseXml.getAttributeValue(null, "component");
         String drawable = parseXml.getAttributeValue(null, "drawable");
         if (component != null && drawable != null) {
             ComponentName componentName = parseComponent(component);
             if (componentName != null) {
-                iconPack.drawables.put(componentName, drawable);
+                drawables.put(componentName, drawable);
             }
         }
     }
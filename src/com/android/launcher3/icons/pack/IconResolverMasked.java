@@ -1,6 +1,5 @@
 package com.android.launcher3.icons.pack;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
@@ -8,28 +7,50 @@ import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.util.LruCache;
+
+import androidx.annotation.VisibleForTesting;
 
 import com.android.launcher3.icons.BaseIconFactory;
 import com.android.launcher3.icons.LauncherIcons;
-import static com.android.launcher3.icons.LauncherIcons.CONFIG_HINT_NO_WRAP;
 
 import com.android.launcher3.icons.clock.CustomClock;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
 public class IconResolverMasked implements IconResolver {
+    // Rasterized back, mask and upon layers are shared by all the icons using the same pack.
+    private static final int LAYER_CACHE_BYTES = 4 * 1024 * 1024;
+    private static final LruCache<LayerKey, Bitmap> sLayerCache =
+            new LruCache<>(LAYER_CACHE_BYTES) {
+                @Override
+                protected int sizeOf(LayerKey key, Bitmap value) {
+                    return value.getAllocationByteCount();
+                }
+            };
+
+    private static final int SCRATCH_POOL_SIZE = 2;
+    private static final ArrayDeque<Bitmap> sScratchPool = new ArrayDeque<>(SCRATCH_POOL_SIZE);
+
+    private static final Paint SCALE_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private static final Paint MASK_PAINT = newLayerPaint(PorterDuff.Mode.DST_OUT);
+    private static final Paint BACK_PAINT = newLayerPaint(PorterDuff.Mode.DST_OVER);
+    private static final Paint UPON_PAINT = newLayerPaint(PorterDuff.Mode.SRC_ATOP);
+
+    private static final ThreadLocal<Canvas> sCanvas = ThreadLocal.withInitial(Canvas::new);
+
     private final Context mContext;
     private final IconPack.Data mData;
     private final ApplicationInfo mPackInfo;
     private final int mHashCode;
 
-    private final Canvas mCanvas = new Canvas();
-    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
-
     IconResolverMasked(Context context, IconPack.Data data, ApplicationInfo packInfo,
                        int hashCode) {
         mContext = context;
@@ -59,116 +80,194 @@ public class IconResolverMasked implements IconResolver {
 
         LauncherIcons li = LauncherIcons.obtain(mContext);
         PackageManager pm = mContext.getPackageManager();
+        Canvas canvas = sCanvas.get();
         try {
             Resources res = pm.getResourcesForApplication(mPackInfo);
 
             // Re-render without scaling after creating the bitmap in the right dimensions.
             Bitmap iconBm = li.createScaledBitmap(icon, BaseIconFactory.MODE_WITH_SHADOW);
-            mCanvas.setBitmap(iconBm);
+            canvas.setBitmap(iconBm);
             icon.setBounds(0, 0, iconBm.getWidth(), iconBm.getHeight());
-            icon.draw(mCanvas);
+            icon.draw(canvas);
 
             // Scale the bitmap using the icon pack scale.
-            scaleBitmap(iconBm, mData.scale);
+            scaleBitmap(canvas, iconBm, mData.scale);
 
             // Cut parts off using the mask image.
             if (!mData.iconMasks.isEmpty()) {
                 int iconMask = mData.iconMasks.get(mHashCode % mData.iconMasks.size());
-                maskBitmap(iconBm, res.getDrawableForDensity(iconMask, iconDpi, null));
+                drawLayer(canvas, iconBm, res, iconMask, iconDpi, MASK_PAINT);
             }
 
             // Add icon back after scaling.
             if (!mData.iconBacks.isEmpty()) {
                 int iconBack = mData.iconBacks.get(mHashCode % mData.iconBacks.size());
-                backBitmap(iconBm, res.getDrawableForDensity(iconBack, iconDpi, null), li);
+                drawLayer(canvas, iconBm, res, iconBack, iconDpi, BACK_PAINT);
             }
 
             // Render upon image onto icon. We use SRC_ATOP to make sure it stays within bounds.
             if (!mData.iconUpons.isEmpty()) {
                 int iconUpon = mData.iconUpons.get(mHashCode % mData.iconUpons.size());
-                uponBitmap(iconBm, res.getDrawableForDensity(iconUpon, iconDpi, null));
+                drawLayer(canvas, iconBm, res, iconUpon, iconDpi, UPON_PAINT);
             }
 
             return new BitmapDrawable(mContext.getResources(), iconBm);
         } catch (PackageManager.NameNotFoundException | Resources.NotFoundException e) {
             e.printStackTrace();
+        } finally {
+            canvas.setBitmap(null);
+            li.recycle();
         }
 
-        li.recycle();
         return icon;
     }
 
-    private void scaleBitmap(Bitmap bitmap, float scale) {
+    private void scaleBitmap(Canvas canvas, Bitmap bitmap, float scale) {
         if (scale != 1f) {
-            Bitmap iconBmScaled = Bitmap.createScaledBitmap(bitmap,
-                    (int)(bitmap.getWidth() * mData.scale),
-                    (int)(bitmap.getHeight() * mData.scale),
-                    true);
-
-            float move = 0.5f * (1f - mData.scale);
-
-            Matrix matrix = new Matrix();
-            matrix.postTranslate(move * bitmap.getWidth(), move * bitmap.getHeight());
+            Bitmap scratch = obtainScratchBitmap(bitmap.getWidth(), bitmap.getHeight());
+            try {
+                canvas.setBitmap(scratch);
+                canvas.drawBitmap(bitmap, 0f, 0f, null);
+
+                // Draw the copy back scaled around the center.
+                bitmap.eraseColor(Color.TRANSPARENT);
+                canvas.setBitmap(bitmap);
+                canvas.save();
+                canvas.scale(scale, scale, 0.5f * bitmap.getWidth(), 0.5f * bitmap.getHeight());
+                canvas.drawBitmap(scratch, 0f, 0f, SCALE_PAINT);
+                canvas.restore();
+            } finally {
+                recycleScratchBitmap(scratch);
+            }
+        }
+    }
 
-            bitmap.eraseColor(Color.TRANSPARENT);
-            mCanvas.setBitmap(bitmap);
-            mCanvas.drawBitmap(iconBmScaled, matrix, null);
+    /**
+     * Composes the rasterized layer {@param resId} onto {@param bitmap} using {@param paint}.
+     */
+    private void drawLayer(Canvas canvas, Bitmap bitmap, Resources res, int resId, int iconDpi,
+            Paint paint) {
+        Bitmap layer = getLayer(canvas, res, resId, iconDpi, bitmap.getWidth(),
+                bitmap.getHeight());
+        if (layer != null) {
+            canvas.setBitmap(bitmap);
+            canvas.drawBitmap(layer, 0f, 0f, paint);
+        }
+    }
 
-            iconBmScaled.recycle();
+    /**
+     * Returns the layer drawable rasterized at the provided size, rendering it only if it has
+     * not been rendered for this pack, density and size before.
+     */
+    private Bitmap getLayer(Canvas canvas, Resources res, int resId, int iconDpi, int width,
+            int height) {
+        LayerKey key = new LayerKey(mPackInfo.packageName, resId, iconDpi, width, height);
+        Bitmap layer = sLayerCache.get(key);
+        if (layer == null) {
+            Drawable drawable = res.getDrawableForDensity(resId, iconDpi, null);
+            if (drawable == null) {
+                return null;
+            }
+            layer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            canvas.setBitmap(layer);
+            drawable.setBounds(0, 0, width, height);
+            drawable.draw(canvas);
+            sLayerCache.put(key, layer);
         }
+        return layer;
     }
 
-    private void maskBitmap(Bitmap bitmap, Drawable mask) {
-        if (mask != null) {
-            Bitmap maskBm = Bitmap.createBitmap(
-                    bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
+    /**
+     * Drops the cached layers of the provided icon pack, eg when it was updated.
+     */
+    static void clearLayerCache(String packPackage) {
+        for (LayerKey key : sLayerCache.snapshot().keySet()) {
+            if (key.packPackage.equals(packPackage)) {
+                sLayerCache.remove(key);
+            }
+        }
+    }
 
-            // Render the mask image to a bitmap.
-            mCanvas.setBitmap(maskBm);
-            mask.setBounds(0, 0, bitmap.getWidth(), bitmap.getHeight());
-            mask.draw(mCanvas);
+    @VisibleForTesting
+    static int getLayerCacheSize() {
+        return sLayerCache.size();
+    }
 
-            // Then use PorterDuff to remove black mask parts.
-            mPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_OUT));
-            mCanvas.setBitmap(bitmap);
-            mCanvas.drawBitmap(maskBm, 0f, 0f, mPaint);
+    @VisibleForTesting
+    static List<Bitmap> getCachedLayers() {
+        return new ArrayList<>(sLayerCache.snapshot().values());
+    }
 
-            maskBm.recycle();
+    @VisibleForTesting
+    static List<Bitmap> getPooledScratchBitmaps() {
+        synchronized (sScratchPool) {
+            return new ArrayList<>(sScratchPool);
         }
     }
 
-    @SuppressLint("WrongConstant")
-    private void backBitmap(Bitmap bitmap, Drawable back, LauncherIcons li) {
-        if (back != null) {
-            Bitmap backBm = Bitmap.createBitmap(
-                    bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
-
-            mCanvas.setBitmap(backBm);
-            back.setBounds(0, 0, bitmap.getWidth(), bitmap.getHeight());
-            back.draw(mCanvas);
-
-            mPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.DST_OVER));
-            mCanvas.setBitmap(bitmap);
-            mCanvas.drawBitmap(backBm, 0f, 0f, mPaint);
+    private static Bitmap obtainScratchBitmap(int width, int height) {
+        synchronized (sScratchPool) {
+            while (!sScratchPool.isEmpty()) {
+                Bitmap bitmap = sScratchPool.poll();
+                if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                    bitmap.eraseColor(Color.TRANSPARENT);
+                    return bitmap;
+                }
+                // Icon size changed, drop the old scratch bitmaps.
+                bitmap.recycle();
+            }
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
 
-            backBm.recycle();
+    private static void recycleScratchBitmap(Bitmap bitmap) {
+        synchronized (sScratchPool) {
+            if (sScratchPool.size() < SCRATCH_POOL_SIZE) {
+                sScratchPool.offer(bitmap);
+                return;
+            }
         }
+        bitmap.recycle();
     }
 
-    private void uponBitmap(Bitmap bitmap, Drawable upon) {
-        if (upon != null) {
-            Bitmap uponBm = Bitmap.createBitmap(
-                    bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
+    private static Paint newLayerPaint(PorterDuff.Mode mode) {
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+        paint.setXfermode(new PorterDuffXfermode(mode));
+        return paint;
+    }
 
-            mCanvas.setBitmap(uponBm);
-            upon.setBounds(0, 0, bitmap.getWidth(), bitmap.getHeight());
-            upon.draw(mCanvas);
+    private static final class LayerKey {
+        final String packPackage;
+        final int resId;
+        final int iconDpi;
+        final int width;
+        final int height;
+
+        LayerKey(String packPackage, int resId, int iconDpi, int width, int height) {
+            this.packPackage = packPackage;
+            this.resId = resId;
+            this.iconDpi = iconDpi;
+            this.width = width;
+            this.height = height;
+        }
 
-            mPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_ATOP));
-            mCanvas.setBitmap(bitmap);
-            mCanvas.drawBitmap(uponBm, 0f, 0f, mPaint);
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof LayerKey other)) {
+                return false;
+            }
+            return resId == other.resId && iconDpi == other.iconDpi && width == other.width
+                    && height == other.height && packPackage.equals(other.packPackage);
+        }
 
-            uponBm.recycle();
+        @Override
+        public int hashCode() {
+            // Avoid the varargs and boxing allocations of Objects.hash
+            int result = packPackage.hashCode();
+            result = 31 * result + resId;
+            result = 31 * result + iconDpi;
+            result = 31 * result + width;
+            return 31 * result + height;
         }
     }
 }
@@ -23,8 +23,16 @@ import android.content.Context;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Wrapper around {@link AppLockManager} which keeps a local snapshot of the hidden and protected
+ * packages, so that filtering all the apps and widgets only needs a single binder call.
+ */
 public class AppLockHelper {
 
     private AppLockManager mAppLockManager;
@@ -32,6 +40,13 @@ public class AppLockHelper {
     @Nullable
     private static AppLockHelper sSingleton;
 
+    // Snapshot of the app lock state, or null if it needs to be fetched again.
+    @Nullable
+    private volatile State mState;
+    private final AtomicInteger mBinderCallCount = new AtomicInteger();
+    // Incremented when the snapshot is invalidated, so that a fetch started before is dropped
+    private final AtomicInteger mGeneration = new AtomicInteger();
+
     private AppLockHelper(@NonNull Context context) {
         mAppLockManager = context.getSystemService(AppLockManager.class);
     }
@@ -45,21 +60,118 @@ public class AppLockHelper {
 
     public void setShouldHideApp(@NonNull String packageName, boolean hide) {
         mAppLockManager.setPackageHidden(packageName, hide);
+        mBinderCallCount.incrementAndGet();
+        updateState(packageName, hide, true /* hiddenChanged */);
     }
 
     public boolean isPackageHidden(@NonNull String packageName) {
-        return mAppLockManager.isPackageHidden(packageName);
+        return getState().hidden.contains(packageName);
     }
 
     public void setShouldProtectApp(@NonNull String packageName, boolean protect) {
         mAppLockManager.setShouldProtectApp(packageName, protect);
+        mBinderCallCount.incrementAndGet();
+        updateState(packageName, protect, false /* hiddenChanged */);
     }
 
     public boolean isPackageProtected(@NonNull String packageName) {
-        return mAppLockManager.isPackageProtected(packageName);
+        return getState().protectedPackages.contains(packageName);
     }
 
     public int getHiddenPackagesCount() {
-        return  mAppLockManager.getHiddenPackages().size();
+        return getState().hidden.size();
+    }
+
+    /**
+     * Drops the local snapshot, so that the next query fetches the state from
+     * {@link AppLockManager} again, eg when the app lock settings might have changed outside of
+     * the launcher.
+     */
+    public void invalidate() {
+        mGeneration.incrementAndGet();
+        mState = null;
+    }
+
+    /**
+     * Returns the number of binder calls made to {@link AppLockManager} so far.
+     */
+    public int getBinderCallCount() {
+        return mBinderCallCount.get();
+    }
+
+    @NonNull
+    private State getState() {
+        State state = mState;
+        if (state == null) {
+            synchronized (this) {
+                state = mState;
+                if (state == null) {
+                    int generation = mGeneration.get();
+                    state = fetchState();
+                    if (generation == mGeneration.get()) {
+                        mState = state;
+                    }
+                }
+            }
+        }
+        return state;
+    }
+
+    @NonNull
+    private State fetchState() {
+        List<AppLockData> packageData = mAppLockManager.getPackageData();
+        mBinderCallCount.incrementAndGet();
+        Set<String> hidden = new HashSet<>();
+        Set<String> protectedPackages = new HashSet<>();
+        for (AppLockData data : packageData) {
+            if (data.getHideFromLauncher()) {
+                hidden.add(data.getPackageName());
+            }
+            if (data.getShouldProtectApp()) {
+                protectedPackages.add(data.getPackageName());
+            }
+        }
+        return new State(hidden, protectedPackages);
+    }
+
+    private synchronized void updateState(String packageName, boolean enabled,
+            boolean hiddenChanged) {
+        State state = mState;
+        if (state == null) {
+            // Fetched on the next query
+            return;
+        }
+        Set<String> hidden = state.hidden;
+        Set<String> protectedPackages = state.protectedPackages;
+        if (hiddenChanged) {
+            hidden = copyWith(hidden, packageName, enabled);
+        } else {
+            protectedPackages = copyWith(protectedPackages, packageName, enabled);
+        }
+        mState = new State(hidden, protectedPackages);
+    }
+
+    private static Set<String> copyWith(Set<String> packages, String packageName,
+            boolean enabled) {
+        Set<String> result = new HashSet<>(packages);
+        if (enabled) {
+            result.add(packageName);
+        } else {
+            result.remove(packageName);
+        }
+        return result;
+    }
+
+    /**
+     * Immutable snapshot of the app lock state.
+     */
+    private static class State {
+        final Set<String> hidden;
+        final Set<String> protectedPackages;
+
+        State(Set<String> hidden, Set<String> protectedPackages) {
+            this.hidden = Collections.unmodifiableSet(hidden);
+            this.protectedPackages = Collections.unmodifiableSet(protectedPackages);
+        }
     }
 }
@@ -2,31 +2,38 @@ package com.android.launcher3.logging;
 
 import static com.android.launcher3.util.Executors.createAndStartNewLooper;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Message;
 import android.util.Log;
 import android.util.Pair;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 
-import com.android.launcher3.util.IOUtils;
-
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.PrintWriter;
 import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Date;
+import java.util.Comparator;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Wrapper around {@link Log} to allow writing to a file.
  * This class can safely be called from main thread.
  *
+ * Logging a line only records the event in a buffer of the calling thread. The events are
+ * written in batches on a background thread to memory mapped files, and are only formatted
+ * when the logs are dumped.
+ *
  * Note: This should only be used for logging errors which have a persistent effect on user's data,
  * but whose effect may not be visible immediately.
  */
@@ -37,13 +44,29 @@ public final class FileLog {
     private static final DateFormat DATE_FORMAT =
             DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
 
-    private static final long MAX_LOG_FILE_SIZE = 8 << 20;  // 4 mb
+    private static final int MAX_LOG_FILE_SIZE = 2 << 20;  // 2 mb
+
+    // Delay before the buffered events are written
+    private static final long DRAIN_DELAY = 100;
 
     private static Handler sHandler = null;
     private static File sLogsDirectory = null;
 
+    /** Number of log files, which are used in turn when full. */
     public static final int LOG_DAYS = 4;
 
+    // Buffers of all the threads which logged, drained on the logger thread
+    private static final CopyOnWriteArrayList<LogRingBuffer> sBuffers =
+            new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<LogRingBuffer> sThreadBuffer = ThreadLocal.withInitial(() -> {
+        LogRingBuffer buffer = new LogRingBuffer(Thread.currentThread());
+        sBuffers.add(buffer);
+        return buffer;
+    });
+    // Orders the events of different threads
+    private static final AtomicLong sSequence = new AtomicLong();
+    private static final AtomicBoolean sDrainScheduled = new AtomicBoolean();
+
     public static void setDir(File logsDir) {
         if (ENABLED) {
             synchronized (DATE_FORMAT) {
@@ -51,6 +74,8 @@ public final class FileLog {
                 if (sHandler != null && !logsDir.equals(sLogsDirectory)) {
                     ((HandlerThread) sHandler.getLooper().getThread()).quit();
                     sHandler = null;
+                    // Any pending drain was dropped with the thread
+                    sDrainScheduled.set(false);
                 }
             }
         }
@@ -105,11 +130,16 @@ public final class FileLog {
         if (!ENABLED) {
             return;
         }
-        String out = String.format("%s %s %s", DATE_FORMAT.format(new Date()), tag, msg);
-        if (e != null) {
-            out += "\n" + Log.getStackTraceString(e);
+        LogRingBuffer buffer = sThreadBuffer.get();
+        buffer.append(sSequence.getAndIncrement(), System.currentTimeMillis(), tag, msg, e);
+        if (!sDrainScheduled.get() && sDrainScheduled.compareAndSet(false, true)) {
+            getHandler().sendEmptyMessageDelayed(LogWriterCallback.MSG_DRAIN, DRAIN_DELAY);
+        } else if (buffer.size() >= LogRingBuffer.DRAIN_THRESHOLD) {
+            // Drain right away during bursts, before the buffer is full
+            Handler handler = getHandler();
+            handler.removeMessages(LogWriterCallback.MSG_DRAIN);
+            handler.sendEmptyMessage(LogWriterCallback.MSG_DRAIN);
         }
-        Message.obtain(getHandler(), LogWriterCallback.MSG_WRITE, out).sendToTarget();
     }
 
     @VisibleForTesting
@@ -140,83 +170,55 @@ public final class FileLog {
     }
 
     /**
-     * Writes logs to the file.
-     * Log files are named log-0 for even days of the year and log-1 for odd days of the year.
-     * Logs older than 36 hours are purged.
+     * Writes logs to the files.
+     * Log files are named log-0 to log-3, and the next file is used once the current one is full.
+     * A file which was not modified in the last 36 hours is purged before logging to it again.
      */
     private static class LogWriterCallback implements Handler.Callback {
 
         private static final long CLOSE_DELAY = 5000;  // 5 seconds
 
-        private static final int MSG_WRITE = 1;
+        private static final int MSG_DRAIN = 1;
         private static final int MSG_CLOSE = 2;
         private static final int MSG_FLUSH = 3;
 
-        private String mCurrentFileName = null;
-        private PrintWriter mCurrentWriter = null;
+        private final ArrayList<PendingEvent> mPendingEvents = new ArrayList<>();
+        private final LogRingBuffer.EventConsumer mEventCollector =
+                (sequence, time, tag, msg, error) ->
+                        mPendingEvents.add(new PendingEvent(sequence, time, tag, msg, error));
+
+        private int mCurrentFileIndex = -1;
+        @Nullable
+        private MappedLogFile mCurrentFile = null;
 
-        private void closeWriter() {
-            IOUtils.closeSilently(mCurrentWriter);
-            mCurrentWriter = null;
+        private void closeFile() {
+            if (mCurrentFile != null) {
+                mCurrentFile.force();
+                mCurrentFile = null;
+            }
         }
 
         @Override
         public boolean handleMessage(Message msg) {
-            if (sLogsDirectory == null || !ENABLED) {
+            if (!ENABLED) {
                 return true;
             }
             switch (msg.what) {
-                case MSG_WRITE: {
-                    Calendar cal = Calendar.getInstance();
-                    // suffix with 0 or 1 based on the day of the year.
-                    String fileName = FILE_NAME_PREFIX + (cal.get(Calendar.DAY_OF_YEAR) % LOG_DAYS);
-
-                    if (!fileName.equals(mCurrentFileName)) {
-                        closeWriter();
-                    }
-
-                    try {
-                        if (mCurrentWriter == null) {
-                            mCurrentFileName = fileName;
-
-                            boolean append = false;
-                            File logFile = new File(sLogsDirectory, fileName);
-                            if (logFile.exists()) {
-                                Calendar modifiedTime = Calendar.getInstance();
-                                modifiedTime.setTimeInMillis(logFile.lastModified());
-
-                                // If the file was modified more that 36 hours ago, purge the file.
-                                // We use instead of 24 to account for day-365 followed by day-1
-                                modifiedTime.add(Calendar.HOUR, 36);
-                                append = cal.before(modifiedTime)
-                                        && logFile.length() < MAX_LOG_FILE_SIZE;
-                            }
-                            mCurrentWriter = new PrintWriter(new FileWriter(logFile, append));
-                        }
-
-                        mCurrentWriter.println((String) msg.obj);
-                        mCurrentWriter.flush();
-
-                        // Auto close file stream after some time.
-                        sHandler.removeMessages(MSG_CLOSE);
-                        sHandler.sendEmptyMessageDelayed(MSG_CLOSE, CLOSE_DELAY);
-                    } catch (Exception e) {
-                        Log.e("FileLog", "Error writing logs to file", e);
-                        // Close stream, will try reopening during next log
-                        closeWriter();
-                    }
+                case MSG_DRAIN: {
+                    drainBuffers();
                     return true;
                 }
                 case MSG_CLOSE: {
-                    closeWriter();
+                    closeFile();
                     return true;
                 }
                 case MSG_FLUSH: {
-                    closeWriter();
+                    drainBuffers();
+                    closeFile();
                     Pair<PrintWriter, CountDownLatch> p =
                             (Pair<PrintWriter, CountDownLatch>) msg.obj;
 
-                    if (p.first != null) {
+                    if (p.first != null && sLogsDirectory != null) {
                         for (int i = 0; i < LOG_DAYS; i++) {
                             dumpFile(p.first, FILE_NAME_PREFIX + i);
                         }
@@ -227,25 +229,122 @@ public final class FileLog {
             }
             return true;
         }
+
+        private void drainBuffers() {
+            sDrainScheduled.set(false);
+            int dropped = 0;
+            for (LogRingBuffer buffer : sBuffers) {
+                buffer.drainTo(mEventCollector);
+                dropped += buffer.takeDroppedCount();
+                if (buffer.isOwnerDead() && buffer.size() == 0) {
+                    sBuffers.remove(buffer);
+                }
+            }
+            if (mPendingEvents.isEmpty() && dropped == 0) {
+                return;
+            }
+            if (sLogsDirectory == null) {
+                mPendingEvents.clear();
+                return;
+            }
+            mPendingEvents.sort(Comparator.comparingLong(e -> e.sequence));
+            try {
+                for (PendingEvent event : mPendingEvents) {
+                    String text = event.error == null ? event.msg
+                            : event.msg + "\n" + Log.getStackTraceString(event.error);
+                    write(event.time, event.tag.getBytes(UTF_8), text.getBytes(UTF_8));
+                }
+                if (dropped > 0) {
+                    write(System.currentTimeMillis(), "FileLog".getBytes(UTF_8),
+                            (dropped + " log events dropped").getBytes(UTF_8));
+                }
+
+                // Auto close file after some time.
+                sHandler.removeMessages(MSG_CLOSE);
+                sHandler.sendEmptyMessageDelayed(MSG_CLOSE, CLOSE_DELAY);
+            } catch (Exception e) {
+                Log.e("FileLog", "Error writing logs to file", e);
+                // Close file, will try reopening during next log
+                closeFile();
+            } finally {
+                mPendingEvents.clear();
+            }
+        }
+
+        private void write(long time, byte[] tag, byte[] msg) throws Exception {
+            if (mCurrentFile == null) {
+                openCurrentFile();
+            }
+            if (mCurrentFile.append(time, tag, msg)) {
+                return;
+            }
+            // Current file is full, continue in the next one
+            closeFile();
+            mCurrentFileIndex = (mCurrentFileIndex + 1) % LOG_DAYS;
+            mCurrentFile = MappedLogFile.open(new File(sLogsDirectory,
+                    FILE_NAME_PREFIX + mCurrentFileIndex), MAX_LOG_FILE_SIZE, true);
+            int maxSize = mCurrentFile.getMaxMessageSize(tag);
+            mCurrentFile.append(time, tag, msg.length <= maxSize ? msg
+                    : Arrays.copyOf(msg, Math.max(0, maxSize)));
+        }
+
+        /**
+         * Opens the most recently modified file, purging it if it is too old.
+         */
+        private void openCurrentFile() throws Exception {
+            File logFile = null;
+            for (int i = 0; i < LOG_DAYS; i++) {
+                File file = new File(sLogsDirectory, FILE_NAME_PREFIX + i);
+                if (file.exists() && (logFile == null
+                        || file.lastModified() > logFile.lastModified())) {
+                    logFile = file;
+                    mCurrentFileIndex = i;
+                }
+            }
+            boolean truncate = false;
+            if (logFile == null) {
+                mCurrentFileIndex = 0;
+                logFile = new File(sLogsDirectory, FILE_NAME_PREFIX + mCurrentFileIndex);
+            } else {
+                Calendar modifiedTime = Calendar.getInstance();
+                modifiedTime.setTimeInMillis(logFile.lastModified());
+
+                // If the file was modified more that 36 hours ago, purge the file.
+                modifiedTime.add(Calendar.HOUR, 36);
+                truncate = !Calendar.getInstance().before(modifiedTime);
+            }
+            mCurrentFile = MappedLogFile.open(logFile, MAX_LOG_FILE_SIZE, truncate);
+        }
+    }
+
+    private static class PendingEvent {
+
+        final long sequence;
+        final long time;
+        final String tag;
+        final String msg;
+        @Nullable
+        final Throwable error;
+
+        PendingEvent(long sequence, long time, String tag, String msg,
+                @Nullable Throwable error) {
+            this.sequence = sequence;
+            this.time = time;
+            this.tag = String.valueOf(tag);
+            this.msg = String.valueOf(msg);
+            this.error = error;
+        }
     }
 
     private static void dumpFile(PrintWriter out, String fileName) {
         File logFile = new File(sLogsDirectory, fileName);
         if (logFile.exists()) {
-
-            BufferedReader in = null;
             try {
-                in = new BufferedReader(new FileReader(logFile));
                 out.println();
                 out.println("--- logfile: " + fileName + " ---");
-                String line;
-                while ((line = in.readLine()) != null) {
-                    out.println(line);
-                }
+                MappedLogFile.dump(logFile, out, DATE_FORMAT);
             } catch (Exception e) {
                 // ignore
-            } finally {
-                IOUtils.closeSilently(in);
             }
         }
     }
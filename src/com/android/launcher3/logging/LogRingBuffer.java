@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.logging;
+
+import androidx.annotation.Nullable;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Preallocated ring buffer of log events, written by a single thread and drained by the
+ * {@link FileLog} writer thread without any locking.
+ *
+ * <p>Events only keep references to their arguments, all formatting happens when draining.
+ */
+final class LogRingBuffer {
+
+    private static final int CAPACITY = 256;
+    private static final int MASK = CAPACITY - 1;
+
+    // Number of pending events after which the buffer should be drained without delay
+    static final int DRAIN_THRESHOLD = CAPACITY / 2;
+
+    private final WeakReference<Thread> mOwner;
+
+    private final long[] mSequences = new long[CAPACITY];
+    private final long[] mTimes = new long[CAPACITY];
+    private final String[] mTags = new String[CAPACITY];
+    private final String[] mMessages = new String[CAPACITY];
+    private final Throwable[] mErrors = new Throwable[CAPACITY];
+
+    // Index of the next event to write, only written by the owner thread
+    private volatile long mHead;
+    // Index of the next event to drain, only written by the draining thread
+    private volatile long mTail;
+    // Number of events dropped because the buffer was full, only written by the owner thread
+    private volatile int mDropped;
+    // Number of dropped events already reported, only accessed by the draining thread
+    private int mReportedDropped;
+
+    LogRingBuffer(Thread owner) {
+        mOwner = new WeakReference<>(owner);
+    }
+
+    /**
+     * Appends an event, returning false if it was dropped as the buffer is full. Must only be
+     * called by the owner thread.
+     */
+    boolean append(long sequence, long time, String tag, String msg, @Nullable Throwable error) {
+        long head = mHead;
+        if (head - mTail >= CAPACITY) {
+            mDropped++;
+            return false;
+        }
+        int i = (int) (head & MASK);
+        mSequences[i] = sequence;
+        mTimes[i] = time;
+        mTags[i] = tag;
+        mMessages[i] = msg;
+        mErrors[i] = error;
+        // Publishes the event to the draining thread
+        mHead = head + 1;
+        return true;
+    }
+
+    /**
+     * Returns the number of events waiting to be drained.
+     */
+    int size() {
+        return (int) (mHead - mTail);
+    }
+
+    /**
+     * Returns true if the owner thread terminated, in which case no more events are appended.
+     */
+    boolean isOwnerDead() {
+        Thread owner = mOwner.get();
+        return owner == null || !owner.isAlive();
+    }
+
+    /**
+     * Returns the number of dropped events since the last call.
+     */
+    int takeDroppedCount() {
+        int dropped = mDropped;
+        int count = dropped - mReportedDropped;
+        mReportedDropped = dropped;
+        return count;
+    }
+
+    /**
+     * Passes all the pending events to {@param consumer} and releases them.
+     */
+    void drainTo(EventConsumer consumer) {
+        long head = mHead;
+        for (long t = mTail; t < head; t++) {
+            int i = (int) (t & MASK);
+            consumer.accept(mSequences[i], mTimes[i], mTags[i], mMessages[i], mErrors[i]);
+            mTags[i] = null;
+            mMessages[i] = null;
+            mErrors[i] = null;
+        }
+        // Makes the slots available to the owner thread again
+        mTail = head;
+    }
+
+    interface EventConsumer {
+        void accept(long sequence, long time, String tag, String msg, @Nullable Throwable error);
+    }
+}
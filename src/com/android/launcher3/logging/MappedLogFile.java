@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.logging;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.DateFormat;
+import java.util.Date;
+
+/**
+ * A fixed size log file mapped in memory, storing binary log events.
+ *
+ * <p>The file starts with a header holding the end of the written events, which is only updated
+ * after an event is completely written. Each event is stored as its time in millis, followed by
+ * the UTF-8 tag and message, each prefixed by their length.
+ */
+final class MappedLogFile {
+
+    private static final int MAGIC = 0x464c4f47; // FLOG
+    private static final int END_OFFSET = 4;
+    private static final int HEADER_SIZE = 8;
+    private static final int EVENT_OVERHEAD = Long.BYTES + 2 * Integer.BYTES;
+
+    final File file;
+    private final int mCapacity;
+    private final MappedByteBuffer mBuffer;
+
+    private MappedLogFile(File file, int capacity, MappedByteBuffer buffer) {
+        this.file = file;
+        mCapacity = capacity;
+        mBuffer = buffer;
+    }
+
+    /**
+     * Maps {@param file} in memory, keeping the existing events unless {@param truncate} is true.
+     */
+    static MappedLogFile open(File file, int capacity, boolean truncate) throws IOException {
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                FileChannel channel = raf.getChannel()) {
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        if (truncate || buffer.getInt(0) != MAGIC) {
+            buffer.putInt(END_OFFSET, HEADER_SIZE);
+            buffer.putInt(0, MAGIC);
+        }
+        int end = buffer.getInt(END_OFFSET);
+        buffer.position(end < HEADER_SIZE || end > capacity ? HEADER_SIZE : end);
+        return new MappedLogFile(file, capacity, buffer);
+    }
+
+    /**
+     * Returns the maximum size of a message which can be stored in an empty file.
+     */
+    int getMaxMessageSize(byte[] tag) {
+        return mCapacity - HEADER_SIZE - EVENT_OVERHEAD - tag.length;
+    }
+
+    /**
+     * Appends an event, returning false if there is not enough space left in the file.
+     */
+    boolean append(long time, byte[] tag, byte[] msg) {
+        if (mBuffer.remaining() < EVENT_OVERHEAD + tag.length + msg.length) {
+            return false;
+        }
+        mBuffer.putLong(time);
+        mBuffer.putInt(tag.length);
+        mBuffer.put(tag);
+        mBuffer.putInt(msg.length);
+        mBuffer.put(msg);
+        mBuffer.putInt(END_OFFSET, mBuffer.position());
+        return true;
+    }
+
+    /**
+     * Writes the changes to the storage.
+     */
+    void force() {
+        mBuffer.force();
+    }
+
+    /**
+     * Prints the events of {@param file} to {@param out}, formatting the times with
+     * {@param dateFormat}. Files which were not written as binary events are printed as text.
+     */
+    static void dump(File file, PrintWriter out, DateFormat dateFormat) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (file.length() < HEADER_SIZE || in.readInt() != MAGIC) {
+                dumpText(file, out);
+                return;
+            }
+            int end = Math.min(in.readInt(), (int) file.length());
+            int position = HEADER_SIZE;
+            Date date = new Date();
+            while (position + EVENT_OVERHEAD <= end) {
+                date.setTime(in.readLong());
+                position += Long.BYTES;
+                byte[] tag = readBytes(in, end - position);
+                if (tag == null) {
+                    break;
+                }
+                position += Integer.BYTES + tag.length;
+                byte[] msg = readBytes(in, end - position);
+                if (msg == null) {
+                    break;
+                }
+                position += Integer.BYTES + msg.length;
+                out.println(dateFormat.format(date) + " " + new String(tag, UTF_8) + " "
+                        + new String(msg, UTF_8));
+            }
+        }
+    }
+
+    /**
+     * Reads a length prefixed byte array, or returns null if it exceeds {@param available} bytes.
+     */
+    @Nullable
+    private static byte[] readBytes(DataInputStream in, int available) throws IOException {
+        if (available < Integer.BYTES) {
+            return null;
+        }
+        int length = in.readInt();
+        if (length < 0 || length > available - Integer.BYTES) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void dumpText(File file, PrintWriter out) throws IOException {
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                out.println(line);
+            }
+        }
+    }
+}
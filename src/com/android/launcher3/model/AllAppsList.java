@@ -40,8 +40,10 @@ import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.pm.PackageInstallInfo;
 import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.search.AppSearchIndex;
 import com.android.launcher3.util.ApiWrapper;
 import com.android.launcher3.util.FlagOp;
+import com.android.launcher3.util.LabelComparator;
 import com.android.launcher3.util.PackageManagerHelper;
 import com.android.launcher3.util.SafeCloseable;
 
@@ -79,6 +81,10 @@ public class AllAppsList {
     private AppLockHelper mAppLockHelper;
 
     private AlphabeticIndexCompat mIndex;
+    // Computes the sort keys of the app titles, in the same locale as the index
+    private LabelComparator mLabelComparator;
+
+    private final AppSearchIndex mSearchIndex = new AppSearchIndex();
 
     /**
      * @see Callbacks#FLAG_HAS_SHORTCUT_PERMISSION
@@ -97,6 +103,7 @@ public class AllAppsList {
         mAppFilter = appFilter;
         mAppLockHelper = appLockHelper;
         mIndex = new AlphabeticIndexCompat(LocaleList.getDefault());
+        mLabelComparator = new LabelComparator();
     }
 
     /**
@@ -157,12 +164,13 @@ public class AllAppsList {
         }
         if (loadIcon) {
             mIconCache.getTitleAndIcon(info, activityInfo, false /* useLowResIcon */);
-            info.sectionName = mIndex.computeSectionName(info.title);
+            updateSortingKeys(info);
         } else {
             info.title = "";
         }
 
         data.add(info);
+        mSearchIndex.add(info);
         mDataChanged = true;
     }
 
@@ -183,20 +191,37 @@ public class AllAppsList {
 
         if (loadIcon) {
             mIconCache.getTitleAndIcon(promiseAppInfo, promiseAppInfo.usingLowResIcon());
-            promiseAppInfo.sectionName = mIndex.computeSectionName(promiseAppInfo.title);
+            updateSortingKeys(promiseAppInfo);
         } else {
             promiseAppInfo.title = "";
         }
 
         data.add(promiseAppInfo);
+        mSearchIndex.add(promiseAppInfo);
         mDataChanged = true;
 
         return promiseAppInfo;
     }
 
     public void updateSectionName(AppInfo appInfo) {
-        appInfo.sectionName = mIndex.computeSectionName(appInfo.title);
+        updateSortingKeys(appInfo);
+        mSearchIndex.update(appInfo);
+    }
+
+    /**
+     * Updates the section name and sort key of {@param info} after its title changed, so that the
+     * apps are sorted without collating their titles again.
+     */
+    private void updateSortingKeys(AppInfo info) {
+        info.sectionName = mIndex.computeSectionName(info.title);
+        info.sortKey = mLabelComparator.getSortKey(info.getSortingTitle());
+    }
 
+    /**
+     * Returns the index used to search the apps by title, which is kept in sync with {@link #data}
+     */
+    public AppSearchIndex getSearchIndex() {
+        return mSearchIndex;
     }
 
     /** Updates the given PackageInstallInfo's associated AppInfo's installation info. */
@@ -242,6 +267,7 @@ public class AllAppsList {
     private void removeApp(int index) {
         AppInfo removed = data.remove(index);
         if (removed != null) {
+            mSearchIndex.remove(removed);
             mDataChanged = true;
             mRemoveListener.accept(removed);
         }
@@ -249,9 +275,11 @@ public class AllAppsList {
 
     public void clear() {
         data.clear();
+        mSearchIndex.clear();
         mDataChanged = false;
-        // Reset the index as locales might have changed
+        // Reset the index and the sort keys as locales might have changed
         mIndex = new AlphabeticIndexCompat(LocaleList.getDefault());
+        mLabelComparator = new LabelComparator();
     }
 
     /**
@@ -300,7 +328,8 @@ public class AllAppsList {
         for (AppInfo info : data) {
             if (info.user.equals(user) && packages.contains(info.componentName.getPackageName())) {
                 mIconCache.updateTitleAndIcon(info);
-                info.sectionName = mIndex.computeSectionName(info.title);
+                updateSortingKeys(info);
+                mSearchIndex.update(info);
                 mDataChanged = true;
             }
         }
@@ -344,7 +373,8 @@ public class AllAppsList {
                     Intent launchIntent = AppInfo.makeLaunchIntent(info);
 
                     mIconCache.getTitleAndIcon(applicationInfo, info, false /* useLowResIcon */);
-                    applicationInfo.sectionName = mIndex.computeSectionName(applicationInfo.title);
+                    updateSortingKeys(applicationInfo);
+                    mSearchIndex.update(applicationInfo);
                     applicationInfo.intent = launchIntent;
                     AppInfo.updateRuntimeFlagsForActivityTarget(applicationInfo, info,
                             userCache.getUserInfo(user), apiWrapper, pmHelper);
@@ -139,6 +139,12 @@ public class BgDataModel {
     public int lastLoadId = -1;
     public boolean isFirstPagePinnedItemEnabled = FeatureFlags.USE_QUICKSPACE_VIEW;
 
+    /**
+     * Ids of the items changed since the last call to {@link #consumeChangedItemIds}. Guarded by
+     * itself rather than the model, as items are changed on the main thread.
+     */
+    private final IntSet mChangedItemIds = new IntSet();
+
     /**
      * Clears all the data
      */
@@ -151,6 +157,31 @@ public class BgDataModel {
         extraItems.clear();
     }
 
+    /**
+     * Marks the item and its container as changed, for the caches built from the properties of
+     * the items of the model.
+     */
+    public void markItemChanged(ItemInfo item) {
+        synchronized (mChangedItemIds) {
+            mChangedItemIds.add(item.id);
+            if (item.container > 0) {
+                mChangedItemIds.add(item.container);
+            }
+        }
+    }
+
+    /**
+     * Returns the ids of the items changed since the last call, and clears them.
+     */
+    public IntSet consumeChangedItemIds() {
+        synchronized (mChangedItemIds) {
+            IntSet changedItemIds = new IntSet();
+            changedItemIds.copyFrom(mChangedItemIds);
+            mChangedItemIds.clear();
+            return changedItemIds;
+        }
+    }
+
     /**
      * Creates an array of valid workspace screens based on current items in the model.
      */
@@ -238,6 +269,7 @@ public class BgDataModel {
                     break;
             }
             itemsIdMap.remove(item.id);
+            markItemChanged(item);
         }
         updatedDeepShortcuts.forEach(user -> updateShortcutPinnedState(context, user));
     }
@@ -290,6 +322,10 @@ public class BgDataModel {
                 appWidgets.add((LauncherAppWidgetInfo) item);
                 break;
         }
+        if (newItem) {
+            // Items loaded from the database are new objects, which the caches already detect
+            markItemChanged(item);
+        }
         if (newItem && item.itemType == LauncherSettings.Favorites.ITEM_TYPE_DEEP_SHORTCUT) {
             updateShortcutPinnedState(context, item.user);
         }
@@ -32,6 +32,8 @@ import android.provider.BaseColumns;
 import android.text.TextUtils;
 import android.util.Log;
 import android.util.LongSparseArray;
+import android.util.LruCache;
+import android.util.SparseArray;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
@@ -70,6 +72,42 @@ public class LoaderCursor extends CursorWrapper {
 
     private static final String TAG = "LoaderCursor";
 
+    /**
+     * Columns needed to load the workspace items, excluding the icon which is only needed for some
+     * items, see {@link #loadIconBlobsLazily}.
+     */
+    public static final String[] WORKSPACE_PROJECTION = {
+            Favorites._ID,
+            Favorites.TITLE,
+            Favorites.INTENT,
+            Favorites.CONTAINER,
+            Favorites.SCREEN,
+            Favorites.CELLX,
+            Favorites.CELLY,
+            Favorites.SPANX,
+            Favorites.SPANY,
+            Favorites.ITEM_TYPE,
+            Favorites.APPWIDGET_ID,
+            Favorites.APPWIDGET_PROVIDER,
+            Favorites.RESTORED,
+            Favorites.PROFILE_ID,
+            Favorites.RANK,
+            Favorites.OPTIONS,
+            Favorites.APPWIDGET_SOURCE,
+    };
+
+    // Selection of the items whose icon is loaded from the DB, see createIconRequestInfo
+    private static final String ICON_BLOB_SELECTION = "(" + Favorites.ITEM_TYPE + "="
+            + Favorites.ITEM_TYPE_DEEP_SHORTCUT + " OR " + Favorites.RESTORED + "!=0) AND "
+            + Favorites.ICON + " IS NOT NULL";
+
+    // Parsed values of the stored strings, kept across loads as they rarely change. Intents are
+    // mutable, so only copies are returned.
+    private static final int PARSED_CACHE_SIZE = 512;
+    private static final LruCache<String, Intent> sIntentCache = new LruCache<>(PARSED_CACHE_SIZE);
+    private static final LruCache<String, ComponentName> sComponentCache =
+            new LruCache<>(PARSED_CACHE_SIZE);
+
     private final LongSparseArray<UserHandle> allUsers;
 
     private final LauncherAppState mApp;
@@ -107,6 +145,15 @@ public class LoaderCursor extends CursorWrapper {
     @Nullable
     private LauncherActivityInfo mActivityInfo;
 
+    // Set when the icon column was not projected, to load the icons in a separate query
+    private boolean mLoadIconBlobsLazily;
+    @Nullable
+    private String mSelection;
+    @Nullable
+    private SparseArray<byte[]> mIconBlobs;
+
+    private long mBytesRead;
+
     // Properties loaded per iteration
     public long serialNumber;
     public UserHandle user;
@@ -129,7 +176,7 @@ public class LoaderCursor extends CursorWrapper {
         mRestoreEventLogger = restoreEventLogger;
 
         // Init column indices
-        mIconIndex = getColumnIndexOrThrow(Favorites.ICON);
+        mIconIndex = getColumnIndex(Favorites.ICON);
         mTitleIndex = getColumnIndexOrThrow(Favorites.TITLE);
 
         mIdIndex = getColumnIndexOrThrow(Favorites._ID);
@@ -168,15 +215,84 @@ public class LoaderCursor extends CursorWrapper {
         return result;
     }
 
+    /**
+     * Loads the icons in a single query when first needed, for cursors which do not include the
+     * icon column, eg using {@link #WORKSPACE_PROJECTION}.
+     *
+     * @param selection the selection used to query this cursor
+     */
+    public void loadIconBlobsLazily(@Nullable String selection) {
+        mLoadIconBlobsLazily = true;
+        mSelection = selection;
+    }
+
+    @Override
+    public int getInt(int columnIndex) {
+        mBytesRead += Integer.BYTES;
+        return super.getInt(columnIndex);
+    }
+
+    @Override
+    public String getString(int columnIndex) {
+        String value = super.getString(columnIndex);
+        if (value != null) {
+            mBytesRead += value.length();
+        }
+        return value;
+    }
+
+    @Override
+    public byte[] getBlob(int columnIndex) {
+        byte[] value = super.getBlob(columnIndex);
+        if (value != null) {
+            mBytesRead += value.length;
+        }
+        return value;
+    }
+
+    /**
+     * Returns an estimate of the number of bytes read from the DB through this cursor, including
+     * the icons loaded separately.
+     */
+    public long getBytesRead() {
+        return mBytesRead;
+    }
+
     public Intent parseIntent() {
         String intentDescription = getString(mIntentIndex);
-        try {
-            return TextUtils.isEmpty(intentDescription) ?
-                    null : Intent.parseUri(intentDescription, 0);
-        } catch (URISyntaxException e) {
-            Log.e(TAG, "Error parsing Intent");
+        if (TextUtils.isEmpty(intentDescription)) {
             return null;
         }
+        Intent intent = sIntentCache.get(intentDescription);
+        if (intent == null) {
+            try {
+                intent = Intent.parseUri(intentDescription, 0);
+            } catch (URISyntaxException e) {
+                Log.e(TAG, "Error parsing Intent");
+                return null;
+            }
+            sIntentCache.put(intentDescription, intent);
+        }
+        return new Intent(intent);
+    }
+
+    /**
+     * Returns the component for the flattened {@param name}, reusing the components parsed by
+     * previous loads.
+     */
+    @Nullable
+    public static ComponentName unflattenComponent(@Nullable String name) {
+        if (name == null) {
+            return null;
+        }
+        ComponentName component = sComponentCache.get(name);
+        if (component == null) {
+            component = ComponentName.unflattenFromString(name);
+            if (component != null) {
+                sComponentCache.put(name, component);
+            }
+        }
+        return component;
     }
 
     @VisibleForTesting
@@ -216,7 +332,33 @@ public class LoaderCursor extends CursorWrapper {
      * Returns the icon data for at the current position
      */
     public byte[] getIconBlob() {
-        return getBlob(mIconIndex);
+        if (mIconIndex >= 0) {
+            return getBlob(mIconIndex);
+        }
+        if (!mLoadIconBlobsLazily) {
+            return null;
+        }
+        if (mIconBlobs == null) {
+            mIconBlobs = queryIconBlobs();
+        }
+        return mIconBlobs.get(id);
+    }
+
+    private SparseArray<byte[]> queryIconBlobs() {
+        SparseArray<byte[]> iconBlobs = new SparseArray<>();
+        String selection = TextUtils.isEmpty(mSelection) ? ICON_BLOB_SELECTION
+                : ICON_BLOB_SELECTION + " AND (" + mSelection + ")";
+        try (Cursor c = mApp.getModel().getModelDbController().query(TABLE_NAME,
+                new String[] {Favorites._ID, Favorites.ICON}, selection, null, null)) {
+            while (c.moveToNext()) {
+                byte[] blob = c.getBlob(1);
+                mBytesRead += Integer.BYTES + blob.length;
+                iconBlobs.put(c.getInt(0), blob);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading icons", e);
+        }
+        return iconBlobs;
     }
 
     /**
@@ -526,12 +668,12 @@ public class LoaderCursor extends CursorWrapper {
                             + item.cellY + ") already occupied");
                     return false;
                 } else {
-                    hotseatOccupancy.cells[item.screenId][0] = true;
+                    hotseatOccupancy.markCells(item.screenId, 0, 1, 1, true);
                     return true;
                 }
             } else {
                 final GridOccupancy occupancy = new GridOccupancy(mIDP.numDatabaseHotseatIcons, 1);
-                occupancy.cells[item.screenId][0] = true;
+                occupancy.markCells(item.screenId, 0, 1, 1, true);
                 mOccupied.put(Favorites.CONTAINER_HOTSEAT, occupancy);
                 return true;
             }
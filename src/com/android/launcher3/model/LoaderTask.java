@@ -31,6 +31,7 @@ import static com.android.launcher3.model.BgDataModel.Callbacks.FLAG_QUIET_MODE_
 import static com.android.launcher3.model.BgDataModel.Callbacks.FLAG_WORK_PROFILE_QUIET_MODE_ENABLED;
 import static com.android.launcher3.model.ModelUtils.filterCurrentWorkspaceItems;
 import static com.android.launcher3.model.data.ItemInfoWithIcon.FLAG_INSTALL_SESSION_ACTIVE;
+import static com.android.launcher3.util.Executors.LOADER_WORKER_EXECUTOR;
 import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
 import static com.android.launcher3.util.PackageManagerHelper.hasShortcutsPermission;
 
@@ -45,6 +46,7 @@ import android.content.pm.PackageInstaller.SessionInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.ShortcutInfo;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.os.Trace;
 import android.os.UserHandle;
 import android.os.UserManager;
@@ -76,6 +78,7 @@ import com.android.launcher3.icons.ShortcutCachingLogic;
 import com.android.launcher3.icons.cache.CachedObjectCachingLogic;
 import com.android.launcher3.icons.cache.IconCacheUpdateHandler;
 import com.android.launcher3.icons.cache.LauncherActivityCachingLogic;
+import com.android.launcher3.lineage.trust.AppLockHelper;
 import com.android.launcher3.logging.FileLog;
 import com.android.launcher3.model.data.AppInfo;
 import com.android.launcher3.model.data.AppPairInfo;
@@ -96,6 +99,7 @@ import com.android.launcher3.util.ComponentKey;
 import com.android.launcher3.util.IOUtils;
 import com.android.launcher3.util.IntArray;
 import com.android.launcher3.util.IntSet;
+import com.android.launcher3.util.LogConfig;
 import com.android.launcher3.util.LooperIdleLock;
 import com.android.launcher3.util.PackageManagerHelper;
 import com.android.launcher3.util.PackageUserKey;
@@ -109,7 +113,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Runnable for the thread that loads the contents of the launcher:
@@ -152,6 +161,17 @@ public class LoaderTask implements Runnable {
 
     private boolean mStopped;
 
+    /**
+     * When true, steps which do not depend on each other are run on
+     * {@link com.android.launcher3.util.Executors#LOADER_WORKER_EXECUTOR} while the loader thread
+     * continues with the workspace and all apps. Results are still bound in the same order.
+     */
+    private final boolean mUseParallelLoader;
+    private final List<Future<?>> mPendingSteps = new ArrayList<>();
+    // Number of steps running on the worker pool, guarded by this object
+    private int mRunningSteps;
+    private long mLoadStartTime;
+
     private final Set<PackageUserKey> mPendingPackages = new HashSet<>();
     private boolean mItemsDeleted = false;
     private String mDbName;
@@ -178,6 +198,7 @@ public class LoaderTask implements Runnable {
         mIconCache = mApp.getIconCache();
         mUserManagerState = userManagerState;
         mInstallingPkgsCached = null;
+        mUseParallelLoader = !Utilities.isPropertyEnabled(LogConfig.SERIAL_LOADER);
     }
 
     protected synchronized void waitForIdle() {
@@ -196,6 +217,67 @@ public class LoaderTask implements Runnable {
         }
     }
 
+    /**
+     * Schedules a loading step on the worker pool. The step is cancelled along with the loader.
+     */
+    private synchronized <T> Future<T> startStep(String label, Callable<T> step) {
+        verifyNotStopped();
+        Future<T> future = LOADER_WORKER_EXECUTOR.submit(() -> {
+            synchronized (this) {
+                verifyNotStopped();
+                mRunningSteps++;
+            }
+            long startTime = SystemClock.elapsedRealtime();
+            Trace.beginSection(label);
+            try {
+                return step.call();
+            } finally {
+                Trace.endSection();
+                logASplit(label + " finished on worker in "
+                        + (SystemClock.elapsedRealtime() - startTime) + "ms");
+                synchronized (this) {
+                    mRunningSteps--;
+                    notifyAll();
+                }
+            }
+        });
+        mPendingSteps.add(future);
+        return future;
+    }
+
+    /**
+     * Waits for a step scheduled by {@link #startStep} to complete, while still responding to the
+     * loader being stopped.
+     */
+    private <T> T awaitStep(String label, Future<T> future) throws CancellationException {
+        long waitStartTime = SystemClock.elapsedRealtime();
+        try {
+            while (true) {
+                verifyNotStopped();
+                try {
+                    // Wait no longer than 1sec at a time, similar to waitForIdle
+                    T result = future.get(1, TimeUnit.SECONDS);
+                    logASplit(label + " awaited for "
+                            + (SystemClock.elapsedRealtime() - waitStartTime) + "ms");
+                    return result;
+                } catch (TimeoutException e) {
+                    // Check for cancellation and try again
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Loader interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) {
+                throw re;
+            } else if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
     private void sendFirstScreenActiveInstallsBroadcast() {
         // Screen set is never empty
         IntArray allScreens = mBgDataModel.collectWorkspaceScreens();
@@ -237,6 +319,7 @@ public class LoaderTask implements Runnable {
         }
 
         TraceHelper.INSTANCE.beginSection(TAG);
+        mLoadStartTime = SystemClock.elapsedRealtime();
         LoaderMemoryLogger memoryLogger = new LoaderMemoryLogger();
         mIsRestoreFromBackup =
                 (Boolean) LauncherPrefs.get(mApp.getContext()).get(IS_FIRST_LOAD_AFTER_RESTORE);
@@ -246,6 +329,20 @@ public class LoaderTask implements Runnable {
                     .newInstance(mApp.getContext());
         }
         try (LauncherModel.LoaderTransaction transaction = mApp.getModel().beginLoader(this)) {
+            logASplit(mUseParallelLoader ? "Using parallel loader" : "Using serial loader");
+
+            // Fetch the hidden apps once for this load, as they might have been changed
+            // outside of the launcher since the last one.
+            AppLockHelper appLockHelper = AppLockHelper.getInstance(mApp.getContext());
+            appLockHelper.invalidate();
+            int appLockBinderCalls = appLockHelper.getBinderCallCount();
+
+            // The activity list query does not depend on the workspace, so it can be fetched
+            // while the workspace is being loaded.
+            Future<Map<UserHandle, List<LauncherActivityInfo>>> activityListsFuture =
+                    mUseParallelLoader
+                            ? startStep("queryActivityLists", this::queryActivityLists)
+                            : null;
 
             List<ShortcutInfo> allShortcuts = new ArrayList<>();
             loadWorkspace(allShortcuts, "", memoryLogger, restoreEventLogger);
@@ -271,6 +368,18 @@ public class LoaderTask implements Runnable {
             sendFirstScreenActiveInstallsBroadcast();
             logASplit("sendFirstScreenBroadcast");
 
+            // Deep shortcuts and widgets only depend on the workspace being loaded, start loading
+            // them now so that they are ready by the time all apps has been bound.
+            Future<List<ShortcutInfo>> deepShortcutsFuture = null;
+            Future<List<ComponentWithLabelAndIcon>> widgetsFuture = null;
+            if (mUseParallelLoader) {
+                boolean hasShortcutPermission = hasShortcutsPermission(mApp.getContext());
+                deepShortcutsFuture = startStep("loadDeepShortcuts",
+                        () -> loadDeepShortcuts(hasShortcutPermission));
+                widgetsFuture = startStep("loadWidgets",
+                        () -> mBgDataModel.widgetsModel.update(mApp, null));
+            }
+
             // Take a break
             waitForIdle();
             logASplit("step 1 complete");
@@ -280,7 +389,8 @@ public class LoaderTask implements Runnable {
             Trace.beginSection("LoadAllApps");
             List<LauncherActivityInfo> allActivityList;
             try {
-                allActivityList = loadAllApps();
+                allActivityList = loadAllApps(activityListsFuture == null
+                        ? null : awaitStep("queryActivityLists", activityListsFuture));
             } finally {
                 Trace.endSection();
             }
@@ -314,7 +424,9 @@ public class LoaderTask implements Runnable {
             verifyNotStopped();
 
             // third step
-            List<ShortcutInfo> allDeepShortcuts = loadDeepShortcuts();
+            List<ShortcutInfo> allDeepShortcuts = deepShortcutsFuture != null
+                    ? awaitStep("loadDeepShortcuts", deepShortcutsFuture)
+                    : loadDeepShortcuts(mBgAllAppsList.hasShortcutHostPermission());
             logASplit("loadDeepShortcuts");
 
             verifyNotStopped();
@@ -332,8 +444,9 @@ public class LoaderTask implements Runnable {
             verifyNotStopped();
 
             // fourth step
-            List<ComponentWithLabelAndIcon> allWidgetsList =
-                    mBgDataModel.widgetsModel.update(mApp, null);
+            List<ComponentWithLabelAndIcon> allWidgetsList = widgetsFuture != null
+                    ? awaitStep("loadWidgets", widgetsFuture)
+                    : mBgDataModel.widgetsModel.update(mApp, null);
             logASplit("load widgets");
 
             verifyNotStopped();
@@ -371,6 +484,8 @@ public class LoaderTask implements Runnable {
             verifyNotStopped();
             updateHandler.finish();
             logASplit("finish icon update");
+            logASplit("AppLockManager binder calls: "
+                    + (appLockHelper.getBinderCallCount() - appLockBinderCalls));
 
             mModelDelegate.modelLoadComplete();
             transaction.commit();
@@ -388,15 +503,41 @@ public class LoaderTask implements Runnable {
         } catch (Exception e) {
             memoryLogger.printLogs();
             throw e;
+        } finally {
+            cancelPendingSteps();
+            awaitRunningSteps();
         }
         TraceHelper.INSTANCE.endSection();
     }
 
     public synchronized void stopLocked() {
         mStopped = true;
+        cancelPendingSteps();
         this.notify();
     }
 
+    /**
+     * Waits for the steps already running on the worker pool, which cannot be interrupted, so
+     * that a stopped load does not change the model while the next load runs.
+     */
+    private synchronized void awaitRunningSteps() {
+        while (mRunningSteps > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private synchronized void cancelPendingSteps() {
+        for (Future<?> step : mPendingSteps) {
+            step.cancel(false);
+        }
+        mPendingSteps.clear();
+    }
+
     protected void loadWorkspace(
             List<ShortcutInfo> allDeepShortcuts,
             String selection,
@@ -452,9 +593,11 @@ public class LoaderTask implements Runnable {
 
             mShortcutKeyToPinnedShortcuts = new HashMap<>();
             final LoaderCursor c = new LoaderCursor(
-                    dbController.query(TABLE_NAME, null, selection, null, null),
+                    dbController.query(TABLE_NAME, LoaderCursor.WORKSPACE_PROJECTION, selection,
+                            null, null),
                     mApp, mUserManagerState, mPmHelper,
                     mIsRestoreFromBackup ? restoreEventLogger : null);
+            c.loadIconBlobsLazily(selection);
             final Bundle extras = c.getExtras();
             mDbName = extras == null ? null : extras.getString(ModelDbController.EXTRA_DB_NAME);
             try {
@@ -474,6 +617,11 @@ public class LoaderTask implements Runnable {
                     itemProcessor.processItem();
                 }
                 tryLoadWorkspaceIconsInBulk(iconRequestInfos);
+
+                if (memoryLogger != null) {
+                    memoryLogger.addLog(Log.INFO, TAG, "loadWorkspace: rows=" + c.getCount()
+                            + ", bytes read from DB=" + c.getBytesRead());
+                }
             } finally {
                 IOUtils.closeSilently(c);
             }
@@ -686,7 +834,23 @@ public class LoaderTask implements Runnable {
         }
     }
 
-    private List<LauncherActivityInfo> loadAllApps() {
+    /**
+     * Queries the launchable activities for all profiles, without touching any model state.
+     */
+    private Map<UserHandle, List<LauncherActivityInfo>> queryActivityLists() {
+        Map<UserHandle, List<LauncherActivityInfo>> result = new ArrayMap<>();
+        for (UserHandle user : mUserCache.getUserProfiles()) {
+            result.put(user, mLauncherApps.getActivityList(null, user));
+        }
+        return result;
+    }
+
+    /**
+     * @param prefetchedActivities activity lists already queried using
+     *                             {@link #queryActivityLists()}, or null to query them here.
+     */
+    private List<LauncherActivityInfo> loadAllApps(
+            @Nullable Map<UserHandle, List<LauncherActivityInfo>> prefetchedActivities) {
         final List<UserHandle> profiles = mUserCache.getUserProfiles();
         List<LauncherActivityInfo> allActivityList = new ArrayList<>();
         // Clear the list of apps
@@ -697,7 +861,10 @@ public class LoaderTask implements Runnable {
         boolean isPrivateProfileQuiet = false;
         for (UserHandle user : profiles) {
             // Query for the set of apps
-            final List<LauncherActivityInfo> apps = mLauncherApps.getActivityList(null, user);
+            final List<LauncherActivityInfo> apps =
+                    prefetchedActivities != null && prefetchedActivities.containsKey(user)
+                            ? prefetchedActivities.get(user)
+                            : mLauncherApps.getActivityList(null, user);
             // Fail if we don't have any apps
             // TODO: Fix this. Only fail for the current user.
             if (apps == null || apps.isEmpty()) {
@@ -787,15 +954,23 @@ public class LoaderTask implements Runnable {
         return allActivityList;
     }
 
-    private List<ShortcutInfo> loadDeepShortcuts() {
+    /**
+     * Loads the deep shortcuts for all unlocked users. This can be called off the loader thread
+     * as it only touches the model under its lock.
+     */
+    private List<ShortcutInfo> loadDeepShortcuts(boolean hasShortcutHostPermission) {
         List<ShortcutInfo> allShortcuts = new ArrayList<>();
-        mBgDataModel.deepShortcutMap.clear();
+        synchronized (mBgDataModel) {
+            mBgDataModel.deepShortcutMap.clear();
+        }
 
-        if (mBgAllAppsList.hasShortcutHostPermission()) {
+        if (hasShortcutHostPermission) {
             for (UserHandle user : mUserCache.getUserProfiles()) {
+                verifyNotStopped();
                 if (mUserManager.isUserUnlocked(user)) {
                     List<ShortcutInfo> shortcuts = new ShortcutRequest(mApp.getContext(), user)
                             .query(ShortcutRequest.ALL);
+                    verifyNotStopped();
                     allShortcuts.addAll(shortcuts);
                     mBgDataModel.updateDeepShortcutCounts(null, user, shortcuts);
                 }
@@ -826,9 +1001,10 @@ public class LoaderTask implements Runnable {
                 && (provider.provider.getPackageName() != null);
     }
 
-    private static void logASplit(String label) {
+    private void logASplit(String label) {
         if (DEBUG) {
-            Log.d(TAG, label);
+            Log.d(TAG, label + " (" + (SystemClock.elapsedRealtime() - mLoadStartTime)
+                    + "ms since load start)");
         }
     }
 }
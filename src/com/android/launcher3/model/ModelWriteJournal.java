@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.model;
+
+import static com.android.launcher3.LauncherSettings.Favorites.TABLE_NAME;
+import static com.android.launcher3.provider.LauncherDbUtils.itemIdMatch;
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+
+import android.content.ContentValues;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.LauncherModel;
+import com.android.launcher3.logging.FileLog;
+import com.android.launcher3.model.ModelWriter.ModelVerifier;
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.provider.LauncherDbUtils.SQLiteTransaction;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Write-behind journal of the item updates made through {@link ModelWriter}.
+ *
+ * <p>Updates of the same item are merged while pending, and all pending updates are written in a
+ * single transaction, either after a short delay or before any other model write or task runs,
+ * so that the database is always updated in the order the changes were made. This avoids
+ * writing the same rows repeatedly while items are being dragged and reordered.
+ *
+ * <p>The journal is only accessed on the model thread.
+ */
+@WorkerThread
+public class ModelWriteJournal {
+
+    private static final String TAG = "ModelWriteJournal";
+
+    // Delay after the first pending update before the journal is written
+    private static final long FLUSH_DELAY_MS = 500;
+
+    private final LauncherModel mModel;
+    private final Runnable mFlushRunnable = this::flush;
+    // Pending updates by item id, in the order the items were first updated
+    private final LinkedHashMap<Integer, PendingUpdate> mPending = new LinkedHashMap<>();
+    private boolean mFlushScheduled;
+
+    private int mRecordedCount;
+    private int mWrittenCount;
+
+    public ModelWriteJournal(@NonNull LauncherModel model) {
+        mModel = model;
+    }
+
+    /**
+     * Records an update of {@param values} for the item {@param itemId}, merging it with any
+     * pending update of the same item.
+     */
+    void record(@NonNull ModelWriter writer, @NonNull ItemInfo item, int itemId,
+            @NonNull ContentValues values, @Nullable StackTraceElement[] stackTrace,
+            @NonNull ModelVerifier verifier) {
+        int loadId = mModel.getLastLoadId();
+        mRecordedCount++;
+        PendingUpdate update = mPending.get(itemId);
+        if (update != null && update.loadId == loadId) {
+            update.values.putAll(values);
+            update.writer = writer;
+            update.item = item;
+            update.stackTrace = stackTrace;
+            // The first verifier is kept, as the bound model must not change since the first update
+        } else {
+            mPending.put(itemId, new PendingUpdate(writer, item, itemId, new ContentValues(values),
+                    stackTrace, verifier, loadId));
+        }
+
+        if (!mFlushScheduled) {
+            mFlushScheduled = true;
+            MODEL_EXECUTOR.getHandler().postDelayed(mFlushRunnable, FLUSH_DELAY_MS);
+        }
+    }
+
+    /**
+     * Writes all the pending updates to the database. If the write fails, the updates are kept
+     * pending, to be written again by the next flush.
+     */
+    public void flush() {
+        if (mFlushScheduled) {
+            mFlushScheduled = false;
+            MODEL_EXECUTOR.getHandler().removeCallbacks(mFlushRunnable);
+        }
+        if (mPending.isEmpty()) {
+            return;
+        }
+
+        int loadId = mModel.getLastLoadId();
+        ArrayList<PendingUpdate> updates = new ArrayList<>(mPending.size());
+        Iterator<PendingUpdate> iterator = mPending.values().iterator();
+        while (iterator.hasNext()) {
+            PendingUpdate update = iterator.next();
+            if (update.loadId != loadId) {
+                // The item was reloaded from the database since it was updated
+                Log.d(TAG, "Model changed before the update could be written");
+                iterator.remove();
+            } else {
+                updates.add(update);
+            }
+        }
+
+        try (SQLiteTransaction t = mModel.getModelDbController().newTransaction()) {
+            for (PendingUpdate update : updates) {
+                mModel.getModelDbController().update(
+                        TABLE_NAME, update.values, itemIdMatch(update.itemId), null);
+            }
+            t.commit();
+        } catch (Exception e) {
+            FileLog.e(TAG, "Unable to write " + updates.size() + " pending item updates", e);
+            return;
+        }
+
+        mWrittenCount += updates.size();
+        for (PendingUpdate update : updates) {
+            mPending.remove(update.itemId);
+            update.writer.updateItemArrays(
+                    update.item, update.itemId, update.stackTrace, update.verifier);
+        }
+    }
+
+    /**
+     * Returns the number of updates recorded and written so far, the difference being the
+     * updates merged with later updates of the same item.
+     */
+    public String getStats() {
+        return "recorded=" + mRecordedCount + ", written=" + mWrittenCount
+                + ", pending=" + mPending.size();
+    }
+
+    private static class PendingUpdate {
+
+        final int itemId;
+        final ContentValues values;
+        final ModelVerifier verifier;
+        final int loadId;
+
+        ModelWriter writer;
+        ItemInfo item;
+        StackTraceElement[] stackTrace;
+
+        PendingUpdate(ModelWriter writer, ItemInfo item, int itemId, ContentValues values,
+                StackTraceElement[] stackTrace, ModelVerifier verifier, int loadId) {
+            this.writer = writer;
+            this.item = item;
+            this.itemId = itemId;
+            this.values = values;
+            this.stackTrace = stackTrace;
+            this.verifier = verifier;
+            this.loadId = loadId;
+        }
+    }
+}
@@ -65,6 +65,10 @@ public class ModelWriter {
 
     private static final String TAG = "ModelWriter";
 
+    // Stack traces are only used to report inconsistencies, which are only fatal in debug builds
+    private static final boolean CAPTURE_STACK_TRACES =
+            Utilities.IS_DEBUG_DEVICE || FeatureFlags.IS_STUDIO_BUILD;
+
     private final Context mContext;
     private final LauncherModel mModel;
     private final BgDataModel mBgDataModel;
@@ -95,11 +99,13 @@ public class ModelWriter {
             ItemInfo item, int container, int screenId, int cellX, int cellY) {
         CellPos modelPos = mCellPosMapper.mapPresenterToModel(cellX, cellY, screenId, container);
 
+        // Both the previous and the new container of the item are changed
+        mBgDataModel.markItemChanged(item);
         item.container = container;
         item.cellX = modelPos.cellX;
         item.cellY = modelPos.cellY;
         item.screenId = modelPos.screenId;
-
+        mBgDataModel.markItemChanged(item);
     }
 
     /**
@@ -221,6 +227,7 @@ public class ModelWriter {
      * Update an item to the database in a specified container.
      */
     public void updateItemInDatabase(ItemInfo item) {
+        mBgDataModel.markItemChanged(item);
         notifyItemModified(item);
         new UpdateItemRunnable(item, () -> {
             ContentWriter writer = new ContentWriter(mContext);
@@ -245,7 +252,7 @@ public class ModelWriter {
         notifyOtherCallbacks(c -> c.bindItems(Collections.singletonList(item), false));
 
         ModelVerifier verifier = new ModelVerifier();
-        final StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+        final StackTraceElement[] stackTrace = captureStackTrace();
         newModelTask(() -> {
             // Write the item on background thread, as some properties might have been updated in
             // the background.
@@ -383,6 +390,18 @@ public class ModelWriter {
         mModel.forceReload();
     }
 
+    /**
+     * Writes the pending item updates to the database, eg when Launcher is paused.
+     */
+    public void flushPendingUpdates() {
+        MODEL_EXECUTOR.execute(mModel.getWriteJournal()::flush);
+    }
+
+    @Nullable
+    private static StackTraceElement[] captureStackTrace() {
+        return CAPTURE_STACK_TRACES ? new Throwable().getStackTrace() : null;
+    }
+
     private void notifyOtherCallbacks(CallbackTask task) {
         if (mOwner == null) {
             // If the call is happening from a model, it will take care of updating the callbacks
@@ -397,6 +416,10 @@ public class ModelWriter {
         });
     }
 
+    /**
+     * Records an item update in the {@link ModelWriteJournal}, which merges it with the other
+     * pending updates of the same item before writing them to the database.
+     */
     private class UpdateItemRunnable extends UpdateItemBaseRunnable {
         private final ItemInfo mItem;
         private final Supplier<ContentWriter> mWriter;
@@ -408,11 +431,15 @@ public class ModelWriter {
             mItemId = item.id;
         }
 
+        @Override
+        protected boolean isJournaled() {
+            return true;
+        }
+
         @Override
         public void runImpl() {
-            mModel.getModelDbController().update(
-                    TABLE_NAME, mWriter.get().getValues(mContext), itemIdMatch(mItemId), null);
-            updateItemArrays(mItem, mItemId);
+            mModel.getWriteJournal().record(ModelWriter.this, mItem, mItemId,
+                    mWriter.get().getValues(mContext), mStackTrace, mVerifier);
         }
     }
 
@@ -444,54 +471,62 @@ public class ModelWriter {
     }
 
     private abstract class UpdateItemBaseRunnable extends ModelTask {
-        private final StackTraceElement[] mStackTrace;
-        private final ModelVerifier mVerifier = new ModelVerifier();
+        protected final StackTraceElement[] mStackTrace;
+        protected final ModelVerifier mVerifier = new ModelVerifier();
 
         UpdateItemBaseRunnable() {
-            mStackTrace = new Throwable().getStackTrace();
+            mStackTrace = captureStackTrace();
         }
 
         protected void updateItemArrays(ItemInfo item, int itemId) {
-            // Lock on mBgLock *after* the db operation
-            synchronized (mBgDataModel) {
-                checkItemInfoLocked(itemId, item, mStackTrace);
-
-                if (item.container != Favorites.CONTAINER_DESKTOP &&
-                        item.container != Favorites.CONTAINER_HOTSEAT) {
-                    // Item is in a collection, make sure this collection exists
-                    if (!mBgDataModel.collections.containsKey(item.container)) {
-                        // An items container is being set to a that of an item which is not in
-                        // the list of Folders.
-                        String msg = "item: " + item + " container being set to: " +
-                                item.container + ", not in the list of collections";
-                        Log.e(TAG, msg);
-                    }
+            ModelWriter.this.updateItemArrays(item, itemId, mStackTrace, mVerifier);
+        }
+    }
+
+    /**
+     * Updates the model collections after {@param item} was updated in the database.
+     */
+    void updateItemArrays(ItemInfo item, int itemId, @Nullable StackTraceElement[] stackTrace,
+            ModelVerifier verifier) {
+        // Lock on mBgLock *after* the db operation
+        synchronized (mBgDataModel) {
+            checkItemInfoLocked(itemId, item, stackTrace);
+
+            if (item.container != Favorites.CONTAINER_DESKTOP &&
+                    item.container != Favorites.CONTAINER_HOTSEAT) {
+                // Item is in a collection, make sure this collection exists
+                if (!mBgDataModel.collections.containsKey(item.container)) {
+                    // An items container is being set to a that of an item which is not in
+                    // the list of Folders.
+                    String msg = "item: " + item + " container being set to: " +
+                            item.container + ", not in the list of collections";
+                    Log.e(TAG, msg);
                 }
+            }
 
-                // Items are added/removed from the corresponding FolderInfo elsewhere, such
-                // as in Workspace.onDrop. Here, we just add/remove them from the list of items
-                // that are on the desktop, as appropriate
-                ItemInfo modelItem = mBgDataModel.itemsIdMap.get(itemId);
-                if (modelItem != null &&
-                        (modelItem.container == Favorites.CONTAINER_DESKTOP ||
-                                modelItem.container == Favorites.CONTAINER_HOTSEAT)) {
-                    switch (modelItem.itemType) {
-                        case Favorites.ITEM_TYPE_APPLICATION:
-                        case Favorites.ITEM_TYPE_DEEP_SHORTCUT:
-                        case Favorites.ITEM_TYPE_FOLDER:
-                        case Favorites.ITEM_TYPE_APP_PAIR:
-                            if (!mBgDataModel.workspaceItems.contains(modelItem)) {
-                                mBgDataModel.workspaceItems.add(modelItem);
-                            }
-                            break;
-                        default:
-                            break;
-                    }
-                } else {
-                    mBgDataModel.workspaceItems.remove(modelItem);
+            // Items are added/removed from the corresponding FolderInfo elsewhere, such
+            // as in Workspace.onDrop. Here, we just add/remove them from the list of items
+            // that are on the desktop, as appropriate
+            ItemInfo modelItem = mBgDataModel.itemsIdMap.get(itemId);
+            if (modelItem != null &&
+                    (modelItem.container == Favorites.CONTAINER_DESKTOP ||
+                            modelItem.container == Favorites.CONTAINER_HOTSEAT)) {
+                switch (modelItem.itemType) {
+                    case Favorites.ITEM_TYPE_APPLICATION:
+                    case Favorites.ITEM_TYPE_DEEP_SHORTCUT:
+                    case Favorites.ITEM_TYPE_FOLDER:
+                    case Favorites.ITEM_TYPE_APP_PAIR:
+                        if (!mBgDataModel.workspaceItems.contains(modelItem)) {
+                            mBgDataModel.workspaceItems.add(modelItem);
+                        }
+                        break;
+                    default:
+                        break;
                 }
-                mVerifier.verifyModel();
+            } else {
+                mBgDataModel.workspaceItems.remove(modelItem);
             }
+            verifier.verifyModel();
         }
     }
 
@@ -505,9 +540,20 @@ public class ModelWriter {
                 Log.d(TAG, "Model changed before the task could execute");
                 return;
             }
+            if (!isJournaled()) {
+                // Write pending updates first, to keep the order of the changes
+                mModel.getWriteJournal().flush();
+            }
             runImpl();
         }
 
+        /**
+         * Returns true if this task only records an update in the {@link ModelWriteJournal}.
+         */
+        protected boolean isJournaled() {
+            return false;
+        }
+
         public final void executeOnModelThread() {
             MODEL_EXECUTOR.execute(this);
         }
@@ -45,6 +45,7 @@ import com.android.launcher3.R;
 import com.android.launcher3.Utilities;
 import com.android.launcher3.config.FeatureFlags;
 import com.android.launcher3.icons.IconCache;
+import com.android.launcher3.lineage.trust.AppLockHelper;
 import com.android.launcher3.logging.FileLog;
 import com.android.launcher3.model.data.ItemInfo;
 import com.android.launcher3.model.data.LauncherAppWidgetInfo;
@@ -59,6 +60,7 @@ import com.android.launcher3.util.ItemInfoMatcher;
 import com.android.launcher3.util.PackageManagerHelper;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.SafeCloseable;
+import com.android.launcher3.widget.WidgetPreviewCache;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -111,6 +113,9 @@ public class PackageUpdatedTask implements ModelUpdateTask {
         final LauncherAppState app = taskController.getApp();
         final Context context = app.getContext();
         final IconCache iconCache = app.getIconCache();
+        // Another client of AppLockManager, like Settings, may have changed the hidden or
+        // protected state of the packages
+        AppLockHelper.getInstance(context).invalidate();
 
         final String[] packages = mPackages;
         final int packageCount = packages.length;
@@ -423,6 +428,11 @@ public class PackageUpdatedTask implements ModelUpdateTask {
             }
         }
 
+        if (mOp == OP_UPDATE || mOp == OP_REMOVE) {
+            // The widget previews are generated from the resources of the packages
+            WidgetPreviewCache.INSTANCE.get(context).invalidate(packageSet, mUser);
+        }
+
         if (!removedPackages.isEmpty() || !removedComponents.isEmpty()) {
             Predicate<ItemInfo> removeMatch =
                     ItemInfoMatcher.ofPackages(removedPackages, mUser)
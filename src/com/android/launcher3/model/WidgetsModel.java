@@ -38,6 +38,7 @@ import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.util.Preconditions;
 import com.android.launcher3.widget.LauncherAppWidgetProviderInfo;
 import com.android.launcher3.widget.WidgetManagerHelper;
+import com.android.launcher3.widget.WidgetPreviewCache;
 import com.android.launcher3.widget.WidgetSections;
 import com.android.wm.shell.Flags;
 
@@ -102,7 +103,8 @@ public class WidgetsModel {
         if (!WIDGETS_ENABLED) {
             return Collections.emptyList();
         }
-        Preconditions.assertWorkerThread();
+        // The loader can run this on its worker pool, state changes are guarded by this object.
+        Preconditions.assertNonUiThread();
 
         Context context = app.getContext();
         final ArrayList<WidgetItem> widgetsAndShortcuts = new ArrayList<>();
@@ -182,6 +184,7 @@ public class WidgetsModel {
         if (!WIDGETS_ENABLED) {
             return;
         }
+        WidgetPreviewCache.INSTANCE.get(app.getContext()).invalidate(packageNames, user);
         WidgetManagerHelper widgetManager = new WidgetManagerHelper(app.getContext());
         for (Entry<PackageItemInfo, List<WidgetItem>> entry : mWidgetsByPackageItem.entrySet()) {
             if (packageNames.contains(entry.getKey().packageName)) {
@@ -25,6 +25,7 @@ import android.content.pm.ApplicationInfo;
 import android.content.pm.LauncherActivityInfo;
 import android.os.UserHandle;
 import android.os.UserManager;
+import android.text.TextUtils;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -36,6 +37,7 @@ import com.android.launcher3.Utilities;
 import com.android.launcher3.pm.PackageInstallInfo;
 import com.android.launcher3.pm.UserCache;
 import com.android.launcher3.util.ApiWrapper;
+import com.android.launcher3.util.LabelComparator;
 import com.android.launcher3.util.PackageManagerHelper;
 import com.android.launcher3.util.UserIconInfo;
 
@@ -68,6 +70,10 @@ public class AppInfo extends ItemInfoWithIcon implements WorkspaceItemFactory {
     // Section name used for indexing.
     public String sectionName = "";
 
+    // Collation key of the sorting title, computed by the model along with the section name.
+    @Nullable
+    public LabelComparator.SortKey sortKey;
+
     /**
      * The uid of the application.
      * The kernel user-ID that has been assigned to this application. Currently this is not a unique
@@ -141,6 +147,20 @@ public class AppInfo extends ItemInfoWithIcon implements WorkspaceItemFactory {
         return super.dumpProperties() + " componentName=" + componentName;
     }
 
+    /**
+     * Returns the title which the app is sorted by in all apps.
+     */
+    @NonNull
+    public String getSortingTitle() {
+        if (!TextUtils.isEmpty(appTitle)) {
+            return appTitle.toString();
+        }
+        if (title != null) {
+            return title.toString();
+        }
+        return "";
+    }
+
     @Override
     public WorkspaceItemInfo makeWorkspaceItem(Context context) {
         WorkspaceItemInfo workspaceItemInfo = new WorkspaceItemInfo(this);
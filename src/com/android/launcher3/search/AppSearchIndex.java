@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.search;
+
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.text.TextUtils;
+import android.util.ArrayMap;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.search.StringMatcherUtility.IndexedTarget;
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * Index of the app titles used to match search queries, maintained incrementally by
+ * {@link com.android.launcher3.model.AllAppsList} on the model thread.
+ *
+ * <p>Each title is split once at its word breaks, so that matching a query only needs a single
+ * collator comparison per word instead of re-scanning every title on each keystroke. Apps are
+ * partitioned by user so that quiet mode is only checked once per profile, and when a query
+ * extends the previous one only the previous matches are checked again.
+ */
+@WorkerThread
+public class AppSearchIndex {
+
+    private static final Comparator<Entry> SEQUENCE_COMPARATOR =
+            Comparator.comparingLong(e -> e.sequence);
+
+    // A single matcher is shared by all the queries, as creating a Collator is expensive.
+    private final StringMatcher mMatcher = StringMatcher.getInstance();
+    private final ArrayMap<UserHandle, HashMap<AppInfo, Entry>> mPartitions = new ArrayMap<>();
+
+    // Sequence used to return the results in the order the apps were added
+    private long mNextSequence = 0;
+    // Incremented whenever the indexed apps change, to invalidate the previous matches
+    private int mGeneration = 0;
+
+    private String mLastQuery;
+    private int mLastGeneration;
+    private ArrayList<Entry> mLastMatches;
+
+    /**
+     * Adds {@param info} to the index, or updates it if it is already indexed.
+     */
+    public void add(@NonNull AppInfo info) {
+        HashMap<AppInfo, Entry> partition = mPartitions.get(info.user);
+        if (partition == null) {
+            partition = new HashMap<>();
+            mPartitions.put(info.user, partition);
+        }
+        Entry entry = partition.get(info);
+        if (entry == null) {
+            partition.put(info, new Entry(info, mNextSequence++, mMatcher));
+        } else {
+            entry.update(mMatcher);
+        }
+        mGeneration++;
+    }
+
+    /**
+     * Updates the indexed title of {@param info}, eg after its label changed.
+     */
+    public void update(@NonNull AppInfo info) {
+        HashMap<AppInfo, Entry> partition = mPartitions.get(info.user);
+        Entry entry = partition == null ? null : partition.get(info);
+        if (entry != null && entry.update(mMatcher)) {
+            mGeneration++;
+        }
+    }
+
+    /**
+     * Removes {@param info} from the index.
+     */
+    public void remove(@NonNull AppInfo info) {
+        HashMap<AppInfo, Entry> partition = mPartitions.get(info.user);
+        if (partition != null && partition.remove(info) != null) {
+            if (partition.isEmpty()) {
+                mPartitions.remove(info.user);
+            }
+            mGeneration++;
+        }
+    }
+
+    /**
+     * Removes all the apps from the index.
+     */
+    public void clear() {
+        mPartitions.clear();
+        mGeneration++;
+        mLastMatches = null;
+    }
+
+    /**
+     * Returns the apps whose title matches {@param query}, excluding apps of users in quiet mode.
+     *
+     * @see StringMatcherUtility#matches(String, String, StringMatcher)
+     */
+    public ArrayList<AppInfo> search(@NonNull UserManager userManager, @NonNull String query) {
+        final String queryTextLower = query.toLowerCase();
+        final boolean simpleFuzzySearch =
+                StringMatcherUtility.requestSimpleFuzzySearch(queryTextLower);
+
+        ArrayList<Entry> matches = new ArrayList<>();
+        if (canRefineLastMatches(queryTextLower, simpleFuzzySearch)) {
+            // A match of the extended query is always a match of the previous query
+            for (Entry entry : mLastMatches) {
+                if (entry.matches(queryTextLower, simpleFuzzySearch, mMatcher)) {
+                    matches.add(entry);
+                }
+            }
+        } else {
+            for (int i = mPartitions.size() - 1; i >= 0; i--) {
+                for (Entry entry : mPartitions.valueAt(i).values()) {
+                    if (entry.matches(queryTextLower, simpleFuzzySearch, mMatcher)) {
+                        matches.add(entry);
+                    }
+                }
+            }
+            matches.sort(SEQUENCE_COMPARATOR);
+        }
+        // Matches of quiet users are kept so that refining the query does not depend on quiet mode
+        mLastQuery = queryTextLower;
+        mLastGeneration = mGeneration;
+        mLastMatches = matches;
+
+        ArrayMap<UserHandle, Boolean> quietUsers = new ArrayMap<>(mPartitions.size());
+        ArrayList<AppInfo> result = new ArrayList<>(matches.size());
+        for (Entry entry : matches) {
+            Boolean isQuiet = quietUsers.get(entry.info.user);
+            if (isQuiet == null) {
+                isQuiet = userManager.isQuietModeEnabled(entry.info.user);
+                quietUsers.put(entry.info.user, isQuiet);
+            }
+            if (!isQuiet) {
+                result.add(entry.info);
+            }
+        }
+        return result;
+    }
+
+    private boolean canRefineLastMatches(String queryTextLower, boolean simpleFuzzySearch) {
+        return mLastMatches != null
+                && mLastGeneration == mGeneration
+                && queryTextLower.startsWith(mLastQuery)
+                // Switching between word and substring matching can add new matches
+                && simpleFuzzySearch == StringMatcherUtility.requestSimpleFuzzySearch(mLastQuery);
+    }
+
+    private static class Entry {
+
+        final AppInfo info;
+        final long sequence;
+
+        // The title which was indexed
+        CharSequence title;
+        IndexedTarget target;
+
+        Entry(AppInfo info, long sequence, StringMatcher matcher) {
+            this.info = info;
+            this.sequence = sequence;
+            index(matcher);
+        }
+
+        /**
+         * Re-indexes the title if it changed, returning true if it did.
+         */
+        boolean update(StringMatcher matcher) {
+            if (title == info.title) {
+                return false;
+            }
+            if (TextUtils.equals(title, info.title)) {
+                // Same label from another source, eg when the icon was reloaded
+                title = info.title;
+                return false;
+            }
+            index(matcher);
+            return true;
+        }
+
+        private void index(StringMatcher matcher) {
+            title = info.title;
+            target = new IndexedTarget(title, matcher);
+        }
+
+        boolean matches(String queryTextLower, boolean simpleFuzzySearch, StringMatcher matcher) {
+            return target.matches(queryTextLower, simpleFuzzySearch, matcher);
+        }
+    }
+}
@@ -23,6 +23,8 @@ import androidx.annotation.Nullable;
 import com.android.launcher3.util.IntArray;
 
 import java.text.Collator;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.IntStream;
 
 /**
@@ -67,6 +69,65 @@ public class StringMatcherUtility {
         return false;
     }
 
+    /**
+     * A target string which is split at its break points once, so that it can be matched against
+     * multiple queries without computing the break points again.
+     *
+     * @see #matches(String, String, StringMatcher)
+     */
+    public static class IndexedTarget {
+
+        private final int mLength;
+        private final String mLowerCase;
+        // Suffixes of the target starting at each of its break points
+        private final List<String> mBreakSuffixes = new ArrayList<>();
+
+        public IndexedTarget(@Nullable CharSequence target, StringMatcher matcher) {
+            String value = target == null ? "" : target.toString();
+            mLength = value.length();
+            mLowerCase = value.toLowerCase();
+
+            int lastType;
+            int thisType = Character.UNASSIGNED;
+            int nextType = mLength > 0
+                    ? Character.getType(value.codePointAt(0)) : Character.UNASSIGNED;
+            for (int i = 0; i < mLength; i++) {
+                lastType = thisType;
+                thisType = nextType;
+                nextType = i < (mLength - 1)
+                        ? Character.getType(value.codePointAt(i + 1)) : Character.UNASSIGNED;
+                if (matcher.isBreak(thisType, lastType, nextType)) {
+                    mBreakSuffixes.add(value.substring(i));
+                }
+            }
+        }
+
+        /**
+         * Returns {@code true} if {@code query} is a prefix of a substring in the target.
+         *
+         * @param simpleFuzzySearch the result of {@link #requestSimpleFuzzySearch} for the query,
+         *                          which can be computed once for all the targets.
+         */
+        public boolean matches(String query, boolean simpleFuzzySearch, StringMatcher matcher) {
+            int queryLength = query.length();
+            if (mLength < queryLength || queryLength <= 0) {
+                return false;
+            }
+            if (simpleFuzzySearch) {
+                return mLowerCase.contains(query);
+            }
+            // The matcher checks for a prefix, so the suffix does not need to be cut to the
+            // length of the query.
+            for (int i = 0; i < mBreakSuffixes.size(); i++) {
+                String suffix = mBreakSuffixes.get(i);
+                if (suffix.length() >= queryLength && matcher.matches(query, suffix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
     /**
      * Returns a list of breakpoints wherever the string contains a break. For example:
      * "t-mobile" would have breakpoints at [0, 1]
@@ -222,7 +283,7 @@ public class StringMatcherUtility {
     /**
      * Matching optimization to search in Chinese.
      */
-    private static boolean requestSimpleFuzzySearch(String s) {
+    public static boolean requestSimpleFuzzySearch(String s) {
         for (int i = 0; i < s.length(); ) {
             int codepoint = s.codePointAt(i);
             i += Character.charCount(codepoint);
@@ -38,6 +38,7 @@ public class Executors {
     private static final int POOL_SIZE =
             Math.max(Runtime.getRuntime().availableProcessors(), 2);
     private static final int KEEP_ALIVE = 1;
+    private static final int LOADER_POOL_SIZE = 2;
 
     /** Dedicated executor instances for work depending on other packages. */
     private static final Map<String, LooperExecutor> PACKAGE_EXECUTORS = new ConcurrentHashMap<>();
@@ -96,6 +97,23 @@ public class Executors {
     public static final LooperExecutor MODEL_EXECUTOR =
             new LooperExecutor(createAndStartNewLooper("launcher-loader"));
 
+    /**
+     * A bounded pool used by the loader to run steps which are independent of each other (eg
+     * deep shortcuts and widgets) alongside {@link #MODEL_EXECUTOR}. Threads are released when
+     * the pool is idle, as it is only used during a model load.
+     */
+    public static final ThreadPoolExecutor LOADER_WORKER_EXECUTOR = newLoaderWorkerExecutor();
+
+    private static ThreadPoolExecutor newLoaderWorkerExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                LOADER_POOL_SIZE, LOADER_POOL_SIZE, KEEP_ALIVE, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new SimpleThreadFactory(
+                        "launcher-loader-worker", Process.THREAD_PRIORITY_DEFAULT));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     /**
      * Returns and caches a single thread executor for a given package.
      *
@@ -4,20 +4,33 @@ import android.graphics.Rect;
 
 import com.android.launcher3.model.data.ItemInfo;
 
+import java.util.Arrays;
+
 /**
  * Utility object to manage the occupancy in a grid.
+ *
+ * <p>Along with {@link #cells}, the occupancy of each row is kept as a bitmask, so that regions
+ * are checked a row at a time instead of a cell at a time.
  */
 public class GridOccupancy {
 
     private final int mCountX;
     private final int mCountY;
 
+    /**
+     * Occupied state of each cell, indexed by x then y. It must only be changed through
+     * {@link #markCells}, which keeps the row bitmasks in sync.
+     */
     public final boolean[][] cells;
 
+    // Bit x of the row y is set if the cell (x, y) is occupied, null if the grid is too wide
+    private final long[] mRows;
+
     public GridOccupancy(int countX, int countY) {
         mCountX = countX;
         mCountY = countY;
         cells = new boolean[countX][countY];
+        mRows = countX <= Long.SIZE ? new long[countY] : null;
     }
 
     /**
@@ -30,17 +43,40 @@ public class GridOccupancy {
      * @return true if a vacant cell was found
      */
     public boolean findVacantCell(int[] vacantOut, int spanX, int spanY) {
+        if (spanX <= 0 || spanY <= 0 || spanX > mCountX || spanY > mCountY) {
+            return false;
+        }
+        if (mRows == null) {
+            return findVacantCellByCells(vacantOut, spanX, spanY);
+        }
+
+        // Bits of the columns which can start a region of spanX cells
+        long startMask = rowMask(0, mCountX - spanX + 1);
+        for (int y = 0; (y + spanY) <= mCountY; y++) {
+            // A column is free if it is vacant in all the rows of the region
+            long occupied = 0;
+            for (int j = y; j < y + spanY; j++) {
+                occupied |= mRows[j];
+            }
+            // Keep the columns followed by spanX - 1 free columns
+            long free = ~occupied;
+            long starts = free & startMask;
+            for (int i = 1; i < spanX && starts != 0; i++) {
+                starts &= free >>> i;
+            }
+            if (starts != 0) {
+                vacantOut[0] = Long.numberOfTrailingZeros(starts);
+                vacantOut[1] = y;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean findVacantCellByCells(int[] vacantOut, int spanX, int spanY) {
         for (int y = 0; (y + spanY) <= mCountY; y++) {
             for (int x = 0; (x + spanX) <= mCountX; x++) {
-                boolean available = !cells[x][y];
-                out:
-                for (int i = x; i < x + spanX; i++) {
-                    for (int j = y; j < y + spanY; j++) {
-                        available = available && !cells[i][j];
-                        if (!available) break out;
-                    }
-                }
-                if (available) {
+                if (isRegionVacantByCells(x, y, spanX, spanY)) {
                     vacantOut[0] = x;
                     vacantOut[1] = y;
                     return true;
@@ -52,20 +88,73 @@ public class GridOccupancy {
 
     public void copyTo(GridOccupancy dest) {
         for (int i = 0; i < mCountX; i++) {
+            System.arraycopy(cells[i], 0, dest.cells[i], 0, mCountY);
+        }
+        if (mRows != null && dest.mRows != null) {
+            long mask = rowMask(0, mCountX);
             for (int j = 0; j < mCountY; j++) {
-                dest.cells[i][j] = cells[i][j];
+                dest.mRows[j] = (dest.mRows[j] & ~mask) | mRows[j];
             }
         }
     }
 
+    /**
+     * Returns a copy of this occupancy, for example to try changes which may be discarded.
+     */
+    public GridOccupancy copy() {
+        GridOccupancy copy = new GridOccupancy(mCountX, mCountY);
+        copyTo(copy);
+        return copy;
+    }
+
     public boolean isRegionVacant(int x, int y, int spanX, int spanY) {
         int x2 = x + spanX - 1;
         int y2 = y + spanY - 1;
         if (x < 0 || y < 0 || x2 >= mCountX || y2 >= mCountY) {
             return false;
         }
-        for (int i = x; i <= x2; i++) {
-            for (int j = y; j <= y2; j++) {
+        if (mRows == null) {
+            return isRegionVacantByCells(x, y, spanX, spanY);
+        }
+        long mask = rowMask(x, spanX);
+        for (int j = y; j <= y2; j++) {
+            if ((mRows[j] & mask) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the cells occupied in {@param block} are vacant in this grid, the top left
+     * cell of {@param block} being placed at x, y. The cells which are vacant in {@param block}
+     * may be occupied in this grid.
+     */
+    public boolean isRegionVacant(int x, int y, GridOccupancy block) {
+        if (x < 0 || y < 0 || x + block.mCountX > mCountX || y + block.mCountY > mCountY) {
+            return false;
+        }
+        if (mRows == null || block.mRows == null) {
+            for (int i = 0; i < block.mCountX; i++) {
+                for (int j = 0; j < block.mCountY; j++) {
+                    if (block.cells[i][j] && cells[x + i][y + j]) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        for (int j = 0; j < block.mCountY; j++) {
+            if (((mRows[y + j] >>> x) & block.mRows[j]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isRegionVacantByCells(int x, int y, int spanX, int spanY) {
+        for (int i = x; i < x + spanX; i++) {
+            for (int j = y; j < y + spanY; j++) {
                 if (cells[i][j]) {
                     return false;
                 }
@@ -76,9 +165,16 @@ public class GridOccupancy {
 
     public void markCells(int cellX, int cellY, int spanX, int spanY, boolean value) {
         if (cellX < 0 || cellY < 0) return;
-        for (int x = cellX; x < cellX + spanX && x < mCountX; x++) {
-            for (int y = cellY; y < cellY + spanY && y < mCountY; y++) {
-                cells[x][y] = value;
+        int endX = Math.min(cellX + spanX, mCountX);
+        int endY = Math.min(cellY + spanY, mCountY);
+        if (endX <= cellX || endY <= cellY) return;
+        for (int x = cellX; x < endX; x++) {
+            Arrays.fill(cells[x], cellY, endY, value);
+        }
+        if (mRows != null) {
+            long mask = rowMask(cellX, endX - cellX);
+            for (int y = cellY; y < endY; y++) {
+                mRows[y] = value ? mRows[y] | mask : mRows[y] & ~mask;
             }
         }
     }
@@ -99,6 +195,29 @@ public class GridOccupancy {
         markCells(0, 0, mCountX, mCountY, false);
     }
 
+    /**
+     * Returns the bits of the {@param span} columns starting at {@param x}.
+     */
+    private static long rowMask(int x, int span) {
+        return (span >= Long.SIZE ? -1L : (1L << span) - 1) << x;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof GridOccupancy other)
+                || mCountX != other.mCountX || mCountY != other.mCountY) {
+            return false;
+        }
+        return mRows != null ? Arrays.equals(mRows, other.mRows)
+                : Arrays.deepEquals(cells, other.cells);
+    }
+
+    @Override
+    public int hashCode() {
+        return mRows != null ? Arrays.hashCode(mRows) : Arrays.deepHashCode(cells);
+    }
+
     @Override
     public String toString() {
         StringBuilder s = new StringBuilder("Grid: \n");
@@ -15,25 +15,32 @@
  */
 package com.android.launcher3.util;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.text.CollationKey;
 import java.text.Collator;
 import java.util.Comparator;
+import java.util.Locale;
 
 /**
  * Extension of {@link java.text.Collator} with special handling for digits. Used for comparing
  * user visible labels.
+ *
+ * <p>Labels which are compared repeatedly can be converted to a {@link SortKey} once, the keys
+ * being compared by their bytes instead of collating the labels again.
  */
 public class LabelComparator implements Comparator<String> {
 
     private final Collator mCollator = Collator.getInstance();
+    private final Locale mLocale = Locale.getDefault();
 
     @Override
     public int compare(String titleA, String titleB) {
         // Ensure that we de-prioritize any titles that don't start with a
         // linguistic letter or digit
-        boolean aStartsWithLetter = (titleA.length() > 0) &&
-                Character.isLetterOrDigit(titleA.codePointAt(0));
-        boolean bStartsWithLetter = (titleB.length() > 0) &&
-                Character.isLetterOrDigit(titleB.codePointAt(0));
+        boolean aStartsWithLetter = startsWithLetterOrDigit(titleA);
+        boolean bStartsWithLetter = startsWithLetterOrDigit(titleB);
         if (aStartsWithLetter && !bStartsWithLetter) {
             return -1;
         } else if (!aStartsWithLetter && bStartsWithLetter) {
@@ -43,4 +50,58 @@ public class LabelComparator implements Comparator<String> {
         // Order by the title in the current locale
         return mCollator.compare(titleA, titleB);
     }
+
+    /**
+     * Returns the key of {@param label}, which compares to the other keys of this comparator as
+     * the labels would. The comparator must not be used concurrently.
+     */
+    @NonNull
+    public SortKey getSortKey(@NonNull String label) {
+        return new SortKey(label, startsWithLetterOrDigit(label),
+                mCollator.getCollationKey(label), mLocale);
+    }
+
+    /**
+     * Returns whether {@param key} was created for {@param label} in the locale of this
+     * comparator, so that it can be compared to the keys of this comparator.
+     */
+    public boolean isValidKey(@Nullable SortKey key, @NonNull String label) {
+        return key != null && mLocale.equals(key.mLocale) && label.equals(key.mLabel);
+    }
+
+    private static boolean startsWithLetterOrDigit(String title) {
+        return title.length() > 0 && Character.isLetterOrDigit(title.codePointAt(0));
+    }
+
+    /**
+     * Precomputed collation of a label, see {@link #getSortKey(String)}.
+     */
+    public static final class SortKey implements Comparable<SortKey> {
+
+        private final String mLabel;
+        private final boolean mStartsWithLetter;
+        private final CollationKey mCollationKey;
+        private final Locale mLocale;
+
+        private SortKey(String label, boolean startsWithLetter, CollationKey collationKey,
+                Locale locale) {
+            mLabel = label;
+            mStartsWithLetter = startsWithLetter;
+            mCollationKey = collationKey;
+            mLocale = locale;
+        }
+
+        @NonNull
+        public String getLabel() {
+            return mLabel;
+        }
+
+        @Override
+        public int compareTo(SortKey other) {
+            if (mStartsWithLetter != other.mStartsWithLetter) {
+                return mStartsWithLetter ? -1 : 1;
+            }
+            return mCollationKey.compareTo(other.mCollationKey);
+        }
+    }
 }
@@ -31,6 +31,12 @@ public class LogConfig {
      */
     public static final String MEMORY_ONLY_ICON_CACHE = "MemoryOnlyIconCache";
 
+    /**
+     * When turned on, the loader runs all its steps sequentially on the loader thread instead of
+     * running independent steps in parallel. Useful for comparing load timings of both modes.
+     */
+    public static final String SERIAL_LOADER = "SerialLoader";
+
     /**
      * When turned on, we enable doodle related logging.
      */
@@ -16,6 +16,7 @@
 
 package com.android.launcher3.util;
 
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.os.UserHandle;
@@ -33,42 +34,94 @@ import com.android.launcher3.pm.UserCache;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
-import org.xmlpull.v1.XmlSerializer;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.function.LongFunction;
 
 /**
  * Utility class to read/write a list of {@link com.android.launcher3.model.data.ItemInfo} on disk.
  * This class is not thread safe, the caller should ensure proper threading
+ *
+ * <p>The items are stored in a binary file: a header with the format version, the table of the
+ * components of the items, and a length-prefixed record per item. Files written in the previous
+ * XML format are converted when first read.
+ *
+ * <p>The intents are stored as their action, categories, flags and package, and only fall back to
+ * the intent URI when they carry anything else, like data or extras.
  */
 public class PersistedItemArray<T extends ItemInfo> {
 
     private static final String TAG = "PersistedItemArray";
 
+    private static final int MAGIC = 0x50494152; // PIAR
+    private static final int FORMAT_VERSION = 2;
+    // Version where all the intents were stored as URIs
+    private static final int FORMAT_VERSION_URI = 1;
+    private static final int NO_COMPONENT = -1;
+
+    private static final byte INTENT_FIELDS = 0;
+    private static final byte INTENT_URI = 1;
+
     private static final String TAG_ROOT = "items";
     private static final String TAG_ENTRY = "entry";
 
     private final String mFileName;
+    private final String mLegacyFileName;
 
     public PersistedItemArray(String fileName) {
-        mFileName = fileName + ".xml";
+        mFileName = fileName + ".bin";
+        mLegacyFileName = fileName + ".xml";
     }
 
     /**
-     * Writes the provided list of items on the disk
+     * Writes the provided list of items on the disk, unless they are already persisted
      */
     @WorkerThread
     public void write(Context context, List<T> items) {
+        UserCache userCache = UserCache.INSTANCE.get(context);
+        List<Entry> entries = new ArrayList<>(items.size());
+        for (T item : items) {
+            Intent intent = item.getIntent();
+            if (intent != null) {
+                entries.add(new Entry(item.itemType,
+                        userCache.getSerialNumberForUser(item.user), intent));
+            }
+        }
+        write(context, entries);
+    }
+
+    private void write(Context context, List<Entry> entries) {
         AtomicFile file = getFile(context);
+        byte[] content = encode(entries);
+        if (file.getBaseFile().exists()) {
+            try {
+                if (Arrays.equals(content, file.readFully())) {
+                    // Avoid syncing the same content to the disk
+                    deleteLegacyFile(context);
+                    return;
+                }
+            } catch (IOException e) {
+                // Overwritten below
+            }
+        }
+
         FileOutputStream fos;
         try {
             fos = file.startWrite();
@@ -76,36 +129,15 @@ public class PersistedItemArray<T extends ItemInfo> {
             Log.e(TAG, "Unable to persist items in " + mFileName, e);
             return;
         }
-
-        UserCache userCache = UserCache.INSTANCE.get(context);
-
         try {
-            XmlSerializer out = Xml.newSerializer();
-            out.setOutput(fos, StandardCharsets.UTF_8.name());
-            out.startDocument(null, true);
-            out.startTag(null, TAG_ROOT);
-            for (T item : items) {
-                Intent intent = item.getIntent();
-                if (intent == null) {
-                    continue;
-                }
-
-                out.startTag(null, TAG_ENTRY);
-                out.attribute(null, Favorites.ITEM_TYPE, Integer.toString(item.itemType));
-                out.attribute(null, Favorites.PROFILE_ID,
-                        Long.toString(userCache.getSerialNumberForUser(item.user)));
-                out.attribute(null, Favorites.INTENT, intent.toUri(0));
-                out.endTag(null, TAG_ENTRY);
-            }
-            out.endTag(null, TAG_ROOT);
-            out.endDocument();
+            fos.write(content);
         } catch (IOException e) {
             file.failWrite(fos);
             Log.e(TAG, "Unable to persist items in " + mFileName, e);
             return;
         }
-
         file.finishWrite(fos);
+        deleteLegacyFile(context);
     }
 
     /**
@@ -122,8 +154,221 @@ public class PersistedItemArray<T extends ItemInfo> {
      */
     @WorkerThread
     public List<T> read(Context context, ItemFactory<T> factory, LongFunction<UserHandle> userFn) {
-        List<T> result = new ArrayList<>();
-        try (FileInputStream fis = getFile(context).openRead()) {
+        List<Entry> entries;
+        try {
+            entries = readEntries(context);
+        } catch (IOException | XmlPullParserException | RuntimeException e) {
+            Log.e(TAG, "Unable to read items in " + mFileName, e);
+            return Collections.emptyList();
+        }
+
+        List<T> result = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            try {
+                UserHandle user = userFn.apply(entry.userSerial);
+                if (user != null) {
+                    T item = factory.createInfo(entry.itemType, user, entry.intent);
+                    if (item != null) {
+                        result.add(item);
+                    }
+                }
+            } catch (Exception e) {
+                // Ignore this entry
+            }
+        }
+        return result;
+    }
+
+    private List<Entry> readEntries(Context context) throws IOException, XmlPullParserException {
+        byte[] content;
+        try {
+            content = getFile(context).readFully();
+        } catch (FileNotFoundException e) {
+            List<Entry> entries = readLegacyEntries(context);
+            if (entries != null) {
+                // Convert the file to the binary format
+                write(context, entries);
+                return entries;
+            }
+            return Collections.emptyList();
+        }
+        return decode(content);
+    }
+
+    /**
+     * Returns the underlying file used for persisting data
+     */
+    public AtomicFile getFile(Context context) {
+        return new AtomicFile(context.getFileStreamPath(mFileName));
+    }
+
+    private void deleteLegacyFile(Context context) {
+        File file = context.getFileStreamPath(mLegacyFileName);
+        if (file.exists()) {
+            new AtomicFile(file).delete();
+        }
+    }
+
+    private static byte[] encode(List<Entry> entries) {
+        // Most of the items are apps, whose intents only differ by their component
+        Map<String, Integer> componentIndices = new HashMap<>();
+        List<String> components = new ArrayList<>();
+        ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+        try {
+            DataOutputStream records = new DataOutputStream(recordBytes);
+            ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+            DataOutputStream entryOut = new DataOutputStream(entryBytes);
+            for (Entry entry : entries) {
+                ComponentName cn = entry.intent.getComponent();
+                int componentIndex = NO_COMPONENT;
+                if (cn != null) {
+                    componentIndex = componentIndices.computeIfAbsent(cn.flattenToString(), c -> {
+                        components.add(c);
+                        return components.size() - 1;
+                    });
+                }
+                Intent intent = new Intent(entry.intent).setComponent(null);
+
+                entryBytes.reset();
+                entryOut.writeInt(entry.itemType);
+                entryOut.writeLong(entry.userSerial);
+                entryOut.writeInt(componentIndex);
+                writeIntent(entryOut, intent);
+                records.writeInt(entryBytes.size());
+                entryBytes.writeTo(records);
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(recordBytes.size() + 256);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(components.size());
+            for (String component : components) {
+                writeString(out, component);
+            }
+            out.writeInt(entries.size());
+            recordBytes.writeTo(out);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // Not thrown by in-memory streams
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<Entry> decode(byte[] content) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Unknown format");
+        }
+        int version = buffer.getInt();
+        if (version != FORMAT_VERSION && version != FORMAT_VERSION_URI) {
+            throw new IOException("Unknown format version " + version);
+        }
+        String[] components = new String[buffer.getInt()];
+        for (int i = 0; i < components.length; i++) {
+            components[i] = readString(buffer);
+        }
+
+        int count = buffer.getInt();
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = buffer.getInt();
+            int end = buffer.position() + length;
+            try {
+                int itemType = buffer.getInt();
+                long userSerial = buffer.getLong();
+                int componentIndex = buffer.getInt();
+                Intent intent = version == FORMAT_VERSION_URI
+                        ? Intent.parseUri(readString(buffer), 0) : readIntent(buffer);
+                if (componentIndex != NO_COMPONENT) {
+                    intent.setComponent(
+                            ComponentName.unflattenFromString(components[componentIndex]));
+                }
+                entries.add(new Entry(itemType, userSerial, intent));
+            } catch (Exception e) {
+                // Ignore this entry
+            }
+            buffer.position(end);
+        }
+        return entries;
+    }
+
+    private static void writeIntent(DataOutputStream out, Intent intent) throws IOException {
+        if (intent.getData() != null || intent.getType() != null || intent.getExtras() != null
+                || intent.getSelector() != null || intent.getSourceBounds() != null
+                || intent.getIdentifier() != null) {
+            out.writeByte(INTENT_URI);
+            writeString(out, intent.toUri(0));
+            return;
+        }
+        out.writeByte(INTENT_FIELDS);
+        writeNullableString(out, intent.getAction());
+        Set<String> categories = intent.getCategories();
+        if (categories == null) {
+            out.writeInt(0);
+        } else {
+            out.writeInt(categories.size());
+            for (String category : categories) {
+                writeString(out, category);
+            }
+        }
+        out.writeInt(intent.getFlags());
+        writeNullableString(out, intent.getPackage());
+    }
+
+    private static Intent readIntent(ByteBuffer buffer) throws URISyntaxException {
+        if (buffer.get() == INTENT_URI) {
+            return Intent.parseUri(readString(buffer), 0);
+        }
+        Intent intent = new Intent(readNullableString(buffer));
+        for (int i = buffer.getInt(); i > 0; i--) {
+            intent.addCategory(readString(buffer));
+        }
+        intent.setFlags(buffer.getInt());
+        intent.setPackage(readNullableString(buffer));
+        return intent;
+    }
+
+    private static void writeNullableString(DataOutputStream out, @Nullable String value)
+            throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            writeString(out, value);
+        }
+    }
+
+    @Nullable
+    private static String readNullableString(ByteBuffer buffer) {
+        int length = buffer.getInt(buffer.position());
+        if (length < 0) {
+            buffer.getInt();
+            return null;
+        }
+        return readString(buffer);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the entries of the file in the previous XML format, or returns null if there is none
+     */
+    @Nullable
+    private List<Entry> readLegacyEntries(Context context)
+            throws IOException, XmlPullParserException {
+        List<Entry> result = new ArrayList<>();
+        try (FileInputStream fis =
+                     new AtomicFile(context.getFileStreamPath(mLegacyFileName)).openRead()) {
             XmlPullParser parser = Xml.newPullParser();
             parser.setInput(new InputStreamReader(fis, StandardCharsets.UTF_8));
 
@@ -139,35 +384,35 @@ public class PersistedItemArray<T extends ItemInfo> {
                 try {
                     int itemType = Integer.parseInt(
                             parser.getAttributeValue(null, Favorites.ITEM_TYPE));
-                    UserHandle user = userFn.apply(Long.parseLong(
-                            parser.getAttributeValue(null, Favorites.PROFILE_ID)));
+                    long userSerial = Long.parseLong(
+                            parser.getAttributeValue(null, Favorites.PROFILE_ID));
                     Intent intent = Intent.parseUri(
                             parser.getAttributeValue(null, Favorites.INTENT), 0);
-
-                    if (user != null && intent != null) {
-                        T item = factory.createInfo(itemType, user, intent);
-                        if (item != null) {
-                            result.add(item);
-                        }
-                    }
+                    result.add(new Entry(itemType, userSerial, intent));
                 } catch (Exception e) {
                     // Ignore this entry
                 }
             }
         } catch (FileNotFoundException e) {
-            // Ignore
-        } catch (IOException | XmlPullParserException e) {
-            Log.e(TAG, "Unable to read items in " + mFileName, e);
-            return Collections.emptyList();
+            return null;
         }
         return result;
     }
 
     /**
-     * Returns the underlying file used for persisting data
+     * Persisted properties of an item
      */
-    public AtomicFile getFile(Context context) {
-        return new AtomicFile(context.getFileStreamPath(mFileName));
+    private static class Entry {
+
+        final int itemType;
+        final long userSerial;
+        final Intent intent;
+
+        Entry(int itemType, long userSerial, Intent intent) {
+            this.itemType = itemType;
+            this.userSerial = userSerial;
+            this.intent = intent;
+        }
     }
 
     /**
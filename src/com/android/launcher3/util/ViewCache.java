@@ -25,6 +25,8 @@ import androidx.annotation.VisibleForTesting;
 
 import com.android.launcher3.R;
 
+import java.util.function.Supplier;
+
 /**
  * Utility class to cache views at an activity level
  */
@@ -37,10 +39,19 @@ public class ViewCache {
     }
 
     public <T extends View> T getView(int layoutId, Context context, ViewGroup parent) {
-        CacheEntry entry = mCache.get(layoutId);
+        return getView(layoutId,
+                () -> (T) LayoutInflater.from(context).inflate(layoutId, parent, false));
+    }
+
+    /**
+     * Returns a cached view for {@param cacheId}, or a new view created by {@param factory} for
+     * the views which are not inflated from a layout.
+     */
+    public <T extends View> T getView(int cacheId, Supplier<T> factory) {
+        CacheEntry entry = mCache.get(cacheId);
         if (entry == null) {
             entry = new CacheEntry(1);
-            mCache.put(layoutId, entry);
+            mCache.put(cacheId, entry);
         }
 
         T result;
@@ -49,7 +60,7 @@ public class ViewCache {
             result = (T) entry.mViews[entry.mCurrentSize];
             entry.mViews[entry.mCurrentSize] = null;
         } else {
-            result = (T) LayoutInflater.from(context).inflate(layoutId, parent, false);
+            result = factory.get();
             result.setTag(R.id.cache_entry_tag_id, entry);
         }
         return result;
@@ -18,6 +18,7 @@ package com.android.launcher3.widget;
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
@@ -94,15 +95,26 @@ public class DatabaseWidgetPreviewLoader {
     }
 
     /**
-     * Returns a generated preview for a widget and if the preview should be saved in persistent
-     * storage.
+     * Returns a generated preview for a widget, the previews drawn from the resources of the
+     * provider being saved in persistent storage.
      */
     private Bitmap generatePreview(WidgetItem item, int previewWidth, int previewHeight) {
-        if (item.widgetInfo != null) {
-            return generateWidgetPreview(item.widgetInfo, previewWidth, null);
-        } else {
+        if (item.widgetInfo == null) {
             return generateShortcutPreview(item.activityInfo, previewWidth, previewHeight);
         }
+        if (item.widgetInfo.previewImage == 0) {
+            // Drawn from the app icon, which is already cached
+            return generateWidgetPreview(item.widgetInfo, previewWidth, null);
+        }
+        WidgetPreviewCache cache = WidgetPreviewCache.INSTANCE.get(mContext);
+        Size size = new Size(previewWidth, previewHeight);
+        Configuration config = mContext.getResources().getConfiguration();
+        Bitmap preview = cache.get(item.widgetInfo.provider, item.user, size, config);
+        if (preview == null) {
+            preview = generateWidgetPreview(item.widgetInfo, previewWidth, null);
+            cache.put(item.widgetInfo.provider, item.user, size, config, preview);
+        }
+        return preview;
     }
 
     /**
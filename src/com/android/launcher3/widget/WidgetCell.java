@@ -20,6 +20,7 @@ import static android.appwidget.AppWidgetProviderInfo.WIDGET_CATEGORY_HOME_SCREE
 
 import static com.android.launcher3.Flags.enableWidgetTapToAdd;
 import static com.android.launcher3.LauncherSettings.Favorites.CONTAINER_WIDGETS_TRAY;
+import static com.android.launcher3.util.Executors.THREAD_POOL_EXECUTOR;
 import static com.android.launcher3.widget.LauncherAppWidgetProviderInfo.fromProviderInfo;
 import static com.android.launcher3.widget.util.WidgetSizes.getWidgetItemSizePx;
 
@@ -38,6 +39,7 @@ import android.util.Size;
 import android.view.Gravity;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.View.OnLayoutChangeListener;
 import android.view.ViewGroup;
 import android.view.ViewPropertyAnimator;
 import android.widget.Button;
@@ -114,6 +116,14 @@ public class WidgetCell extends LinearLayout {
 
     private RemoteViews mRemoteViewsPreview;
     private NavigableAppWidgetHostView mAppWidgetHostViewPreview;
+    // Whether mAppWidgetHostViewPreview is taken from the view cache and can be recycled to it
+    private boolean mCanRecycleAppWidgetHostViewPreview;
+    // Binding of a RemoteViews preview waiting for its frame
+    @Nullable
+    private Runnable mPendingPreviewBinding;
+    private final OnLayoutChangeListener mAppWidgetHostViewLayoutListener =
+            (v, l, t, r, b, ol, ot, or, ob) ->
+                    updateAppWidgetHostScale((NavigableAppWidgetHostView) v);
     private float mAppWidgetHostViewScale = 1f;
     private int mSourceContainer = CONTAINER_WIDGETS_TRAY;
 
@@ -205,11 +215,25 @@ public class WidgetCell extends LinearLayout {
             mActiveRequest.cancel();
             mActiveRequest = null;
         }
+        if (mPendingPreviewBinding != null) {
+            WidgetPreviewBindingScheduler.INSTANCE.cancel(mPendingPreviewBinding);
+            mPendingPreviewBinding = null;
+        }
         mRemoteViewsPreview = null;
         if (mAppWidgetHostViewPreview != null) {
             mWidgetImageContainer.removeView(mAppWidgetHostViewPreview);
+            mAppWidgetHostViewPreview.removeOnLayoutChangeListener(
+                    mAppWidgetHostViewLayoutListener);
+            if (mCanRecycleAppWidgetHostViewPreview) {
+                // Drop the content of this provider, and any inflation still running for it, so
+                // that it is not shown by the next cell until its own preview is applied
+                mAppWidgetHostViewPreview.updateAppWidget(null);
+                mActivity.getViewCache().recycleView(
+                        R.id.widget_preview_host_view_cache_id, mAppWidgetHostViewPreview);
+            }
         }
         mAppWidgetHostViewPreview = null;
+        mCanRecycleAppWidgetHostViewPreview = false;
         mPreviewContainerSize = new Size(0, 0);
         mAppWidgetHostViewScale = 1f;
         mPreviewContainerScale = 1f;
@@ -267,13 +291,10 @@ public class WidgetCell extends LinearLayout {
         }
 
         if (mRemoteViewsPreview != null) {
-            mAppWidgetHostViewPreview = createAppWidgetHostView(context);
-            setAppWidgetHostViewPreview(mAppWidgetHostViewPreview, item.widgetInfo,
-                    mRemoteViewsPreview);
+            setRemoteViewsPreview(item.widgetInfo, mRemoteViewsPreview);
         } else if (Flags.enableGeneratedPreviews()
                 && item.hasGeneratedPreview(WIDGET_CATEGORY_HOME_SCREEN)) {
-            mAppWidgetHostViewPreview = createAppWidgetHostView(context);
-            setAppWidgetHostViewPreview(mAppWidgetHostViewPreview, item.widgetInfo,
+            setRemoteViewsPreview(item.widgetInfo,
                     item.generatedPreviews.get(WIDGET_CATEGORY_HOME_SCREEN));
         } else if (item.hasPreviewLayout()) {
             // If the context is a Launcher activity, DragView will show mAppWidgetHostViewPreview
@@ -319,12 +340,42 @@ public class WidgetCell extends LinearLayout {
         return contentDescription;
     }
 
+    /**
+     * Shows a RemoteViews preview in a host view of the view cache, which inflates it in the
+     * background. The host view is attached and starts inflating in one of the next frames
+     * while the cell is attached, unless the cell is recycled before.
+     */
+    private void setRemoteViewsPreview(LauncherAppWidgetProviderInfo providerInfo,
+            RemoteViews remoteViews) {
+        NavigableAppWidgetHostView appWidgetHostViewPreview = mActivity.getViewCache().getView(
+                R.id.widget_preview_host_view_cache_id,
+                () -> createAsyncAppWidgetHostView(getContext()));
+        mAppWidgetHostViewPreview = appWidgetHostViewPreview;
+        mCanRecycleAppWidgetHostViewPreview = true;
+        appWidgetHostViewPreview.setImportantForAccessibility(IMPORTANT_FOR_ACCESSIBILITY_NO);
+        appWidgetHostViewPreview.setAppWidget(/* appWidgetId= */ -1, providerInfo);
+
+        mPendingPreviewBinding = () -> {
+            mPendingPreviewBinding = null;
+            attachAppWidgetHostViewPreview(appWidgetHostViewPreview, remoteViews);
+        };
+        if (isAttachedToWindow()) {
+            WidgetPreviewBindingScheduler.INSTANCE.schedule(mPendingPreviewBinding);
+        }
+    }
+
     private void setAppWidgetHostViewPreview(
             NavigableAppWidgetHostView appWidgetHostViewPreview,
             LauncherAppWidgetProviderInfo providerInfo,
             @Nullable RemoteViews remoteViews) {
         appWidgetHostViewPreview.setImportantForAccessibility(IMPORTANT_FOR_ACCESSIBILITY_NO);
         appWidgetHostViewPreview.setAppWidget(/* appWidgetId= */ -1, providerInfo);
+        attachAppWidgetHostViewPreview(appWidgetHostViewPreview, remoteViews);
+    }
+
+    private void attachAppWidgetHostViewPreview(
+            NavigableAppWidgetHostView appWidgetHostViewPreview,
+            @Nullable RemoteViews remoteViews) {
         appWidgetHostViewPreview.updateAppWidget(remoteViews);
         appWidgetHostViewPreview.setClipToPadding(false);
         appWidgetHostViewPreview.setClipChildren(false);
@@ -335,9 +386,7 @@ public class WidgetCell extends LinearLayout {
         mWidgetImage.setVisibility(View.GONE);
         applyPreview(null);
 
-        appWidgetHostViewPreview.addOnLayoutChangeListener(
-                (v, l, t, r, b, ol, ot, or, ob) ->
-                        updateAppWidgetHostScale(appWidgetHostViewPreview));
+        appWidgetHostViewPreview.addOnLayoutChangeListener(mAppWidgetHostViewLayoutListener);
     }
 
     private void updateAppWidgetHostScale(NavigableAppWidgetHostView view) {
@@ -382,8 +431,19 @@ public class WidgetCell extends LinearLayout {
         return mWidgetImage;
     }
 
+    /**
+     * Returns the host view of the preview, attaching it first if it is waiting for its frame.
+     * The returned host view is not recycled, as it may be moved out of the cell, for example to
+     * be dragged.
+     */
     @Nullable
     public NavigableAppWidgetHostView getAppWidgetHostViewPreview() {
+        Runnable binding = mPendingPreviewBinding;
+        if (binding != null) {
+            WidgetPreviewBindingScheduler.INSTANCE.cancel(binding);
+            binding.run();
+        }
+        mCanRecycleAppWidgetHostViewPreview = false;
         return mAppWidgetHostViewPreview;
     }
 
@@ -489,6 +549,42 @@ public class WidgetCell extends LinearLayout {
         };
     }
 
+    private static NavigableAppWidgetHostView createAsyncAppWidgetHostView(Context context) {
+        NavigableAppWidgetHostView view = new NavigableAppWidgetHostView(context) {
+            @Override
+            protected boolean shouldAllowDirectClick() {
+                return false;
+            }
+
+            @Override
+            protected View getDefaultView() {
+                // Empty placeholder shown while the next preview is inflated
+                return new View(getContext());
+            }
+        };
+        // Inflate the RemoteViews in the background, as for the widgets of the workspace
+        view.setExecutor(THREAD_POOL_EXECUTOR);
+        return view;
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (mPendingPreviewBinding != null) {
+            WidgetPreviewBindingScheduler.INSTANCE.schedule(mPendingPreviewBinding);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        // Don't bind the preview of a cell which is not shown, for example when the widget
+        // picker is closed, it is scheduled again if the cell is attached again
+        if (mPendingPreviewBinding != null) {
+            WidgetPreviewBindingScheduler.INSTANCE.cancel(mPendingPreviewBinding);
+        }
+    }
+
     private static boolean isLauncherContext(Context context) {
         return ActivityContext.lookupContext(context) instanceof Launcher;
     }
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import android.view.Choreographer;
+
+import androidx.annotation.UiThread;
+
+import java.util.ArrayDeque;
+
+/**
+ * Binds the RemoteViews previews of the widget cells over several frames, so that scrolling
+ * through the widget picker does not attach and start inflating many previews in one frame.
+ *
+ * <p>A binding which is cancelled before its frame, for example because its cell was recycled,
+ * is dropped without doing any work.
+ */
+@UiThread
+final class WidgetPreviewBindingScheduler implements Choreographer.FrameCallback {
+
+    static final WidgetPreviewBindingScheduler INSTANCE = new WidgetPreviewBindingScheduler();
+
+    private static final int MAX_BINDINGS_PER_FRAME = 2;
+
+    private final ArrayDeque<Runnable> mBindings = new ArrayDeque<>();
+    private boolean mFrameCallbackPosted;
+
+    private WidgetPreviewBindingScheduler() { }
+
+    /**
+     * Schedules {@param binding} to run in one of the next frames.
+     */
+    void schedule(Runnable binding) {
+        mBindings.add(binding);
+        if (!mFrameCallbackPosted) {
+            mFrameCallbackPosted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Removes {@param binding} if it did not run yet.
+     *
+     * @return true if the binding was pending
+     */
+    boolean cancel(Runnable binding) {
+        return mBindings.remove(binding);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mFrameCallbackPosted = false;
+        for (int i = 0; i < MAX_BINDINGS_PER_FRAME && !mBindings.isEmpty(); i++) {
+            mBindings.poll().run();
+        }
+        if (!mBindings.isEmpty()) {
+            mFrameCallbackPosted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Process;
+import android.os.UserHandle;
+import android.util.AtomicFile;
+import android.util.Log;
+import android.util.Size;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.launcher3.pm.UserCache;
+import com.android.launcher3.util.MainThreadInitializedObject;
+import com.android.launcher3.util.SafeCloseable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ * Persistent cache of the widget previews generated from the resources of the widget providers,
+ * so that they are not generated again each time the widget picker is opened.
+ *
+ * Each preview is stored in its own file, in a directory per package and user. The file starts
+ * with the key the preview was generated for: the provider, the version of its package, the size
+ * of the preview and the resources configuration. Files are evicted in least recently used order
+ * once the cache is above its disk size budget.
+ */
+public class WidgetPreviewCache implements SafeCloseable {
+
+    public static final MainThreadInitializedObject<WidgetPreviewCache> INSTANCE =
+            new MainThreadInitializedObject<>(WidgetPreviewCache::new);
+
+    private static final String TAG = "WidgetPreviewCache";
+
+    private static final String CACHE_DIR = "widget_previews";
+    private static final int FORMAT_VERSION = 1;
+    private static final long MAX_DISK_SIZE = 16 * 1024 * 1024;
+
+    private final Context mContext;
+    private final File mDir;
+    private final long mMaxDiskSize;
+
+    // Version of each package, keyed by the directory of the package
+    private final HashMap<String, String> mPackageVersions = new HashMap<>();
+    // Total size of the files, computed when first needed
+    private long mDiskSize = -1;
+
+    private WidgetPreviewCache(Context context) {
+        this(context, new File(context.getCacheDir(), CACHE_DIR), MAX_DISK_SIZE);
+    }
+
+    @VisibleForTesting
+    WidgetPreviewCache(Context context, File dir, long maxDiskSize) {
+        mContext = context;
+        mDir = dir;
+        mMaxDiskSize = maxDiskSize;
+    }
+
+    /**
+     * Returns the cached preview of the provider, decoded as a hardware bitmap, or null if there
+     * is none for the current version of the provider and the provided size and configuration.
+     */
+    @Nullable
+    public synchronized Bitmap get(@NonNull ComponentName provider, @NonNull UserHandle user,
+            @NonNull Size size, @NonNull Configuration config) {
+        String key = getKey(provider, user, size, config);
+        if (key == null) {
+            return null;
+        }
+        File file = getFile(provider, user, size, config);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (!key.equals(in.readUTF())) {
+                // Generated for another version of the package, replaced by the next put
+                return null;
+            }
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.HARDWARE;
+            Bitmap bitmap = BitmapFactory.decodeStream(in, null, options);
+            if (bitmap != null) {
+                file.setLastModified(System.currentTimeMillis());
+            }
+            return bitmap;
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read preview of " + provider, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the preview of the provider generated for the provided size and configuration,
+     * evicting the least recently used previews if the cache is above its disk size budget.
+     */
+    public synchronized void put(@NonNull ComponentName provider, @NonNull UserHandle user,
+            @NonNull Size size, @NonNull Configuration config, @NonNull Bitmap preview) {
+        String key = getKey(provider, user, size, config);
+        if (key == null) {
+            return;
+        }
+        Bitmap bitmap = preview.getConfig() == Bitmap.Config.HARDWARE
+                ? preview.copy(Bitmap.Config.ARGB_8888, false /* isMutable */) : preview;
+        if (bitmap == null) {
+            return;
+        }
+        long diskSize = getDiskSize();
+        File file = getFile(provider, user, size, config);
+        file.getParentFile().mkdirs();
+        long previousSize = file.length();
+
+        AtomicFile atomicFile = new AtomicFile(file);
+        FileOutputStream fos = null;
+        try {
+            fos = atomicFile.startWrite();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+            out.writeUTF(key);
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+            out.flush();
+            atomicFile.finishWrite(fos);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write preview of " + provider, e);
+            if (fos != null) {
+                atomicFile.failWrite(fos);
+            }
+        }
+        mDiskSize = diskSize - previousSize + file.length();
+        trimToSize();
+    }
+
+    /**
+     * Removes the previews of the provided packages, for example when they are updated.
+     */
+    public synchronized void invalidate(@NonNull Set<String> packageNames,
+            @NonNull UserHandle user) {
+        for (String packageName : packageNames) {
+            String dirName = getPackageDirName(packageName, user);
+            mPackageVersions.remove(dirName);
+            File[] files = new File(mDir, dirName).listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                long length = file.length();
+                if (file.delete() && mDiskSize >= 0) {
+                    mDiskSize -= length;
+                }
+            }
+        }
+    }
+
+    private void trimToSize() {
+        if (mDiskSize <= mMaxDiskSize) {
+            return;
+        }
+        ArrayList<File> files = listFiles();
+        files.sort(Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < files.size() && mDiskSize > mMaxDiskSize; i++) {
+            File file = files.get(i);
+            long length = file.length();
+            if (file.delete()) {
+                mDiskSize -= length;
+            }
+        }
+    }
+
+    private long getDiskSize() {
+        if (mDiskSize < 0) {
+            long size = 0;
+            for (File file : listFiles()) {
+                size += file.length();
+            }
+            mDiskSize = size;
+        }
+        return mDiskSize;
+    }
+
+    private ArrayList<File> listFiles() {
+        ArrayList<File> result = new ArrayList<>();
+        File[] dirs = mDir.listFiles();
+        if (dirs == null) {
+            return result;
+        }
+        for (File dir : dirs) {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    result.add(file);
+                }
+            }
+        }
+        return result;
+    }
+
+    private File getFile(ComponentName provider, UserHandle user, Size size,
+            Configuration config) {
+        // The version of the package is not part of the name, so that the preview of the
+        // previous version is replaced
+        String name = provider.getClassName() + "_" + size.getWidth() + "x" + size.getHeight()
+                + "_" + getConfigKey(config);
+        return new File(new File(mDir, getPackageDirName(provider.getPackageName(), user)),
+                Integer.toHexString(name.hashCode()));
+    }
+
+    private String getPackageDirName(String packageName, UserHandle user) {
+        return packageName + "_" + UserCache.INSTANCE.get(mContext).getSerialNumberForUser(user);
+    }
+
+    /**
+     * Returns the key of the preview, or null if the version of the package is not known.
+     */
+    @Nullable
+    private String getKey(ComponentName provider, UserHandle user, Size size,
+            Configuration config) {
+        String version = getPackageVersion(provider.getPackageName(), user);
+        if (version == null) {
+            return null;
+        }
+        return FORMAT_VERSION + "|" + provider.flattenToString() + "|" + version + "|"
+                + size.getWidth() + "x" + size.getHeight() + "|" + getConfigKey(config);
+    }
+
+    @Nullable
+    private String getPackageVersion(String packageName, UserHandle user) {
+        if (!Process.myUserHandle().equals(user)) {
+            // The packages of the other profiles are not visible to the package manager
+            return null;
+        }
+        String dirName = getPackageDirName(packageName, user);
+        String version = mPackageVersions.get(dirName);
+        if (version == null) {
+            try {
+                PackageInfo info = mContext.getPackageManager().getPackageInfo(packageName, 0);
+                version = info.getLongVersionCode() + ":" + info.lastUpdateTime;
+                mPackageVersions.put(dirName, version);
+            } catch (PackageManager.NameNotFoundException e) {
+                return null;
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Returns the parts of the configuration the resources of the provider may depend on.
+     */
+    private static String getConfigKey(Configuration config) {
+        return (config.uiMode & Configuration.UI_MODE_NIGHT_MASK) + "_" + config.densityDpi
+                + "_" + config.getLocales().toLanguageTags();
+    }
+
+    @Override
+    public void close() { }
+}
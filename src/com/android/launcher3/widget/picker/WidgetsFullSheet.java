@@ -95,6 +95,8 @@ public class WidgetsFullSheet extends BaseWidgetSheet
     // resolution or landscape on phone. This ratio defines the max percentage of content area that
     // the table can display with respect to bottom sheet's height.
     private static final float RECOMMENDATION_TABLE_HEIGHT_RATIO = 0.45f;
+    // Number of host views of RemoteViews previews kept for the cells scrolled into view
+    private static final int PREVIEW_HOST_VIEW_CACHE_SIZE = 8;
     private static final String RECOMMENDATIONS_SAVED_STATE_KEY =
             "widgetsFullSheet:mRecommendationsCurrentPage";
     private static final String SUPER_SAVED_STATE_KEY = "widgetsFullSheet:superHierarchyState";
@@ -158,6 +160,8 @@ public class WidgetsFullSheet extends BaseWidgetSheet
     public WidgetsFullSheet(Context context, AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
         mDeviceProfile = mActivityContext.getDeviceProfile();
+        mActivityContext.getViewCache().setCacheSize(
+                R.id.widget_preview_host_view_cache_id, PREVIEW_HOST_VIEW_CACHE_SIZE);
         mUserCache = UserCache.INSTANCE.get(context);
         mHasWorkProfile = mUserCache.getUserProfiles()
                 .stream()
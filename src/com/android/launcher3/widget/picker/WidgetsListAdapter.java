@@ -44,6 +44,7 @@ import androidx.recyclerview.widget.RecyclerView.ViewHolder;
 import com.android.launcher3.R;
 import com.android.launcher3.recyclerview.ViewHolderBinder;
 import com.android.launcher3.util.LabelComparator;
+import com.android.launcher3.util.LabelComparator.SortKey;
 import com.android.launcher3.util.PackageUserKey;
 import com.android.launcher3.views.ActivityContext;
 import com.android.launcher3.widget.model.WidgetListSpaceEntry;
@@ -56,6 +57,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.OptionalInt;
 import java.util.function.IntSupplier;
@@ -426,10 +428,12 @@ public class WidgetsListAdapter extends Adapter<ViewHolder> implements OnHeaderC
             Comparator<WidgetsListBaseEntry> {
 
         private final LabelComparator mComparator = new LabelComparator();
+        // Sort keys of the package titles, so that each title is collated once
+        private final HashMap<String, SortKey> mTitleKeys = new HashMap<>();
 
         @Override
         public int compare(WidgetsListBaseEntry a, WidgetsListBaseEntry b) {
-            int i = mComparator.compare(a.mPkgItem.title.toString(), b.mPkgItem.title.toString());
+            int i = getSortKey(a).compareTo(getSortKey(b));
             if (i != 0) {
                 return i;
             }
@@ -438,5 +442,10 @@ public class WidgetsListAdapter extends Adapter<ViewHolder> implements OnHeaderC
             if (a.mPkgItem.user.equals(Process.myUserHandle())) return -1;
             return 1;
         }
+
+        private SortKey getSortKey(WidgetsListBaseEntry entry) {
+            return mTitleKeys.computeIfAbsent(
+                    entry.mPkgItem.title.toString(), mComparator::getSortKey);
+        }
     }
 }
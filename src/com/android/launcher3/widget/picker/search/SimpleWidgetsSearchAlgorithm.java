@@ -16,45 +16,62 @@
 
 package com.android.launcher3.widget.picker.search;
 
-import static com.android.launcher3.search.StringMatcherUtility.matches;
+import static com.android.launcher3.util.Executors.UI_HELPER_EXECUTOR;
 
 import android.os.Handler;
 
-import com.android.launcher3.model.WidgetItem;
 import com.android.launcher3.search.SearchAlgorithm;
 import com.android.launcher3.search.SearchCallback;
-import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
 import com.android.launcher3.widget.model.WidgetsListBaseEntry;
-import com.android.launcher3.widget.model.WidgetsListContentEntry;
-import com.android.launcher3.widget.model.WidgetsListHeaderEntry;
 import com.android.launcher3.widget.picker.search.WidgetsSearchBar.WidgetsSearchDataProvider;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Implementation of {@link SearchAlgorithm} that posts a task to query on the main thread.
+ * Implementation of {@link SearchAlgorithm} that queries a {@link WidgetsSearchIndex} on a
+ * background thread and posts the results on the main thread.
  */
 public final class SimpleWidgetsSearchAlgorithm implements SearchAlgorithm<WidgetsListBaseEntry> {
 
     private final Handler mResultHandler;
+    private final Handler mSearchHandler;
     private final WidgetsSearchDataProvider mDataProvider;
 
+    // Incremented for every new search or cancellation, so that stale searches are dropped.
+    private final AtomicInteger mSearchId = new AtomicInteger();
+
     public SimpleWidgetsSearchAlgorithm(WidgetsSearchDataProvider dataProvider) {
         mResultHandler = new Handler();
+        mSearchHandler = new Handler(UI_HELPER_EXECUTOR.getLooper());
         mDataProvider = dataProvider;
     }
 
     @Override
     public void doSearch(String query, SearchCallback<WidgetsListBaseEntry> callback) {
-        ArrayList<WidgetsListBaseEntry> result = getFilteredWidgets(mDataProvider, query);
-        mResultHandler.post(() -> callback.onSearchResult(query, result));
+        // The widgets are read on the calling thread, as the provider is not thread safe.
+        List<WidgetsListBaseEntry> widgets = mDataProvider.getWidgets();
+        int searchId = mSearchId.incrementAndGet();
+        mSearchHandler.removeCallbacksAndMessages(/* token= */ null);
+        mSearchHandler.post(() -> {
+            ArrayList<WidgetsListBaseEntry> result = WidgetsSearchIndex.forEntries(widgets)
+                    .search(query, () -> mSearchId.get() != searchId);
+            if (result != null) {
+                mResultHandler.post(() -> {
+                    if (mSearchId.get() == searchId) {
+                        callback.onSearchResult(query, result);
+                    }
+                });
+            }
+        });
     }
 
     @Override
     public void cancel(boolean interruptActiveRequests) {
         if (interruptActiveRequests) {
+            mSearchId.incrementAndGet();
+            mSearchHandler.removeCallbacksAndMessages(/* token= */ null);
             mResultHandler.removeCallbacksAndMessages(/*token= */null);
         }
     }
@@ -64,30 +81,7 @@ public final class SimpleWidgetsSearchAlgorithm implements SearchAlgorithm<Widge
      */
     public static ArrayList<WidgetsListBaseEntry> getFilteredWidgets(
             WidgetsSearchDataProvider dataProvider, String input) {
-        ArrayList<WidgetsListBaseEntry> results = new ArrayList<>();
-        dataProvider.getWidgets().stream()
-                .filter(entry -> entry instanceof WidgetsListHeaderEntry)
-                .forEach(headerEntry -> {
-                    List<WidgetItem> matchedWidgetItems = filterWidgetItems(
-                            input, headerEntry.mPkgItem.title.toString(), headerEntry.mWidgets);
-                    if (matchedWidgetItems.size() > 0) {
-                        results.add(WidgetsListHeaderEntry.createForSearch(headerEntry.mPkgItem,
-                                headerEntry.mTitleSectionName, matchedWidgetItems));
-                        results.add(new WidgetsListContentEntry(headerEntry.mPkgItem,
-                                headerEntry.mTitleSectionName, matchedWidgetItems));
-                    }
-                });
-        return results;
-    }
-
-    private static List<WidgetItem> filterWidgetItems(String query, String packageTitle,
-            List<WidgetItem> items) {
-        StringMatcher matcher = StringMatcher.getInstance();
-        if (matches(query, packageTitle, matcher)) {
-            return items;
-        }
-        return items.stream()
-                .filter(item -> matches(query, item.label, matcher))
-                .collect(Collectors.toList());
+        return WidgetsSearchIndex.forEntries(dataProvider.getWidgets())
+                .search(input, () -> false);
     }
 }
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.launcher3.widget.picker.search;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.android.launcher3.model.WidgetItem;
+import com.android.launcher3.search.StringMatcherUtility;
+import com.android.launcher3.search.StringMatcherUtility.IndexedTarget;
+import com.android.launcher3.search.StringMatcherUtility.StringMatcher;
+import com.android.launcher3.widget.model.WidgetsListBaseEntry;
+import com.android.launcher3.widget.model.WidgetsListContentEntry;
+import com.android.launcher3.widget.model.WidgetsListHeaderEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Search index of the widgets shown in the widget picker, covering the package titles and the
+ * labels and descriptions of the widgets.
+ *
+ * <p>The index is built once for each list of widgets bound by the model, ie after each
+ * {@link com.android.launcher3.model.WidgetsModel#update}, and is shared by all the widget
+ * picker searches until the list changes.
+ */
+final class WidgetsSearchIndex {
+
+    private static final Object sLock = new Object();
+    // Guarded by sLock
+    private static WidgetsSearchIndex sLastIndex;
+
+    private final List<WidgetsListBaseEntry> mSource;
+    private final StringMatcher mMatcher = StringMatcher.getInstance();
+    private final ArrayList<PackageEntry> mPackages = new ArrayList<>();
+
+    private WidgetsSearchIndex(List<WidgetsListBaseEntry> source) {
+        mSource = source;
+        for (WidgetsListBaseEntry entry : source) {
+            if (entry instanceof WidgetsListHeaderEntry header) {
+                mPackages.add(new PackageEntry(header, mMatcher));
+            }
+        }
+    }
+
+    /**
+     * Returns the index of {@param entries}, building it if the entries changed since the last
+     * call.
+     */
+    @NonNull
+    static WidgetsSearchIndex forEntries(@NonNull List<WidgetsListBaseEntry> entries) {
+        synchronized (sLock) {
+            if (sLastIndex == null || sLastIndex.mSource != entries) {
+                sLastIndex = new WidgetsSearchIndex(entries);
+            }
+            return sLastIndex;
+        }
+    }
+
+    /**
+     * Returns the header and content entries of the widgets matching {@param query}, or null if
+     * {@param isCancelled} returned true before the search completed.
+     */
+    @Nullable
+    synchronized ArrayList<WidgetsListBaseEntry> search(@NonNull String query,
+            @NonNull BooleanSupplier isCancelled) {
+        // The collator is not thread safe, hence searches are serialized.
+        boolean simpleFuzzySearch = StringMatcherUtility.requestSimpleFuzzySearch(query);
+        ArrayList<WidgetsListBaseEntry> results = new ArrayList<>();
+        for (PackageEntry pkg : mPackages) {
+            if (isCancelled.getAsBoolean()) {
+                return null;
+            }
+            List<WidgetItem> matchedWidgetItems = pkg.filterWidgetItems(
+                    query, simpleFuzzySearch, mMatcher);
+            if (!matchedWidgetItems.isEmpty()) {
+                WidgetsListHeaderEntry header = pkg.header;
+                results.add(WidgetsListHeaderEntry.createForSearch(header.mPkgItem,
+                        header.mTitleSectionName, matchedWidgetItems));
+                results.add(new WidgetsListContentEntry(header.mPkgItem,
+                        header.mTitleSectionName, matchedWidgetItems));
+            }
+        }
+        return results;
+    }
+
+    private static class PackageEntry {
+
+        final WidgetsListHeaderEntry header;
+        final IndexedTarget title;
+        final IndexedTarget[] labels;
+        final IndexedTarget[] descriptions;
+
+        PackageEntry(WidgetsListHeaderEntry header, StringMatcher matcher) {
+            this.header = header;
+            title = new IndexedTarget(header.mPkgItem.title, matcher);
+            int count = header.mWidgets.size();
+            labels = new IndexedTarget[count];
+            descriptions = new IndexedTarget[count];
+            for (int i = 0; i < count; i++) {
+                WidgetItem item = header.mWidgets.get(i);
+                labels[i] = new IndexedTarget(item.label, matcher);
+                descriptions[i] = new IndexedTarget(item.description, matcher);
+            }
+        }
+
+        List<WidgetItem> filterWidgetItems(String query, boolean simpleFuzzySearch,
+                StringMatcher matcher) {
+            if (title.matches(query, simpleFuzzySearch, matcher)) {
+                return header.mWidgets;
+            }
+            List<WidgetItem> items = new ArrayList<>();
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i].matches(query, simpleFuzzySearch, matcher)
+                        || descriptions[i].matches(query, simpleFuzzySearch, matcher)) {
+                    items.add(header.mWidgets.get(i));
+                }
+            }
+            return items;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.allapps;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static com.android.launcher3.model.data.AppInfo.COMPONENT_KEY_COMPARATOR;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.content.Intent;
+import android.os.Process;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.data.AppInfo;
+import com.android.launcher3.model.data.ItemInfoWithIcon;
+import com.android.launcher3.util.ActivityContextWrapper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for {@link SortedAppsList}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class SortedAppsListTest {
+
+    private SortedAppsList mList;
+
+    private final AppInfo mCamera = createApp("Camera");
+    private final AppInfo mGmail = createApp("Gmail");
+    private final AppInfo mMaps = createApp("Maps");
+
+    @Before
+    public void setUp() {
+        mList = new SortedAppsList(
+                new AppInfoComparator(new ActivityContextWrapper(getApplicationContext())),
+                false /* sortSections */);
+    }
+
+    @Test
+    public void update_firstUpdateSortsAndInvalidatesDelta() {
+        SortedAppsList.Delta delta = new SortedAppsList.Delta();
+        mList.update(sorted(mMaps, mCamera), delta);
+
+        assertFalse(delta.isValid());
+        assertEquals(List.of("Camera", "Maps"), titles());
+    }
+
+    @Test
+    public void update_insertsAndRemovesChangedApps() {
+        mList.update(sorted(mMaps, mCamera), new SortedAppsList.Delta());
+
+        SortedAppsList.Delta delta = new SortedAppsList.Delta();
+        mList.update(sorted(mMaps, mGmail), delta);
+
+        assertTrue(delta.isValid());
+        assertEquals(List.of("Gmail", "Maps"), titles());
+        assertTrue(delta.inserted.contains(mGmail));
+        assertTrue(delta.removed.contains(mCamera));
+        assertFalse(delta.removed.contains(mMaps));
+        assertTrue(delta.changed.isEmpty());
+    }
+
+    @Test
+    public void update_movesAppRenamedInPlace() {
+        mList.update(sorted(mMaps, mCamera, mGmail), new SortedAppsList.Delta());
+
+        mCamera.title = "Photos";
+        SortedAppsList.Delta delta = new SortedAppsList.Delta();
+        mList.update(sorted(mMaps, mCamera, mGmail), delta);
+
+        assertEquals(List.of("Gmail", "Maps", "Photos"), titles());
+        assertTrue(delta.removed.contains(mCamera));
+        assertTrue(delta.inserted.contains(mCamera));
+    }
+
+    @Test
+    public void update_reportsAppRenamedAtSamePosition() {
+        mList.update(sorted(mMaps, mCamera, mGmail), new SortedAppsList.Delta());
+
+        mGmail.title = "Mail";
+        SortedAppsList.Delta delta = new SortedAppsList.Delta();
+        mList.update(sorted(mMaps, mCamera, mGmail), delta);
+
+        assertEquals(List.of("Camera", "Mail", "Maps"), titles());
+        assertTrue(delta.changed.contains(mGmail));
+    }
+
+    @Test
+    public void update_reportsAppChangedInPlace() {
+        mList.update(sorted(mMaps, mCamera), new SortedAppsList.Delta());
+
+        mMaps.runtimeStatusFlags |= ItemInfoWithIcon.FLAG_DISABLED_SUSPENDED;
+        SortedAppsList.Delta delta = new SortedAppsList.Delta();
+        mList.update(sorted(mMaps, mCamera), delta);
+
+        assertTrue(delta.changed.contains(mMaps));
+        assertTrue(delta.inserted.isEmpty());
+        assertTrue(delta.removed.isEmpty());
+    }
+
+    @Test
+    public void setFilter_rebuildsList() {
+        mList.update(sorted(mMaps, mCamera), new SortedAppsList.Delta());
+
+        mList.setFilter(info -> info != mCamera);
+        SortedAppsList.Delta delta = new SortedAppsList.Delta();
+        mList.update(sorted(mMaps, mCamera), delta);
+
+        assertFalse(delta.isValid());
+        assertEquals(List.of("Maps"), titles());
+    }
+
+    private List<String> titles() {
+        return mList.getApps().stream()
+                .map(app -> app.title.toString())
+                .collect(Collectors.toList());
+    }
+
+    private static AppInfo[] sorted(AppInfo... apps) {
+        AppInfo[] result = apps.clone();
+        Arrays.sort(result, COMPONENT_KEY_COMPARATOR);
+        return result;
+    }
+
+    private static AppInfo createApp(String title) {
+        return new AppInfo(new ComponentName("com.android.launcher3.tests", "Activity" + title),
+                title, Process.myUserHandle(), new Intent());
+    }
+}
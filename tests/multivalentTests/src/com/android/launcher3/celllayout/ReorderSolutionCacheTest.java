@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.celllayout;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+import android.view.View;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.CellLayout;
+import com.android.launcher3.celllayout.board.CellLayoutBoard;
+import com.android.launcher3.celllayout.board.IconPoint;
+import com.android.launcher3.celllayout.board.WidgetRect;
+import com.android.launcher3.celllayout.testgenerator.RandomBoardGenerator;
+import com.android.launcher3.util.ActivityContextWrapper;
+import com.android.launcher3.util.CellAndSpan;
+import com.android.launcher3.views.DoubleShadowBubbleTextView;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for {@link ReorderSolutionCache}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ReorderSolutionCacheTest {
+
+    private static final int SEED = 314;
+    private static final int BOARD_COUNT = 5;
+    // Similar to the grid of a large tablet
+    private static final int COLUMNS = 8;
+    private static final int ROWS = 10;
+    private static final int SPAN_X = 2;
+    private static final int SPAN_Y = 2;
+    // Number of drag over events for each drag position, as for a slow drag
+    private static final int EVENTS_PER_POSITION = 4;
+
+    @Rule
+    public UnitTestCellLayoutBuilderRule mCellLayoutBuilder = new UnitTestCellLayoutBuilderRule();
+
+    private final Context mContext = new ActivityContextWrapper(getApplicationContext());
+
+    @Test
+    public void calculateReorder_cachedSolutionsMatchSearch() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < BOARD_COUNT; i++) {
+            CellLayout cl = createDenseCellLayout(new Random(random.nextInt()));
+            for (int x = 0; x + SPAN_X <= COLUMNS; x++) {
+                for (int y = 0; y + SPAN_Y <= ROWS; y++) {
+                    cl.getReorderSolutionCache().clear();
+                    ItemConfiguration expected = calculateReorder(cl, x, y);
+                    for (int j = 1; j < EVENTS_PER_POSITION; j++) {
+                        assertSameSolution(expected, calculateReorder(cl, x, y));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void calculateReorder_cacheClearedWhenItemsMove() {
+        CellLayout cl = createDenseCellLayout(new Random(SEED));
+        calculateReorder(cl, 0, 0);
+
+        cl.removeView(cl.getShortcutsAndWidgets().getChildAt(0));
+        ItemConfiguration afterRemoval = calculateReorder(cl, 0, 0);
+
+        cl.getReorderSolutionCache().clear();
+        assertSameSolution(calculateReorder(cl, 0, 0), afterRemoval);
+    }
+
+    private ItemConfiguration calculateReorder(CellLayout cl, int cellX, int cellY) {
+        int[] pixelXY = new int[2];
+        cl.regionToCenterPoint(cellX, cellY, SPAN_X, SPAN_Y, pixelXY);
+        ItemConfiguration configuration = new ItemConfiguration();
+        cl.copyCurrentStateToSolution(configuration);
+        ItemConfiguration solution = cl.createReorderAlgorithm().calculateReorder(
+                new ReorderParameters(pixelXY[0], pixelXY[1], SPAN_X, SPAN_Y, 1, 1, null,
+                        configuration));
+        if (solution == null) {
+            solution = new ItemConfiguration();
+        }
+        return solution;
+    }
+
+    private CellLayout createDenseCellLayout(Random random) {
+        CellLayout cl = mCellLayoutBuilder.createCellLayoutDefaultSize(COLUMNS, ROWS, false);
+        // No limit of filled spaces, so that the board is full
+        CellLayoutBoard board = new RandomBoardGenerator(random).generateBoard(COLUMNS, ROWS, 0);
+        for (IconPoint icon : board.getIcons()) {
+            addView(cl, new DoubleShadowBubbleTextView(mContext),
+                    icon.getCoord().x, icon.getCoord().y, 1, 1);
+        }
+        for (WidgetRect widget : board.getWidgets()) {
+            addView(cl, new View(mContext), widget.getCellX(), widget.getCellY(),
+                    widget.getSpanX(), widget.getSpanY());
+        }
+        return cl;
+    }
+
+    private static void addView(CellLayout cl, View view, int cellX, int cellY, int spanX,
+            int spanY) {
+        CellLayoutLayoutParams lp = new CellLayoutLayoutParams(cellX, cellY, spanX, spanY);
+        view.setLayoutParams(lp);
+        cl.addViewToCellLayout(view, -1, view.getId(), lp, true);
+    }
+
+    private static void assertSameSolution(ItemConfiguration expected, ItemConfiguration actual) {
+        assertEquals(expected.isSolution, actual.isSolution);
+        if (!expected.isSolution) {
+            return;
+        }
+        assertEquals(toString(expected), toString(actual));
+        assertEquals(expected.map.size(), actual.map.size());
+        List<String> expectedCells = new ArrayList<>();
+        List<String> actualCells = new ArrayList<>();
+        expected.map.forEach((view, cell) -> {
+            expectedCells.add(toString(cell));
+            actualCells.add(toString(actual.map.get(view)));
+        });
+        assertEquals(expectedCells, actualCells);
+    }
+
+    private static String toString(CellAndSpan cell) {
+        return cell == null ? "null"
+                : cell.cellX + "," + cell.cellY + " " + cell.spanX + "x" + cell.spanY;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static com.android.launcher3.util.Executors.MODEL_EXECUTOR;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.LauncherActivityInfo;
+import android.content.pm.LauncherApps;
+import android.os.Process;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.InvariantDeviceProfile;
+import com.android.launcher3.model.data.AppInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies that icon cache hits are not blocked by the cache lock, which misses hold while they
+ * are being resolved.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class IconCacheConcurrencyTest {
+
+    private Context mContext;
+    private IconCache mIconCache;
+    private ComponentName mCachedComponent;
+
+    @Before
+    public void setup() throws Exception {
+        mContext = getInstrumentation().getTargetContext();
+
+        // In memory icon cache
+        mIconCache = new IconCache(mContext,
+                InvariantDeviceProfile.INSTANCE.get(mContext), null,
+                new LauncherIconProvider(mContext));
+
+        List<LauncherActivityInfo> activities = mContext.getSystemService(LauncherApps.class)
+                .getActivityList(mContext.getPackageName(), Process.myUserHandle());
+        assumeFalse(activities.isEmpty());
+        mCachedComponent = activities.get(0).getComponentName();
+
+        // Warm up the cache
+        MODEL_EXECUTOR.submit(() -> mIconCache.getTitleAndIcon(newAppInfo(mCachedComponent),
+                false /* useLowResIcon */)).get();
+    }
+
+    @Test
+    public void cacheHit_doesNotWaitForCacheLock() throws Exception {
+        CountDownLatch lockHeld = new CountDownLatch(1);
+        CountDownLatch releaseLock = new CountDownLatch(1);
+        Thread lockHolder = new Thread(() -> {
+            synchronized (mIconCache) {
+                lockHeld.countDown();
+                try {
+                    releaseLock.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        lockHolder.start();
+        try {
+            assertTrue(lockHeld.await(1, TimeUnit.SECONDS));
+
+            CountDownLatch hitComplete = new CountDownLatch(1);
+            AppInfo info = newAppInfo(mCachedComponent);
+            new Thread(() -> {
+                mIconCache.getTitleAndIcon(info, false /* useLowResIcon */);
+                hitComplete.countDown();
+            }).start();
+
+            assertTrue("Cache hit was blocked by the cache lock",
+                    hitComplete.await(1, TimeUnit.SECONDS));
+            assertFalse(info.bitmap.isNullOrLowRes());
+        } finally {
+            releaseLock.countDown();
+            lockHolder.join();
+        }
+    }
+
+    private static AppInfo newAppInfo(ComponentName cn) {
+        AppInfo info = new AppInfo();
+        info.user = Process.myUserHandle();
+        info.componentName = cn;
+        info.intent = new Intent(Intent.ACTION_MAIN)
+                .addCategory(Intent.CATEGORY_LAUNCHER)
+                .setComponent(cn);
+        return info;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.icons.pack;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.R;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+/**
+ * Tests for {@link IconResolverMasked}.
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class IconResolverMaskedTest {
+
+    private static final int ICON_COUNT = 50;
+
+    private Context mContext;
+    private IconPack.Data mData;
+    private int mIconDpi;
+
+    @Before
+    public void setup() {
+        mContext = getInstrumentation().getTargetContext();
+        mIconDpi = mContext.getResources().getDisplayMetrics().densityDpi;
+        mData = new IconPack.Data();
+        mData.scale = 0.8f;
+        mData.iconBacks.add(R.drawable.ic_apps);
+        mData.iconMasks.add(R.drawable.ic_apps);
+        mData.iconUpons.add(R.drawable.ic_apps);
+        IconResolverMasked.clearLayerCache(mContext.getPackageName());
+    }
+
+    @After
+    public void tearDown() {
+        IconResolverMasked.clearLayerCache(mContext.getPackageName());
+    }
+
+    @Test
+    public void getIcon_cachesLayersPerPack() {
+        newResolver(0).getIcon(mIconDpi, this::newFallbackIcon);
+        int cachedLayers = IconResolverMasked.getLayerCacheSize();
+        assertTrue(cachedLayers > 0);
+
+        // Same layers are reused for other apps
+        newResolver(1).getIcon(mIconDpi, this::newFallbackIcon);
+        assertEquals(cachedLayers, IconResolverMasked.getLayerCacheSize());
+
+        IconResolverMasked.clearLayerCache(mContext.getPackageName());
+        assertEquals(0, IconResolverMasked.getLayerCacheSize());
+    }
+
+    @Test
+    public void getIcon_reusesLayersAndScratchBitmaps() {
+        // The first icon rasterizes the pack layers and fills the scratch pool.
+        newResolver(0).getIcon(mIconDpi, this::newFallbackIcon);
+        List<Bitmap> layers = IconResolverMasked.getCachedLayers();
+        List<Bitmap> scratchBitmaps = IconResolverMasked.getPooledScratchBitmaps();
+        assertFalse(layers.isEmpty());
+        assertFalse(scratchBitmaps.isEmpty());
+
+        for (int i = 1; i <= ICON_COUNT; i++) {
+            newResolver(i).getIcon(mIconDpi, this::newFallbackIcon);
+        }
+
+        assertSameBitmaps(layers, IconResolverMasked.getCachedLayers());
+        assertSameBitmaps(scratchBitmaps, IconResolverMasked.getPooledScratchBitmaps());
+    }
+
+    @Test
+    public void getIcon_sharedPaintsKeepNoIconState() {
+        BitmapDrawable first = (BitmapDrawable) newResolver(0)
+                .getIcon(mIconDpi, this::newFallbackIcon);
+        for (int i = 1; i <= ICON_COUNT; i++) {
+            newResolver(i).getIcon(mIconDpi, () -> new ColorDrawable(Color.BLUE));
+        }
+        BitmapDrawable last = (BitmapDrawable) newResolver(0)
+                .getIcon(mIconDpi, this::newFallbackIcon);
+
+        assertTrue(first.getBitmap().sameAs(last.getBitmap()));
+    }
+
+    private static void assertSameBitmaps(List<Bitmap> expected, List<Bitmap> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (Bitmap bitmap : actual) {
+            assertFalse(bitmap.isRecycled());
+            assertTrue(expected.stream().anyMatch(b -> b == bitmap));
+        }
+    }
+
+    private IconResolverMasked newResolver(int hashCode) {
+        return new IconResolverMasked(mContext, mData, mContext.getApplicationInfo(), hashCode);
+    }
+
+    private Drawable newFallbackIcon() {
+        return new ColorDrawable(Color.RED);
+    }
+}
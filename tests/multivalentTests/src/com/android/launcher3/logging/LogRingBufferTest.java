@@ -0,0 +1,52 @@
+package com.android.launcher3.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link LogRingBuffer}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class LogRingBufferTest {
+
+    @Test
+    public void testDrainInOrder() {
+        LogRingBuffer buffer = new LogRingBuffer(Thread.currentThread());
+        assertTrue(buffer.append(0, 100, "Testing", "first", null));
+        assertTrue(buffer.append(1, 200, "Testing", "second", null));
+        assertEquals(2, buffer.size());
+
+        List<String> messages = new ArrayList<>();
+        buffer.drainTo((sequence, time, tag, msg, error) -> messages.add(msg));
+
+        assertEquals(List.of("first", "second"), messages);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testDropsEventsWhenFull() {
+        LogRingBuffer buffer = new LogRingBuffer(Thread.currentThread());
+        int count = 0;
+        while (buffer.append(count, count, "Testing", "event", null)) {
+            count++;
+        }
+        assertFalse(buffer.append(count, count, "Testing", "event", null));
+        assertEquals(2, buffer.takeDroppedCount());
+        // Dropped events are only reported once
+        assertEquals(0, buffer.takeDroppedCount());
+
+        buffer.drainTo((sequence, time, tag, msg, error) -> { });
+        assertTrue(buffer.append(count, count, "Testing", "event", null));
+    }
+}
@@ -172,6 +172,48 @@ public class LoaderCursorTest {
         assertEquals(ITEM_TYPE_DEEP_SHORTCUT, info.itemType);
     }
 
+    @Test
+    public void parseIntent_returnsCopyOfMemoizedIntent() {
+        ComponentName cn = new ComponentName(mContext.getPackageName(), "placeholder-do");
+        String uri = new Intent(Intent.ACTION_MAIN).setComponent(cn).toUri(0);
+        mCursor.newRow()
+                .add(_ID, 1)
+                .add(PROFILE_ID, 0)
+                .add(ITEM_TYPE, ITEM_TYPE_APPLICATION)
+                .add(INTENT, uri);
+        mCursor.newRow()
+                .add(_ID, 2)
+                .add(PROFILE_ID, 0)
+                .add(ITEM_TYPE, ITEM_TYPE_APPLICATION)
+                .add(INTENT, uri);
+
+        assertTrue(mLoaderCursor.moveToNext());
+        Intent first = mLoaderCursor.parseIntent();
+        // Intents are mutated by the loader, which should not affect the next items
+        first.setPackage("other.package");
+
+        assertTrue(mLoaderCursor.moveToNext());
+        Intent second = mLoaderCursor.parseIntent();
+        assertEquals(cn, second.getComponent());
+        assertNull(second.getPackage());
+    }
+
+    @Test
+    public void getIconBlob_withoutIconColumn_returnsNull() {
+        MatrixCursor cursor = new MatrixCursor(LoaderCursor.WORKSPACE_PROJECTION);
+        cursor.newRow()
+                .add(_ID, 1)
+                .add(PROFILE_ID, 0)
+                .add(ITEM_TYPE, ITEM_TYPE_DEEP_SHORTCUT)
+                .add(TITLE, "my-shortcut");
+        LoaderCursor loaderCursor = new LoaderCursor(
+                cursor, mApp, new UserManagerState(), mPmHelper, null);
+
+        assertTrue(loaderCursor.moveToNext());
+        assertNull(loaderCursor.getIconBlob());
+        assertTrue(loaderCursor.getBytesRead() > 0);
+    }
+
     @Test
     public void checkItemPlacement_outsideBounds() {
         mIDP.numRows = 4;
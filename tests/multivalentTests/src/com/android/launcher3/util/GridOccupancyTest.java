@@ -55,13 +55,76 @@ public class GridOccupancyTest {
         assertFalse(grid.isRegionVacant(0, 0, 2, 1));
     }
 
+    @Test
+    public void testIsRegionVacantForBlock() {
+        GridOccupancy grid = initGrid(4,
+                1, 1, 1, 0, 0,
+                0, 0, 1, 1, 0,
+                0, 0, 0, 0, 0,
+                1, 1, 0, 0, 0
+        );
+        GridOccupancy block = initGrid(2,
+                0, 1,
+                1, 1
+        );
+
+        assertTrue(grid.isRegionVacant(0, 1, block));
+        assertTrue(grid.isRegionVacant(3, 2, block));
+
+        assertFalse(grid.isRegionVacant(0, 0, block));
+        assertFalse(grid.isRegionVacant(2, 0, block));
+        assertFalse(grid.isRegionVacant(4, 0, block));
+    }
+
+    @Test
+    public void testMarkCellsAndCopy() {
+        GridOccupancy grid = new GridOccupancy(5, 4);
+        grid.markCells(1, 1, 3, 2, true);
+        grid.markCells(2, 2, 1, 1, false);
+        GridOccupancy copy = grid.copy();
+        grid.clear();
+
+        assertTrue(grid.isRegionVacant(0, 0, 5, 4));
+        assertTrue(copy.cells[1][1]);
+        assertFalse(copy.cells[2][2]);
+        assertFalse(copy.isRegionVacant(1, 1, 1, 1));
+        assertTrue(copy.isRegionVacant(2, 2, 1, 1));
+
+        int[] vacant = new int[2];
+        assertTrue(copy.findVacantCell(vacant, 5, 1));
+        assertEquals(0, vacant[0]);
+        assertEquals(0, vacant[1]);
+        assertTrue(copy.findVacantCell(vacant, 1, 3));
+        assertEquals(0, vacant[0]);
+        assertEquals(0, vacant[1]);
+        assertFalse(copy.findVacantCell(vacant, 2, 2));
+
+        copy.markCells(0, 0, 1, 4, true);
+        assertTrue(copy.findVacantCell(vacant, 1, 4));
+        assertEquals(4, vacant[0]);
+        assertEquals(0, vacant[1]);
+    }
+
+    @Test
+    public void testWideGridMatchesCells() {
+        GridOccupancy grid = new GridOccupancy(70, 3);
+        grid.markCells(0, 0, 66, 2, true);
+
+        int[] vacant = new int[2];
+        assertTrue(grid.findVacantCell(vacant, 4, 2));
+        assertEquals(66, vacant[0]);
+        assertEquals(0, vacant[1]);
+        assertTrue(grid.isRegionVacant(66, 0, 4, 3));
+        assertFalse(grid.isRegionVacant(65, 0, 2, 1));
+    }
+
     private GridOccupancy initGrid(int rows, int... cells) {
         int cols = cells.length / rows;
         int i = 0;
         GridOccupancy grid = new GridOccupancy(cols, rows);
         for (int y = 0; y < rows; y++) {
             for (int x = 0; x < cols; x++) {
-                grid.cells[x][y] = cells[i] != 0;
+                grid.markCells(x, y, 1, 1, cells[i] != 0);
                 i++;
             }
         }
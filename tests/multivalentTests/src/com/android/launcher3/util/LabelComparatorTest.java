@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.util.LabelComparator.SortKey;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for {@link LabelComparator}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class LabelComparatorTest {
+
+    private static final int TITLE_COUNT = 1000;
+
+    // Alphabets of the generated titles, in different scripts
+    private static final String[] ALPHABETS = {
+            "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZéèàç",
+            "абвгдежзийклмнопрстуфхцчшщэюя",
+            "αβγδεζηθικλμνξοπρστυφχψω",
+            "日本語中文应用程序設定時計地図写真音楽",
+            "ابتثجحخدذرزسشصضطظعغفقكلمنهوي",
+            "अआइईउऊएऐओऔकखगघचछजझटठडढणतथदधनपफबभमयरलवशसह",
+            "0123456789",
+            "#@&!+*",
+    };
+
+    private final LabelComparator mComparator = new LabelComparator();
+
+    @Test
+    public void compare_putsLabelsStartingWithLetterOrDigitFirst() {
+        assertTrue(mComparator.compare("Zebra", "#hash") < 0);
+        assertTrue(mComparator.compare("9 Apps", "@mail") < 0);
+        assertTrue(mComparator.compare("", "Apps") > 0);
+    }
+
+    @Test
+    public void sortKeys_compareAsLabels() {
+        List<String> titles = createTitles();
+        for (int i = 1; i < titles.size(); i++) {
+            String a = titles.get(i - 1);
+            String b = titles.get(i);
+            assertEquals(a + " / " + b, Integer.signum(mComparator.compare(a, b)),
+                    Integer.signum(mComparator.getSortKey(a)
+                            .compareTo(mComparator.getSortKey(b))));
+        }
+    }
+
+    @Test
+    public void isValidKey_matchesLabel() {
+        SortKey key = mComparator.getSortKey("Camera");
+
+        assertTrue(mComparator.isValidKey(key, "Camera"));
+        assertFalse(mComparator.isValidKey(key, "Photos"));
+        assertFalse(mComparator.isValidKey(null, "Camera"));
+    }
+
+    @Test
+    public void sortBySortKeys_matchesSortByLabels() {
+        List<String> titles = createTitles();
+        List<SortKey> keys = new ArrayList<>(titles.size());
+        for (String title : titles) {
+            keys.add(mComparator.getSortKey(title));
+        }
+
+        List<String> sortedTitles = new ArrayList<>(titles);
+        sortedTitles.sort(mComparator);
+        List<SortKey> sortedKeys = new ArrayList<>(keys);
+        sortedKeys.sort(Comparator.naturalOrder());
+
+        for (int i = 0; i < TITLE_COUNT; i++) {
+            assertEquals(0, mComparator.compare(
+                    sortedTitles.get(i), sortedKeys.get(i).getLabel()));
+        }
+    }
+
+    private static List<String> createTitles() {
+        Random random = new Random(42);
+        List<String> titles = new ArrayList<>(TITLE_COUNT);
+        for (int i = 0; i < TITLE_COUNT; i++) {
+            String alphabet = ALPHABETS[random.nextInt(ALPHABETS.length)];
+            int length = 1 + random.nextInt(12);
+            StringBuilder title = new StringBuilder(length);
+            for (int j = 0; j < length; j++) {
+                if (j > 0 && random.nextInt(6) == 0) {
+                    title.append(' ');
+                }
+                title.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            titles.add(title.toString());
+        }
+        return titles;
+    }
+}
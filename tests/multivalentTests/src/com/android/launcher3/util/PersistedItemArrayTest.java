@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.util;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_APPLICATION;
+import static com.android.launcher3.LauncherSettings.Favorites.ITEM_TYPE_DEEP_SHORTCUT;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Process;
+import android.os.UserHandle;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import com.android.launcher3.model.data.ItemInfo;
+import com.android.launcher3.model.data.WorkspaceItemInfo;
+import com.android.launcher3.pm.UserCache;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class PersistedItemArrayTest {
+
+    private static final String FILE_NAME = "persisted_item_array_test";
+
+    private final Context mContext = getApplicationContext();
+    private final UserHandle mUser = Process.myUserHandle();
+    private final PersistedItemArray<ItemInfo> mArray = new PersistedItemArray<>(FILE_NAME);
+
+    @After
+    public void tearDown() {
+        mArray.getFile(mContext).delete();
+        mContext.getFileStreamPath(FILE_NAME + ".xml").delete();
+    }
+
+    @Test
+    public void write_thenRead_returnsSameItems() {
+        List<ItemInfo> items = new ArrayList<>();
+        items.add(createItem(ITEM_TYPE_APPLICATION, createIntent("Activity1")));
+        items.add(createItem(ITEM_TYPE_APPLICATION, createIntent("Activity2")));
+        items.add(createItem(ITEM_TYPE_DEEP_SHORTCUT,
+                createIntent("Activity1").putExtra("shortcut_id", "id1")));
+
+        mArray.write(mContext, items);
+
+        assertSameIntents(items, read());
+    }
+
+    @Test
+    public void write_thenRead_keepsIntentFieldsAndUriOnlyIntents() {
+        List<ItemInfo> items = new ArrayList<>();
+        items.add(createItem(ITEM_TYPE_APPLICATION, createIntent("Activity1")
+                .setPackage(mContext.getPackageName())
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK
+                        | Intent.FLAG_ACTIVITY_RESET_TASK_IF_NEEDED)));
+        items.add(createItem(ITEM_TYPE_APPLICATION, new Intent()
+                .setComponent(new ComponentName(mContext.getPackageName(), "Activity2"))));
+        items.add(createItem(ITEM_TYPE_APPLICATION, new Intent(Intent.ACTION_VIEW)
+                .setData(Uri.parse("https://www.android.com"))));
+
+        mArray.write(mContext, items);
+
+        assertSameIntents(items, read());
+    }
+
+    @Test
+    public void write_sameItems_doesNotWriteFile() {
+        List<ItemInfo> items = List.of(
+                createItem(ITEM_TYPE_APPLICATION, createIntent("Activity1")));
+        mArray.write(mContext, items);
+        File file = mArray.getFile(mContext).getBaseFile();
+        file.setLastModified(0);
+
+        mArray.write(mContext, items);
+        assertEquals(0, file.lastModified());
+
+        mArray.write(mContext, List.of(
+                createItem(ITEM_TYPE_APPLICATION, createIntent("Activity2"))));
+        assertTrue(file.lastModified() > 0);
+    }
+
+    @Test
+    public void read_convertsLegacyFile() throws IOException {
+        Intent intent = createIntent("Activity1");
+        File legacyFile = mContext.getFileStreamPath(FILE_NAME + ".xml");
+        try (FileOutputStream out = new FileOutputStream(legacyFile)) {
+            out.write(("<?xml version='1.0' encoding='utf-8' standalone='yes' ?>"
+                    + "<items><entry itemType=\"" + ITEM_TYPE_APPLICATION + "\" profileId=\""
+                    + UserCache.INSTANCE.get(mContext).getSerialNumberForUser(mUser)
+                    + "\" intent=\"" + intent.toUri(0).replace("&", "&amp;") + "\" /></items>")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+
+        List<ItemInfo> expected = List.of(createItem(ITEM_TYPE_APPLICATION, intent));
+        assertSameIntents(expected, read());
+        assertFalse(legacyFile.exists());
+        assertTrue(mArray.getFile(mContext).getBaseFile().exists());
+        assertSameIntents(expected, read());
+    }
+
+    private List<ItemInfo> read() {
+        return mArray.read(mContext, (itemType, user, intent) ->
+                createItem(itemType, intent), serial -> mUser);
+    }
+
+    private ItemInfo createItem(int itemType, Intent intent) {
+        WorkspaceItemInfo info = new WorkspaceItemInfo();
+        info.itemType = itemType;
+        info.user = mUser;
+        info.intent = intent;
+        return info;
+    }
+
+    private Intent createIntent(String className) {
+        return new Intent(Intent.ACTION_MAIN)
+                .addCategory(Intent.CATEGORY_LAUNCHER)
+                .setComponent(new ComponentName(mContext.getPackageName(), className));
+    }
+
+    private static void assertSameIntents(List<ItemInfo> expected, List<ItemInfo> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).itemType, actual.get(i).itemType);
+            assertEquals(expected.get(i).getIntent().toUri(0), actual.get(i).getIntent().toUri(0));
+        }
+    }
+}
@@ -76,6 +76,19 @@ class ViewCacheTest {
         assertThat(view).isSameInstanceAs(newView)
     }
 
+    @Test
+    fun get_view_from_factory_then_from_cache() {
+        var created = 0
+        val factory = { View(context).also { created++ } }
+        val view: View = underTest.getView(R.id.widget_preview_host_view_cache_id, factory)
+        underTest.recycleView(R.id.widget_preview_host_view_cache_id, view)
+
+        val newView: View = underTest.getView(R.id.widget_preview_host_view_cache_id, factory)
+
+        assertThat(newView).isSameInstanceAs(view)
+        assertThat(created).isEqualTo(1)
+    }
+
     @Test
     fun change_tag_id_recyclerView_noOp() {
         val view: View = underTest.getView(layoutId, context, null)
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.widget;
+
+import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Process;
+import android.os.UserHandle;
+import android.util.Size;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.filters.SmallTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Set;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class WidgetPreviewCacheTest {
+
+    private static final Size SIZE = new Size(40, 30);
+
+    private final Context mContext = getApplicationContext();
+    private final UserHandle mUser = Process.myUserHandle();
+    private final Configuration mConfig = mContext.getResources().getConfiguration();
+    private final ComponentName mProvider1 = new ComponentName(mContext, "Provider1");
+    private final ComponentName mProvider2 = new ComponentName(mContext, "Provider2");
+
+    private File mDir;
+
+    @Before
+    public void setUp() {
+        mDir = new File(mContext.getCacheDir(), "widget_preview_cache_test");
+    }
+
+    @After
+    public void tearDown() {
+        deleteFiles(mDir);
+    }
+
+    @Test
+    public void get_returnsPreviewForSameSizeOnly() {
+        WidgetPreviewCache cache = new WidgetPreviewCache(mContext, mDir, Long.MAX_VALUE);
+        cache.put(mProvider1, mUser, SIZE, mConfig, createPreview());
+
+        Bitmap preview = cache.get(mProvider1, mUser, SIZE, mConfig);
+        assertNotNull(preview);
+        assertEquals(SIZE.getWidth(), preview.getWidth());
+        assertEquals(SIZE.getHeight(), preview.getHeight());
+        assertNull(cache.get(mProvider1, mUser, new Size(80, 60), mConfig));
+        assertNull(cache.get(mProvider2, mUser, SIZE, mConfig));
+    }
+
+    @Test
+    public void invalidate_removesPreviewsOfPackage() {
+        WidgetPreviewCache cache = new WidgetPreviewCache(mContext, mDir, Long.MAX_VALUE);
+        cache.put(mProvider1, mUser, SIZE, mConfig, createPreview());
+
+        cache.invalidate(Set.of(mContext.getPackageName()), mUser);
+
+        assertNull(cache.get(mProvider1, mUser, SIZE, mConfig));
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsedPreviewsAboveBudget() {
+        new WidgetPreviewCache(mContext, mDir, Long.MAX_VALUE)
+                .put(mProvider1, mUser, SIZE, mConfig, createPreview());
+        long fileSize = getFilesSize(mDir);
+        markFilesAsOld(mDir);
+
+        // Only one preview fits in the budget
+        WidgetPreviewCache cache = new WidgetPreviewCache(mContext, mDir, fileSize * 3 / 2);
+        cache.put(mProvider2, mUser, SIZE, mConfig, createPreview());
+
+        assertNull(cache.get(mProvider1, mUser, SIZE, mConfig));
+        assertNotNull(cache.get(mProvider2, mUser, SIZE, mConfig));
+    }
+
+    private static Bitmap createPreview() {
+        Bitmap bitmap = Bitmap.createBitmap(
+                SIZE.getWidth(), SIZE.getHeight(), Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.RED);
+        return bitmap;
+    }
+
+    private static long getFilesSize(File file) {
+        File[] children = file.listFiles();
+        if (children == null) {
+            return file.length();
+        }
+        long size = 0;
+        for (File child : children) {
+            size += getFilesSize(child);
+        }
+        return size;
+    }
+
+    private static void markFilesAsOld(File file) {
+        File[] children = file.listFiles();
+        if (children == null) {
+            file.setLastModified(0);
+            return;
+        }
+        for (File child : children) {
+            markFilesAsOld(child);
+        }
+    }
+
+    private static void deleteFiles(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteFiles(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -17,7 +17,6 @@
 package com.android.launcher3.widget.picker.search;
 
 import static androidx.test.core.app.ApplicationProvider.getApplicationContext;
-import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
 
 import static com.android.launcher3.util.Executors.MAIN_EXECUTOR;
 import static com.android.launcher3.util.WidgetUtils.createAppWidgetProviderInfo;
@@ -28,6 +27,8 @@ import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.matches;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 
 import android.appwidget.AppWidgetProviderInfo;
@@ -163,12 +164,38 @@ public class SimpleWidgetsSearchAlgorithmTest {
                 mCameraContentEntry, mClockHeaderEntry, mClockContentEntry))
                 .when(mDataProvider)
                 .getWidgets();
-        mSimpleWidgetsSearchAlgorithm.doSearch("Ca", mSearchCallback);
-        getInstrumentation().waitForIdleSync();
-        verify(mSearchCallback).onSearchResult(
+        MAIN_EXECUTOR.submit(() -> mSimpleWidgetsSearchAlgorithm.doSearch("Ca", mSearchCallback))
+                .get();
+        // The search runs on a background thread
+        verify(mSearchCallback, timeout(1000)).onSearchResult(
                 matches("Ca"), argThat(a -> a != null && !a.isEmpty()));
     }
 
+    @Test
+    public void filter_shouldMatchOnWidgetDescription() {
+        List<WidgetItem> notesWidgetItems = generateWidgetItems(
+                "com.example.android.Notes", 1, "Shows your shopping list");
+        WidgetsListHeaderEntry notesHeaderEntry = WidgetsListHeaderEntry.create(
+                createPackageItemInfo("com.example.android.Notes", "Notes",
+                        notesWidgetItems.get(0).user),
+                /* titleSectionName= */ "",
+                notesWidgetItems);
+        doReturn(List.of(notesHeaderEntry, mCalendarHeaderEntry, mCalendarContentEntry))
+                .when(mDataProvider)
+                .getWidgets();
+
+        assertEquals(List.of(
+                WidgetsListHeaderEntry.createForSearch(
+                        notesHeaderEntry.mPkgItem,
+                        notesHeaderEntry.mTitleSectionName,
+                        notesHeaderEntry.mWidgets),
+                new WidgetsListContentEntry(
+                        notesHeaderEntry.mPkgItem,
+                        notesHeaderEntry.mTitleSectionName,
+                        notesHeaderEntry.mWidgets)),
+                SimpleWidgetsSearchAlgorithm.getFilteredWidgets(mDataProvider, "shop"));
+    }
+
     private WidgetsListHeaderEntry createWidgetsHeaderEntry(String packageName, String appName,
             int numOfWidgets) {
         List<WidgetItem> widgetItems = generateWidgetItems(packageName, numOfWidgets);
@@ -196,14 +223,21 @@ public class SimpleWidgetsSearchAlgorithmTest {
     }
 
     private List<WidgetItem> generateWidgetItems(String packageName, int numOfWidgets) {
+        return generateWidgetItems(packageName, numOfWidgets, /* description= */ null);
+    }
+
+    private List<WidgetItem> generateWidgetItems(String packageName, int numOfWidgets,
+            String description) {
         ArrayList<WidgetItem> widgetItems = new ArrayList<>();
         for (int i = 0; i < numOfWidgets; i++) {
             ComponentName cn = ComponentName.createRelative(packageName, ".SampleWidget" + i);
             AppWidgetProviderInfo widgetInfo = createAppWidgetProviderInfo(cn);
+            LauncherAppWidgetProviderInfo launcherWidgetInfo =
+                    spy(LauncherAppWidgetProviderInfo.fromProviderInfo(mContext, widgetInfo));
+            doReturn(description).when(launcherWidgetInfo).loadDescription(any());
 
             WidgetItem widgetItem = new WidgetItem(
-                    LauncherAppWidgetProviderInfo.fromProviderInfo(mContext, widgetInfo),
-                    mTestProfile, mIconCache, mContext);
+                    launcherWidgetInfo, mTestProfile, mIconCache, mContext);
             widgetItems.add(widgetItem);
         }
         return widgetItems;
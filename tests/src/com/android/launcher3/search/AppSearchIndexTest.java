@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2024 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.launcher3.search;
+
+import static androidx.test.platform.app.InstrumentationRegistry.getInstrumentation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ComponentName;
+import android.os.Process;
+import android.os.UserManager;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.launcher3.model.data.AppInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Unit tests for {@link AppSearchIndex}
+ */
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class AppSearchIndexTest {
+
+    private UserManager mUserManager;
+    private AppSearchIndex mIndex;
+
+    @Before
+    public void setup() {
+        mUserManager = UserManager.get(getInstrumentation().getTargetContext());
+        mIndex = new AppSearchIndex();
+    }
+
+    @Test
+    public void search_matchesWordPrefixes() {
+        AppInfo youTube = newApp("YouTube");
+        AppInfo playStore = newApp("Play Store");
+        AppInfo whiteCow = newApp("whitecow");
+        mIndex.add(youTube);
+        mIndex.add(playStore);
+        mIndex.add(whiteCow);
+
+        assertEquals(List.of(youTube), mIndex.search(mUserManager, "tube"));
+        assertEquals(List.of(playStore), mIndex.search(mUserManager, "sto"));
+        assertEquals(List.of(whiteCow), mIndex.search(mUserManager, "White"));
+        assertTrue(mIndex.search(mUserManager, "cow").isEmpty());
+        assertTrue(mIndex.search(mUserManager, "").isEmpty());
+    }
+
+    @Test
+    public void search_returnsAppsInInsertionOrder() {
+        AppInfo first = newApp("Camera");
+        AppInfo second = newApp("Calculator");
+        AppInfo third = newApp("Calendar");
+        mIndex.add(first);
+        mIndex.add(second);
+        mIndex.add(third);
+
+        assertEquals(Arrays.asList(first, second, third), mIndex.search(mUserManager, "ca"));
+    }
+
+    @Test
+    public void search_refinesPreviousQuery() {
+        AppInfo calculator = newApp("Calculator");
+        AppInfo calendar = newApp("Calendar");
+        mIndex.add(calculator);
+        mIndex.add(calendar);
+
+        assertEquals(Arrays.asList(calculator, calendar), mIndex.search(mUserManager, "cal"));
+        assertEquals(List.of(calendar), mIndex.search(mUserManager, "cale"));
+        // Going back to a shorter query matches the other apps again
+        assertEquals(Arrays.asList(calculator, calendar), mIndex.search(mUserManager, "ca"));
+    }
+
+    @Test
+    public void search_reflectsChangesAfterPreviousQuery() {
+        AppInfo calculator = newApp("Calculator");
+        mIndex.add(calculator);
+        assertEquals(List.of(calculator), mIndex.search(mUserManager, "cal"));
+
+        AppInfo calendar = newApp("Calendar");
+        mIndex.add(calendar);
+        assertEquals(List.of(calendar), mIndex.search(mUserManager, "cale"));
+
+        calendar.title = "Agenda";
+        mIndex.update(calendar);
+        assertEquals(List.of(calendar), mIndex.search(mUserManager, "age"));
+        assertTrue(mIndex.search(mUserManager, "agenda c").isEmpty());
+
+        mIndex.remove(calendar);
+        assertTrue(mIndex.search(mUserManager, "agen").isEmpty());
+    }
+
+    private static AppInfo newApp(String title) {
+        AppInfo info = new AppInfo();
+        info.title = title;
+        info.user = Process.myUserHandle();
+        info.componentName = new ComponentName("com.example", title);
+        return info;
+    }
+}